@@ -62,6 +62,59 @@ public abstract class AbstractGeoCoding implements GeoCoding {
      */
     public abstract boolean transferGeoCoding(Scene srcScene, Scene destScene, ProductSubsetDef subsetDef);
 
+    /**
+     * Gets the geographical positions of the pixel centres of an image rectangle.
+     * <p/>
+     * The default implementation calls {@link #getGeoPos} for every pixel. Geo-codings which can compute
+     * the positions of many pixels at once override it.
+     *
+     * @param x1        the x coordinate of the rectangle
+     * @param y1        the y coordinate of the rectangle
+     * @param w         the width of the rectangle
+     * @param h         the height of the rectangle
+     * @param latPixels the latitudes of the pixels, line by line, <code>NaN</code> if invalid
+     * @param lonPixels the longitudes of the pixels, line by line, <code>NaN</code> if invalid
+     */
+    public void getPixels(final int x1, final int y1, final int w, final int h,
+                          final float[] latPixels, final float[] lonPixels) {
+        final PixelPos pixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        final int x2 = x1 + w;
+        final int y2 = y1 + h;
+        int pos = 0;
+        for (int y = y1; y < y2; ++y) {
+            for (int x = x1; x < x2; ++x) {
+                pixelPos.setLocation(x + 0.5f, y + 0.5f);
+                getGeoPos(pixelPos, geoPos);
+                latPixels[pos] = geoPos.lat;
+                lonPixels[pos] = geoPos.lon;
+                ++pos;
+            }
+        }
+    }
+
+    /**
+     * Gets the pixel co-ordinates of many geographical positions.
+     * <p/>
+     * The default implementation calls {@link #getPixelPos} for every position. Geo-codings which can compute
+     * the co-ordinates of many positions at once override it.
+     *
+     * @param lat    the latitudes of the positions
+     * @param lon    the longitudes of the positions
+     * @param pixelX the x co-ordinates of the positions, <code>NaN</code> if invalid
+     * @param pixelY the y co-ordinates of the positions, <code>NaN</code> if invalid
+     */
+    public void getPixelPos(final float[] lat, final float[] lon, final float[] pixelX, final float[] pixelY) {
+        final GeoPos geoPos = new GeoPos();
+        final PixelPos pixelPos = new PixelPos();
+        for (int i = 0; i < lat.length; ++i) {
+            geoPos.setLocation(lat[i], lon[i]);
+            getPixelPos(geoPos, pixelPos);
+            pixelX[i] = pixelPos.x;
+            pixelY[i] = pixelPos.y;
+        }
+    }
+
     @Override
     public CoordinateReferenceSystem getImageCRS() {
         return imageCRS;
@@ -227,27 +227,71 @@ public class CrsGeoCoding extends AbstractGeoCoding {
         return geoPos;
     }
 
+    @Override
     public final void getPixels(final int x1, final int y1, final int w, final int h,
                                   final float[] latPixels, final float[] lonPixels) {
-        final DirectPosition2D directPixPos = new DirectPosition2D();
-        final DirectPosition directGeoPos = new GeneralDirectPosition(0,0);
-        final int x2 = x1 + w;
+        // one line of pixel centres at a time through the transform
+        final double[] line = new double[2 * w];
         final int y2 = y1 + h;
         int pos = 0;
         for (int y = y1; y < y2; ++y) {
             final double yp = y + 0.5;
-            for (int x = x1; x < x2; ++x) {
-                try {
-                    directPixPos.setLocation(x + 0.5, yp);
-                    imageToGeo.transform(directPixPos, directGeoPos);
-                    latPixels[pos] = (float) directGeoPos.getOrdinate(1);
-                    lonPixels[pos] = (float) directGeoPos.getOrdinate(0);
-                } catch (Exception ignored) {
-                    latPixels[pos] = Float.NaN;
-                    lonPixels[pos] = Float.NaN;
+            for (int i = 0, x = x1; i < w; ++i, ++x) {
+                line[2 * i] = x + 0.5;
+                line[2 * i + 1] = yp;
+            }
+            try {
+                imageToGeo.transform(line, 0, line, 0, w);
+                for (int i = 0; i < w; ++i) {
+                    latPixels[pos] = (float) line[2 * i + 1];
+                    lonPixels[pos] = (float) line[2 * i];
+                    ++pos;
                 }
-                ++pos;
+            } catch (Exception ignored) {
+                getPixelsOfLine(x1, y, w, latPixels, lonPixels, pos);
+                pos += w;
+            }
+        }
+    }
+
+    /**
+     * Transforms the pixels of a line one by one, for a line of which some pixels can't be transformed.
+     */
+    private void getPixelsOfLine(final int x1, final int y, final int w,
+                                 final float[] latPixels, final float[] lonPixels, int pos) {
+        final DirectPosition2D directPixPos = new DirectPosition2D();
+        final DirectPosition directGeoPos = new GeneralDirectPosition(0,0);
+        final int x2 = x1 + w;
+        final double yp = y + 0.5;
+        for (int x = x1; x < x2; ++x) {
+            try {
+                directPixPos.setLocation(x + 0.5, yp);
+                imageToGeo.transform(directPixPos, directGeoPos);
+                latPixels[pos] = (float) directGeoPos.getOrdinate(1);
+                lonPixels[pos] = (float) directGeoPos.getOrdinate(0);
+            } catch (Exception ignored) {
+                latPixels[pos] = Float.NaN;
+                lonPixels[pos] = Float.NaN;
             }
+            ++pos;
+        }
+    }
+
+    @Override
+    public final void getPixelPos(final float[] lat, final float[] lon, final float[] pixelX, final float[] pixelY) {
+        final double[] points = new double[2 * lat.length];
+        for (int i = 0; i < lat.length; ++i) {
+            points[2 * i] = lon[i];
+            points[2 * i + 1] = lat[i];
+        }
+        try {
+            geoToImage.transform(points, 0, points, 0, lat.length);
+            for (int i = 0; i < lat.length; ++i) {
+                pixelX[i] = (float) points[2 * i];
+                pixelY[i] = (float) points[2 * i + 1];
+            }
+        } catch (Exception ignored) {
+            super.getPixelPos(lat, lon, pixelX, pixelY);
         }
     }
 
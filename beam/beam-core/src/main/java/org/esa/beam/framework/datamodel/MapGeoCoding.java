@@ -171,6 +171,56 @@ public class MapGeoCoding extends AbstractGeoCoding {
         return denormGeoPos(geoPosNorm, geoPos);
     }
 
+    /**
+     * Gets the geographical positions of the pixel centres of an image rectangle. The map co-ordinates of
+     * a line of pixels are computed at once.
+     */
+    @Override
+    public final void getPixels(final int x1, final int y1, final int w, final int h,
+                                final float[] latPixels, final float[] lonPixels) {
+        final double[] line = new double[2 * w];
+        final Point2D.Double mapPos = new Point2D.Double();
+        final GeoPos geoPos = new GeoPos();
+        int pos = 0;
+        for (int y = y1; y < y1 + h; ++y) {
+            for (int i = 0; i < w; ++i) {
+                line[2 * i] = x1 + i + 0.5f;
+                line[2 * i + 1] = y + 0.5f;
+            }
+            imageToMapTransform.transform(line, 0, line, 0, w);
+            for (int i = 0; i < w; ++i) {
+                mapPos.setLocation(line[2 * i], line[2 * i + 1]);
+                denormGeoPos(mapToGeo(mapPos, geoPos), geoPos);
+                latPixels[pos] = geoPos.lat;
+                lonPixels[pos] = geoPos.lon;
+                ++pos;
+            }
+        }
+    }
+
+    /**
+     * Gets the pixel co-ordinates of many geographical positions. The image co-ordinates of all map
+     * positions are computed at once.
+     */
+    @Override
+    public final void getPixelPos(final float[] lat, final float[] lon, final float[] pixelX, final float[] pixelY) {
+        final double[] points = new double[2 * lat.length];
+        final GeoPos geoPos = new GeoPos();
+        final GeoPos geoPosNorm = new GeoPos();
+        final Point2D.Double mapPos = new Point2D.Double();
+        for (int i = 0; i < lat.length; ++i) {
+            geoPos.setLocation(lat[i], lon[i]);
+            final Point2D mapPoint = geoToMap(normGeoPos(geoPos, geoPosNorm), mapPos);
+            points[2 * i] = mapPoint.getX();
+            points[2 * i + 1] = mapPoint.getY();
+        }
+        mapToImageTransform.transform(points, 0, points, 0, lat.length);
+        for (int i = 0; i < lat.length; ++i) {
+            pixelX[i] = (float) points[2 * i];
+            pixelY[i] = (float) points[2 * i + 1];
+        }
+    }
+
     /**
      * Releases all of the resources used by this geo-coding and all of its owned children. Its primary use is to allow
      * the garbage collector to perform a vanilla job.
@@ -108,6 +108,7 @@ public class PixelGeoCoding extends AbstractGeoCoding {
     private static final String SYSPROP_PIXEL_GEO_CODING_FRACTION_ACCURACY = "beam.pixelGeoCoding.fractionAccuracy";
 
     private static final int MAX_SEARCH_CYCLES = 10;
+    private static final int MAX_INDEX_POINTS = 1 << 20;
 
     // TODO - (nf) make EPS for quad-tree search dependent on current scene
     private static final float EPS = 0.04F; // used by quad-tree search
@@ -130,6 +131,7 @@ public class PixelGeoCoding extends AbstractGeoCoding {
     private boolean initialized;
     private LatLonImage latLonImage;
     private double deltaThreshold;
+    private volatile PixelIndex pixelIndex;
 
     /**
      * Constructs a new pixel-based geo-coding.
@@ -457,11 +459,7 @@ public class PixelGeoCoding extends AbstractGeoCoding {
             pixelPos = new PixelPos();
         }
         if (geoPos.isValid()) {
-            if (pixelPosEstimator != null) {
-                getPixelPosUsingEstimator(geoPos, pixelPos);
-            } else {
-                getPixelPosUsingQuadTreeSearch(geoPos, pixelPos);
-            }
+            getPixelPosUsingIndex(geoPos, pixelPos);
         } else {
             pixelPos.setInvalid();
         }
@@ -499,7 +497,7 @@ public class PixelGeoCoding extends AbstractGeoCoding {
                 minDelta = findBestPixel(x1, y1, lat0, lon0, pixelPos);
             }
             while (++cycles < MAX_SEARCH_CYCLES && (x1 != (int) pixelPos.x || y1 != (int) pixelPos.y) && bestPixelIsOnSearchBorder(
-                    x1, y1, pixelPos));
+                    x1, y1, pixelPos, searchRadius));
             if (Math.sqrt(minDelta) < deltaThreshold) {
                 pixelPos.setLocation(pixelPos.x + 0.5f, pixelPos.y + 0.5f);
             } else {
@@ -508,13 +506,114 @@ public class PixelGeoCoding extends AbstractGeoCoding {
         }
     }
 
-    private boolean bestPixelIsOnSearchBorder(int x0, int y0, PixelPos bestPixel) {
+    /**
+     * Returns the pixel co-ordinates as x/y for a given geographical position given as lat/lon.
+     * The pixel nearest to the position is looked up in a spatial index of the latitudes and longitudes,
+     * which is built once on the first call, and refined by a search in the pixels around it.
+     * <p/>
+     * If the position is further from the nearest pixel than twice the pixel spacing of the estimator,
+     * it is given by the estimator, as by {@link #getPixelPosUsingEstimator}. Without an estimator, a position
+     * further than the margin of the quad-tree search is given by {@link #getPixelPosUsingQuadTreeSearch},
+     * which also finds positions within the quads of pixels further apart than the margin.
+     *
+     * @param geoPos   the geographical position as lat/lon.
+     * @param pixelPos the return value.
+     */
+    public void getPixelPosUsingIndex(final GeoPos geoPos, PixelPos pixelPos) {
+        initialize();
+
+        final PixelIndex index = getPixelIndex();
+        final int nearest = index.findNearest(geoPos.lat, geoPos.lon);
+        if (nearest < 0) {
+            pixelPos.setInvalid();
+            return;
+        }
+
+        final float lat0 = geoPos.lat;
+        final float lon0 = geoPos.lon;
+        pixelPos.setLocation(nearest % rasterWidth, nearest / rasterWidth);
+        int y1;
+        int x1;
+        float minDelta;
+        int cycles = 0;
+        do {
+            x1 = (int) Math.floor(pixelPos.x);
+            y1 = (int) Math.floor(pixelPos.y);
+            minDelta = findBestPixel(x1, y1, lat0, lon0, pixelPos, index.searchRadius);
+        }
+        while (++cycles < MAX_SEARCH_CYCLES && (x1 != (int) pixelPos.x || y1 != (int) pixelPos.y) && bestPixelIsOnSearchBorder(
+                x1, y1, pixelPos, index.searchRadius));
+
+        final double maxDelta = pixelPosEstimator != null ? deltaThreshold : EPS;
+        if (Math.sqrt(minDelta) < maxDelta) {
+            pixelPos.setLocation(pixelPos.x + 0.5f, pixelPos.y + 0.5f);
+        } else if (pixelPosEstimator != null) {
+            getPixelPosUsingEstimator(geoPos, pixelPos);
+        } else {
+            // the quad-tree search also accepts positions between the pixels of coarse images
+            getPixelPosUsingQuadTreeSearch(geoPos, pixelPos);
+        }
+    }
+
+    private PixelIndex getPixelIndex() {
+        PixelIndex index = pixelIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = pixelIndex;
+                if (index == null) {
+                    index = createPixelIndex();
+                    pixelIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Indexes the pixels of a regular lattice, which is as dense as the search radius allows for
+     * and not more than {@link #MAX_INDEX_POINTS} pixels.
+     */
+    private PixelIndex createPixelIndex() {
+        int step = Math.max(1, searchRadius - 1);
+        while ((long) ((rasterWidth + step - 1) / step) * ((rasterHeight + step - 1) / step) > MAX_INDEX_POINTS) {
+            step++;
+        }
+
+        final int maxPoints = ((rasterWidth + step - 1) / step) * ((rasterHeight + step - 1) / step);
+        final float[] xyz = new float[3 * maxPoints];
+        final int[] pixels = new int[maxPoints];
+        final float[] lat = new float[rasterWidth];
+        final float[] lon = new float[rasterWidth];
+        int n = 0;
+        for (int y = 0; y < rasterHeight; y += step) {
+            getPixels(0, y, rasterWidth, 1, lat, lon);
+            for (int x = 0; x < rasterWidth; x += step) {
+                if (Float.isNaN(lat[x]) || Float.isNaN(lon[x])) {
+                    continue;
+                }
+                final double phi = lat[x] * MathUtils.DTOR;
+                final double lam = lon[x] * MathUtils.DTOR;
+                xyz[3 * n] = (float) (Math.cos(phi) * Math.cos(lam));
+                xyz[3 * n + 1] = (float) (Math.cos(phi) * Math.sin(lam));
+                xyz[3 * n + 2] = (float) Math.sin(phi);
+                pixels[n] = y * rasterWidth + x;
+                n++;
+            }
+        }
+        return new PixelIndex(xyz, pixels, n, Math.max(searchRadius, step + 1));
+    }
+
+    private static boolean bestPixelIsOnSearchBorder(int x0, int y0, PixelPos bestPixel, int searchRadius) {
         final int diffX = Math.abs((int) bestPixel.x - x0);
         final int diffY = Math.abs((int) bestPixel.y - y0);
         return diffX > (searchRadius - 2) || diffY > (searchRadius - 2);
     }
 
     private float findBestPixel(int x0, int y0, float lat0, float lon0, PixelPos bestPixel) {
+        return findBestPixel(x0, y0, lat0, lon0, bestPixel, searchRadius);
+    }
+
+    private float findBestPixel(int x0, int y0, float lat0, float lon0, PixelPos bestPixel, int searchRadius) {
         int x1 = x0 - searchRadius;
         int y1 = y0 - searchRadius;
         int x2 = x0 + searchRadius;
@@ -677,6 +776,39 @@ public class PixelGeoCoding extends AbstractGeoCoding {
         return geoPos;
     }
 
+    /**
+     * Gets the geographical positions of the pixel centres of an image rectangle. The positions are read
+     * from the latitude and longitude data at once, as long as the rectangle is inside of the image.
+     */
+    @Override
+    public void getPixels(final int x1, final int y1, final int w, final int h,
+                          final float[] latPixels, final float[] lonPixels) {
+        initialize();
+        if (x1 < 0 || y1 < 0 || x1 + w > rasterWidth || y1 + h > rasterHeight) {
+            super.getPixels(x1, y1, w, h, latPixels, lonPixels);
+            return;
+        }
+        if (useTiling) {
+            final int x = latLonImage.getMinX() + x1;
+            final int y = latLonImage.getMinY() + y1;
+            final Raster data = latLonImage.getData(new Rectangle(x, y, w, h));
+            data.getSamples(x, y, w, h, 0, latPixels);
+            data.getSamples(x, y, w, h, 1, lonPixels);
+        } else {
+            final ProductData latData = latGrid.getRasterData();
+            final ProductData lonData = lonGrid.getRasterData();
+            int pos = 0;
+            for (int y = y1; y < y1 + h; ++y) {
+                final int offset = rasterWidth * y;
+                for (int x = x1; x < x1 + w; ++x) {
+                    latPixels[pos] = latData.getElemFloatAt(offset + x);
+                    lonPixels[pos] = lonData.getElemFloatAt(offset + x);
+                    ++pos;
+                }
+            }
+        }
+    }
+
     private float interpolate(float wx, float wy, Raster raster, int band) {
         final int x0 = raster.getMinX();
         final int x1 = x0 + 1;
@@ -748,6 +880,7 @@ public class PixelGeoCoding extends AbstractGeoCoding {
             latLonImage.dispose();
             latLonImage = null;
         }
+        pixelIndex = null;
         // Don't dispose the estimator, if it is not our's!
         if (estimatorCreatedInternally) {
             pixelPosEstimator.dispose();
@@ -1188,6 +1321,156 @@ public class PixelGeoCoding extends AbstractGeoCoding {
         }
     }
 
+    /**
+     * A k-d tree of the pixels of a lattice, by their position on the unit sphere.
+     * The tree is balanced and kept in the order of the point arrays, the median of a range of points
+     * being the node which splits it. The index is not modified after it has been built.
+     */
+    private static final class PixelIndex {
+
+        private final float[] xyz;
+        private final int[] pixels;
+        private final byte[] axes;
+        private final int numPoints;
+        private final int searchRadius;
+
+        private PixelIndex(final float[] xyz, final int[] pixels, final int numPoints, final int searchRadius) {
+            this.xyz = xyz;
+            this.pixels = pixels;
+            this.axes = new byte[numPoints];
+            this.numPoints = numPoints;
+            this.searchRadius = searchRadius;
+            build(0, numPoints);
+        }
+
+        private void build(final int lo, final int hi) {
+            if (hi - lo < 2) {
+                return;
+            }
+            // split along the axis of the largest extent
+            final float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+            final float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+            for (int i = lo; i < hi; i++) {
+                for (int a = 0; a < 3; a++) {
+                    final float v = xyz[3 * i + a];
+                    if (v < min[a]) {
+                        min[a] = v;
+                    }
+                    if (v > max[a]) {
+                        max[a] = v;
+                    }
+                }
+            }
+            int axis = 0;
+            for (int a = 1; a < 3; a++) {
+                if (max[a] - min[a] > max[axis] - min[axis]) {
+                    axis = a;
+                }
+            }
+
+            final int mid = (lo + hi) >>> 1;
+            select(lo, hi - 1, mid, axis);
+            axes[mid] = (byte) axis;
+            build(lo, mid);
+            build(mid + 1, hi);
+        }
+
+        /**
+         * Moves the k-th smallest point along an axis to k, the smaller points before and the others after it.
+         */
+        private void select(int left, int right, final int k, final int axis) {
+            while (right > left) {
+                final float pivot = xyz[3 * ((left + right) >>> 1) + axis];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (xyz[3 * i + axis] < pivot) {
+                        i++;
+                    }
+                    while (xyz[3 * j + axis] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                if (k <= j) {
+                    right = j;
+                } else if (k >= i) {
+                    left = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void swap(final int i, final int j) {
+            for (int a = 0; a < 3; a++) {
+                final float v = xyz[3 * i + a];
+                xyz[3 * i + a] = xyz[3 * j + a];
+                xyz[3 * j + a] = v;
+            }
+            final int p = pixels[i];
+            pixels[i] = pixels[j];
+            pixels[j] = p;
+        }
+
+        /**
+         * @return the pixel index y * width + x of the nearest point, -1 if there are none
+         */
+        int findNearest(final float lat, final float lon) {
+            if (numPoints == 0) {
+                return -1;
+            }
+            final double phi = lat * MathUtils.DTOR;
+            final double lam = lon * MathUtils.DTOR;
+            final float[] q = {
+                    (float) (Math.cos(phi) * Math.cos(lam)),
+                    (float) (Math.cos(phi) * Math.sin(lam)),
+                    (float) Math.sin(phi)
+            };
+            final Nearest nearest = new Nearest();
+            search(0, numPoints, q, nearest);
+            return pixels[nearest.index];
+        }
+
+        private void search(final int lo, final int hi, final float[] q, final Nearest nearest) {
+            if (lo >= hi) {
+                return;
+            }
+            final int mid = (lo + hi) >>> 1;
+            final float dx = q[0] - xyz[3 * mid];
+            final float dy = q[1] - xyz[3 * mid + 1];
+            final float dz = q[2] - xyz[3 * mid + 2];
+            final float d2 = dx * dx + dy * dy + dz * dz;
+            if (d2 < nearest.d2) {
+                nearest.d2 = d2;
+                nearest.index = mid;
+            }
+            if (hi - lo == 1) {
+                return;
+            }
+            final int axis = axes[mid];
+            final float d = q[axis] - xyz[3 * mid + axis];
+            if (d < 0) {
+                search(lo, mid, q, nearest);
+                if (d * d < nearest.d2) {
+                    search(mid + 1, hi, q, nearest);
+                }
+            } else {
+                search(mid + 1, hi, q, nearest);
+                if (d * d < nearest.d2) {
+                    search(lo, mid, q, nearest);
+                }
+            }
+        }
+
+        private static final class Nearest {
+            private int index = -1;
+            private float d2 = Float.MAX_VALUE;
+        }
+    }
+
     private static class Result {
 
         public static final float INVALID = Float.MAX_VALUE;
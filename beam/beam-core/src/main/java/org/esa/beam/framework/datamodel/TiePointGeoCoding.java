@@ -15,6 +15,7 @@
  */
 package org.esa.beam.framework.datamodel;
 
+import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.framework.dataio.ProductSubsetDef;
 import org.esa.beam.framework.dataop.maptransf.Datum;
 import org.esa.beam.util.Debug;
@@ -219,6 +220,17 @@ public final class TiePointGeoCoding extends AbstractGeoCoding {
         return geoPos;
     }
 
+    /**
+     * Gets the geographical positions of the pixel centres of an image rectangle, interpolated for all
+     * pixels of the rectangle at once by the tie-point grids.
+     */
+    @Override
+    public void getPixels(final int x1, final int y1, final int w, final int h,
+                          final float[] latPixels, final float[] lonPixels) {
+        latGrid.getPixels(x1, y1, w, h, latPixels, ProgressMonitor.NULL);
+        lonGrid.getPixels(x1, y1, w, h, lonPixels, ProgressMonitor.NULL);
+    }
+
     /**
      * Returns the pixel co-ordinates as x/y for a given geographical position given as lat/lon.
      *
@@ -33,6 +33,8 @@ import org.apache.commons.math.util.FastMath;
 
 import java.awt.image.RenderedImage;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 import Jama.Matrix;
 
@@ -72,11 +74,17 @@ public class TiePointGrid extends RasterDataNode {
     private final int rasterWidthMinus2;
     private final int rasterHeightMinus2;
 
+    // bound of the interpolated pixels kept by getCachedPixels, 8 MB
+    private static final int MAX_CACHED_PIXELS = 1 << 21;
+
     private int discontinuity;
     private TiePointGrid sinGrid;
     private TiePointGrid cosGrid;
     private float[] tiePoints = null;
 
+    private final LinkedHashMap<PixelBlock, float[]> pixelCache = new LinkedHashMap<PixelBlock, float[]>(16, 0.75f, true);
+    private int numCachedPixels = 0;
+
     private double[][] quadraticInterpCoeffs = null; // 2 order quadratic polynomial coefficients
     private double[] biquadraticInterpCoeffs = null; // 2 order biquadratic polynomial coefficients
 
@@ -369,6 +377,10 @@ public class TiePointGrid extends RasterDataNode {
 
     @Override
     public void dispose() {
+        synchronized (pixelCache) {
+            pixelCache.clear();
+            numCachedPixels = 0;
+        }
         if (cosGrid != null) {
             cosGrid.dispose();
             cosGrid = null;
@@ -576,13 +588,28 @@ public class TiePointGrid extends RasterDataNode {
         } else {
             final float x0 = 0.5f - offsetX;
             final float y0 = 0.5f - offsetY;
-            int i, j;
             float fi, fj;
             float wj;
-            int i1, j1, jrw, j1rw;
+            int i, j, jrw, j1rw;
 
             float subSamplingY = 1f / this.subSamplingY;
             float subSamplingX = 1f / this.subSamplingX;
+
+            // separable interpolation: the tie-point column and weight of a pixel are the same for all lines,
+            // and a line is interpolated from the two tie-point lines around it once for all of its pixels
+            final int[] columns = new int[w];
+            final float[] wi = new float[w];
+            int iMin = rasterWidthMinus2;
+            int iMax = 0;
+            for (int k = 0; k < w; ++k) {
+                fi = (x1 + k + x0) * subSamplingX;
+                i = (int)fi < 0 ? 0 : (int)fi > rasterWidthMinus2 ? rasterWidthMinus2 : (int)fi;
+                columns[k] = i;
+                wi[k] = fi - i;
+                iMin = Math.min(iMin, i);
+                iMax = Math.max(iMax, i);
+            }
+            final float[] line = new float[rasterWidth];
             int pos = 0;
 
             for (int y = y1; y < y2; ++y) {
@@ -590,25 +617,56 @@ public class TiePointGrid extends RasterDataNode {
                 j = MathUtils.crop((int)fj, 0, rasterHeightMinus2);
 
                 wj = fj - j;
-                j1 = j + 1;
                 jrw = j * rasterWidth;
-                j1rw = j1 * rasterWidth;
-                for (int x = x1; x < x2; ++x) {
-                    fi = (x + x0) * subSamplingX;
-                    i = (int)fi < 0 ? 0 : (int)fi > rasterWidthMinus2 ? rasterWidthMinus2 : (int)fi;
-
-                    i1 = i + 1;
-                    pixels[pos++] = MathUtils.interpolate2D(fi - i, wj,
-                                                   tiePoints[i + jrw],
-                                                   tiePoints[i1 + jrw],
-                                                   tiePoints[i + j1rw],
-                                                   tiePoints[i1 + j1rw]);
+                j1rw = jrw + rasterWidth;
+                for (i = iMin; i <= iMax + 1; ++i) {
+                    line[i] = tiePoints[i + jrw] + wj * (tiePoints[i + j1rw] - tiePoints[i + jrw]);
+                }
+                for (int k = 0; k < w; ++k) {
+                    i = columns[k];
+                    pixels[pos++] = line[i] + wi[k] * (line[i + 1] - line[i]);
                 }
             }
         }
         return pixels;
     }
 
+    /**
+     * Gets the interpolated samples of a block of pixels as by
+     * {@link #getPixels(int, int, int, int, float[], ProgressMonitor, InterpMode)}, from a bounded cache of the
+     * blocks requested last. Operators computing several bands of a tile from the same grid interpolate it once.
+     *
+     * @param x            the x coordinate of the block
+     * @param y            the y coordinate of the block
+     * @param w            the width of the block
+     * @param h            the height of the block
+     * @param interpMethod the interpolation method
+     *
+     * @return the samples of the block, shared by all callers, must not be modified
+     */
+    public float[] getCachedPixels(int x, int y, int w, int h, InterpMode interpMethod) {
+        final PixelBlock block = new PixelBlock(x, y, w, h, interpMethod);
+        synchronized (pixelCache) {
+            final float[] pixels = pixelCache.get(block);
+            if (pixels != null) {
+                return pixels;
+            }
+        }
+
+        final float[] pixels = getPixels(x, y, w, h, (float[]) null, ProgressMonitor.NULL, interpMethod);
+        synchronized (pixelCache) {
+            final float[] previous = pixelCache.put(block, pixels);
+            numCachedPixels += pixels.length - (previous != null ? previous.length : 0);
+            // least recently used first
+            final Iterator<float[]> it = pixelCache.values().iterator();
+            while (numCachedPixels > MAX_CACHED_PIXELS && pixelCache.size() > 1) {
+                numCachedPixels -= it.next().length;
+                it.remove();
+            }
+        }
+        return pixels;
+    }
+
     /**
      * Retrieves an array of tie point data interpolated to the product with and height as double array. If the given
      * array is <code>null</code> a new one was created and returned.
@@ -1271,6 +1329,37 @@ public class TiePointGrid extends RasterDataNode {
         }
     }
 
+    private static final class PixelBlock {
+        private final int x;
+        private final int y;
+        private final int w;
+        private final int h;
+        private final InterpMode interpMethod;
+
+        private PixelBlock(int x, int y, int w, int h, InterpMode interpMethod) {
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+            this.interpMethod = interpMethod;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PixelBlock)) {
+                return false;
+            }
+            final PixelBlock other = (PixelBlock) o;
+            return x == other.x && y == other.y && w == other.w && h == other.h &&
+                   interpMethod == other.interpMethod;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((((x * 31) + y) * 31 + w) * 31 + h) * 31 + interpMethod.hashCode();
+        }
+    }
+
     public final static class InterpInput {
         final float wi; final float wj; final int i0; final int j0;
         InterpInput(float wi, float wj, int i0, int j0) {
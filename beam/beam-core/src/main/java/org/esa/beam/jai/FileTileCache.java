@@ -16,10 +16,8 @@
 
 package org.esa.beam.jai;
 
-import javax.imageio.stream.FileImageInputStream;
-import javax.imageio.stream.FileImageOutputStream;
-import javax.imageio.stream.ImageInputStream;
-import javax.imageio.stream.ImageOutputStream;
+import com.bc.ceres.jai.tilecache.MappedTileStore;
+
 import javax.media.jai.CachedTile;
 import javax.media.jai.TileCache;
 import java.awt.*;
@@ -57,6 +55,9 @@ import java.lang.ref.WeakReference;
  * The tile capacity is not used as different images may have very different
  * tile sizes so that this metric is not a particularly meaningful control
  * of memory resource consumption in general.
+ * <p/>
+ * The tiles are kept in memory-mapped files of fixed-size slots, one file for each tile size,
+ * see {@link MappedTileStore}. The samples are stored raw, so a tile is read with a single bulk copy.
  *
  * @see javax.media.jai.JAI
  * @see javax.media.jai.RenderedOp
@@ -71,11 +72,13 @@ public class FileTileCache implements TileCache {
     private Comparator<Object> tileComparator;
     private Map<TileId, CachedTileImpl> tileMap;
     private Map<RenderedImage, String> idMap;
+    private Map<Integer, MappedTileStore> storeMap;
 
     public FileTileCache(File cacheDir) {
         this.cacheDir = cacheDir;
         this.tileMap = new HashMap<TileId, CachedTileImpl>(1024);
         this.idMap = new WeakHashMap<RenderedImage, String>(128);
+        this.storeMap = new HashMap<Integer, MappedTileStore>(8);
 
         this.memoryCapacity = 100L * (1024 * 1024);
         this.memoryThreshold = 0.75f;
@@ -108,23 +111,25 @@ public class FileTileCache implements TileCache {
         synchronized (this) {
             CachedTileImpl cachedTile = tileMap.get(tileId);
             try {
-                if (cachedTile != null) {
-                    writeTile(cachedTile.file, tile);
+                if (cachedTile != null && cachedTile.tileSize == MappedTileStore.getStoredSize(tile.getDataBuffer())) {
+                    cachedTile.store.write(cachedTile.slot, tile.getDataBuffer());
                     cachedTile.tileTimeStamp = System.currentTimeMillis();
                 } else {
+                    if (cachedTile != null) {
+                        removeTile(tileId);
+                    }
                     cachedTile = new CachedTileImpl(tileId, tile, tileCacheMetric);
-                    if (memoryInUse + cachedTile.tileSize > memoryThreshold) {
+                    if (memoryInUse + cachedTile.tileSize > memoryCapacity) {
                         memoryControl();
                     }
-                    if (memoryInUse + cachedTile.tileSize <= memoryThreshold) {
-                        writeTile(cachedTile.file, tile);
+                    if (memoryInUse + cachedTile.tileSize <= memoryCapacity) {
+                        cachedTile.slot = cachedTile.store.store(tile.getDataBuffer());
                         tileMap.put(tileId, cachedTile);
                         memoryInUse += cachedTile.tileSize;
                     }
                 }
             } catch (IOException e) {
                 // todo - log warning
-                cachedTile.file.delete();
             }
         }
     }
@@ -162,7 +167,8 @@ public class FileTileCache implements TileCache {
             CachedTileImpl cachedTile = tileMap.get(tileId);
             if (cachedTile != null) {
                 try {
-                    DataBuffer dataBuffer = readTileData(cachedTile.file, cachedTile.sampleModel);
+                    DataBuffer dataBuffer = cachedTile.store.read(cachedTile.slot, cachedTile.dataType,
+                                                                  cachedTile.size, cachedTile.numBanks);
                     if (cachedTile.writable) {
                         tile = Raster.createWritableRaster(cachedTile.sampleModel, dataBuffer, cachedTile.location);
                     } else {
@@ -257,6 +263,10 @@ public class FileTileCache implements TileCache {
         }
         tileMap.clear();
         idMap.clear();
+        for (MappedTileStore store : storeMap.values()) {
+            store.close();
+        }
+        storeMap.clear();
     }
 
     /**
@@ -352,7 +362,7 @@ public class FileTileCache implements TileCache {
      * @since JAI 1.1
      */
     public synchronized float getMemoryThreshold() {
-        return memoryCapacity;
+        return memoryThreshold;
     }
 
     /**
@@ -399,11 +409,11 @@ public class FileTileCache implements TileCache {
     // Implementation Helpers
 
     private synchronized void removeTile(TileId tileId) {
-        CachedTileImpl cachedTile = tileMap.get(tileId);
+        CachedTileImpl cachedTile = tileMap.remove(tileId);
         if (cachedTile != null) {
-            cachedTile.file.delete();
+            cachedTile.store.free(cachedTile.slot);
+            memoryInUse -= cachedTile.tileSize;
         }
-        tileMap.remove(tileId);
         RenderedImage image = tileId.owner.get();
         if (image != null) {
             idMap.remove(image);
@@ -447,76 +457,16 @@ public class FileTileCache implements TileCache {
         return tileComparator != null ? new TileCacheMetricComparator(tileComparator) : new DefaultTileComparator();
     }
 
-    static DataBuffer readTileData(File file, SampleModel sampleModel) throws IOException {
-        ImageInputStream stream = new FileImageInputStream(file);
-        try {
-            return readTile(stream, sampleModel);
-        } finally {
-            stream.close();
-        }
-    }
-
-    static void writeTile(File file, Raster tile) throws IOException {
-        ImageOutputStream stream = new FileImageOutputStream(file);
-        try {
-            writeTile(stream, tile);
-        } finally {
-            stream.close();
-        }
-    }
-
-    static DataBuffer readTile(ImageInputStream stream, SampleModel sampleModel) throws IOException {
-        int numDataElements = sampleModel.getNumDataElements();
-        int dataType = sampleModel.getDataType();
-        if (dataType == DataBuffer.TYPE_BYTE) {
-            byte[] data = new byte[numDataElements];
-            stream.readFully(data, 0, data.length);
-            return new DataBufferByte(data, data.length);
-        } else if (dataType == DataBuffer.TYPE_SHORT || dataType == DataBuffer.TYPE_USHORT) {
-            short[] data = new short[numDataElements];
-            stream.readFully(data, 0, data.length);
-            return new DataBufferShort(data, data.length);
-        } else if (dataType == DataBuffer.TYPE_INT) {
-            int[] data = new int[numDataElements];
-            stream.readFully(data, 0, data.length);
-            return new DataBufferInt(data, data.length);
-        } else if (dataType == DataBuffer.TYPE_FLOAT) {
-            float[] data = new float[numDataElements];
-            stream.readFully(data, 0, data.length);
-            return new DataBufferFloat(data, data.length);
-        } else if (dataType == DataBuffer.TYPE_DOUBLE) {
-            double[] data = new double[numDataElements];
-            stream.readFully(data, 0, data.length);
-            return new DataBufferDouble(data, data.length);
-        } else {
-            throw new IllegalStateException();
-        }
-    }
-
-    static void writeTile(ImageOutputStream stream, Raster tile) throws IOException {
-        if (tile.getSampleModel().getNumDataElements() != tile.getDataBuffer().getSize()) {
-            // todo - log error
-            throw new IllegalStateException();
-        }
-        DataBuffer dataBuffer = tile.getDataBuffer();
-        if (dataBuffer instanceof DataBufferByte) {
-            byte[] data = ((DataBufferByte) dataBuffer).getData();
-            stream.write(data, dataBuffer.getOffset(), dataBuffer.getSize());
-        } else if (dataBuffer instanceof DataBufferShort) {
-            short[] data = ((DataBufferShort) dataBuffer).getData();
-            stream.writeShorts(data, dataBuffer.getOffset(), dataBuffer.getSize());
-        } else if (dataBuffer instanceof DataBufferInt) {
-            int[] data = ((DataBufferInt) dataBuffer).getData();
-            stream.writeInts(data, dataBuffer.getOffset(), dataBuffer.getSize());
-        } else if (dataBuffer instanceof DataBufferFloat) {
-            float[] data = ((DataBufferFloat) dataBuffer).getData();
-            stream.writeFloats(data, dataBuffer.getOffset(), dataBuffer.getSize());
-        } else if (dataBuffer instanceof DataBufferDouble) {
-            double[] data = ((DataBufferDouble) dataBuffer).getData();
-            stream.writeDoubles(data, dataBuffer.getOffset(), dataBuffer.getSize());
-        } else {
-            throw new IllegalStateException();
+    final synchronized MappedTileStore getStore(long tileSize) throws IOException {
+        int slotSize = (int) tileSize;
+        MappedTileStore store = storeMap.get(slotSize);
+        if (store == null) {
+            cacheDir.mkdirs();
+            File file = new File(cacheDir, "tiles-" + slotSize + "-" + Long.toHexString(System.nanoTime()) + ".dat");
+            store = new MappedTileStore(file, slotSize);
+            storeMap.put(slotSize, store);
         }
+        return store;
     }
 
     private static int getHashCode(RenderedImage owner, int tileX, int tileY) {
@@ -582,20 +532,28 @@ public class FileTileCache implements TileCache {
     final class CachedTileImpl implements CachedTile {
 
         final TileId tileId;
-        final File file;
+        final MappedTileStore store;
         final Object tileCacheMetric;
         final SampleModel sampleModel;
         final long tileSize;
+        final int dataType;
+        final int size;
+        final int numBanks;
         final Point location;
         final boolean writable;
+        int slot;
         long tileTimeStamp;
 
-        CachedTileImpl(TileId tileId, Raster tile, Object tileCacheMetric) {
+        CachedTileImpl(TileId tileId, Raster tile, Object tileCacheMetric) throws IOException {
+            DataBuffer dataBuffer = tile.getDataBuffer();
             this.tileId = tileId;
-            this.file = new File(cacheDir, getImageId(tileId.owner.get()) + "-" + tileId.tileX + "-" + tileId.tileY);
             this.tileCacheMetric = tileCacheMetric;
             this.sampleModel = tile.getSampleModel();
-            this.tileSize = sampleModel.getNumDataElements() * DataBuffer.getDataTypeSize(sampleModel.getTransferType());
+            this.tileSize = MappedTileStore.getStoredSize(dataBuffer);
+            this.store = getStore(tileSize);
+            this.dataType = dataBuffer.getDataType();
+            this.size = dataBuffer.getSize();
+            this.numBanks = dataBuffer.getNumBanks();
             this.location = tile.getBounds().getLocation();
             this.writable = tile instanceof WritableRaster;
             this.tileTimeStamp = System.currentTimeMillis();
@@ -22,6 +22,7 @@ import com.bc.ceres.core.SubProgressMonitor;
 import com.bc.ceres.glayer.Layer;
 import com.bc.ceres.grender.support.BufferedImageRendering;
 import com.vividsolutions.jts.geom.Geometry;
+import org.esa.beam.framework.datamodel.AbstractGeoCoding;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.BitmaskDef;
 import org.esa.beam.framework.datamodel.ColorPaletteDef;
@@ -2125,6 +2126,23 @@ public class ProductUtils {
         final int maxY = minY + destArea.height - 1;
 
         final PixelPos[] pixelCoords = new PixelPos[destArea.width * destArea.height];
+        if (sourceGeoCoding instanceof AbstractGeoCoding && destGeoCoding instanceof AbstractGeoCoding) {
+            final int numPixels = pixelCoords.length;
+            final float[] lat = new float[numPixels];
+            final float[] lon = new float[numPixels];
+            final float[] pixelX = new float[numPixels];
+            final float[] pixelY = new float[numPixels];
+            ((AbstractGeoCoding) destGeoCoding).getPixels(minX, minY, destArea.width, destArea.height, lat, lon);
+            ((AbstractGeoCoding) sourceGeoCoding).getPixelPos(lat, lon, pixelX, pixelY);
+            for (int i = 0; i < numPixels; i++) {
+                if (pixelX[i] >= 0.0f && pixelX[i] < sourceWidth
+                        && pixelY[i] >= 0.0f && pixelY[i] < sourceHeight) {
+                    pixelCoords[i] = new PixelPos(pixelX[i], pixelY[i]);
+                }
+            }
+            return pixelCoords;
+        }
+
         final GeoPos geoPos = new GeoPos();
         final PixelPos pixelPos = new PixelPos();
 
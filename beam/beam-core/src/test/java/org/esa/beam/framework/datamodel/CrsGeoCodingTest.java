@@ -217,6 +217,29 @@ public class CrsGeoCodingTest {
         assertSame(DefaultGeographicCRS.WGS84.getCoordinateSystem(), testedDefaultCrs.getCoordinateSystem());
     }
 
+    @Test
+    public void testGetPixels() {
+        final float[] lat = new float[4 * 6];
+        final float[] lon = new float[4 * 6];
+        srcGeoCoding.getPixels(3, 5, 4, 6, lat, lon);
+
+        final float[] pixelX = new float[lat.length];
+        final float[] pixelY = new float[lat.length];
+        srcGeoCoding.getPixelPos(lat, lon, pixelX, pixelY);
+
+        int i = 0;
+        for (int y = 5; y < 11; y++) {
+            for (int x = 3; x < 7; x++) {
+                final GeoPos geoPos = srcGeoCoding.getGeoPos(new PixelPos(x + 0.5f, y + 0.5f), null);
+                assertEquals(geoPos.lat, lat[i], 1.0e-6);
+                assertEquals(geoPos.lon, lon[i], 1.0e-6);
+                assertEquals(x + 0.5f, pixelX[i], 1.0e-4);
+                assertEquals(y + 0.5f, pixelY[i], 1.0e-4);
+                i++;
+            }
+        }
+    }
+
     private void comparePixelPos(GeoCoding destGeoCoding, PixelPos pixelPos, PixelPos pixelPos1) {
         GeoPos srcPos = srcGeoCoding.getGeoPos(pixelPos, null);
         GeoPos destPos = destGeoCoding.getGeoPos(pixelPos1, null);
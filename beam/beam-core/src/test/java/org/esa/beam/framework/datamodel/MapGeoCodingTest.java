@@ -190,6 +190,29 @@ public class MapGeoCodingTest extends TestCase {
         assertEquals(expectedPP.y, somePP.y, 1e-4f);
     }
 
+    public void testGetPixels() {
+        final MapGeoCoding mapGeoCoding = createRotatedMapGeoCoding();
+        final float[] lat = new float[5 * 3];
+        final float[] lon = new float[5 * 3];
+        mapGeoCoding.getPixels(2, 4, 5, 3, lat, lon);
+
+        final float[] pixelX = new float[lat.length];
+        final float[] pixelY = new float[lat.length];
+        mapGeoCoding.getPixelPos(lat, lon, pixelX, pixelY);
+
+        int i = 0;
+        for (int y = 4; y < 7; y++) {
+            for (int x = 2; x < 7; x++) {
+                final GeoPos geoPos = mapGeoCoding.getGeoPos(new PixelPos(x + 0.5f, y + 0.5f), null);
+                assertEquals(geoPos.lat, lat[i], 1e-4f);
+                assertEquals(geoPos.lon, lon[i], 1e-4f);
+                assertEquals(x + 0.5f, pixelX[i], 1e-3f);
+                assertEquals(y + 0.5f, pixelY[i], 1e-3f);
+                i++;
+            }
+        }
+    }
+
     private MapGeoCoding createIdentityMapGeoCoding() {
         final IdentityTransformDescriptor td = new IdentityTransformDescriptor();
         final MapTransform transform = td.createTransform(null);
@@ -141,6 +141,64 @@ public class PixelGeoCodingTest extends TestCase {
         assertEquals(new PixelPos(2.5f, 0.5f), pixelPos);
     }
 
+    public void testGetPixelPosOfAllPixels() throws IOException {
+        Product product = createProduct();
+        PixelGeoCoding pixelGeoCoding = new PixelGeoCoding(product.getBand("latBand"),
+                                                           product.getBand("lonBand"), null, 2, ProgressMonitor.NULL);
+        product.setGeoCoding(pixelGeoCoding);
+        for (int y = 0; y < PH; y++) {
+            for (int x = 0; x < PW; x++) {
+                final PixelPos expected = new PixelPos(x + 0.5f, y + 0.5f);
+                final GeoPos geoPos = pixelGeoCoding.getGeoPos(expected, null);
+                assertEquals(expected, pixelGeoCoding.getPixelPos(geoPos, null));
+            }
+        }
+
+        final PixelPos pixelPos = pixelGeoCoding.getPixelPos(new GeoPos(LAT_1 + 10.0f, LON_1), null);
+        assertFalse(pixelPos.x >= 0 && pixelPos.x < PW && pixelPos.y >= 0 && pixelPos.y < PH);
+    }
+
+    public void testGetPixelPosBetweenPixelsWithoutEstimator() throws IOException {
+        doTestGetPixelPosBetweenPixelsWithoutEstimator();
+    }
+
+    public void testGetPixelPosBetweenPixelsWithoutEstimator_useNoTiling() throws IOException {
+        try {
+            System.setProperty("beam.pixelGeoCoding.useTiling", "false");
+            doTestGetPixelPosBetweenPixelsWithoutEstimator();
+        } finally {
+            System.clearProperty("beam.pixelGeoCoding.useTiling");
+        }
+    }
+
+    private void doTestGetPixelPosBetweenPixelsWithoutEstimator() throws IOException {
+        Product product = createProduct();
+        // the pixels are about 0.2 deg apart in lat and 0.6 deg in lon, far more than the search margin
+        product.setGeoCoding(null);
+        PixelGeoCoding pixelGeoCoding = new PixelGeoCoding(product.getBand("latBand"),
+                                                           product.getBand("lonBand"), null, 2, ProgressMonitor.NULL);
+        product.setGeoCoding(pixelGeoCoding);
+        assertNull(pixelGeoCoding.getPixelPosEstimator());
+
+        for (int y = 0; y < PH - 1; y++) {
+            for (int x = 0; x < PW - 1; x++) {
+                final GeoPos p00 = pixelGeoCoding.getGeoPos(new PixelPos(x + 0.5f, y + 0.5f), null);
+                final GeoPos p10 = pixelGeoCoding.getGeoPos(new PixelPos(x + 1.5f, y + 0.5f), null);
+                final GeoPos p01 = pixelGeoCoding.getGeoPos(new PixelPos(x + 0.5f, y + 1.5f), null);
+                final GeoPos p11 = pixelGeoCoding.getGeoPos(new PixelPos(x + 1.5f, y + 1.5f), null);
+                final GeoPos geoPos = new GeoPos(0.25f * (p00.lat + p10.lat + p01.lat + p11.lat),
+                                                 0.25f * (p00.lon + p10.lon + p01.lon + p11.lon));
+                final PixelPos pixelPos = pixelGeoCoding.getPixelPos(geoPos, null);
+                assertTrue(pixelPos.isValid());
+                assertTrue(Math.abs(pixelPos.x - (x + 1.0f)) <= 1.0f);
+                assertTrue(Math.abs(pixelPos.y - (y + 1.0f)) <= 1.0f);
+            }
+        }
+
+        final PixelPos pixelPos = pixelGeoCoding.getPixelPos(new GeoPos(LAT_1 + 10.0f, LON_1), null);
+        assertFalse(pixelPos.isValid());
+    }
+
     public void testGetGeoPos() throws IOException {
         doTestGetGeoPos();
     }
@@ -163,6 +163,23 @@ public class TiePointGeoCodingTest extends TestCase {
         assertEquals(1.5, destPixelPos.getY(), 1.0e-1);
     }
 
+    public void testGetPixels() {
+        final TiePointGeoCoding geoCoding = (TiePointGeoCoding) createProduct().getGeoCoding();
+        final float[] lat = new float[PW * PH];
+        final float[] lon = new float[PW * PH];
+        geoCoding.getPixels(0, 0, PW, PH, lat, lon);
+
+        int i = 0;
+        for (int y = 0; y < PH; y++) {
+            for (int x = 0; x < PW; x++) {
+                final GeoPos geoPos = geoCoding.getGeoPos(new PixelPos(x + 0.5f, y + 0.5f), null);
+                assertEquals(geoPos.lat, lat[i], 1.0e-4f);
+                assertEquals(geoPos.lon, lon[i], 1.0e-4f);
+                i++;
+            }
+        }
+    }
+
     private Product createProduct() {
         Product product = new Product("test", "test", PW, PH);
 
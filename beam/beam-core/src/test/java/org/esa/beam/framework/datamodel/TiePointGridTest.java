@@ -552,6 +552,48 @@ public class TiePointGridTest extends AbstractRasterDataNodeTest {
     }
 
 
+    public void testGetPixelsSameAsGetPixelFloat() {
+        final TiePointGrid grid = new TiePointGrid("grid",
+                                                   4, 3,
+                                                   0.5f, 0.5f,
+                                                   4f, 5f,
+                                                   new float[]{
+                                                           1f, 2f, 4f, 7f,
+                                                           3f, 5f, 8f, 9f,
+                                                           2f, 6f, 5f, 1f,
+                                                   });
+
+        // includes pixels beyond the last tie-point to check the extrapolation
+        final float[] pixels = grid.getPixels(1, 2, 14, 11, (float[]) null, ProgressMonitor.NULL);
+        int i = 0;
+        for (int y = 2; y < 13; y++) {
+            for (int x = 1; x < 15; x++) {
+                assertEquals(grid.getPixelFloat(x + 0.5f, y + 0.5f), pixels[i++], 1e-5f);
+            }
+        }
+    }
+
+    public void testGetCachedPixels() {
+        final TiePointGrid grid = new TiePointGrid("grid",
+                                                   3, 2,
+                                                   0.5f, 0.5f,
+                                                   2f, 2f,
+                                                   new float[]{
+                                                           1f, 2f, 3f,
+                                                           2f, 3f, 4f,
+                                                   });
+
+        final float[] pixels = grid.getCachedPixels(0, 0, 4, 2, TiePointGrid.InterpMode.BILINEAR);
+        final float[] expected = grid.getPixels(0, 0, 4, 2, (float[]) null, ProgressMonitor.NULL);
+        assertEquals(expected.length, pixels.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], pixels[i]);
+        }
+        assertSame(pixels, grid.getCachedPixels(0, 0, 4, 2, TiePointGrid.InterpMode.BILINEAR));
+        assertNotSame(pixels, grid.getCachedPixels(0, 1, 4, 2, TiePointGrid.InterpMode.BILINEAR));
+        assertNotSame(pixels, grid.getCachedPixels(0, 0, 4, 2, TiePointGrid.InterpMode.QUADRATIC));
+    }
+
     public static void testDiscontinuity() {
         final TiePointGrid tp1 = new TiePointGrid("tp1", 2, 2, 0, 0, 1, 1, new float[]{0, 20, 180, 150}, true);
         assertEquals(TiePointGrid.DISCONT_AT_180, tp1.getDiscontinuity());
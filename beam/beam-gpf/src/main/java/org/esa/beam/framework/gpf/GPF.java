@@ -48,7 +48,58 @@ public class GPF {
 
     public static final String DISABLE_TILE_CACHE_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.disableTileCache";
     public static final String USE_FILE_TILE_CACHE_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.useFileTileCache";
+    /**
+     * If set to {@code true}, GPF operators share a {@link com.bc.ceres.jai.tilecache.ConcurrentSwappingTileCache}
+     * which can be accessed concurrently and swaps tiles to disk instead of discarding them.
+     * Takes precedence over {@link #USE_FILE_TILE_CACHE_PROPERTY}.
+     *
+     * @since NEST 5.1
+     */
+    public static final String USE_CONCURRENT_TILE_CACHE_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.useConcurrentTileCache";
+    /**
+     * If set to {@code true}, the swapping tile caches (see {@link #USE_CONCURRENT_TILE_CACHE_PROPERTY} and
+     * {@link #USE_FILE_TILE_CACHE_PROPERTY}) swap tiles to memory-mapped files of fixed-size slots
+     * instead of a file per tile.
+     *
+     * @since NEST 5.1
+     */
+    public static final String USE_MAPPED_SWAP_SPACE_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.useMappedSwapSpace";
+    /**
+     * If set to {@code true}, the {@link org.esa.beam.gpf.operators.standard.WriteOp} keeps a journal of the
+     * written tiles and resumes an interrupted write, see {@link org.esa.beam.gpf.operators.standard.WriteOp#setResume(boolean)}.
+     *
+     * @since NEST 5.1
+     */
+    public static final String RESUME_WRITE_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.resumeWrite";
     public static final String TILE_COMPUTATION_OBSERVER_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.tileComputationObserver";
+    /**
+     * The file the {@link org.esa.beam.framework.gpf.monitor.TileComputationMetrics} write their JSON summary to.
+     *
+     * @since NEST 5.1
+     */
+    public static final String TILE_COMPUTATION_METRICS_FILE_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.tileComputationMetricsFile";
+    /**
+     * The heap budget in bytes for the working sets of concurrently computed tiles, 0 for no limit,
+     * see {@link org.esa.beam.framework.gpf.internal.TileMemoryBudget}.
+     *
+     * @since NEST 5.1
+     */
+    public static final String TILE_MEMORY_BUDGET_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.tileMemoryBudget";
+    /**
+     * Name of the {@link org.esa.beam.framework.gpf.internal.OperatorExecutor.ExecutionOrder} used by default
+     * to compute the tiles of target products, e.g. {@code WORK_STEALING}.
+     */
+    public static final String EXECUTION_ORDER_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.executionOrder";
+    /**
+     * If set to {@code false}, the intermediate images of chains of point-wise operators in a graph are
+     * not fused into their consumers, but computed and cached like any other image.
+     */
+    public static final String FUSE_OPERATORS_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.fuseOperators";
+    /**
+     * If set to {@code false}, the tiles of intermediate graph nodes are not pinned until all their consumers have
+     * read them, nor released afterwards, but are left to the eviction strategy of the tile cache alone.
+     */
+    public static final String CONSUMER_AWARE_TILE_CACHE_PROPERTY = SystemUtils.getApplicationContextId()+".gpf.consumerAwareTileCache";
 
     public static final String SOURCE_PRODUCT_FIELD_NAME = "sourceProduct";
     public static final String TARGET_PRODUCT_FIELD_NAME = "targetProduct";
@@ -166,6 +166,21 @@ public abstract class Operator {
                 MessageFormat.format("{0}: ''computeTileStack()'' method not implemented", getClass().getSimpleName()));
     }
 
+    /**
+     * Estimates the memory which {@link #computeTile computeTile} or {@link #computeTileStack computeTileStack}
+     * allocates for the given target rectangle in addition to the target tiles, e.g. for working arrays
+     * or copies of source regions. The executors use the estimate to limit the number of tiles computed
+     * concurrently, see {@link org.esa.beam.framework.gpf.internal.TileMemoryBudget}.
+     * <p>The default implementation returns 0, i.e. the working set is negligible.</p>
+     *
+     * @param targetRectangle The area in pixel coordinates to be computed.
+     * @return the estimated working set in bytes
+     * @since NEST 5.1
+     */
+    public long estimateTileWorkingSetSize(Rectangle targetRectangle) {
+        return 0L;
+    }
+
     /**
      * Releases the resources the operator has acquired during its lifetime.
      * The default implementation does nothing.
@@ -416,7 +431,7 @@ public abstract class Operator {
      * Non-API.
      */
     public void stopTileComputationObservation() {
-        context.stopTileComputationObservation();
+        OperatorContext.stopTileComputationObservation();
     }
 
     /**
@@ -19,11 +19,16 @@ package org.esa.beam.framework.gpf.graph;
 import com.bc.ceres.binding.dom.DomElement;
 import com.bc.ceres.binding.dom.XppDomElement;
 import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.GPF;
 import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.internal.ConsumerAwareTileCache;
 import org.esa.beam.framework.gpf.internal.OperatorConfiguration;
+import org.esa.beam.framework.gpf.internal.OperatorImage;
+import org.esa.beam.framework.gpf.pointop.PointwiseOperator;
 import org.esa.beam.util.logging.BeamLogManager;
 
 import javax.media.jai.JAI;
+import javax.media.jai.TileCache;
 import java.awt.*;
 import java.text.MessageFormat;
 import java.util.*;
@@ -46,6 +51,7 @@ public class GraphContext {
     private Map<Node, NodeContext> nodeContextMap;
     private List<NodeContext> outputNodeContextList;
     private ArrayDeque<NodeContext> initNodeContextDeque;
+    private ConsumerAwareTileCache tileCache;
 
 
     /**
@@ -91,6 +97,12 @@ public class GraphContext {
         initNodeContextDeque = new ArrayDeque<NodeContext>(graph.getNodeCount());
         initNodeDependencies();
         initOutput(graphOp);
+        if (Boolean.parseBoolean(System.getProperty(GPF.FUSE_OPERATORS_PROPERTY, "true"))) {
+            initFusion();
+        }
+        if (Boolean.parseBoolean(System.getProperty(GPF.CONSUMER_AWARE_TILE_CACHE_PROPERTY, "true"))) {
+            initTileCache();
+        }
     }
 
     private static boolean isSourceNodeIdInHeader(String sourceNodeId, List<HeaderSource> headerSources) {
@@ -198,6 +210,100 @@ public class GraphContext {
         getInitNodeContextDeque().addFirst(nodeContext);
     }
 
+    /**
+     * Fuses chains of point-wise operators. The target images of a point-wise node, whose only consumer
+     * is point-wise as well, are not cached but computed on demand whenever the consumer requests a
+     * source tile. Hence no intermediate tiles are materialised in the tile cache along the chain.
+     * <p/>
+     * A fused region is reused during a single target tile computation only. Therefore the consumer must
+     * compute all its target bands at once, i.e. compute tile stacks or have a single computed target band,
+     * otherwise each of its target bands would compute the fused source again.
+     */
+    private void initFusion() {
+        for (Node node : getGraph().getNodes()) {
+            NodeContext nodeContext = getNodeContext(node);
+            if (nodeContext.isInitialized() && !nodeContext.isOutput() && !nodeContext.canComputeTileStack()
+                && isPointwise(nodeContext)) {
+                NodeContext consumerContext = getSingleConsumer(node);
+                if (consumerContext != null && consumerContext.isInitialized() && isPointwise(consumerContext)
+                    && (consumerContext.canComputeTileStack() || consumerContext.getComputedTargetImages().size() == 1)) {
+                    int count = nodeContext.fuseTargetImages();
+                    logger.fine(MessageFormat.format("Fused {0} image(s) of node ''{1}'' into node ''{2}''",
+                                                     count, node.getId(), consumerContext.getNode().getId()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets the images of all nodes with consumers use a {@link ConsumerAwareTileCache}, so that their tiles
+     * are pinned until read by all consumers and released afterwards.
+     */
+    private void initTileCache() {
+        for (Node node : getGraph().getNodes()) {
+            NodeContext nodeContext = getNodeContext(node);
+            if (!nodeContext.isInitialized() || nodeContext.isOutput()) {
+                continue;
+            }
+            for (OperatorImage image : nodeContext.getComputedTargetImages()) {
+                // fused images and images of disabled tile caches have no tile cache
+                if (image.getTileCache() != null) {
+                    if (tileCache == null) {
+                        TileCache delegate = image.getTileCache();
+                        tileCache = new ConsumerAwareTileCache(delegate, delegate.getMemoryCapacity() / 2);
+                    }
+                    image.setTileCache(tileCache);
+                    tileCache.addProducer(image, getSourceTileConsumers(node));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the objects identifying the computations of all nodes which read the target images of the given node
+     */
+    private List<Object> getSourceTileConsumers(Node node) {
+        List<Object> consumers = new ArrayList<Object>();
+        for (Node other : getGraph().getNodes()) {
+            for (NodeSource source : other.getSources()) {
+                //noinspection ObjectEquality
+                if (source.getSourceNode() == node) {
+                    NodeContext consumerContext = getNodeContext(other);
+                    if (consumerContext != null && consumerContext.isInitialized()) {
+                        consumers.addAll(consumerContext.getSourceTileConsumers());
+                    }
+                    break;
+                }
+            }
+        }
+        return consumers;
+    }
+
+    /**
+     * @return the context of the node which is the only one using the given node as source (exactly once),
+     *         or {@code null}
+     */
+    private NodeContext getSingleConsumer(Node node) {
+        Node consumer = null;
+        for (Node other : getGraph().getNodes()) {
+            for (NodeSource source : other.getSources()) {
+                //noinspection ObjectEquality
+                if (source.getSourceNode() == node) {
+                    if (consumer != null) {
+                        return null;
+                    }
+                    consumer = other;
+                }
+            }
+        }
+        return consumer != null ? getNodeContext(consumer) : null;
+    }
+
+    private static boolean isPointwise(NodeContext nodeContext) {
+        Operator operator = nodeContext.getOperator();
+        return operator instanceof PointwiseOperator && ((PointwiseOperator) operator).isPointwise();
+    }
+
     /**
      * Disposes this {@code GraphContext}.
      */
@@ -207,6 +313,10 @@ public class GraphContext {
             NodeContext nodeContext = initNodeContextDeque.pop();
             nodeContext.dispose();
         }
+        if (tileCache != null) {
+            tileCache.dispose();
+            tileCache = null;
+        }
     }
 
     /**
@@ -22,6 +22,9 @@ import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.internal.OperatorContext;
+import org.esa.beam.framework.gpf.internal.OperatorExecutor;
+import org.esa.beam.framework.gpf.internal.TileMemoryBudget;
+import org.esa.beam.framework.gpf.internal.WorkStealingTileExecutor;
 import org.esa.beam.util.logging.BeamLogManager;
 import org.esa.beam.util.math.MathUtils;
 import org.esa.nest.util.StdOutProgressMonitor;
@@ -38,11 +41,13 @@ import java.awt.Rectangle;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.logging.Logger;
 
@@ -123,8 +128,11 @@ public class GraphProcessor {
         try {
             pm.beginTask("Executing processing graph", 100);
             graphContext = new GraphContext(graph);
-            executeGraph(graphContext, SubProgressMonitor.create(pm, 90));
-            graphContext.dispose();
+            try {
+                executeGraph(graphContext, SubProgressMonitor.create(pm, 90));
+            } finally {
+                graphContext.dispose();
+            }
         } finally {
             pm.done();
         }
@@ -158,6 +166,29 @@ public class GraphProcessor {
             }
         });
 
+        final List<OperatorExecutor.ExecutionListener> executionListeners = getExecutionListeners(outputNodeContexts);
+        boolean completed = false;
+        try {
+            final OperatorExecutor.TileFilter tileFilter = startExecution(executionListeners);
+            if (OperatorExecutor.getDefaultExecutionOrder() == OperatorExecutor.ExecutionOrder.WORK_STEALING) {
+                completed = executeGraphWorkStealing(graphContext, dimList, tileDimMap, tileFilter, pm);
+            } else {
+                completed = executeGraphTileByTile(graphContext, dimList, tileDimMap, tileFilter, pm);
+            }
+        } finally {
+            stopExecution(executionListeners, completed);
+        }
+        return graphContext.getOutputProducts();
+    }
+
+    /**
+     * Computes the output tiles row by row, each tile of all output nodes sharing the same tile grid at once.
+     *
+     * @return {@code true}, if all tiles have been computed
+     */
+    private boolean executeGraphTileByTile(GraphContext graphContext, List<Dimension> dimList,
+                                           Map<Dimension, List<NodeContext>> tileDimMap,
+                                           OperatorExecutor.TileFilter tileFilter, ProgressMonitor pm) {
         int numPmTicks = 0;
         for (Dimension dimension : dimList) {
             numPmTicks += dimension.width * dimension.height * tileDimMap.get(dimension).size();
@@ -169,7 +200,10 @@ public class GraphProcessor {
         final TileScheduler tileScheduler = JAI.getDefaultInstance().getTileScheduler();
         final int parallelism = tileScheduler.getParallelism();
         final Semaphore semaphore = new Semaphore(parallelism, true);
-        final TileComputationListener tcl = new GraphTileComputationListener(semaphore, parallelism);
+        final TileMemoryBudget memoryBudget = TileMemoryBudget.getDefaultInstance();
+        final Map<PlanarImage, TileGridReservation> reservations = new ConcurrentHashMap<PlanarImage, TileGridReservation>();
+        final TileComputationListener tcl = new GraphTileComputationListener(semaphore, parallelism,
+                                                                             memoryBudget, reservations);
         final TileComputationListener[] listeners = new TileComputationListener[]{tcl};
 
         try {
@@ -178,13 +212,14 @@ public class GraphProcessor {
                 List<NodeContext> nodeContextList = tileDimMap.get(dimension);
                 final int numXTiles = dimension.width;
                 final int numYTiles = dimension.height;
+                putReservations(nodeContextList, numXTiles, numYTiles, reservations);
                 final StdOutProgressMonitor stdOutPM = new StdOutProgressMonitor(numYTiles);
                 Dimension tileSize = nodeContextList.get(0).getTargetProduct().getPreferredTileSize();
                 for (int tileY = 0; tileY < numYTiles; tileY++) {
                     for (int tileX = 0; tileX < numXTiles; tileX++) {
                         if (pm.isCanceled()) {
                             // todo - check: throw exception here? (nf, 2010.10.21)
-                            return graphContext.getOutputProducts();
+                            return false;
                         }
                         Rectangle tileRectangle = new Rectangle(tileX * tileSize.width,
                                                                 tileY * tileSize.height,
@@ -201,7 +236,7 @@ public class GraphProcessor {
                                 for (Band band : targetProduct.getBands()) {
                                     PlanarImage image = nodeContext.getTargetImage(band);
                                     if (image != null) {
-                                        forceTileComputation(image, tileX, tileY, semaphore, tileScheduler, listeners, parallelism);
+                                        forceTileComputation(image, tileX, tileY, tileFilter, semaphore, memoryBudget, reservations, tileScheduler, listeners, parallelism);
                                         break;
                                     }
                                 }
@@ -212,7 +247,7 @@ public class GraphProcessor {
                                     PlanarImage image = nodeContext.getTargetImage(band);
                                     if (image == null) {
                                         if (OperatorContext.isRegularBand(band) && band.isSourceImageSet()) {
-                                            forceTileComputation(band.getSourceImage(), tileX, tileY, semaphore, tileScheduler, listeners, parallelism);
+                                            forceTileComputation(band.getSourceImage(), tileX, tileY, tileFilter, semaphore, memoryBudget, reservations, tileScheduler, listeners, parallelism);
                                         }
                                     }
                                 }
@@ -223,9 +258,9 @@ public class GraphProcessor {
                                 for (Band band : targetProduct.getBands()) {
                                     PlanarImage image = nodeContext.getTargetImage(band);
                                     if (image != null) {
-                                        forceTileComputation(image, tileX, tileY, semaphore, tileScheduler, listeners, parallelism);
+                                        forceTileComputation(image, tileX, tileY, tileFilter, semaphore, memoryBudget, reservations, tileScheduler, listeners, parallelism);
                                     } else if (OperatorContext.isRegularBand(band) && band.isSourceImageSet()) {
-                                        forceTileComputation(band.getSourceImage(), tileX, tileY, semaphore, tileScheduler, listeners, parallelism);
+                                        forceTileComputation(band.getSourceImage(), tileX, tileY, tileFilter, semaphore, memoryBudget, reservations, tileScheduler, listeners, parallelism);
                                     }
                                 }
                             }
@@ -254,8 +289,115 @@ public class GraphProcessor {
             JAI.getDefaultInstance().setImagingListener(imagingListener);
             fireProcessingStopped(graphContext);
         }
+        return true;
+    }
 
-        return graphContext.getOutputProducts();
+    /**
+     * Computes the output tiles using a {@link WorkStealingTileExecutor} for each group of output
+     * nodes sharing the same tile grid. Tile processing observers are not notified in this mode,
+     * since tiles are no longer processed in a defined order.
+     */
+    private boolean executeGraphWorkStealing(GraphContext graphContext, List<Dimension> dimList,
+                                             Map<Dimension, List<NodeContext>> tileDimMap,
+                                             OperatorExecutor.TileFilter tileFilter, ProgressMonitor pm) {
+        final int parallelism = JAI.getDefaultInstance().getTileScheduler().getParallelism();
+        // the executors report one tick per image tile, so count the images actually scheduled
+        final List<PlanarImage[]> imagesList = new ArrayList<PlanarImage[]>(dimList.size());
+        final List<PlanarImage[]> dependenciesList = new ArrayList<PlanarImage[]>(dimList.size());
+        int numPmTicks = 0;
+        for (Dimension dimension : dimList) {
+            final List<NodeContext> nodeContextList = tileDimMap.get(dimension);
+            final List<PlanarImage> imageList = new ArrayList<PlanarImage>();
+            final List<Product> sourceProductList = new ArrayList<Product>();
+            for (NodeContext nodeContext : nodeContextList) {
+                collectOutputImages(nodeContext, imageList);
+                sourceProductList.addAll(Arrays.asList(nodeContext.getSourceProducts()));
+            }
+            final PlanarImage[] images = imageList.toArray(new PlanarImage[imageList.size()]);
+            imagesList.add(images);
+            dependenciesList.add(WorkStealingTileExecutor.getDependencyImages(
+                    sourceProductList.toArray(new Product[sourceProductList.size()]), images));
+            numPmTicks += dimension.width * dimension.height * images.length;
+        }
+        try {
+            pm.beginTask("", numPmTicks);
+            for (int i = 0; i < dimList.size(); i++) {
+                final Dimension dimension = dimList.get(i);
+                final PlanarImage[] images = imagesList.get(i);
+                final int numTicks = dimension.width * dimension.height * images.length;
+                final WorkStealingTileExecutor executor = new WorkStealingTileExecutor(
+                        images, dependenciesList.get(i), dimension.width, dimension.height, parallelism);
+                executor.setTileWorkingSetSize(TileMemoryBudget.estimateTileWorkingSetSize(images));
+                executor.setTileFilter(tileFilter);
+                executor.execute(SubProgressMonitor.create(pm, numTicks));
+            }
+        } finally {
+            pm.done();
+            fireProcessingStopped(graphContext);
+        }
+        return !pm.isCanceled();
+    }
+
+    private static List<OperatorExecutor.ExecutionListener> getExecutionListeners(NodeContext[] outputNodeContexts) {
+        final List<OperatorExecutor.ExecutionListener> listeners = new ArrayList<OperatorExecutor.ExecutionListener>();
+        for (NodeContext nodeContext : outputNodeContexts) {
+            if (nodeContext.getOperator() instanceof OperatorExecutor.ExecutionListener) {
+                listeners.add((OperatorExecutor.ExecutionListener) nodeContext.getOperator());
+            }
+        }
+        return listeners;
+    }
+
+    /**
+     * Notifies the output operators, e.g. a resumable {@code WriteOp}, that the execution starts.
+     *
+     * @return a filter accepting the tiles accepted by the filters of all output operators, {@code null} if none
+     */
+    private static OperatorExecutor.TileFilter startExecution(List<OperatorExecutor.ExecutionListener> listeners) {
+        final List<OperatorExecutor.TileFilter> filters = new ArrayList<OperatorExecutor.TileFilter>();
+        for (OperatorExecutor.ExecutionListener listener : listeners) {
+            final OperatorExecutor.TileFilter filter = listener.executionStarted();
+            if (filter != null) {
+                filters.add(filter);
+            }
+        }
+        if (filters.isEmpty()) {
+            return null;
+        }
+        return new OperatorExecutor.TileFilter() {
+            @Override
+            public boolean accept(PlanarImage image, int tileX, int tileY) {
+                for (OperatorExecutor.TileFilter filter : filters) {
+                    if (!filter.accept(image, tileX, tileY)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    private static void stopExecution(List<OperatorExecutor.ExecutionListener> listeners, boolean completed) {
+        for (OperatorExecutor.ExecutionListener listener : listeners) {
+            listener.executionStopped(completed);
+        }
+    }
+
+    private static void collectOutputImages(NodeContext nodeContext, List<PlanarImage> imageList) {
+        final Product targetProduct = nodeContext.getTargetProduct();
+        boolean tileStackImageAdded = false;
+        for (Band band : targetProduct.getBands()) {
+            PlanarImage image = nodeContext.getTargetImage(band);
+            if (image != null) {
+                // pulling one image of a tile stack computes the tiles of all others
+                if (!nodeContext.canComputeTileStack() || !tileStackImageAdded) {
+                    imageList.add(image);
+                    tileStackImageAdded = true;
+                }
+            } else if (OperatorContext.isRegularBand(band) && band.isSourceImageSet()) {
+                imageList.add(band.getSourceImage());
+            }
+        }
     }
 
     private Map<Dimension, List<NodeContext>> buildTileDimensionMap(NodeContext[] outputNodeContexts) {
@@ -277,14 +419,27 @@ public class GraphProcessor {
         return tileSizeMap;
     }
 
-    private void forceTileComputation(PlanarImage image, int tileX, int tileY, Semaphore semaphore,
+    private void forceTileComputation(PlanarImage image, int tileX, int tileY, OperatorExecutor.TileFilter tileFilter,
+                                      Semaphore semaphore,
+                                      TileMemoryBudget memoryBudget, Map<PlanarImage, TileGridReservation> reservations,
                                       TileScheduler tileScheduler, TileComputationListener[] listeners, int parallelism) {
+        if (tileFilter != null && !tileFilter.accept(image, tileX, tileY)) {
+            return;
+        }
         Point[] points = new Point[]{new Point(tileX, tileY)};
         acquirePermits(semaphore, 1);
         if (error != null) {
             semaphore.release(parallelism);
             throw error;
         }
+        final TileGridReservation reservation = reservations.get(image);
+        if (reservation != null && reservation.beginTile(tileX, tileY)) {
+            try {
+                memoryBudget.acquire(reservation.tileWorkingSetSize);
+            } catch (InterruptedException e) {
+                throw new OperatorException(e);
+            }
+        }
         /////////////////////////////////////////////////////////////////////
         //
         // Note: GPF pull-processing is triggered here!!!
@@ -294,6 +449,32 @@ public class GraphProcessor {
         /////////////////////////////////////////////////////////////////////
     }
 
+    /**
+     * Estimates the working set of a tile index for all images pulled from the given nodes
+     * and registers a reservation for it with each of these images.
+     */
+    private static void putReservations(List<NodeContext> nodeContextList, int numXTiles, int numYTiles,
+                                        Map<PlanarImage, TileGridReservation> reservations) {
+        final List<PlanarImage> images = new ArrayList<PlanarImage>();
+        for (NodeContext nodeContext : nodeContextList) {
+            for (Band band : nodeContext.getTargetProduct().getBands()) {
+                PlanarImage image = nodeContext.getTargetImage(band);
+                if (image == null && OperatorContext.isRegularBand(band) && band.isSourceImageSet()) {
+                    image = band.getSourceImage();
+                }
+                if (image != null) {
+                    images.add(image);
+                }
+            }
+        }
+        final long tileWorkingSetSize = TileMemoryBudget.estimateTileWorkingSetSize(
+                images.toArray(new PlanarImage[images.size()]));
+        final TileGridReservation reservation = new TileGridReservation(tileWorkingSetSize, numXTiles, numYTiles);
+        for (PlanarImage image : images) {
+            reservations.put(image, reservation);
+        }
+    }
+
     private static void acquirePermits(Semaphore semaphore, int permits) {
         try {
             semaphore.acquire(permits);
@@ -332,16 +513,22 @@ public class GraphProcessor {
 
         private final Semaphore semaphore;
         private final int parallelism;
+        private final TileMemoryBudget memoryBudget;
+        private final Map<PlanarImage, TileGridReservation> reservations;
 
-        GraphTileComputationListener(Semaphore semaphore, int parallelism) {
+        GraphTileComputationListener(Semaphore semaphore, int parallelism, TileMemoryBudget memoryBudget,
+                                     Map<PlanarImage, TileGridReservation> reservations) {
             this.semaphore = semaphore;
             this.parallelism = parallelism;
+            this.memoryBudget = memoryBudget;
+            this.reservations = reservations;
         }
 
         @Override
         public void tileComputed(Object eventSource, TileRequest[] requests, PlanarImage image, int tileX,
                                  int tileY,
                                  Raster raster) {
+            releaseMemory(image, tileX, tileY);
             semaphore.release();
         }
 
@@ -351,6 +538,7 @@ public class GraphProcessor {
             if (error == null) {
                 error = new OperatorException("Operation cancelled by user.");
             }
+            releaseMemory(image, tileX, tileY);
             semaphore.release(parallelism);
         }
 
@@ -360,8 +548,52 @@ public class GraphProcessor {
             if (error == null) {
                 error = new OperatorException("Operation failed.", situation);
             }
+            releaseMemory(image, tileX, tileY);
             semaphore.release(parallelism);
         }
+
+        private void releaseMemory(PlanarImage image, int tileX, int tileY) {
+            final TileGridReservation reservation = reservations.get(image);
+            if (reservation != null && reservation.endTile(tileX, tileY)) {
+                memoryBudget.release(reservation.tileWorkingSetSize);
+            }
+        }
+    }
+
+    /**
+     * The working set reserved once per tile index for all images of a tile grid, like in the
+     * {@link OperatorExecutor}: from the first scheduled tile of a tile index until the last one
+     * in progress has been computed.
+     */
+    private static final class TileGridReservation {
+
+        private final long tileWorkingSetSize;
+        private final int tileCountX;
+        private final int[] scheduledTiles;
+
+        private TileGridReservation(long tileWorkingSetSize, int tileCountX, int tileCountY) {
+            this.tileWorkingSetSize = tileWorkingSetSize;
+            this.tileCountX = tileCountX;
+            this.scheduledTiles = new int[tileCountX * tileCountY];
+        }
+
+        /**
+         * @return true, if no other tile of the tile index is in progress and the working set must be reserved
+         */
+        private boolean beginTile(int tileX, int tileY) {
+            synchronized (scheduledTiles) {
+                return scheduledTiles[tileY * tileCountX + tileX]++ == 0;
+            }
+        }
+
+        /**
+         * @return true, if no other tile of the tile index is in progress and the working set must be released
+         */
+        private boolean endTile(int tileX, int tileY) {
+            synchronized (scheduledTiles) {
+                return --scheduledTiles[tileY * tileCountX + tileX] == 0;
+            }
+        }
     }
 
     private class GPFImagingListener implements ImagingListener {
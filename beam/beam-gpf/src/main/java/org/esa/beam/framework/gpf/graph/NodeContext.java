@@ -26,10 +26,13 @@ import org.esa.beam.framework.gpf.OperatorSpi;
 import org.esa.beam.framework.gpf.OperatorSpiRegistry;
 import org.esa.beam.framework.gpf.internal.OperatorConfiguration;
 import org.esa.beam.framework.gpf.internal.OperatorContext;
+import org.esa.beam.framework.gpf.internal.OperatorImage;
 import org.esa.beam.framework.dataio.ProductCache;
 
 import javax.media.jai.PlanarImage;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Default implementation for {@link org.esa.beam.framework.gpf.internal.OperatorContext}.
@@ -87,6 +90,58 @@ public class NodeContext {
         return operatorContext.getTargetImage(band);
     }
 
+    /**
+     * Fuses the target images computed by this node into their consumer.
+     *
+     * @return the number of fused images
+     * @see OperatorImage#setFused(boolean)
+     */
+    int fuseTargetImages() {
+        final List<OperatorImage> images = getComputedTargetImages();
+        for (OperatorImage image : images) {
+            image.setFused(true);
+        }
+        return images.size();
+    }
+
+    /**
+     * @return the target images which are computed by this node and used as source images of their bands
+     */
+    List<OperatorImage> getComputedTargetImages() {
+        final List<OperatorImage> images = new ArrayList<OperatorImage>();
+        for (Band band : targetProduct.getBands()) {
+            final OperatorImage image = operatorContext.getTargetImage(band);
+            // pass-through bands are computed by another node
+            if (image != null && band.isSourceImageSet() && band.getSourceImage().getImage(0) == image) {
+                images.add(image);
+            }
+        }
+        return images;
+    }
+
+    /**
+     * @return the objects identifying the computations of this node which read source tiles, i.e. the operator
+     *         context of a node computing tile stacks, otherwise the target images pulled from this node
+     * @see org.esa.beam.framework.gpf.internal.ConsumerAwareTileCache
+     */
+    List<Object> getSourceTileConsumers() {
+        final List<Object> consumers = new ArrayList<Object>();
+        if (canComputeTileStack()) {
+            consumers.add(operatorContext);
+        } else if (isOutput()) {
+            // all target images of an output node are pulled, including those of pass-through bands
+            for (Band band : targetProduct.getBands()) {
+                final OperatorImage image = operatorContext.getTargetImage(band);
+                if (image != null) {
+                    consumers.add(image);
+                }
+            }
+        } else {
+            consumers.addAll(getComputedTargetImages());
+        }
+        return consumers;
+    }
+
     public boolean canComputeTileStack() {
         return operatorContext.isComputeTileStackMethodUsable();
     }
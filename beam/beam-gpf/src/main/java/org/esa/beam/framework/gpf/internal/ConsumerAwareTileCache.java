@@ -0,0 +1,533 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.internal;
+
+import javax.media.jai.PlanarImage;
+import javax.media.jai.TileCache;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A tile cache for the images of a graph, which knows how often each tile is going to be read by its consumers.
+ * <p/>
+ * The images computed by graph nodes with consumers are registered as producers together with the consumers
+ * expected from the graph topology, i.e. the images of the consuming nodes or, for nodes computing tile stacks,
+ * their operator contexts. Whenever a consumer computes a tile, the source regions it requests via
+ * {@link OperatorContext#getSourceTile} are recorded. From these requests the margins of the source regions
+ * relative to the target tiles are learned per consumer image, and hence the number of target tiles which will
+ * read a given producer tile.
+ * <ul>
+ * <li>Producer tiles still awaiting reads are pinned: they are kept even if the underlying cache evicts them,
+ * as long as the pinned tiles fit into the pin capacity.</li>
+ * <li>As soon as the last expected consumer tile has been computed, a producer tile is unpinned and removed
+ * from the underlying cache, making room for tiles which are still needed.</li>
+ * </ul>
+ * Tiles are only released once all expected consumers have been seen. Producers read by an image
+ * of a different size are not tracked anymore, since their access pattern cannot be derived from the margins.
+ *
+ * @since NEST 5.1
+ */
+public class ConsumerAwareTileCache implements TileCache {
+
+    private static final ThreadLocal<Computation> currentComputation = new ThreadLocal<Computation>();
+    private static final AtomicInteger instanceCount = new AtomicInteger();
+
+    private final TileCache delegate;
+    private final long pinCapacity;
+    private final Map<RenderedImage, Producer> producers = new HashMap<RenderedImage, Producer>();
+    private final Map<TileKey, Raster> pinnedTiles = new HashMap<TileKey, Raster>();
+    private long pinnedMemory;
+    private boolean disposed;
+
+    /**
+     * @param delegate    the tile cache which actually stores the tiles
+     * @param pinCapacity the maximum memory in bytes occupied by pinned tiles which have been evicted from the delegate
+     */
+    public ConsumerAwareTileCache(TileCache delegate, long pinCapacity) {
+        this.delegate = delegate;
+        this.pinCapacity = pinCapacity;
+        instanceCount.incrementAndGet();
+    }
+
+    /**
+     * Registers an image whose tiles are read by other images of the graph.
+     *
+     * @param image     the image, which must use this tile cache
+     * @param consumers the objects identifying the consumers reading the image, as passed to
+     *                  {@link #beginComputation(PlanarImage, Object, Rectangle)}
+     */
+    public synchronized void addProducer(PlanarImage image, Collection<?> consumers) {
+        producers.put(image, new Producer(image, consumers));
+    }
+
+    /**
+     * @return the number of tiles currently pinned
+     */
+    public synchronized int getPinnedTileCount() {
+        return pinnedTiles.size();
+    }
+
+    /**
+     * Unpins all tiles and stops tracking. The tiles remain in the underlying cache.
+     */
+    public void dispose() {
+        synchronized (this) {
+            if (disposed) {
+                return;
+            }
+            disposed = true;
+            producers.clear();
+            pinnedTiles.clear();
+            pinnedMemory = 0;
+        }
+        instanceCount.decrementAndGet();
+    }
+
+    /**
+     * Called before a target tile is computed.
+     *
+     * @param targetImage the image whose tile is computed
+     * @param consumer    the object identifying the consumer, usually the target image or, if a
+     *                    tile stack is computed, the operator context
+     * @param targetRect  the target rectangle
+     * @return true, if {@link #endComputation()} must be called after the tile has been computed
+     */
+    static boolean beginComputation(PlanarImage targetImage, Object consumer, Rectangle targetRect) {
+        if (instanceCount.get() == 0) {
+            return false;
+        }
+        currentComputation.set(new Computation(targetImage, consumer, targetRect, currentComputation.get()));
+        return true;
+    }
+
+    /**
+     * Called after a target tile has been computed. Counts the reads of the producer tiles and
+     * releases the tiles which are not awaited anymore.
+     */
+    static void endComputation() {
+        final Computation computation = currentComputation.get();
+        if (computation == null) {
+            return;
+        }
+        if (computation.previous != null) {
+            currentComputation.set(computation.previous);
+        } else {
+            currentComputation.remove();
+        }
+        for (SourceRead read : computation.reads) {
+            read.cache.countRead(computation, read.image, read.region);
+        }
+    }
+
+    /**
+     * Records a request of the given region of a producer image by the target tile currently computed.
+     *
+     * @param image  the producer image
+     * @param region the requested region
+     */
+    void sourceRegionRead(PlanarImage image, Rectangle region) {
+        final Computation computation = currentComputation.get();
+        if (computation == null) {
+            return;
+        }
+        for (SourceRead read : computation.reads) {
+            //noinspection ObjectEquality
+            if (read.cache == this && read.image == image) {
+                read.region.add(region);
+                return;
+            }
+        }
+        computation.reads.add(new SourceRead(this, image, new Rectangle(region)));
+    }
+
+    private void countRead(Computation computation, PlanarImage image, Rectangle region) {
+        final List<Point> releasedTiles = new ArrayList<Point>();
+        synchronized (this) {
+            final Producer producer = producers.get(image);
+            if (producer == null) {
+                return;
+            }
+            if (!computation.targetImage.getBounds().equals(image.getBounds())) {
+                producers.remove(image);
+                unpinAll(image);
+                return;
+            }
+            producer.getEdge(computation).include(computation.targetRect, region, image.getBounds());
+            final Rectangle readRect = region.intersection(image.getBounds());
+            if (readRect.isEmpty()) {
+                return;
+            }
+            final int minTileX = image.XToTileX(readRect.x);
+            final int maxTileX = image.XToTileX(readRect.x + readRect.width - 1);
+            final int minTileY = image.YToTileY(readRect.y);
+            final int maxTileY = image.YToTileY(readRect.y + readRect.height - 1);
+            for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+                for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                    producer.reads[producer.getIndex(tileX, tileY)]++;
+                    if (producer.isReleasable(tileX, tileY)) {
+                        unpin(new TileKey(image, tileX, tileY));
+                        releasedTiles.add(new Point(tileX, tileY));
+                    }
+                }
+            }
+        }
+        for (Point tile : releasedTiles) {
+            delegate.remove(image, tile.x, tile.y);
+        }
+    }
+
+    private void pinIfAwaited(RenderedImage owner, int tileX, int tileY, Raster tile) {
+        synchronized (this) {
+            final Producer producer = producers.get(owner);
+            if (producer == null || producer.isReleasable(tileX, tileY)) {
+                return;
+            }
+            final TileKey key = new TileKey(owner, tileX, tileY);
+            if (pinnedTiles.containsKey(key)) {
+                return;
+            }
+            final long tileSize = getTileSize(tile);
+            if (pinnedMemory + tileSize <= pinCapacity) {
+                pinnedTiles.put(key, tile);
+                pinnedMemory += tileSize;
+            }
+        }
+    }
+
+    private void unpin(TileKey key) {
+        final Raster tile = pinnedTiles.remove(key);
+        if (tile != null) {
+            pinnedMemory -= getTileSize(tile);
+        }
+    }
+
+    private void unpinAll(RenderedImage owner) {
+        final Iterator<Map.Entry<TileKey, Raster>> iterator = pinnedTiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<TileKey, Raster> entry = iterator.next();
+            //noinspection ObjectEquality
+            if (entry.getKey().owner == owner) {
+                pinnedMemory -= getTileSize(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long getTileSize(Raster tile) {
+        final DataBuffer dataBuffer = tile.getDataBuffer();
+        return (long) dataBuffer.getSize() * dataBuffer.getNumBanks() *
+               DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+    }
+
+    @Override
+    public void add(RenderedImage owner, int tileX, int tileY, Raster tile) {
+        delegate.add(owner, tileX, tileY, tile);
+        pinIfAwaited(owner, tileX, tileY, tile);
+    }
+
+    @Override
+    public void add(RenderedImage owner, int tileX, int tileY, Raster tile, Object tileCacheMetric) {
+        delegate.add(owner, tileX, tileY, tile, tileCacheMetric);
+        pinIfAwaited(owner, tileX, tileY, tile);
+    }
+
+    @Override
+    public void remove(RenderedImage owner, int tileX, int tileY) {
+        delegate.remove(owner, tileX, tileY);
+        synchronized (this) {
+            unpin(new TileKey(owner, tileX, tileY));
+        }
+    }
+
+    @Override
+    public Raster getTile(RenderedImage owner, int tileX, int tileY) {
+        final Raster tile = delegate.getTile(owner, tileX, tileY);
+        if (tile != null) {
+            return tile;
+        }
+        synchronized (this) {
+            return pinnedTiles.get(new TileKey(owner, tileX, tileY));
+        }
+    }
+
+    @Override
+    public Raster[] getTiles(RenderedImage owner) {
+        return delegate.getTiles(owner);
+    }
+
+    @Override
+    public void removeTiles(RenderedImage owner) {
+        delegate.removeTiles(owner);
+        synchronized (this) {
+            unpinAll(owner);
+        }
+    }
+
+    @Override
+    public void addTiles(RenderedImage owner, Point[] tileIndices, Raster[] tiles, Object tileCacheMetric) {
+        delegate.addTiles(owner, tileIndices, tiles, tileCacheMetric);
+        for (int i = 0; i < tileIndices.length; i++) {
+            pinIfAwaited(owner, tileIndices[i].x, tileIndices[i].y, tiles[i]);
+        }
+    }
+
+    @Override
+    public Raster[] getTiles(RenderedImage owner, Point[] tileIndices) {
+        final Raster[] tiles = new Raster[tileIndices.length];
+        for (int i = 0; i < tileIndices.length; i++) {
+            tiles[i] = getTile(owner, tileIndices[i].x, tileIndices[i].y);
+        }
+        return tiles;
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+        synchronized (this) {
+            pinnedTiles.clear();
+            pinnedMemory = 0;
+        }
+    }
+
+    @Override
+    public void memoryControl() {
+        delegate.memoryControl();
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setTileCapacity(int tileCapacity) {
+        delegate.setTileCapacity(tileCapacity);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public int getTileCapacity() {
+        return delegate.getTileCapacity();
+    }
+
+    @Override
+    public void setMemoryCapacity(long memoryCapacity) {
+        delegate.setMemoryCapacity(memoryCapacity);
+    }
+
+    @Override
+    public long getMemoryCapacity() {
+        return delegate.getMemoryCapacity();
+    }
+
+    @Override
+    public void setMemoryThreshold(float memoryThreshold) {
+        delegate.setMemoryThreshold(memoryThreshold);
+    }
+
+    @Override
+    public float getMemoryThreshold() {
+        return delegate.getMemoryThreshold();
+    }
+
+    @Override
+    public void setTileComparator(Comparator comparator) {
+        delegate.setTileComparator(comparator);
+    }
+
+    @Override
+    public Comparator getTileComparator() {
+        return delegate.getTileComparator();
+    }
+
+    /**
+     * The read statistics of a producer image.
+     */
+    private static class Producer {
+
+        private final PlanarImage image;
+        private final int[] reads;
+        private final List<Edge> edges = new ArrayList<Edge>(2);
+        private final Set<Object> unseenConsumers;
+
+        private Producer(PlanarImage image, Collection<?> consumers) {
+            this.image = image;
+            this.unseenConsumers = new HashSet<Object>(consumers);
+            this.reads = new int[image.getNumXTiles() * image.getNumYTiles()];
+        }
+
+        private int getIndex(int tileX, int tileY) {
+            return (tileY - image.getMinTileY()) * image.getNumXTiles() + (tileX - image.getMinTileX());
+        }
+
+        private Edge getEdge(Computation computation) {
+            for (Edge edge : edges) {
+                //noinspection ObjectEquality
+                if (edge.consumer == computation.consumer) {
+                    return edge;
+                }
+            }
+            final Edge edge = new Edge(computation.consumer, computation.targetImage);
+            edges.add(edge);
+            unseenConsumers.remove(computation.consumer);
+            return edge;
+        }
+
+        /**
+         * @return true, if all expected consumers have been seen and the tile has been read by all expected target tiles
+         */
+        private boolean isReleasable(int tileX, int tileY) {
+            if (!unseenConsumers.isEmpty()) {
+                return false;
+            }
+            final Rectangle tileRect = image.getTileRect(tileX, tileY);
+            int expectedReads = 0;
+            for (Edge edge : edges) {
+                expectedReads += edge.getExpectedReads(tileRect);
+            }
+            return reads[getIndex(tileX, tileY)] >= expectedReads;
+        }
+    }
+
+    /**
+     * A consumer image reading a producer, together with the margins of its requests relative to its target tiles.
+     * <p/>
+     * Operators usually clip their requests to the image bounds, so a request ending at the image border does not
+     * tell the margin on that side. Such a margin is only known from a request which does not touch the border,
+     * until then any target tile is assumed to read the source tile in that direction.
+     */
+    private static class Edge {
+
+        private final Object consumer;
+        private final PlanarImage targetImage;
+        private int left = Integer.MIN_VALUE;
+        private int right = Integer.MIN_VALUE;
+        private int top = Integer.MIN_VALUE;
+        private int bottom = Integer.MIN_VALUE;
+        private boolean leftKnown;
+        private boolean rightKnown;
+        private boolean topKnown;
+        private boolean bottomKnown;
+
+        private Edge(Object consumer, PlanarImage targetImage) {
+            this.consumer = consumer;
+            this.targetImage = targetImage;
+        }
+
+        private void include(Rectangle targetRect, Rectangle region, Rectangle bounds) {
+            left = Math.max(left, targetRect.x - region.x);
+            top = Math.max(top, targetRect.y - region.y);
+            right = Math.max(right, region.x + region.width - (targetRect.x + targetRect.width));
+            bottom = Math.max(bottom, region.y + region.height - (targetRect.y + targetRect.height));
+            leftKnown |= region.x != bounds.x;
+            topKnown |= region.y != bounds.y;
+            rightKnown |= region.x + region.width != bounds.x + bounds.width;
+            bottomKnown |= region.y + region.height != bounds.y + bounds.height;
+        }
+
+        /**
+         * @return the number of target tiles whose requests, extended by the margins, intersect the given source tile
+         */
+        private int getExpectedReads(Rectangle sourceRect) {
+            final int minTileX = rightKnown ? Math.max(targetImage.getMinTileX(),
+                                                       targetImage.XToTileX(sourceRect.x - right))
+                                            : targetImage.getMinTileX();
+            final int maxTileX = leftKnown ? Math.min(targetImage.getMaxTileX(),
+                                                      targetImage.XToTileX(sourceRect.x + sourceRect.width - 1 + left))
+                                           : targetImage.getMaxTileX();
+            final int minTileY = bottomKnown ? Math.max(targetImage.getMinTileY(),
+                                                        targetImage.YToTileY(sourceRect.y - bottom))
+                                             : targetImage.getMinTileY();
+            final int maxTileY = topKnown ? Math.min(targetImage.getMaxTileY(),
+                                                     targetImage.YToTileY(sourceRect.y + sourceRect.height - 1 + top))
+                                          : targetImage.getMaxTileY();
+            return Math.max(0, maxTileX - minTileX + 1) * Math.max(0, maxTileY - minTileY + 1);
+        }
+    }
+
+    /**
+     * A target tile being computed on the current thread.
+     */
+    private static class Computation {
+
+        private final PlanarImage targetImage;
+        private final Object consumer;
+        private final Rectangle targetRect;
+        private final Computation previous;
+        private final List<SourceRead> reads = new ArrayList<SourceRead>(2);
+
+        private Computation(PlanarImage targetImage, Object consumer, Rectangle targetRect, Computation previous) {
+            this.targetImage = targetImage;
+            this.consumer = consumer;
+            this.targetRect = targetRect;
+            this.previous = previous;
+        }
+    }
+
+    private static class SourceRead {
+
+        private final ConsumerAwareTileCache cache;
+        private final PlanarImage image;
+        private final Rectangle region;
+
+        private SourceRead(ConsumerAwareTileCache cache, PlanarImage image, Rectangle region) {
+            this.cache = cache;
+            this.image = image;
+            this.region = region;
+        }
+    }
+
+    private static class TileKey {
+
+        private final RenderedImage owner;
+        private final int tileX;
+        private final int tileY;
+
+        private TileKey(RenderedImage owner, int tileX, int tileY) {
+            this.owner = owner;
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey) obj;
+            //noinspection ObjectEquality
+            return owner == other.owner && tileX == other.tileX && tileY == other.tileY;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(owner) + tileX) + tileY;
+        }
+    }
+}
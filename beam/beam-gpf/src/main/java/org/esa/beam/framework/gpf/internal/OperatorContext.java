@@ -29,7 +29,10 @@ import com.bc.ceres.binding.dom.XppDomElement;
 import com.bc.ceres.core.Assert;
 import com.bc.ceres.core.ProgressMonitor;
 import com.bc.ceres.glevel.MultiLevelImage;
+import com.bc.ceres.jai.tilecache.ConcurrentSwappingTileCache;
 import com.bc.ceres.jai.tilecache.DefaultSwapSpace;
+import com.bc.ceres.jai.tilecache.MappedSwapSpace;
+import com.bc.ceres.jai.tilecache.SwapSpace;
 import com.bc.ceres.jai.tilecache.SwappingTileCache;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.MetadataAttribute;
@@ -50,6 +53,7 @@ import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProperty;
 import org.esa.beam.framework.gpf.graph.GraphOp;
 import org.esa.beam.framework.gpf.internal.OperatorConfiguration.Reference;
+import org.esa.beam.framework.gpf.monitor.SourceTileEvent;
 import org.esa.beam.framework.gpf.monitor.TileComputationEvent;
 import org.esa.beam.framework.gpf.monitor.TileComputationObserver;
 import org.esa.beam.util.jai.JAIUtils;
@@ -63,6 +67,8 @@ import javax.media.jai.TileCache;
 import java.awt.Dimension;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.lang.reflect.Field;
@@ -76,6 +82,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -88,7 +95,9 @@ import java.util.regex.Pattern;
 public class OperatorContext {
 
     private static TileCache tileCache;
-    private static TileComputationObserver tileComputationObserver;
+    private static volatile TileComputationObserver tileComputationObserver;
+    private static final ThreadLocal<TileComputation> currentTileComputation = new ThreadLocal<TileComputation>();
+    private static final ThreadLocal<SourceLookup> currentSourceLookup = new ThreadLocal<SourceLookup>();
 
     private final Operator operator;
     private final List<Product> sourceProductList;
@@ -129,7 +138,8 @@ public class OperatorContext {
     }
 
     /**
-     * Makes sure that the given JAI OpImage has a valid tile cache (see System property {@link GPF#USE_FILE_TILE_CACHE_PROPERTY}),
+     * Makes sure that the given JAI OpImage has a valid tile cache (see System properties {@link GPF#USE_CONCURRENT_TILE_CACHE_PROPERTY}
+     * and {@link GPF#USE_FILE_TILE_CACHE_PROPERTY}),
      * or makes sure that it has none (see System property {@link GPF#DISABLE_TILE_CACHE_PROPERTY}).
      *
      * @param image Any JAI OpImage.
@@ -146,11 +156,14 @@ public class OperatorContext {
 
     private static synchronized TileCache getTileCache() {
         if (tileCache == null) {
+            boolean useConcurrentTileCache = Boolean.parseBoolean(System.getProperty(GPF.USE_CONCURRENT_TILE_CACHE_PROPERTY, "false"));
             boolean useFileTileCache = Boolean.parseBoolean(System.getProperty(GPF.USE_FILE_TILE_CACHE_PROPERTY, "false"));
-            if (useFileTileCache) {
+            if (useConcurrentTileCache) {
+                tileCache = new ConcurrentSwappingTileCache(JAI.getDefaultInstance().getTileCache().getMemoryCapacity(),
+                                                            createSwapSpace());
+            } else if (useFileTileCache) {
                 tileCache = new SwappingTileCache(JAI.getDefaultInstance().getTileCache().getMemoryCapacity(),
-                                                  new DefaultSwapSpace(SwappingTileCache.DEFAULT_SWAP_DIR,
-                                                                       BeamLogManager.getSystemLogger()));
+                                                  createSwapSpace());
             } else {
                 tileCache = JAI.getDefaultInstance().getTileCache();
             }
@@ -161,6 +174,15 @@ public class OperatorContext {
         return tileCache;
     }
 
+    private static SwapSpace createSwapSpace() {
+        boolean useMappedSwapSpace = Boolean.parseBoolean(System.getProperty(GPF.USE_MAPPED_SWAP_SPACE_PROPERTY, "false"));
+        if (useMappedSwapSpace) {
+            // operators cast the data buffers of source tiles, hence swapped tiles are restored as standard heap buffers
+            return new MappedSwapSpace(SwappingTileCache.DEFAULT_SWAP_DIR, BeamLogManager.getSystemLogger(), false);
+        }
+        return new DefaultSwapSpace(SwappingTileCache.DEFAULT_SWAP_DIR, BeamLogManager.getSystemLogger());
+    }
+
     public String getId() {
         if (id == null) {
             id = getOperatorSpi().getOperatorAlias() + '$' + Long.toHexString(System.currentTimeMillis()).toUpperCase();
@@ -375,6 +397,33 @@ public class OperatorContext {
     }
 
     public Tile getSourceTile(RasterDataNode rasterDataNode, Rectangle region, BorderExtender borderExtender) {
+        final TileComputationObserver observer = tileComputationObserver;
+        if (observer == null) {
+            return fetchSourceTile(rasterDataNode, region, borderExtender);
+        }
+        final RenderedImage level0 = rasterDataNode.getSourceImage().getImage(0);
+        final SourceLookup lookup = new SourceLookup(level0, currentSourceLookup.get());
+        currentSourceLookup.set(lookup);
+        final long startNanos = System.nanoTime();
+        final Tile tile;
+        try {
+            tile = fetchSourceTile(rasterDataNode, region, borderExtender);
+        } finally {
+            currentSourceLookup.set(lookup.outer);
+        }
+        final long endNanos = System.nanoTime();
+        final int[] cacheCounts = countCachedTiles(level0, region, lookup.computedTiles);
+        final TileComputation computation = currentTileComputation.get();
+        if (computation != null) {
+            computation.sourceWaitNanos += endNanos - startNanos;
+        }
+        observer.sourceTileRequested(new SourceTileEvent(operator, computation != null ? computation.image : null,
+                                                         rasterDataNode, level0, region,
+                                                         cacheCounts[0], cacheCounts[1], startNanos, endNanos));
+        return tile;
+    }
+
+    private Tile fetchSourceTile(RasterDataNode rasterDataNode, Rectangle region, BorderExtender borderExtender) {
         MultiLevelImage image = rasterDataNode.getSourceImage();
         /////////////////////////////////////////////////////////////////////
         //
@@ -383,14 +432,126 @@ public class OperatorContext {
         Raster awtRaster;
         if (borderExtender != null) {
             awtRaster = image.getExtendedData(region, borderExtender);
+        } else if (isFusedRegion(image, region)) {
+            // fused: compute the region on demand, reused only during the current tile computation
+            awtRaster = computeFusedRegion((OperatorImage) image.getImage(0), region);
+        } else if (isSingleTileRegion(image, region)) {
+            final Raster tile = image.getTile(image.XToTileX(region.x), image.YToTileY(region.y));
+            final Raster child = tile.getBounds().equals(region) ? tile :
+                                 tile.createChild(region.x, region.y, region.width, region.height,
+                                                  region.x, region.y, null);
+            if (isShareable(child)) {
+                // zero-copy: wrap the (cached) tile raster directly, the tile copies it before samples are set
+                sourceRegionRead(image, region);
+                return new TileImpl(rasterDataNode, child, region, false, true);
+            }
+            awtRaster = image.getData(region);
         } else {
             awtRaster = image.getData(region); // Note: copyData is NOT faster!
         }
         //
         /////////////////////////////////////////////////////////////////////
+        sourceRegionRead(image, region);
         return new TileImpl(rasterDataNode, awtRaster, region, false);
     }
 
+    /**
+     * Derives the cache hits from the lookup itself, since querying the tile cache would count as
+     * an access and could even restore swapped tiles. Only tiles of operator images are counted.
+     *
+     * @param computedTiles the number of tiles of the image computed during the lookup
+     * @return the number of tiles of the image covered by the region which have been found in its tile cache
+     *         and the number of those which had to be computed
+     */
+    private static int[] countCachedTiles(RenderedImage image, Rectangle region, int computedTiles) {
+        final int[] counts = new int[2];
+        if (!(image instanceof OperatorImage)) {
+            return counts;
+        }
+        final OperatorImage operatorImage = (OperatorImage) image;
+        final Rectangle bounds = region.intersection(operatorImage.getBounds());
+        if (bounds.isEmpty()) {
+            return counts;
+        }
+        final int tileCount = (operatorImage.XToTileX(bounds.x + bounds.width - 1) - operatorImage.XToTileX(bounds.x) + 1) *
+                              (operatorImage.YToTileY(bounds.y + bounds.height - 1) - operatorImage.YToTileY(bounds.y) + 1);
+        // fused regions are always computed
+        counts[1] = operatorImage.isFused() ? tileCount : Math.min(computedTiles, tileCount);
+        counts[0] = tileCount - counts[1];
+        return counts;
+    }
+
+    /**
+     * Lets a {@link ConsumerAwareTileCache} of the source image know that the region has been read.
+     */
+    private static void sourceRegionRead(MultiLevelImage image, Rectangle region) {
+        final RenderedImage level0 = image.getImage(0);
+        if (level0 instanceof OpImage) {
+            final TileCache cache = ((OpImage) level0).getTileCache();
+            if (cache instanceof ConsumerAwareTileCache) {
+                ((ConsumerAwareTileCache) cache).sourceRegionRead((OpImage) level0, region);
+            }
+        }
+    }
+
+    /**
+     * Computes the region of a fused image, unless it has already been computed for the target tile
+     * currently computed by this thread.
+     */
+    private static Raster computeFusedRegion(OperatorImage image, Rectangle region) {
+        final TileComputation computation = currentTileComputation.get();
+        if (computation == null) {
+            return image.computeRegion(region);
+        }
+        if (computation.fusedImages == null) {
+            computation.fusedImages = new ArrayList<OperatorImage>(4);
+            computation.fusedRasters = new ArrayList<Raster>(4);
+        }
+        for (int i = 0; i < computation.fusedImages.size(); i++) {
+            final Raster raster = computation.fusedRasters.get(i);
+            //noinspection ObjectEquality
+            if (computation.fusedImages.get(i) == image && raster.getBounds().equals(region)) {
+                return raster;
+            }
+        }
+        final Raster raster = image.computeRegion(region);
+        computation.fusedImages.add(image);
+        computation.fusedRasters.add(raster);
+        return raster;
+    }
+
+    /**
+     * @return true, if the image is a fused {@link OperatorImage} and the region lies within its bounds
+     */
+    private static boolean isFusedRegion(MultiLevelImage image, Rectangle region) {
+        final RenderedImage level0 = image.getImage(0);
+        return level0 instanceof OperatorImage && ((OperatorImage) level0).isFused() &&
+               image.getBounds().contains(region);
+    }
+
+    /**
+     * @return true, if the region lies within a single tile of the image and within the image bounds
+     */
+    private static boolean isSingleTileRegion(MultiLevelImage image, Rectangle region) {
+        return !region.isEmpty() &&
+               image.getBounds().contains(region) &&
+               image.XToTileX(region.x) == image.XToTileX(region.x + region.width - 1) &&
+               image.YToTileY(region.y) == image.YToTileY(region.y + region.height - 1);
+    }
+
+    /**
+     * @return true, if the raster can be wrapped by a shared {@link TileImpl}, whose data buffer indexes
+     *         are then given by the layout of the raster
+     */
+    private static boolean isShareable(Raster raster) {
+        if (raster.getNumBands() != 1 || !(raster.getSampleModel() instanceof ComponentSampleModel)) {
+            return false;
+        }
+        final ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+        final DataBuffer db = raster.getDataBuffer();
+        return db.getNumBanks() == 1 && db.getOffset() == 0 && sm.getPixelStride() == 1;
+    }
+
     public OperatorImage getTargetImage(Band band) {
         return targetImageMap.get(band);
     }
@@ -633,7 +794,7 @@ public class OperatorContext {
             targetProduct.setPreferredTileSize(getPreferredTileSize());
         }
         final Band[] targetBands = targetProduct.getBands();
-        Object[][] locks = null;
+        Lock[][] locks = null;
         if (operatorMustComputeTileStack()) {
             Dimension tileSize = targetProduct.getPreferredTileSize();
             int width = targetProduct.getSceneRasterWidth();
@@ -1066,21 +1227,29 @@ public class OperatorContext {
     }
 
     private void startTileComputationObservation() {
-        if (tileComputationObserver == null) {
-            String tchClass = System.getProperty(GPF.TILE_COMPUTATION_OBSERVER_PROPERTY);
-            if (tchClass != null) {
-                try {
-                    tileComputationObserver = (TileComputationObserver) Class.forName(tchClass).newInstance();
-                    tileComputationObserver.setLogger(logger);
-                    tileComputationObserver.start();
-                } catch (Throwable t) {
-                    getLogger().warning("Failed to instantiate tile computation observer: " + t.getMessage());
+        synchronized (OperatorContext.class) {
+            if (tileComputationObserver == null) {
+                String tchClass = System.getProperty(GPF.TILE_COMPUTATION_OBSERVER_PROPERTY);
+                if (tchClass != null) {
+                    try {
+                        final TileComputationObserver observer = (TileComputationObserver) Class.forName(tchClass).newInstance();
+                        observer.setLogger(logger);
+                        observer.start();
+                        tileComputationObserver = observer;
+                    } catch (Throwable t) {
+                        getLogger().warning("Failed to instantiate tile computation observer: " + t.getMessage());
+                    }
                 }
             }
         }
     }
 
-    public void stopTileComputationObservation() {
+    /**
+     * Stops the tile computation observer shared by all operators, if any, e.g. at the end of a {@code gpt} run.
+     * The next operator initialised afterwards starts a new observer if
+     * {@link GPF#TILE_COMPUTATION_OBSERVER_PROPERTY} is still set.
+     */
+    public static synchronized void stopTileComputationObservation() {
         if (tileComputationObserver != null) {
             tileComputationObserver.stop();
             tileComputationObserver = null;
@@ -1088,14 +1257,57 @@ public class OperatorContext {
     }
 
     public void fireTileComputed(OperatorImage operatorImage, Rectangle destRect, long startNanos) {
+        fireTileComputed(operatorImage, destRect, startNanos, 0L);
+    }
+
+    /**
+     * @param sourceWaitNanos the time spent in {@link #getSourceTile} as returned by {@link #endTileComputation}
+     * @since NEST 5.1
+     */
+    public void fireTileComputed(OperatorImage operatorImage, Rectangle destRect, long startNanos, long sourceWaitNanos) {
         if (tileComputationObserver != null) {
             long endNanos = System.nanoTime();
             int tileX = operatorImage.XToTileX(destRect.x);
             int tileY = operatorImage.YToTileY(destRect.y);
-            tileComputationObserver.tileComputed(new TileComputationEvent(operatorImage, tileX, tileY, startNanos, endNanos));
+            tileComputationObserver.tileComputed(new TileComputationEvent(operatorImage, tileX, tileY, startNanos, endNanos,
+                                                                          sourceWaitNanos));
         }
     }
 
+    /**
+     * Marks the start of the computation of a tile of the given image by the current thread,
+     * so that the time spent in {@link #getSourceTile} can be attributed to it and fused source
+     * regions are computed only once for it.
+     * Each call must be followed by a call to {@link #endTileComputation}.
+     *
+     * @param operatorImage the image
+     * @since NEST 5.1
+     */
+    public void beginTileComputation(OperatorImage operatorImage) {
+        if (tileComputationObserver != null) {
+            final SourceLookup lookup = currentSourceLookup.get();
+            //noinspection ObjectEquality
+            if (lookup != null && lookup.image == operatorImage) {
+                lookup.computedTiles++;
+            }
+        }
+        currentTileComputation.set(new TileComputation(operatorImage, currentTileComputation.get()));
+    }
+
+    /**
+     * @param operatorImage the image
+     * @return the time spent in {@link #getSourceTile} since {@link #beginTileComputation}
+     * @since NEST 5.1
+     */
+    public long endTileComputation(OperatorImage operatorImage) {
+        final TileComputation computation = currentTileComputation.get();
+        if (computation == null || computation.image != operatorImage) {
+            return 0L;
+        }
+        currentTileComputation.set(computation.outer);
+        return computation.sourceWaitNanos;
+    }
+
     boolean isComputingImageOf(Band band) {
         if (band.isSourceImageSet()) {
             RenderedImage sourceImage = band.getSourceImage().getImage(0);
@@ -1115,4 +1327,34 @@ public class OperatorContext {
         this.requiresAllBands = requiresAllBands;
     }
 
+
+    /**
+     * A source tile requested by the current thread, linked to the request it is nested in.
+     */
+    private static final class SourceLookup {
+        private final RenderedImage image;
+        private final SourceLookup outer;
+        private int computedTiles;
+
+        private SourceLookup(RenderedImage image, SourceLookup outer) {
+            this.image = image;
+            this.outer = outer;
+        }
+    }
+
+    /**
+     * A tile computation of the current thread, linked to the computation it is nested in.
+     */
+    private static final class TileComputation {
+        private final OperatorImage image;
+        private final TileComputation outer;
+        private long sourceWaitNanos;
+        private List<OperatorImage> fusedImages;
+        private List<Raster> fusedRasters;
+
+        private TileComputation(OperatorImage image, TileComputation outer) {
+            this.image = image;
+            this.outer = outer;
+        }
+    }
 }
@@ -19,6 +19,7 @@ import com.bc.ceres.core.ProgressMonitor;
 
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.GPF;
 import org.esa.beam.framework.gpf.Operator;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.util.logging.BeamLogManager;
@@ -63,7 +64,29 @@ public class OperatorExecutor {
         int tileCountY = MathUtils.ceilInt(boundary.height / (double) tileSize.height);
         Band[] targetBands = targetProduct.getBands();
         PlanarImage[] images = createImages(targetBands, operatorContext);
-        return new OperatorExecutor(images, tileCountX, tileCountY);
+        PlanarImage[] dependencyImages = WorkStealingTileExecutor.getDependencyImages(
+                operatorContext.getSourceProducts(), images);
+        final OperatorExecutor executor = new OperatorExecutor(images, dependencyImages, tileCountX, tileCountY,
+                                                               JAI.getDefaultInstance().getTileScheduler().getParallelism());
+        executor.setTileWorkingSetSize(TileMemoryBudget.estimateTileWorkingSetSize(images));
+        return executor;
+    }
+
+    /**
+     * Gets the execution order given by the System property {@link GPF#EXECUTION_ORDER_PROPERTY}.
+     *
+     * @return the execution order, {@link ExecutionOrder#ROW_BAND_COLUMN} if not set
+     */
+    public static ExecutionOrder getDefaultExecutionOrder() {
+        final String value = System.getProperty(GPF.EXECUTION_ORDER_PROPERTY);
+        if (value != null) {
+            try {
+                return ExecutionOrder.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                BeamLogManager.getSystemLogger().warning("Unknown execution order '" + value + "'");
+            }
+        }
+        return ExecutionOrder.ROW_BAND_COLUMN;
     }
 
     public enum ExecutionOrder {
@@ -76,13 +99,65 @@ public class OperatorExecutor {
          * time for I/O).<br/>
          */
         BAND_ROW_COLUMN,
+        /**
+         * Computes spatially coherent blocks of tiles on a work-stealing thread pool,
+         * see {@link WorkStealingTileExecutor}. Idle threads take over pending blocks,
+         * so a slow tile does not hold back the rest of its tile row.
+         */
+        WORK_STEALING,
+    }
+
+    /**
+     * Decides which tiles are to be computed, e.g. to skip tiles which have already been written.
+     *
+     * @since NEST 5.1
+     */
+    public interface TileFilter {
+
+        /**
+         * @param image the target image
+         * @param tileX the tile column
+         * @param tileY the tile row
+         * @return {@code true}, if the tile is to be computed
+         */
+        boolean accept(PlanarImage image, int tileX, int tileY);
+    }
+
+    /**
+     * Implemented by operators which prepare for and finish the computation of all tiles of their target
+     * product, no matter whether it is driven by an {@code OperatorExecutor} or by the
+     * {@link org.esa.beam.framework.gpf.graph.GraphProcessor}.
+     *
+     * @since NEST 5.1
+     */
+    public interface ExecutionListener {
+
+        /**
+         * Called before the first tile is computed.
+         *
+         * @return a filter for the tiles to be computed, may be {@code null}
+         * @throws OperatorException if the execution cannot be prepared
+         */
+        TileFilter executionStarted() throws OperatorException;
+
+        /**
+         * Called after the last tile has been computed, or after the execution has failed or been cancelled.
+         *
+         * @param completed {@code true}, if all tiles have been computed
+         * @throws OperatorException if the execution cannot be finished
+         */
+        void executionStopped(boolean completed) throws OperatorException;
     }
 
     private final int tileCountX;
     private final int tileCountY;
     private final PlanarImage[] images;
+    private final PlanarImage[] dependencyImages;
     private final TileScheduler tileScheduler;
     private final int parallelism;
+    private TileFilter tileFilter;
+    private long tileWorkingSetSize;
+    private int[] scheduledBandTiles;
     private volatile OperatorException error = null;
 
     public OperatorExecutor(PlanarImage[] images, int tileCountX, int tileCountY) {
@@ -90,20 +165,72 @@ public class OperatorExecutor {
     }
     
     public OperatorExecutor(PlanarImage[] images, int tileCountX, int tileCountY, int parallelism) {
+        this(images, new PlanarImage[0], tileCountX, tileCountY, parallelism);
+    }
+
+    /**
+     * @param dependencyImages images whose tiles are computed ahead of the tiles of {@code images},
+     *                         only used by {@link ExecutionOrder#WORK_STEALING}
+     */
+    public OperatorExecutor(PlanarImage[] images, PlanarImage[] dependencyImages, int tileCountX, int tileCountY,
+                            int parallelism) {
         this.images = images;
+        this.dependencyImages = dependencyImages;
         this.tileCountX = tileCountX;
         this.tileCountY = tileCountY;
         this.parallelism = parallelism;
         this.tileScheduler = JAI.getDefaultInstance().getTileScheduler();
     }
 
+    public TileFilter getTileFilter() {
+        return tileFilter;
+    }
+
+    /**
+     * Sets a filter for the tiles to be computed. Tiles which are not accepted are skipped,
+     * but still counted as worked.
+     *
+     * @param tileFilter the tile filter, may be {@code null}
+     * @since NEST 5.1
+     */
+    public void setTileFilter(TileFilter tileFilter) {
+        this.tileFilter = tileFilter;
+    }
+
+    public long getTileWorkingSetSize() {
+        return tileWorkingSetSize;
+    }
+
+    /**
+     * Sets the memory reserved from the {@link TileMemoryBudget} while the tiles of a tile index are computed.
+     * It is reserved once for all images, from the first scheduled tile of a tile index until the last one
+     * in progress has been computed.
+     *
+     * @param tileWorkingSetSize the working set of the tiles of all images at a tile index in bytes,
+     *                           0 to compute tiles without reservation
+     * @since NEST 5.1
+     */
+    public void setTileWorkingSetSize(long tileWorkingSetSize) {
+        this.tileWorkingSetSize = tileWorkingSetSize;
+    }
+
     public void execute(ProgressMonitor pm) {
-        execute(ExecutionOrder.ROW_BAND_COLUMN, pm);
+        execute(getDefaultExecutionOrder(), pm);
     }
 
     public void execute(ExecutionOrder executionOrder, ProgressMonitor pm) {
+        if (executionOrder == ExecutionOrder.WORK_STEALING) {
+            final WorkStealingTileExecutor executor = new WorkStealingTileExecutor(images, dependencyImages,
+                                                                                   tileCountX, tileCountY, parallelism);
+            executor.setTileFilter(tileFilter);
+            executor.setTileWorkingSetSize(tileWorkingSetSize);
+            executor.execute(pm);
+            return;
+        }
         final Semaphore semaphore = new Semaphore(parallelism, true);
-        final TileComputationListener tcl = new OperatorTileComputationListener(semaphore);
+        final TileMemoryBudget memoryBudget = TileMemoryBudget.getDefaultInstance();
+        scheduledBandTiles = new int[tileCountX * tileCountY];
+        final TileComputationListener tcl = new OperatorTileComputationListener(semaphore, memoryBudget);
         final TileComputationListener[] listeners = new TileComputationListener[] { tcl };
         
         ImagingListener imagingListener = JAI.getDefaultInstance().getImagingListener();
@@ -114,11 +241,11 @@ public class OperatorExecutor {
             if (executionOrder == ExecutionOrder.ROW_BAND_COLUMN) {
                 // for debugging purpose
                 // executeRowBandColumn(pm); 
-                scheduleRowBandColumn(semaphore, listeners, pm);
+                scheduleRowBandColumn(semaphore, memoryBudget, listeners, pm);
             } else if (executionOrder == ExecutionOrder.ROW_COLUMN_BAND) {
-                scheduleRowColumnBand(semaphore, listeners, pm);
+                scheduleRowColumnBand(semaphore, memoryBudget, listeners, pm);
             } else if (executionOrder == ExecutionOrder.BAND_ROW_COLUMN) {
-                scheduleBandRowColumn(semaphore, listeners, pm);
+                scheduleBandRowColumn(semaphore, memoryBudget, listeners, pm);
             } else {
                 throw new IllegalArgumentException("executionOrder");
             }
@@ -133,25 +260,27 @@ public class OperatorExecutor {
         }
     }
 
-    private void scheduleBandRowColumn(Semaphore semaphore, TileComputationListener[] listeners, ProgressMonitor pm) {
+    private void scheduleBandRowColumn(Semaphore semaphore, TileMemoryBudget memoryBudget,
+                                       TileComputationListener[] listeners, ProgressMonitor pm) {
         for (final PlanarImage image : images) {
             for (int tileY = 0; tileY < tileCountY; tileY++) {
                 BeamLogManager.getSystemLogger().info("Scheduling tile row " + tileY + " for " + image);
                 for (int tileX = 0; tileX < tileCountX; tileX++) {
-                    scheduleTile(image, tileX, tileY, semaphore, listeners, pm);
+                    scheduleTile(image, tileX, tileY, semaphore, memoryBudget, listeners, pm);
                 }
             }
         }
     }
 
-    private void scheduleRowBandColumn(Semaphore semaphore, TileComputationListener[] listeners, ProgressMonitor pm) {
+    private void scheduleRowBandColumn(Semaphore semaphore, TileMemoryBudget memoryBudget,
+                                       TileComputationListener[] listeners, ProgressMonitor pm) {
         final StdOutProgressMonitor stdOutPM = new StdOutProgressMonitor(tileCountY);
 
         for (int tileY = 0; tileY < tileCountY; tileY++) {
             for (final PlanarImage image : images) {
                 //BeamLogManager.getSystemLogger().info("Scheduling tile row " + tileY + " for " + image);
                 for (int tileX = 0; tileX < tileCountX; tileX++) {
-                    scheduleTile(image, tileX, tileY, semaphore, listeners, pm);
+                    scheduleTile(image, tileX, tileY, semaphore, memoryBudget, listeners, pm);
                 }
             }
             if(pm == ProgressMonitor.NULL) {
@@ -163,25 +292,33 @@ public class OperatorExecutor {
         }
     }
 
-    private void scheduleRowColumnBand(Semaphore semaphore, TileComputationListener[] listeners, ProgressMonitor pm) {
+    private void scheduleRowColumnBand(Semaphore semaphore, TileMemoryBudget memoryBudget,
+                                       TileComputationListener[] listeners, ProgressMonitor pm) {
         for (int tileY = 0; tileY < tileCountY; tileY++) {
             for (int tileX = 0; tileX < tileCountX; tileX++) {
                 BeamLogManager.getSystemLogger().info("Scheduling tile column " + tileX + ", row " + tileY);
                 for (final PlanarImage image : images) {
-                    scheduleTile(image, tileX, tileY, semaphore, listeners, pm);
+                    scheduleTile(image, tileX, tileY, semaphore, memoryBudget, listeners, pm);
                 }
             }
         }
     }
 
     private void scheduleTile(final PlanarImage image, int tileX, int tileY, Semaphore semaphore,
-                              TileComputationListener[] listeners, ProgressMonitor pm) {
+                              TileMemoryBudget memoryBudget, TileComputationListener[] listeners, ProgressMonitor pm) {
         checkForCancelation(pm);
+        if (tileFilter != null && !tileFilter.accept(image, tileX, tileY)) {
+            pm.worked(1);
+            return;
+        }
         acquirePermits(semaphore, 1);
         if (error != null) {
             semaphore.release(parallelism);
             throw error;
         }
+        if (beginBandTile(tileX, tileY)) {
+            acquireMemory(memoryBudget, tileWorkingSetSize);
+        }
         Point[] points = new Point[] { new Point(tileX, tileY) };
         /////////////////////////////////////////////////////////////////////
         //
@@ -194,6 +331,28 @@ public class OperatorExecutor {
         pm.worked(1);
     }
 
+    /**
+     * Counts a tile of the given tile index being scheduled.
+     *
+     * @return true, if no other tile of the tile index is in progress and the working set must be reserved
+     */
+    private boolean beginBandTile(int tileX, int tileY) {
+        synchronized (scheduledBandTiles) {
+            return scheduledBandTiles[tileY * tileCountX + tileX]++ == 0;
+        }
+    }
+
+    /**
+     * Counts a tile of the given tile index being done.
+     *
+     * @return true, if no other tile of the tile index is in progress and the working set must be released
+     */
+    private boolean endBandTile(int tileX, int tileY) {
+        synchronized (scheduledBandTiles) {
+            return --scheduledBandTiles[tileY * tileCountX + tileX] == 0;
+        }
+    }
+
     private static void acquirePermits(Semaphore semaphore, int permits) {
         try {
             semaphore.acquire(permits);
@@ -202,6 +361,14 @@ public class OperatorExecutor {
         }
     }
 
+    private static void acquireMemory(TileMemoryBudget memoryBudget, long bytes) {
+        try {
+            memoryBudget.acquire(bytes);
+        } catch (InterruptedException e) {
+            throw new OperatorException(e);
+        }
+    }
+
     private static OperatorContext getOperatorContext(Operator operator) {
         try {
             Field field = Operator.class.getDeclaredField("context");
@@ -256,14 +423,17 @@ public class OperatorExecutor {
     private class OperatorTileComputationListener implements TileComputationListener {
 
         private final Semaphore semaphore;
+        private final TileMemoryBudget memoryBudget;
 
-        OperatorTileComputationListener(Semaphore semaphore) {
+        OperatorTileComputationListener(Semaphore semaphore, TileMemoryBudget memoryBudget) {
             this.semaphore = semaphore;
+            this.memoryBudget = memoryBudget;
         }
 
         @Override
         public void tileComputed(Object eventSource, TileRequest[] requests, PlanarImage image, int tileX, int tileY,
                                  Raster raster) {
+            releaseMemory(tileX, tileY);
             semaphore.release();
         }
 
@@ -272,6 +442,7 @@ public class OperatorExecutor {
             if (error == null) {
                 error = new OperatorException("Operation cancelled.");
             }
+            releaseMemory(tileX, tileY);
             semaphore.release(parallelism);
         }
 
@@ -281,8 +452,15 @@ public class OperatorExecutor {
             if (error == null) {
                 error = new OperatorException("Operation failed.", situation);
             }
+            releaseMemory(tileX, tileY);
             semaphore.release(parallelism);
         }
+
+        private void releaseMemory(int tileX, int tileY) {
+            if (endBandTile(tileX, tileY)) {
+                memoryBudget.release(tileWorkingSetSize);
+            }
+        }
     }
     
     private class GPFImagingListener implements ImagingListener {
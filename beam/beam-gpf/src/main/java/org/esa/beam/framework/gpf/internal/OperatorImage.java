@@ -25,12 +25,15 @@ import javax.media.jai.ImageLayout;
 import javax.media.jai.PlanarImage;
 import javax.media.jai.SourcelessOpImage;
 import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 
 public class OperatorImage extends SourcelessOpImage {
 
     private final OperatorContext operatorContext;
     private Band targetBand;
+    private volatile boolean fused;
 
     public OperatorImage(Band targetBand, OperatorContext operatorContext) {
         this(targetBand, operatorContext, ImageManager.createSingleBandedImageLayout(targetBand));
@@ -57,29 +60,78 @@ public class OperatorImage extends SourcelessOpImage {
         return targetBand;
     }
 
+    /**
+     * @return true, if the tiles of this image are computed on demand by its consumer and never cached
+     */
+    public boolean isFused() {
+        return fused;
+    }
+
+    /**
+     * Fuses this image into its single point-wise consumer. Tiles requested via
+     * {@link OperatorContext#getSourceTile} are then computed directly into transient rasters,
+     * and the image has no tile cache anymore.
+     *
+     * @param fused true, if this image shall be fused
+     */
+    public synchronized void setFused(boolean fused) {
+        this.fused = fused;
+        if (fused) {
+            if (getTileCache() != null) {
+                getTileCache().removeTiles(this);
+            }
+            setTileCache(null);
+        } else {
+            OperatorContext.setTileCache(this);
+        }
+    }
+
+    /**
+     * Computes the given region into a new raster, bypassing the tile cache.
+     *
+     * @param region the region, must lie within the image bounds
+     * @return the raster holding the computed samples
+     */
+    WritableRaster computeRegion(Rectangle region) {
+        final SampleModel sampleModel = getSampleModel().createCompatibleSampleModel(region.width, region.height);
+        final WritableRaster raster = Raster.createWritableRaster(sampleModel, region.getLocation());
+        computeRect((PlanarImage[]) null, raster, region);
+        return raster;
+    }
+
 
     @Override
     protected void computeRect(PlanarImage[] ignored, WritableRaster tile, Rectangle destRect) {
         long startNanos = System.nanoTime();
-
-        Tile targetTile;
-        if (getOperatorContext().isComputingImageOf(getTargetBand())) {
-            targetTile = createTargetTile(getTargetBand(), tile, destRect);
-        } else if (requiresAllBands()) {
-            targetTile = getOperatorContext().getSourceTile(getTargetBand(), destRect);
-        } else {
-            targetTile = null;
-        }
-        // computeTile() may have been deactivated
-        if (targetTile != null && getOperatorContext().isComputeTileMethodUsable()) {
-            //System.out.println("compute "+getOperatorContext().getOperator().getSpi().getOperatorAlias()
-            //    + ":"+targetBand.getName()+ " ("
-            //    + targetTile.getMinX()+","+targetTile.getMinY()+") "
-            //    + targetTile.getWidth()+" x "+ targetTile.getHeight());  //NESTMOD
-            getOperatorContext().getOperator().computeTile(getTargetBand(), targetTile, ProgressMonitor.NULL);
+        long sourceWaitNanos = 0L;
+
+        final boolean tracked = ConsumerAwareTileCache.beginComputation(this, this, destRect);
+        getOperatorContext().beginTileComputation(this);
+        try {
+            Tile targetTile;
+            if (getOperatorContext().isComputingImageOf(getTargetBand())) {
+                targetTile = createTargetTile(getTargetBand(), tile, destRect);
+            } else if (requiresAllBands()) {
+                targetTile = getOperatorContext().getSourceTile(getTargetBand(), destRect);
+            } else {
+                targetTile = null;
+            }
+            // computeTile() may have been deactivated
+            if (targetTile != null && getOperatorContext().isComputeTileMethodUsable()) {
+                //System.out.println("compute "+getOperatorContext().getOperator().getSpi().getOperatorAlias()
+                //    + ":"+targetBand.getName()+ " ("
+                //    + targetTile.getMinX()+","+targetTile.getMinY()+") "
+                //    + targetTile.getWidth()+" x "+ targetTile.getHeight());  //NESTMOD
+                getOperatorContext().getOperator().computeTile(getTargetBand(), targetTile, ProgressMonitor.NULL);
+            }
+        } finally {
+            sourceWaitNanos = getOperatorContext().endTileComputation(this);
+            if (tracked) {
+                ConsumerAwareTileCache.endComputation();
+            }
         }
 
-        getOperatorContext().fireTileComputed(this, destRect, startNanos);
+        getOperatorContext().fireTileComputed(this, destRect, startNanos, sourceWaitNanos);
     }
 
     protected boolean requiresAllBands() {
@@ -18,6 +18,7 @@ package org.esa.beam.framework.gpf.internal;
 import com.bc.ceres.core.Assert;
 import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.Tile;
 import org.esa.beam.jai.ImageManager;
 import org.esa.beam.util.ImageUtils;
@@ -32,6 +33,9 @@ import java.awt.image.WritableRaster;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class overrides computeTile in order to synchronise it for a given tile index.
@@ -42,9 +46,9 @@ public class OperatorImageTileStack extends OperatorImage {
     /**
      * The array of locks is the same for all images contributing to a given tile stack.
      */
-    private final Object[][] locks;
+    private final Lock[][] locks;
 
-    public OperatorImageTileStack(Band targetBand, OperatorContext operatorContext, Object[][] locks) {
+    public OperatorImageTileStack(Band targetBand, OperatorContext operatorContext, Lock[][] locks) {
         super(targetBand, operatorContext);
         this.locks = locks;
     }
@@ -64,13 +68,14 @@ public class OperatorImageTileStack extends OperatorImage {
 
     @Override
     public Raster computeTile(int tileX, int tileY) {
-        Object tileLock = locks[tileX][tileY];
+        Lock tileLock = locks[tileX][tileY];
 
         // Lock to prevent multiple simultaneous computations.
         // Q: Why should multiple threads want to compute the same tile index?
         // A: 
         // todo - check: can we avoid waiting here?
-        synchronized (tileLock) {
+        lockTile(tileLock);
+        try {
             Raster tileFromCache = getTileFromCache(tileX, tileY);
             if (tileFromCache != null) {
                 return tileFromCache;
@@ -87,6 +92,43 @@ public class OperatorImageTileStack extends OperatorImage {
                 computeRect((PlanarImage[]) null, dest, destRect);
                 return dest;
             }
+        } finally {
+            tileLock.unlock();
+        }
+    }
+
+    /**
+     * Acquires the lock of a tile index. If the lock is held by another thread, the wait is announced
+     * via {@link ForkJoinPool#managedBlock}, so that a work-stealing executor keeps its parallelism.
+     */
+    private static void lockTile(final Lock tileLock) {
+        if (tileLock.tryLock()) {
+            return;
+        }
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                private boolean locked;
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    if (!locked) {
+                        tileLock.lockInterruptibly();
+                        locked = true;
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    if (!locked) {
+                        locked = tileLock.tryLock();
+                    }
+                    return locked;
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperatorException(e);
         }
     }
 
@@ -94,24 +136,35 @@ public class OperatorImageTileStack extends OperatorImage {
     protected void computeRect(PlanarImage[] ignored, WritableRaster tile, Rectangle destRect) {
 
         long startNanos = System.nanoTime();
+        long sourceWaitNanos = 0L;
 
         Band[] targetBands = getOperatorContext().getTargetProduct().getBands();
         Map<Band, Tile> targetTiles = new HashMap<Band, Tile>(targetBands.length * 2);
         Map<Band, WritableRaster> writableRasters = new HashMap<Band, WritableRaster>(targetBands.length);
 
-        for (Band band : targetBands) {
-            if (band == getTargetBand() || getOperatorContext().isComputingImageOf(band)) {
-                WritableRaster tileRaster = getWritableRaster(band, tile);
-                writableRasters.put(band, tileRaster);
-                Tile targetTile = createTargetTile(band, tileRaster, destRect);
-                targetTiles.put(band, targetTile);
-            } else if (requiresAllBands()) {
-                Tile targetTile = getOperatorContext().getSourceTile(band, destRect);
-                targetTiles.put(band, targetTile);
+        // all images of the tile stack consume their sources as one
+        final boolean tracked = ConsumerAwareTileCache.beginComputation(this, getOperatorContext(), destRect);
+        getOperatorContext().beginTileComputation(this);
+        try {
+            for (Band band : targetBands) {
+                if (band == getTargetBand() || getOperatorContext().isComputingImageOf(band)) {
+                    WritableRaster tileRaster = getWritableRaster(band, tile);
+                    writableRasters.put(band, tileRaster);
+                    Tile targetTile = createTargetTile(band, tileRaster, destRect);
+                    targetTiles.put(band, targetTile);
+                } else if (requiresAllBands()) {
+                    Tile targetTile = getOperatorContext().getSourceTile(band, destRect);
+                    targetTiles.put(band, targetTile);
+                }
             }
-        }
 
-        getOperatorContext().getOperator().computeTileStack(targetTiles, destRect, ProgressMonitor.NULL);
+            getOperatorContext().getOperator().computeTileStack(targetTiles, destRect, ProgressMonitor.NULL);
+        } finally {
+            sourceWaitNanos = getOperatorContext().endTileComputation(this);
+            if (tracked) {
+                ConsumerAwareTileCache.endComputation();
+            }
+        }
 
         for (Entry<Band, WritableRaster> entry : writableRasters.entrySet()) {
             Band band = entry.getKey();
@@ -127,7 +180,7 @@ public class OperatorImageTileStack extends OperatorImage {
             /*
             getOperatorContext().addTileToLocalCache(band, tileX, tileY, writableRaster);
             */
-            getOperatorContext().fireTileComputed(operatorImage, destRect, startNanos);
+            getOperatorContext().fireTileComputed(operatorImage, destRect, startNanos, sourceWaitNanos);
         }
     }
 
@@ -175,15 +228,15 @@ public class OperatorImageTileStack extends OperatorImage {
      * Create a lock objects for each tile. These locks are used by all images in the tile stack.
      * This prevent multiple computation of tiles.
      */
-    static Object[][] createLocks(int width, int height, Dimension tileSize) {
+    static Lock[][] createLocks(int width, int height, Dimension tileSize) {
         int tw = tileSize.width;
         int numXTiles = PlanarImage.XToTileX(0 + width - 1, 0, tw) - PlanarImage.XToTileX(0, 0, tw) + 1;
         int th = tileSize.height;
         int numYTiles = PlanarImage.YToTileY(0 + height - 1, 0, th) - PlanarImage.YToTileY(0, 0, th) + 1;
-        final Object[][] lock = new Object[numXTiles][numYTiles];
+        final Lock[][] lock = new Lock[numXTiles][numYTiles];
         for (int x = 0; x < numXTiles; x++) {
             for (int y = 0; y < numYTiles; y++) {
-                lock[x][y] = new Object();
+                lock[x][y] = new ReentrantLock();
             }
         }
         return lock;
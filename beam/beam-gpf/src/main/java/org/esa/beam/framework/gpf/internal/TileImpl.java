@@ -37,8 +37,8 @@ import java.util.Iterator;
 public final class TileImpl implements Tile {
 
     private final RasterDataNode rasterDataNode;
-    private final Raster raster;
-    private final WritableRaster writableRaster;
+    private Raster raster;
+    private WritableRaster writableRaster;
     private final int minX;
     private final int minY;
     private final int maxX;
@@ -46,6 +46,7 @@ public final class TileImpl implements Tile {
     private final int width;
     private final int height;
     private final boolean target;
+    private boolean shared;
     private final boolean scaled;
     private final int scanlineOffset;
     private final int scanlineStride;
@@ -70,9 +71,20 @@ public final class TileImpl implements Tile {
     }
 
     public TileImpl(RasterDataNode rasterDataNode, Raster raster, Rectangle rectangle, boolean target) {
+        this(rasterDataNode, raster, rectangle, target, false);
+    }
+
+    /**
+     * @param shared if true, the raster is owned by someone else, e.g. it is a cached tile of the
+     *               source image, and its data buffer must have an offset of 0. The samples and the
+     *               data buffer are then read directly from the raster, which must not be modified through
+     *               the data buffer. The raster is copied before a sample is set, and
+     *               {@link #getRawSamples()} always returns a copy.
+     */
+    TileImpl(RasterDataNode rasterDataNode, Raster raster, Rectangle rectangle, boolean target, boolean shared) {
         //Assert.notNull(rasterDataNode, "rasterDataNode");
         //Assert.argument(raster.getNumBands() == 1, "raster");
-        WritableRaster writableRaster = raster instanceof WritableRaster ? (WritableRaster) raster : null;
+        WritableRaster writableRaster = !shared && raster instanceof WritableRaster ? (WritableRaster) raster : null;
         //if (target) {
         //    Assert.argument(writableRaster != null, "raster");
         //}
@@ -81,6 +93,7 @@ public final class TileImpl implements Tile {
         //Assert.argument(sm.getNumBands() == 1, "raster");
         DataBuffer db = raster.getDataBuffer();
         //Assert.argument(db.getNumBanks() == 1, "raster");
+        Assert.argument(!shared || db.getOffset() == 0, "raster");
         //Assert.notNull(rectangle, "rectangle");
 
         this.rasterDataNode = rasterDataNode;
@@ -93,6 +106,7 @@ public final class TileImpl implements Tile {
         this.width = rectangle.width;
         this.height = rectangle.height;
         this.target = target;
+        this.shared = shared;
         // todo - optimize getSample()/setSample() methods by using a Closure that either honours scaling / signedByte. (nf 04.2010)
         this.scaled = rasterDataNode.isScalingApplied();
 
@@ -191,6 +205,34 @@ public final class TileImpl implements Tile {
         return scanlineOffset + (x - minX) + (y - minY) * scanlineStride;
     }
 
+    /**
+     * Replaces a shared raster by a private copy with the same layout, so that the
+     * data buffer indexes remain valid and the owner's samples are never modified.
+     */
+    private synchronized void copyOnWrite() {
+        if (shared) {
+            final WritableRaster copy = Raster.createWritableRaster(raster.getSampleModel(),
+                    new Point(raster.getSampleModelTranslateX(), raster.getSampleModelTranslateY()));
+            copy.setRect(raster);
+            raster = copy;
+            writableRaster = copy;
+            shared = false;
+            dataBuffer = null;
+            dataBufferByte = null;
+            dataBufferShort = null;
+            dataBufferInt = null;
+            dataBufferFloat = null;
+            dataBufferDouble = null;
+        }
+    }
+
+    private WritableRaster getWritableRaster() {
+        if (shared) {
+            copyOnWrite();
+        }
+        return writableRaster;
+    }
+
     @Override
     public synchronized ProductData getDataBuffer() {
         if (dataBuffer == null) {
@@ -257,7 +299,7 @@ public final class TileImpl implements Tile {
 
     @Override
     public synchronized ProductData getRawSamples() {
-        if (rawSamples == null) {
+        if (rawSamples == null && !shared) {
             ProductData dataBuffer = getDataBuffer();
             if (width * height == dataBuffer.getNumElems()) {
                 rawSamples = dataBuffer;
@@ -437,7 +479,7 @@ public final class TileImpl implements Tile {
     @Override
     public void setSample(int x, int y, int sample) {
         sample = (int) Math.floor(getSampleConverter().toRaw(sample) + 0.5);
-        writableRaster.setSample(x, y, 0, sample);
+        getWritableRaster().setSample(x, y, 0, sample);
     }
 
     @Override
@@ -449,7 +491,7 @@ public final class TileImpl implements Tile {
     @Override
     public void setSample(int x, int y, float sample) {
         sample = (float) getSampleConverter().toRaw(sample);
-        writableRaster.setSample(x, y, 0, sample);
+        getWritableRaster().setSample(x, y, 0, sample);
     }
 
 
@@ -462,7 +504,7 @@ public final class TileImpl implements Tile {
     @Override
     public void setSample(int x, int y, double sample) {
         sample = getSampleConverter().toRaw(sample);
-        writableRaster.setSample(x, y, 0, sample);
+        getWritableRaster().setSample(x, y, 0, sample);
     }
 
     @Override
@@ -475,7 +517,7 @@ public final class TileImpl implements Tile {
     public void setSample(int x, int y, int bitIndex, boolean sample) {
         long longSample = raster.getSample(x, y, 0);
         long newSample = BitSetter.setFlag(longSample, bitIndex, sample);
-        writableRaster.setSample(x, y, 0, newSample);
+        getWritableRaster().setSample(x, y, 0, newSample);
     }
 
     @Override
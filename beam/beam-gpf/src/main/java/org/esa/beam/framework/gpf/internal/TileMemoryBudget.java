@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.gpf.internal;
+
+import com.bc.ceres.glevel.MultiLevelImage;
+import org.esa.beam.framework.dataio.ProductReader;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.jai.ImageManager;
+import org.esa.beam.util.logging.BeamLogManager;
+
+import javax.media.jai.JAI;
+import javax.media.jai.TileCache;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Limits the heap used by the working sets of concurrently computed tiles.
+ * <p/>
+ * Operators declare the memory a tile computation allocates besides the target tiles via
+ * {@link Operator#estimateTileWorkingSetSize(Rectangle)}. Before a tile of a target product is
+ * computed, the executors reserve the working set of the tile's whole processing chain, see
+ * {@link #estimateTileWorkingSetSize(RenderedImage[])}, and wait while the tiles in progress leave
+ * too little room. A tile whose working set exceeds the whole budget is computed alone.
+ * <p/>
+ * The default instance is shared by all executors of the JVM. Its capacity is given in bytes by the
+ * system property {@link GPF#TILE_MEMORY_BUDGET_PROPERTY}, 0 meaning no limit. By default it is half
+ * of the heap not taken by the JAI tile cache.
+ *
+ * @since NEST 5.1
+ */
+public class TileMemoryBudget {
+
+    private static final long LOG_INTERVAL_MS = 10000L;
+    private static final long MB = 1024L * 1024L;
+
+    private static TileMemoryBudget defaultInstance;
+    private static String defaultInstanceProperty;
+
+    private final long capacity;
+    private final ThreadLocal<long[]> threadReservation = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            // nesting depth and reserved bytes
+            return new long[2];
+        }
+    };
+    private long reserved;
+    private long delayedTileCount;
+    private int delayedSinceLastLog;
+    private long lastLogMillis;
+
+    /**
+     * @param capacity the capacity in bytes, 0 or less for no limit
+     */
+    public TileMemoryBudget(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets the budget shared by the executors. It is recreated if the value of the system property
+     * {@link GPF#TILE_MEMORY_BUDGET_PROPERTY} has changed since.
+     *
+     * @return the default budget
+     */
+    public static synchronized TileMemoryBudget getDefaultInstance() {
+        final String property = System.getProperty(GPF.TILE_MEMORY_BUDGET_PROPERTY);
+        if (defaultInstance == null || !equal(property, defaultInstanceProperty)) {
+            defaultInstance = new TileMemoryBudget(getDefaultCapacity(property));
+            defaultInstanceProperty = property;
+        }
+        return defaultInstance;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getReserved() {
+        return reserved;
+    }
+
+    /**
+     * @return the number of reservations which had to wait so far
+     */
+    public synchronized long getDelayedTileCount() {
+        return delayedTileCount;
+    }
+
+    /**
+     * Reserves memory for the computation of a tile, waiting while it does not fit into the budget.
+     * The reservation may be released by another thread, e.g. by a {@link javax.media.jai.TileComputationListener}.
+     * If called from a {@link ForkJoinPool} worker, the wait is announced to the pool via
+     * {@link ForkJoinPool#managedBlock}, so that the pool keeps its parallelism.
+     *
+     * @param bytes the working set of the tile
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire(final long bytes) throws InterruptedException {
+        if (bytes <= 0 || tryAcquire(bytes)) {
+            return;
+        }
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            private boolean acquired;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                if (!acquired) {
+                    acquireBlocking(bytes);
+                    acquired = true;
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                if (!acquired) {
+                    acquired = tryAcquire(bytes);
+                }
+                return acquired;
+            }
+        });
+    }
+
+    private synchronized boolean tryAcquire(long bytes) {
+        if (!isAdmissible(bytes)) {
+            return false;
+        }
+        reserved += bytes;
+        return true;
+    }
+
+    private synchronized void acquireBlocking(long bytes) throws InterruptedException {
+        if (!isAdmissible(bytes)) {
+            logDelay(bytes);
+            do {
+                wait();
+            } while (!isAdmissible(bytes));
+        }
+        reserved += bytes;
+    }
+
+    /**
+     * Releases a reservation made by {@link #acquire(long)}.
+     *
+     * @param bytes the working set of the tile
+     */
+    public synchronized void release(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        reserved = Math.max(0L, reserved - bytes);
+        notifyAll();
+    }
+
+    /**
+     * Reserves memory for the computation of a tile by the current thread. If the thread already holds
+     * such a reservation, the call returns immediately, since the thread may be helping with other work
+     * while it waits for the tile it reserved for, and waiting would then deadlock.
+     * Each call must be followed by a call to {@link #releaseForCurrentThread()} on the same thread.
+     *
+     * @param bytes the working set of the tile
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquireForCurrentThread(long bytes) throws InterruptedException {
+        final long[] reservation = threadReservation.get();
+        if (reservation[0] == 0) {
+            acquire(bytes);
+            reservation[1] = bytes;
+        }
+        reservation[0]++;
+    }
+
+    /**
+     * Releases the reservation of the current thread made by {@link #acquireForCurrentThread(long)},
+     * once the outermost call is matched.
+     */
+    public void releaseForCurrentThread() {
+        final long[] reservation = threadReservation.get();
+        if (reservation[0] > 0 && --reservation[0] == 0) {
+            release(reservation[1]);
+            reservation[1] = 0L;
+        }
+    }
+
+    /**
+     * Estimates the working set of computing one tile of each of the given images, that is the sum of
+     * the working sets declared for a full tile by the operators computing the images and by all
+     * operators upstream of them. Each operator is counted once.
+     *
+     * @param images the images to be computed
+     * @return the working set in bytes, 0 if no operator declares one
+     */
+    public static long estimateTileWorkingSetSize(RenderedImage[] images) {
+        final Set<OperatorContext> contexts =
+                Collections.newSetFromMap(new IdentityHashMap<OperatorContext, Boolean>());
+        for (RenderedImage image : images) {
+            final OperatorContext context = getOperatorContext(image);
+            if (context != null) {
+                collectOperatorContexts(context, contexts);
+            }
+        }
+        long size = 0L;
+        for (OperatorContext context : contexts) {
+            final Product targetProduct = context.getTargetProduct();
+            final Dimension tileSize = ImageManager.getPreferredTileSize(targetProduct);
+            final Rectangle tileRectangle = new Rectangle(Math.min(tileSize.width, targetProduct.getSceneRasterWidth()),
+                                                          Math.min(tileSize.height, targetProduct.getSceneRasterHeight()));
+            size += Math.max(0L, context.getOperator().estimateTileWorkingSetSize(tileRectangle));
+        }
+        return size;
+    }
+
+    private static OperatorContext getOperatorContext(RenderedImage image) {
+        final RenderedImage level0 = image instanceof MultiLevelImage ? ((MultiLevelImage) image).getImage(0) : image;
+        return level0 instanceof OperatorImage ? ((OperatorImage) level0).getOperatorContext() : null;
+    }
+
+    private static void collectOperatorContexts(OperatorContext context, Set<OperatorContext> contexts) {
+        if (!contexts.add(context)) {
+            return;
+        }
+        for (Product sourceProduct : context.getSourceProducts()) {
+            final ProductReader productReader = sourceProduct.getProductReader();
+            if (productReader instanceof OperatorProductReader) {
+                collectOperatorContexts(((OperatorProductReader) productReader).getOperatorContext(), contexts);
+            }
+        }
+    }
+
+    private boolean isAdmissible(long bytes) {
+        return capacity <= 0 || reserved == 0 || reserved + bytes <= capacity;
+    }
+
+    private void logDelay(long bytes) {
+        delayedTileCount++;
+        delayedSinceLastLog++;
+        final long now = System.currentTimeMillis();
+        if (now - lastLogMillis >= LOG_INTERVAL_MS) {
+            BeamLogManager.getSystemLogger().info(MessageFormat.format(
+                    "Tile memory budget of {0} MB exhausted ({1} MB reserved, {2} MB requested), " +
+                    "delayed {3} tile(s) since last report",
+                    capacity / MB, reserved / MB, bytes / MB, delayedSinceLastLog));
+            lastLogMillis = now;
+            delayedSinceLastLog = 0;
+        }
+    }
+
+    private static long getDefaultCapacity(String property) {
+        if (property != null) {
+            try {
+                return Long.parseLong(property.trim());
+            } catch (NumberFormatException e) {
+                BeamLogManager.getSystemLogger().warning("Invalid tile memory budget '" + property + "'");
+            }
+        }
+        final long maxMemory = Runtime.getRuntime().maxMemory();
+        final TileCache tileCache = JAI.getDefaultInstance().getTileCache();
+        final long tileCacheCapacity = tileCache != null ? tileCache.getMemoryCapacity() : 0L;
+        return Math.max(maxMemory - tileCacheCapacity, maxMemory / 4) / 2;
+    }
+
+    private static boolean equal(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.gpf.internal;
+
+import com.bc.ceres.core.ProgressMonitor;
+import com.bc.ceres.glevel.MultiLevelImage;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.OperatorException;
+
+import javax.media.jai.JAI;
+import javax.media.jai.OpImage;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.util.ImagingListener;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes all tiles of a set of images on a work-stealing {@link ForkJoinPool}.
+ * <p/>
+ * The tile grid is split recursively, first into stripes of {@link #BLOCK_TILE_ROWS} tile rows and
+ * then into blocks of at most {@link #BLOCK_TILE_COUNT} tiles. A worker computes the tiles of a block
+ * one after another for all images, so neighbouring tiles and their overlapping source regions are
+ * processed while they are still in the tile cache. Idle workers steal the largest pending blocks
+ * from busy ones, so a single slow tile only delays the thread computing it instead of a whole
+ * tile row. Since stripes span entire tile rows, rows are still completed progressively, which keeps
+ * the row buffer of the {@code WriteOp} small.
+ * <p/>
+ * Optionally, dependency images sharing the tile layout of the target images may be given.
+ * Their tile at the same index is forked and computed before the target tile is pulled, so
+ * that the target tile finds its sources in the cache.
+ * <p/>
+ * If a tile working set is given, it is reserved from the {@link TileMemoryBudget} while the tiles
+ * of a tile index are computed, so fewer workers are busy when memory is short. Waits for the budget
+ * and for tile stacks computed by other workers are announced to the pool as managed blocks, so the
+ * pool may activate spare workers meanwhile.
+ *
+ * @since NEST 5.1
+ */
+public class WorkStealingTileExecutor {
+
+    /**
+     * Maximum number of tile rows in a block computed by a single worker.
+     */
+    public static final int BLOCK_TILE_ROWS = 2;
+    /**
+     * Maximum number of tiles in a block computed by a single worker.
+     */
+    public static final int BLOCK_TILE_COUNT = 4;
+
+    private static final long PROGRESS_INTERVAL_MS = 250L;
+
+    private final PlanarImage[] images;
+    private final PlanarImage[] dependencies;
+    private final int tileCountX;
+    private final int tileCountY;
+    private final int parallelism;
+    private final AtomicInteger tilesDone = new AtomicInteger();
+    private OperatorExecutor.TileFilter tileFilter;
+    private long tileWorkingSetSize;
+    private volatile OperatorException error = null;
+
+    public WorkStealingTileExecutor(PlanarImage[] images, int tileCountX, int tileCountY, int parallelism) {
+        this(images, new PlanarImage[0], tileCountX, tileCountY, parallelism);
+    }
+
+    public WorkStealingTileExecutor(PlanarImage[] images, PlanarImage[] dependencies,
+                                    int tileCountX, int tileCountY, int parallelism) {
+        this.images = images;
+        this.dependencies = dependencies;
+        this.tileCountX = tileCountX;
+        this.tileCountY = tileCountY;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * @param tileFilter a filter for the tiles to be computed, may be {@code null}
+     * @since NEST 5.1
+     */
+    public void setTileFilter(OperatorExecutor.TileFilter tileFilter) {
+        this.tileFilter = tileFilter;
+    }
+
+    /**
+     * @param tileWorkingSetSize the memory reserved while the tiles of a tile index are computed,
+     *                           see {@link TileMemoryBudget#estimateTileWorkingSetSize}
+     * @since NEST 5.1
+     */
+    public void setTileWorkingSetSize(long tileWorkingSetSize) {
+        this.tileWorkingSetSize = tileWorkingSetSize;
+    }
+
+    public void execute(ProgressMonitor pm) {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        final ImagingListener imagingListener = JAI.getDefaultInstance().getImagingListener();
+        JAI.getDefaultInstance().setImagingListener(new GPFImagingListener());
+        pm.beginTask("Executing operator...", tileCountX * tileCountY * images.length);
+
+        try {
+            final ForkJoinTask<Void> task = pool.submit(new TileBlockTask(0, 0, tileCountX, tileCountY));
+            int tilesReported = 0;
+            while (true) {
+                try {
+                    task.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    // still computing
+                } catch (ExecutionException e) {
+                    setError(e.getCause());
+                    break;
+                } catch (InterruptedException e) {
+                    setError(e);
+                    break;
+                }
+                tilesReported = reportProgress(pm, tilesReported);
+                if (pm.isCanceled()) {
+                    setError(new OperatorException("Operation canceled."));
+                }
+                if (error != null) {
+                    break;
+                }
+            }
+            reportProgress(pm, tilesReported);
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            // blocks still queued return immediately once an error is set
+            pool.shutdown();
+            awaitTermination(pool);
+            pm.done();
+            JAI.getDefaultInstance().setImagingListener(imagingListener);
+        }
+    }
+
+    /**
+     * Collects the images of the given source products which share the tile layout of the
+     * given target images and can therefore be computed ahead of the target tiles.
+     * Images without a tile cache are ignored, since their prefetched tiles would be lost.
+     *
+     * @param sourceProducts the source products
+     * @param images         the target images
+     * @return the dependency images, may be empty
+     */
+    public static PlanarImage[] getDependencyImages(Product[] sourceProducts, PlanarImage[] images) {
+        final List<PlanarImage> dependencyList = new ArrayList<PlanarImage>();
+        if (images.length == 0) {
+            return new PlanarImage[0];
+        }
+        final PlanarImage reference = images[0];
+        for (Product sourceProduct : sourceProducts) {
+            for (Band band : sourceProduct.getBands()) {
+                if (!band.isSourceImageSet()) {
+                    continue;
+                }
+                final PlanarImage image = band.getSourceImage();
+                if (isCached(image) && hasSameTileLayout(image, reference) &&
+                    !dependencyList.contains(image) && !contains(images, image)) {
+                    dependencyList.add(image);
+                }
+            }
+        }
+        return dependencyList.toArray(new PlanarImage[dependencyList.size()]);
+    }
+
+    private static boolean isCached(RenderedImage image) {
+        final RenderedImage level0 = image instanceof MultiLevelImage
+                                     ? ((MultiLevelImage) image).getImage(0) : image;
+        return level0 instanceof OpImage && ((OpImage) level0).getTileCache() != null;
+    }
+
+    private static boolean hasSameTileLayout(PlanarImage image, PlanarImage reference) {
+        return image.getMinX() == reference.getMinX() &&
+               image.getMinY() == reference.getMinY() &&
+               image.getWidth() == reference.getWidth() &&
+               image.getHeight() == reference.getHeight() &&
+               image.getTileWidth() == reference.getTileWidth() &&
+               image.getTileHeight() == reference.getTileHeight();
+    }
+
+    private static boolean contains(PlanarImage[] images, PlanarImage image) {
+        for (PlanarImage i : images) {
+            if (i == image) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int reportProgress(ProgressMonitor pm, int tilesReported) {
+        final int done = tilesDone.get();
+        if (done > tilesReported) {
+            pm.worked(done - tilesReported);
+        }
+        return done;
+    }
+
+    private void setError(Throwable t) {
+        if (error == null) {
+            if (t instanceof OperatorException) {
+                error = (OperatorException) t;
+            } else {
+                error = new OperatorException("Operation failed.", t);
+            }
+        }
+    }
+
+    private static void awaitTermination(ForkJoinPool pool) {
+        try {
+            while (!pool.awaitTermination(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                // wait for the tiles in progress
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void computeTile(int tileX, int tileY) {
+        if (tileFilter != null && !isAnyTileAccepted(tileX, tileY)) {
+            tilesDone.addAndGet(images.length);
+            return;
+        }
+        final TileMemoryBudget memoryBudget = TileMemoryBudget.getDefaultInstance();
+        try {
+            memoryBudget.acquireForCurrentThread(tileWorkingSetSize);
+        } catch (InterruptedException e) {
+            setError(e);
+            return;
+        }
+        try {
+            computeTiles(tileX, tileY);
+        } finally {
+            memoryBudget.releaseForCurrentThread();
+        }
+    }
+
+    private void computeTiles(int tileX, int tileY) {
+        if (dependencies.length > 0) {
+            final List<DependencyTask> dependencyTasks = new ArrayList<DependencyTask>(dependencies.length);
+            for (PlanarImage dependency : dependencies) {
+                dependencyTasks.add(new DependencyTask(dependency, tileX, tileY));
+            }
+            ForkJoinTask.invokeAll(dependencyTasks);
+        }
+        for (final PlanarImage image : images) {
+            if (error != null) {
+                return;
+            }
+            if (tileFilter != null && !tileFilter.accept(image, tileX, tileY)) {
+                tilesDone.incrementAndGet();
+                continue;
+            }
+            try {
+                /////////////////////////////////////////////////////////////////////
+                //
+                // Note: GPF pull-processing is triggered here!!!
+                //
+                image.getTile(tileX, tileY);
+                //
+                /////////////////////////////////////////////////////////////////////
+            } catch (Throwable t) {
+                setError(t);
+                return;
+            }
+            tilesDone.incrementAndGet();
+        }
+    }
+
+    private boolean isAnyTileAccepted(int tileX, int tileY) {
+        for (PlanarImage image : images) {
+            if (tileFilter.accept(image, tileX, tileY)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class TileBlockTask extends RecursiveAction {
+
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+
+        TileBlockTask(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        protected void compute() {
+            if (error != null || width <= 0 || height <= 0) {
+                return;
+            }
+            if (height > BLOCK_TILE_ROWS) {
+                final int h1 = height / 2;
+                invokeAll(new TileBlockTask(x, y, width, h1),
+                          new TileBlockTask(x, y + h1, width, height - h1));
+            } else if (width * height > BLOCK_TILE_COUNT && width > 1) {
+                final int w1 = width / 2;
+                invokeAll(new TileBlockTask(x, y, w1, height),
+                          new TileBlockTask(x + w1, y, width - w1, height));
+            } else {
+                for (int tileY = y; tileY < y + height; tileY++) {
+                    for (int tileX = x; tileX < x + width; tileX++) {
+                        if (error != null) {
+                            return;
+                        }
+                        computeTile(tileX, tileY);
+                    }
+                }
+            }
+        }
+    }
+
+    private class DependencyTask extends RecursiveAction {
+
+        private final PlanarImage image;
+        private final int tileX;
+        private final int tileY;
+
+        DependencyTask(PlanarImage image, int tileX, int tileY) {
+            this.image = image;
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        @Override
+        protected void compute() {
+            if (error != null) {
+                return;
+            }
+            try {
+                image.getTile(tileX, tileY);
+            } catch (Throwable t) {
+                setError(t);
+            }
+        }
+    }
+
+    private class GPFImagingListener implements ImagingListener {
+
+        @Override
+        public boolean errorOccurred(String message, Throwable thrown, Object where, boolean isRetryable)
+                throws RuntimeException {
+            if (error == null && !thrown.getClass().getSimpleName().equals("MediaLibLoadException")) {
+                error = new OperatorException(thrown);
+            }
+            return false;
+        }
+    }
+}
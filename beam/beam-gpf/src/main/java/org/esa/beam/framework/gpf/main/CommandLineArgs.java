@@ -50,7 +50,11 @@ class CommandLineArgs {
     private boolean printAllHelp = false;
     private boolean stackTraceDump;
     private boolean clearCacheAfterRowWrite;
+    private boolean workStealing;
+    private boolean resume;
+    private String metricsFilepath;
     private long tileCacheCapacity;
+    private long tileMemoryBudget = -1L;
 
     private int tileSchedulerParallelism;
 
@@ -94,6 +98,10 @@ class CommandLineArgs {
                     printAllHelp = true;
                 } else if (arg.equals("-x")) {
                     clearCacheAfterRowWrite = true;
+                } else if (arg.equals("-w")) {
+                    workStealing = true;
+                } else if (arg.equals("-r")) {
+                    resume = true;
                 } else if (arg.equals("-e")) {
                     // already parsed
                 } else if (arg.equals("-t")) {
@@ -111,6 +119,12 @@ class CommandLineArgs {
                 } else if (arg.equals("-c")) {
                     tileCacheCapacity = parseOptionArgumentBytes(arg, i);
                     i++;
+                } else if (arg.equals("-budget")) {
+                    tileMemoryBudget = parseOptionArgumentBytes(arg, i);
+                    i++;
+                } else if (arg.equals("-metrics")) {
+                    metricsFilepath = parseOptionArgument(arg, i);
+                    i++;
                 } else if (arg.equals("-inFolder")) {
                     inFolderPath = parseOptionArgument(arg, i);
                     i++;
@@ -201,6 +215,25 @@ class CommandLineArgs {
         return clearCacheAfterRowWrite;
     }
 
+    public boolean isWorkStealing() {
+        return workStealing;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * @return the heap budget for the working sets of concurrently computed tiles in bytes, -1 if not given
+     */
+    public long getTileMemoryBudget() {
+        return tileMemoryBudget;
+    }
+
+    public String getMetricsFilepath() {
+        return metricsFilepath;
+    }
+
     public SortedMap<String, String> getParameterMap() {
         return parameterMap;
     }
@@ -35,6 +35,10 @@ import org.esa.beam.framework.gpf.graph.Graph;
 import org.esa.beam.framework.gpf.graph.GraphException;
 import org.esa.beam.framework.gpf.graph.Node;
 import org.esa.beam.framework.gpf.graph.NodeSource;
+import org.esa.beam.framework.gpf.internal.OperatorContext;
+import org.esa.beam.framework.gpf.internal.OperatorExecutor;
+import org.esa.beam.framework.gpf.internal.TileMemoryBudget;
+import org.esa.beam.framework.gpf.monitor.TileComputationMetrics;
 import org.esa.beam.gpf.operators.standard.ReadOp;
 import org.esa.beam.gpf.operators.standard.WriteOp;
 import org.esa.beam.util.logging.BeamLogManager;
@@ -149,8 +153,57 @@ class CommandLineTool {
         if (parallelism > 0) {
             JAI.getDefaultInstance().getTileScheduler().setParallelism(parallelism);
         }
+        // the properties only apply to this run, e.g. of a job of the GPTDaemon
+        final Map<String, String> previousProperties = new HashMap<String, String>();
+        try {
+            if (lineArgs.isWorkStealing()) {
+                setSystemProperty(previousProperties, GPF.EXECUTION_ORDER_PROPERTY,
+                                  OperatorExecutor.ExecutionOrder.WORK_STEALING.name());
+            }
+            if (lineArgs.isResume()) {
+                setSystemProperty(previousProperties, GPF.RESUME_WRITE_PROPERTY, "true");
+            }
+            if (lineArgs.getTileMemoryBudget() >= 0) {
+                setSystemProperty(previousProperties, GPF.TILE_MEMORY_BUDGET_PROPERTY,
+                                  String.valueOf(lineArgs.getTileMemoryBudget()));
+            }
+            if (lineArgs.getMetricsFilepath() != null) {
+                setSystemProperty(previousProperties, GPF.TILE_COMPUTATION_OBSERVER_PROPERTY,
+                                  TileComputationMetrics.class.getName());
+                setSystemProperty(previousProperties, GPF.TILE_COMPUTATION_METRICS_FILE_PROPERTY,
+                                  lineArgs.getMetricsFilepath());
+            }
+            execute(lineArgs);
+        } finally {
+            if (lineArgs.getMetricsFilepath() != null) {
+                // writes the metrics file and unregisters the MBean
+                OperatorContext.stopTileComputationObservation();
+            }
+            restoreSystemProperties(previousProperties);
+        }
+    }
+
+    private static void setSystemProperty(Map<String, String> previousProperties, String name, String value) {
+        if (!previousProperties.containsKey(name)) {
+            previousProperties.put(name, System.getProperty(name));
+        }
+        System.setProperty(name, value);
+    }
+
+    private static void restoreSystemProperties(Map<String, String> previousProperties) {
+        for (Entry<String, String> entry : previousProperties.entrySet()) {
+            if (entry.getValue() != null) {
+                System.setProperty(entry.getKey(), entry.getValue());
+            } else {
+                System.clearProperty(entry.getKey());
+            }
+        }
+    }
+
+    private void execute(CommandLineArgs lineArgs) throws ValidationException, ConversionException, IOException, GraphException {
         BeamLogManager.getSystemLogger().info(MessageFormat.format("JAI tile cache size is {0} MB", JAI.getDefaultInstance().getTileCache().getMemoryCapacity() / (1024*1024)));
         BeamLogManager.getSystemLogger().info(MessageFormat.format("JAI tile scheduler parallelism is {0}", JAI.getDefaultInstance().getTileScheduler().getParallelism()));
+        BeamLogManager.getSystemLogger().info(MessageFormat.format("Tile memory budget is {0} MB", TileMemoryBudget.getDefaultInstance().getCapacity() / (1024*1024)));
 
         final ProcessTimeMonitor timeMonitor = new ProcessTimeMonitor();
         timeMonitor.start();
@@ -251,7 +304,7 @@ class CommandLineTool {
             }
         }
         final long duration = timeMonitor.stop();
-        System.out.println("Processing completed in "+ ProcessTimeMonitor.formatDuration(duration));
+        commandLineContext.print("Processing completed in "+ ProcessTimeMonitor.formatDuration(duration) + "\n");
     }
 
     private static void findAndReplace(final DomElement param, final String name, final String value) {
@@ -18,6 +18,7 @@ package org.esa.beam.framework.gpf.main;
 
 import org.esa.beam.util.SystemUtils;
 
+import java.util.Arrays;
 import java.util.Locale;
 
 /**
@@ -31,6 +32,9 @@ public class GPT {
 
     public static void main(String[] args) throws Exception {
         try {
+            if (args.length > 0 && args[0].equals("-submit")) {
+                System.exit(GPTClient.run(Arrays.copyOfRange(args, 1, args.length)));
+            }
             run(args);
         } catch (Exception e) {
             System.err.println("\nError: " + e.getMessage());
@@ -44,6 +48,10 @@ public class GPT {
         }
         Locale.setDefault(Locale.ENGLISH); // Force usage of english locale
         SystemUtils.init3rdPartyLibs(GPT.class.getClassLoader());
+        if (args.length > 0 && args[0].equals("-daemon")) {
+            GPTDaemon.run(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         final CommandLineTool commandLineTool = new CommandLineTool();
         commandLineTool.run(args);
     }
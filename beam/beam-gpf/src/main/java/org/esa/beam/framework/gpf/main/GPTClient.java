@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.main;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Submits a job to a running {@link GPTDaemon} and prints its output.
+ * Only depends on the JDK, so that it starts without loading any GPF classes.
+ * The client authenticates with the access token found in the spool directory of the daemon.
+ *
+ * @since NEST 5.1
+ */
+class GPTClient {
+
+    private GPTClient() {
+    }
+
+    /**
+     * Submits a job.
+     *
+     * @param args <code>[-port &lt;port&gt;] [-spool &lt;dir&gt;] -stop | &lt;gpt arguments&gt;</code>
+     * @return the exit code of the job
+     * @throws IOException if the daemon cannot be reached or its access token cannot be read
+     */
+    static int run(String[] args) throws IOException {
+        int port = GPTDaemon.DEFAULT_PORT;
+        File spoolDir = getDefaultSpoolDir();
+        while (args.length >= 2) {
+            if (args[0].equals("-port")) {
+                port = Integer.parseInt(args[1]);
+            } else if (args[0].equals("-spool")) {
+                spoolDir = new File(args[1]);
+            } else {
+                break;
+            }
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        final String[] jobArgs = resolvePaths(args);
+        final String token = readToken(new File(spoolDir, GPTDaemon.TOKEN_FILE_NAME));
+
+        final Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF(token);
+            out.writeInt(jobArgs.length);
+            for (String arg : jobArgs) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+
+            final DataInputStream in = new DataInputStream(socket.getInputStream());
+            while (true) {
+                final int type = in.readByte();
+                if (type == GPTDaemon.MSG_OUTPUT) {
+                    System.out.print(in.readUTF());
+                } else {
+                    final int exitCode = in.readInt();
+                    System.out.println(in.readUTF());
+                    return exitCode;
+                }
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * @return the spool directory used if none is given, which also holds the access token of the daemon
+     */
+    static File getDefaultSpoolDir() {
+        return new File(new File(System.getProperty("user.home"), ".beam"), "gpt-daemon");
+    }
+
+    private static String readToken(File tokenFile) throws IOException {
+        if (!tokenFile.isFile()) {
+            throw new IOException("No GPT daemon running for spool directory " + tokenFile.getParentFile());
+        }
+        return new String(Files.readAllBytes(tokenFile.toPath()), "UTF-8").trim();
+    }
+
+    /**
+     * The daemon has another working directory, hence relative file arguments are made absolute.
+     */
+    private static String[] resolvePaths(String[] args) {
+        final List<String> resolved = new ArrayList<String>(args.length);
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if ((arg.equals("-t") || arg.equals("-p") || arg.equals("-metrics") || arg.equals("-inFolder")) && i + 1 < args.length) {
+                resolved.add(arg);
+                resolved.add(new File(args[++i]).getAbsolutePath());
+            } else if ((arg.startsWith("-S") || arg.startsWith("-T")) && arg.indexOf('=') > 0) {
+                final int pos = arg.indexOf('=');
+                resolved.add(arg.substring(0, pos + 1) + new File(arg.substring(pos + 1)).getAbsolutePath());
+            } else if (!arg.startsWith("-") && new File(arg).exists()) {
+                resolved.add(new File(arg).getAbsolutePath());
+            } else {
+                resolved.add(arg);
+            }
+        }
+        return resolved.toArray(new String[resolved.size()]);
+    }
+}
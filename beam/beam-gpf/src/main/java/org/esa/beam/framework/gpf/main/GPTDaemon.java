@@ -0,0 +1,479 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.main;
+
+import org.esa.beam.util.logging.BeamLogManager;
+
+import javax.media.jai.JAI;
+import javax.media.jai.TileScheduler;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A long-running GPT service. It keeps the operator registry, the JAI configuration and all
+ * process-wide caches warm between jobs, so that a job only pays for its own processing.
+ * <p/>
+ * A job is a list of ordinary GPT command-line arguments. Jobs are accepted from {@link GPTClient}s
+ * connecting to a socket bound to the loopback address, and from <code>*.job</code> files put into a spool
+ * directory, holding one argument per line. Jobs are executed one after the other, each one using the full
+ * parallelism of the tile scheduler. The queue and processing times of each job are reported.
+ * <p/>
+ * Since any local user may connect to the socket, a client must first send the access token which the
+ * daemon writes to the file {@link #TOKEN_FILE_NAME} in the spool directory, readable by its owner only.
+ *
+ * @since NEST 5.1
+ */
+class GPTDaemon {
+
+    static final int DEFAULT_PORT = 30102;
+
+    static final String JOB_EXTENSION = ".job";
+    static final String RUNNING_EXTENSION = ".running";
+    static final String DONE_EXTENSION = ".done";
+    static final String FAILED_EXTENSION = ".failed";
+    static final String LOG_EXTENSION = ".log";
+
+    static final String STOP_COMMAND = "-stop";
+    static final String TOKEN_FILE_NAME = "daemon.token";
+
+    // message types sent to clients
+    static final int MSG_OUTPUT = 0;
+    static final int MSG_RESULT = 1;
+
+    private static final long SPOOL_POLL_INTERVAL = 1000;
+    private static final int MAX_MESSAGE_LENGTH = 16 * 1024;
+    private static final int TOKEN_TIMEOUT_MS = 10000;
+
+    private final int port;
+    private final File spoolDir;
+    private final Logger logger;
+    private final ExecutorService jobExecutor;
+    private final String token;
+    private volatile boolean stopped;
+    private volatile ServerSocket serverSocket;
+    private int jobCount;
+
+    GPTDaemon(int port, File spoolDir) {
+        this.port = port;
+        this.spoolDir = spoolDir;
+        this.token = createToken();
+        this.logger = BeamLogManager.getSystemLogger();
+        this.jobExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "GPT-job");
+            }
+        });
+    }
+
+    /**
+     * Runs the daemon with the given arguments.
+     *
+     * @param args <code>[-port &lt;port&gt;] [-spool &lt;dir&gt;]</code>
+     * @throws Exception if the daemon cannot be started
+     */
+    static void run(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        File spoolDir = GPTClient.getDefaultSpoolDir();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-spool") && i + 1 < args.length) {
+                spoolDir = new File(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown daemon option '" + args[i] + "'");
+            }
+        }
+        new GPTDaemon(port, spoolDir).run();
+    }
+
+    void run() throws IOException, InterruptedException {
+        // loads the operator registry
+        new CommandLineTool();
+
+        if (!spoolDir.isDirectory()) {
+            if (!spoolDir.mkdirs()) {
+                throw new IOException("Failed to create spool directory " + spoolDir);
+            }
+            // other users must neither submit spool jobs nor read their logs
+            setOwnerOnly(spoolDir.toPath(), true);
+        }
+        writeTokenFile();
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+        logger.info(MessageFormat.format("GPT daemon listening on port {0}", String.valueOf(serverSocket.getLocalPort())));
+
+        logger.info(MessageFormat.format("GPT daemon watching spool directory {0}", spoolDir));
+        final Thread spoolThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watchSpoolDir();
+            }
+        }, "GPT-spool");
+        spoolThread.setDaemon(true);
+        spoolThread.start();
+
+        try {
+            while (!stopped) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    if (stopped) {
+                        break;
+                    }
+                    throw e;
+                }
+                final Thread clientThread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        handleClient(socket);
+                    }
+                }, "GPT-client");
+                clientThread.setDaemon(true);
+                clientThread.start();
+            }
+        } finally {
+            stop();
+            spoolThread.interrupt();
+            Files.deleteIfExists(getTokenFile().toPath());
+        }
+    }
+
+    /**
+     * @return the port accepting jobs, or -1 if the daemon is not running
+     */
+    int getLocalPort() {
+        final ServerSocket socket = serverSocket;
+        return socket != null && !socket.isClosed() ? socket.getLocalPort() : -1;
+    }
+
+    void stop() {
+        stopped = true;
+        jobExecutor.shutdown();
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    File getTokenFile() {
+        return new File(spoolDir, TOKEN_FILE_NAME);
+    }
+
+    private void writeTokenFile() throws IOException {
+        final Path tokenPath = getTokenFile().toPath();
+        // recreated, so that the owner-only permissions are in place before the token is written
+        Files.deleteIfExists(tokenPath);
+        Files.createFile(tokenPath);
+        setOwnerOnly(tokenPath, false);
+        Files.write(tokenPath, token.getBytes("UTF-8"));
+    }
+
+    private static void setOwnerOnly(Path path, boolean directory) throws IOException {
+        if (Files.getFileStore(path).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(directory ? "rwx------" : "rw-------"));
+        } else {
+            // best effort, e.g. on Windows the user profile already restricts the access
+            final File file = path.toFile();
+            file.setReadable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(false, false);
+            file.setWritable(true, true);
+        }
+    }
+
+    private static String createToken() {
+        final byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        final StringBuilder sb = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+    private boolean isAuthorized(DataInputStream in, Socket socket) throws IOException {
+        socket.setSoTimeout(TOKEN_TIMEOUT_MS);
+        final String clientToken;
+        try {
+            clientToken = in.readUTF();
+        } catch (SocketTimeoutException e) {
+            return false;
+        }
+        socket.setSoTimeout(0);
+        return MessageDigest.isEqual(token.getBytes("UTF-8"), clientToken.getBytes("UTF-8"));
+    }
+
+    private void handleClient(Socket socket) {
+        try {
+            final DataInputStream in = new DataInputStream(socket.getInputStream());
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            if (!isAuthorized(in, socket)) {
+                logger.warning("GPT daemon rejected a client with an invalid access token");
+                sendResult(out, 1, "Invalid access token of GPT daemon");
+                return;
+            }
+            final String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+            if (args.length == 1 && args[0].equals(STOP_COMMAND)) {
+                logger.info("GPT daemon stopped by client");
+                sendResult(out, 0, "GPT daemon stopped");
+                stop();
+                return;
+            }
+            final JobOutput output = new JobOutput() {
+                @Override
+                public void print(String m) throws IOException {
+                    synchronized (out) {
+                        for (int i = 0; i < m.length(); i += MAX_MESSAGE_LENGTH) {
+                            out.writeByte(MSG_OUTPUT);
+                            out.writeUTF(m.substring(i, Math.min(m.length(), i + MAX_MESSAGE_LENGTH)));
+                        }
+                        out.flush();
+                    }
+                }
+            };
+            final JobResult result = submit(args, output);
+            synchronized (out) {
+                sendResult(out, result.exitCode, result.getSummary());
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "GPT daemon lost client connection: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void sendResult(DataOutputStream out, int exitCode, String summary) throws IOException {
+        out.writeByte(MSG_RESULT);
+        out.writeInt(exitCode);
+        out.writeUTF(summary);
+        out.flush();
+    }
+
+    private void watchSpoolDir() {
+        final FilenameFilter jobFilter = new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(JOB_EXTENSION);
+            }
+        };
+        while (!stopped) {
+            final String[] names = spoolDir.list(jobFilter);
+            if (names != null) {
+                Arrays.sort(names);
+                for (String name : names) {
+                    if (stopped) {
+                        return;
+                    }
+                    try {
+                        runSpoolJob(new File(spoolDir, name));
+                    } catch (IOException e) {
+                        logger.log(Level.WARNING, "GPT daemon failed to run spool job " + name + ": " + e.getMessage());
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            try {
+                Thread.sleep(SPOOL_POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void runSpoolJob(File jobFile) throws IOException, InterruptedException {
+        final String baseName = jobFile.getName().substring(0, jobFile.getName().length() - JOB_EXTENSION.length());
+        final File runningFile = new File(spoolDir, baseName + RUNNING_EXTENSION);
+        if (!jobFile.renameTo(runningFile)) {
+            // still being written or taken by someone else
+            return;
+        }
+        final String[] args = readJobFile(runningFile);
+        final Writer logWriter = new OutputStreamWriter(new FileOutputStream(new File(spoolDir, baseName + LOG_EXTENSION)), "UTF-8");
+        try {
+            final JobResult result = submit(args, new JobOutput() {
+                @Override
+                public void print(String m) throws IOException {
+                    logWriter.write(m);
+                    logWriter.flush();
+                }
+            });
+            logWriter.write(result.getSummary());
+            logWriter.write('\n');
+            final String extension = result.exitCode == 0 ? DONE_EXTENSION : FAILED_EXTENSION;
+            if (!runningFile.renameTo(new File(spoolDir, baseName + extension))) {
+                logger.warning("GPT daemon failed to rename " + runningFile);
+            }
+        } finally {
+            logWriter.close();
+        }
+    }
+
+    private static String[] readJobFile(File file) throws IOException {
+        final List<String> args = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    args.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * Queues a job and waits for its completion.
+     */
+    private JobResult submit(final String[] args, final JobOutput output) throws InterruptedException {
+        final long queueTime = System.currentTimeMillis();
+        final int jobId;
+        synchronized (this) {
+            jobId = ++jobCount;
+        }
+        logger.info(MessageFormat.format("GPT job {0} queued: {1}", String.valueOf(jobId), Arrays.toString(args)));
+        final Future<JobResult> future;
+        try {
+            future = jobExecutor.submit(new Callable<JobResult>() {
+                @Override
+                public JobResult call() {
+                    return execute(jobId, args, output, queueTime);
+                }
+            });
+        } catch (RuntimeException e) {
+            return new JobResult(jobId, 1, 0, 0, "GPT daemon is shutting down");
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return new JobResult(jobId, 1, 0, 0, String.valueOf(e.getCause()));
+        }
+    }
+
+    private JobResult execute(int jobId, String[] args, final JobOutput output, long queueTime) {
+        final long startTime = System.currentTimeMillis();
+        // jobs configure the tool through system properties and the JAI tile scheduler,
+        // which must not leak into the next job
+        final Properties properties = (Properties) System.getProperties().clone();
+        final TileScheduler tileScheduler = JAI.getDefaultInstance().getTileScheduler();
+        final int parallelism = tileScheduler.getParallelism();
+        int exitCode = 0;
+        String error = null;
+        try {
+            final CommandLineTool tool = new CommandLineTool(new DefaultCommandLineContext() {
+                @Override
+                public void print(String m) {
+                    try {
+                        output.print(m);
+                    } catch (IOException e) {
+                        logger.warning("GPT daemon failed to send output: " + e.getMessage());
+                    }
+                }
+            });
+            tool.run(args);
+        } catch (Throwable t) {
+            exitCode = 1;
+            error = t.getMessage() != null ? t.getMessage() : t.toString();
+            try {
+                output.print("\nError: " + error + "\n");
+            } catch (IOException ignored) {
+            }
+        } finally {
+            System.setProperties(properties);
+            tileScheduler.setParallelism(parallelism);
+        }
+        final JobResult result = new JobResult(jobId, exitCode, startTime - queueTime,
+                                               System.currentTimeMillis() - startTime, error);
+        logger.info(result.getSummary());
+        return result;
+    }
+
+    private interface JobOutput {
+        void print(String m) throws IOException;
+    }
+
+    private static class JobResult {
+
+        private final int jobId;
+        private final int exitCode;
+        private final long queuedMillis;
+        private final long processingMillis;
+        private final String error;
+
+        private JobResult(int jobId, int exitCode, long queuedMillis, long processingMillis, String error) {
+            this.jobId = jobId;
+            this.exitCode = exitCode;
+            this.queuedMillis = queuedMillis;
+            this.processingMillis = processingMillis;
+            this.error = error;
+        }
+
+        private String getSummary() {
+            return MessageFormat.format("GPT job {0} {1}: queued {2} ms, processed {3} ms{4}",
+                                        String.valueOf(jobId), exitCode == 0 ? "completed" : "failed",
+                                        String.valueOf(queuedMillis), String.valueOf(processingMillis),
+                                        error != null ? " (" + error + ")" : "");
+        }
+    }
+}
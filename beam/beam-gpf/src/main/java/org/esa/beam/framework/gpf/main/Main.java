@@ -21,6 +21,7 @@ import com.bc.ceres.core.runtime.RuntimeConfig;
 import org.esa.beam.util.SystemUtils;
 import org.esa.beam.util.logging.BeamLogManager;
 
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.logging.Logger;
 
@@ -32,6 +33,15 @@ import java.util.logging.Logger;
 public class Main {
 
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("-submit")) {
+            // thin client, nothing to initialise
+            try {
+                System.exit(GPTClient.run(Arrays.copyOfRange(args, 1, args.length)));
+            } catch (Exception e) {
+                System.out.println("\nError: " + e.getMessage());
+                System.exit(1);
+            }
+        }
         if (System.getProperty("ceres.context") == null) {
             System.setProperty("ceres.context", "beam");
         }
@@ -39,6 +49,10 @@ public class Main {
             Locale.setDefault(Locale.ENGLISH); // Force usage of english locale
             SystemUtils.init3rdPartyLibs(Main.class.getClassLoader());
             RuntimeConfig runtimeConfig = new DefaultRuntimeConfig();
+            if (args.length > 0 && args[0].equals("-daemon")) {
+                GPTDaemon.run(Arrays.copyOfRange(args, 1, args.length));
+                return;
+            }
             new CommandLineTool().run(args);
         } catch (Exception e) {
             System.out.println("\nError: " + e.getMessage());
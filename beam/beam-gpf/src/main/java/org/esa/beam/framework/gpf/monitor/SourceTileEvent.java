@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2011 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.gpf.monitor;
+
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.RasterDataNode;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.internal.OperatorImage;
+
+import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
+
+/**
+ * An event that is generated after an operator has obtained a source tile.
+ *
+ * @since NEST 5.1
+ */
+public class SourceTileEvent {
+    private final Operator operator;
+    private final OperatorImage targetImage;
+    private final RasterDataNode sourceNode;
+    private final RenderedImage sourceImage;
+    private final Rectangle region;
+    private final int cacheHits;
+    private final int cacheMisses;
+    private final long startNanos;
+    private final long endNanos;
+
+    public SourceTileEvent(Operator operator, OperatorImage targetImage, RasterDataNode sourceNode,
+                           RenderedImage sourceImage, Rectangle region, int cacheHits, int cacheMisses,
+                           long startNanos, long endNanos) {
+        this.operator = operator;
+        this.targetImage = targetImage;
+        this.sourceNode = sourceNode;
+        this.sourceImage = sourceImage;
+        this.region = region;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.startNanos = startNanos;
+        this.endNanos = endNanos;
+    }
+
+    /**
+     * @return The operator which requested the source tile.
+     */
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return The image whose tile was being computed when the source tile was requested, may be {@code null}.
+     */
+    public OperatorImage getTargetImage() {
+        return targetImage;
+    }
+
+    public RasterDataNode getSourceNode() {
+        return sourceNode;
+    }
+
+    /**
+     * @return The level zero image of the source node, an {@link OperatorImage} if the source node is
+     *         computed by another operator.
+     */
+    public RenderedImage getSourceImage() {
+        return sourceImage;
+    }
+
+    public Rectangle getRegion() {
+        return region;
+    }
+
+    /**
+     * @return The number of source image tiles covered by the region which have been found in the tile cache.
+     *         Only counted if the source image is an {@link OperatorImage}.
+     */
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return The number of source image tiles covered by the region which had to be computed.
+     *         Only counted if the source image is an {@link OperatorImage}.
+     */
+    public int getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getEndNanos() {
+        return endNanos;
+    }
+
+    /**
+     * @return The number of bytes of the source tile.
+     */
+    public long getByteCount() {
+        return (long) region.width * region.height * ProductData.getElemSize(sourceNode.getDataType());
+    }
+}
@@ -30,17 +30,28 @@ public class TileComputationEvent {
     private final int tileY;
     private final long startNanos;
     private final long endNanos;
+    private final long sourceWaitNanos;
     private final String threadName;
 
     static int ids = 0;
 
     public TileComputationEvent(OperatorImage image, int tileX, int tileY, long startNanos, long endNanos) {
+        this(image, tileX, tileY, startNanos, endNanos, 0L);
+    }
+
+    /**
+     * @param sourceWaitNanos The part of the computation time spent waiting for source tiles.
+     * @since NEST 5.1
+     */
+    public TileComputationEvent(OperatorImage image, int tileX, int tileY, long startNanos, long endNanos,
+                                long sourceWaitNanos) {
         this.id = ++ids;
         this.image = image;
         this.tileX = tileX;
         this.tileY = tileY;
         this.startNanos = startNanos;
         this.endNanos = endNanos;
+        this.sourceWaitNanos = sourceWaitNanos;
         this.threadName = Thread.currentThread().getName();
     }
 
@@ -68,6 +79,15 @@ public class TileComputationEvent {
         return endNanos;
     }
 
+    /**
+     * @return The part of the computation time spent waiting for source tiles, which includes the
+     *         time needed to compute source tiles not found in the tile cache.
+     * @since NEST 5.1
+     */
+    public long getSourceWaitNanos() {
+        return sourceWaitNanos;
+    }
+
     public String getThreadName() {
         return threadName;
     }
@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2011 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.gpf.monitor;
+
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.RasterDataNode;
+import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.internal.OperatorImage;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+
+/**
+ * Records metrics per operator node and band: the tile computation latency distribution, the part of it
+ * spent waiting for source tiles, the tile cache hits and misses of the node's tiles, the bytes of source
+ * tiles read and the bytes of tiles computed.
+ * <p/>
+ * The metrics are exposed through JMX as {@link #OBJECT_NAME} while being recorded. When the observation stops,
+ * they are logged as a JSON document, which is also written to the file given by the system property
+ * {@link GPF#TILE_COMPUTATION_METRICS_FILE_PROPERTY}, if set.
+ * <p/>
+ * May be used as a value for the 'beam.config' variable 'beam.gpf.tileComputationObserver'.
+ *
+ * @since NEST 5.1
+ */
+public class TileComputationMetrics extends TileComputationObserver implements TileComputationMetricsMBean {
+
+    public static final String OBJECT_NAME = "org.esa.beam.gpf:type=TileComputationMetrics";
+
+    private final ConcurrentMap<String, NodeMetrics> nodeMetricsMap = new ConcurrentHashMap<String, NodeMetrics>();
+    private volatile long startMillis = System.currentTimeMillis();
+
+    @Override
+    public void start() {
+        startMillis = System.currentTimeMillis();
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (Exception e) {
+            getLogger().warning("Failed to register tile computation metrics: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void tileComputed(TileComputationEvent event) {
+        final OperatorImage image = event.getImage();
+        final NodeMetrics metrics = getNodeMetrics(getNodeName(image.getOperatorContext().getOperator()),
+                                                   image.getTargetBand());
+        final long latencyNanos = event.getEndNanos() - event.getStartNanos();
+        metrics.latency.record(latencyNanos);
+        metrics.sourceWaitNanos.addAndGet(event.getSourceWaitNanos());
+        final Rectangle tileRect = image.getTileRect(event.getTileX(), event.getTileY());
+        final long pixelCount = (long) tileRect.width * tileRect.height;
+        metrics.pixelCount.addAndGet(pixelCount);
+        metrics.bytesWritten.addAndGet(pixelCount * ProductData.getElemSize(image.getTargetBand().getDataType()));
+    }
+
+    @Override
+    public void sourceTileRequested(SourceTileEvent event) {
+        final OperatorImage targetImage = event.getTargetImage();
+        final NodeMetrics reader = getNodeMetrics(getNodeName(event.getOperator()),
+                                                  targetImage != null ? targetImage.getTargetBand() : null);
+        reader.bytesRead.addAndGet(event.getByteCount());
+
+        final NodeMetrics source;
+        if (event.getSourceImage() instanceof OperatorImage) {
+            final OperatorImage sourceImage = (OperatorImage) event.getSourceImage();
+            source = getNodeMetrics(getNodeName(sourceImage.getOperatorContext().getOperator()),
+                                    sourceImage.getTargetBand());
+        } else {
+            final RasterDataNode sourceNode = event.getSourceNode();
+            source = getNodeMetrics(sourceNode.getProduct() != null ? sourceNode.getProduct().getName() : "?",
+                                    sourceNode);
+        }
+        source.cacheHits.addAndGet(event.getCacheHits());
+        source.cacheMisses.addAndGet(event.getCacheMisses());
+    }
+
+    @Override
+    public void stop() {
+        final String summary = getJsonSummary();
+        getLogger().log(Level.INFO, "Tile computation metrics:\n" + summary);
+        final String filePath = System.getProperty(GPF.TILE_COMPUTATION_METRICS_FILE_PROPERTY);
+        if (filePath != null) {
+            try {
+                final Writer writer = new OutputStreamWriter(new FileOutputStream(new File(filePath)), "UTF-8");
+                try {
+                    writer.write(summary);
+                } finally {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                getLogger().warning("Failed to write tile computation metrics to " + filePath + ": " + e.getMessage());
+            }
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (Exception ignored) {
+            // not registered
+        }
+    }
+
+    @Override
+    public String[] getNodeNames() {
+        return new TreeMap<String, NodeMetrics>(nodeMetricsMap).keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public long getComputedTileCount() {
+        long sum = 0;
+        for (NodeMetrics metrics : nodeMetricsMap.values()) {
+            sum += metrics.latency.getCount();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        long sum = 0;
+        for (NodeMetrics metrics : nodeMetricsMap.values()) {
+            sum += metrics.cacheHits.get();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        long sum = 0;
+        for (NodeMetrics metrics : nodeMetricsMap.values()) {
+            sum += metrics.cacheMisses.get();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getBytesRead() {
+        long sum = 0;
+        for (NodeMetrics metrics : nodeMetricsMap.values()) {
+            sum += metrics.bytesRead.get();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        long sum = 0;
+        for (NodeMetrics metrics : nodeMetricsMap.values()) {
+            sum += metrics.bytesWritten.get();
+        }
+        return sum;
+    }
+
+    @Override
+    public String getJsonSummary() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"elapsedMillis\": ").append(System.currentTimeMillis() - startMillis).append(",\n");
+        sb.append("  \"nodes\": [");
+        boolean first = true;
+        for (Map.Entry<String, NodeMetrics> entry : new TreeMap<String, NodeMetrics>(nodeMetricsMap).entrySet()) {
+            sb.append(first ? "\n" : ",\n");
+            entry.getValue().appendJson(sb);
+            first = false;
+        }
+        sb.append("\n  ]\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        nodeMetricsMap.clear();
+        startMillis = System.currentTimeMillis();
+    }
+
+    private NodeMetrics getNodeMetrics(String nodeName, RasterDataNode band) {
+        final String bandName = band != null ? band.getName() : "*";
+        final String key = nodeName + "/" + bandName;
+        NodeMetrics metrics = nodeMetricsMap.get(key);
+        if (metrics == null) {
+            metrics = new NodeMetrics(nodeName, bandName);
+            final NodeMetrics existing = nodeMetricsMap.putIfAbsent(key, metrics);
+            if (existing != null) {
+                metrics = existing;
+            }
+        }
+        return metrics;
+    }
+
+    private static String getNodeName(Operator operator) {
+        final String id = operator.getId();
+        return id != null ? id : operator.getSpi().getOperatorAlias();
+    }
+
+    private static final class NodeMetrics {
+
+        private final String nodeName;
+        private final String bandName;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong sourceWaitNanos = new AtomicLong();
+        private final AtomicLong pixelCount = new AtomicLong();
+        private final AtomicLong cacheHits = new AtomicLong();
+        private final AtomicLong cacheMisses = new AtomicLong();
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong bytesWritten = new AtomicLong();
+
+        private NodeMetrics(String nodeName, String bandName) {
+            this.nodeName = nodeName;
+            this.bandName = bandName;
+        }
+
+        private void appendJson(StringBuilder sb) {
+            final long count = latency.getCount();
+            final long totalNanos = latency.getTotalNanos();
+            final long waitNanos = Math.min(sourceWaitNanos.get(), totalNanos);
+            sb.append("    {");
+            sb.append("\"node\": ").append(quote(nodeName));
+            sb.append(", \"band\": ").append(quote(bandName));
+            sb.append(", \"tiles\": ").append(count);
+            sb.append(", \"latencyMillis\": {");
+            sb.append("\"mean\": ").append(millis(count > 0 ? totalNanos / count : 0));
+            sb.append(", \"p50\": ").append(millis(latency.getPercentile(0.50)));
+            sb.append(", \"p95\": ").append(millis(latency.getPercentile(0.95)));
+            sb.append(", \"p99\": ").append(millis(latency.getPercentile(0.99)));
+            sb.append(", \"max\": ").append(millis(latency.getMaxNanos()));
+            sb.append("}");
+            sb.append(", \"computeMillis\": ").append(millis(totalNanos - waitNanos));
+            sb.append(", \"sourceWaitMillis\": ").append(millis(waitNanos));
+            sb.append(", \"mpixelsPerSecond\": ").append(totalNanos > 0 ?
+                    format(pixelCount.get() * 1.0E3 / totalNanos) : "0");
+            sb.append(", \"cacheHits\": ").append(cacheHits.get());
+            sb.append(", \"cacheMisses\": ").append(cacheMisses.get());
+            sb.append(", \"bytesRead\": ").append(bytesRead.get());
+            sb.append(", \"bytesWritten\": ").append(bytesWritten.get());
+            sb.append("}");
+        }
+
+        private static String millis(long nanos) {
+            return format(nanos / 1.0E6);
+        }
+
+        private static String format(double value) {
+            return String.format(Locale.ENGLISH, "%.3f", value);
+        }
+
+        private static String quote(String s) {
+            final StringBuilder sb = new StringBuilder("\"");
+            for (int i = 0; i < s.length(); i++) {
+                final char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.append('"').toString();
+        }
+    }
+
+    /**
+     * A lock-free histogram of durations with logarithmic buckets, four per power of two,
+     * hence percentiles are accurate to about 19%.
+     */
+    static final class LatencyHistogram {
+
+        private static final int SUB_BUCKETS = 4;
+        private static final int SUB_BUCKET_BITS = 2;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            buckets.incrementAndGet(getBucketIndex(nanos));
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+                // retry
+            }
+        }
+
+        long getCount() {
+            return count.get();
+        }
+
+        long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * @param p the percentile, between 0 and 1
+         * @return the upper bound of the bucket containing the percentile, at most the maximum recorded
+         */
+        long getPercentile(double p) {
+            final long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(p * n));
+            long sum = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                sum += buckets.get(i);
+                if (sum >= rank) {
+                    return Math.min(getBucketUpperBound(i), maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+
+        static int getBucketIndex(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            final int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long getBucketUpperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            final int subBucket = index % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+}
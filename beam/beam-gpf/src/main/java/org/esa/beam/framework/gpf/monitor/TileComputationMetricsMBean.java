@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2011 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.gpf.monitor;
+
+/**
+ * The JMX management interface of the {@link TileComputationMetrics}.
+ *
+ * @since NEST 5.1
+ */
+public interface TileComputationMetricsMBean {
+
+    /**
+     * @return The names of the observed nodes in the form {@code <node>/<band>}.
+     */
+    String[] getNodeNames();
+
+    long getComputedTileCount();
+
+    long getCacheHitCount();
+
+    long getCacheMissCount();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    /**
+     * @return The metrics of all nodes as a JSON document.
+     */
+    String getJsonSummary();
+
+    /**
+     * Discards all metrics recorded so far.
+     */
+    void reset();
+}
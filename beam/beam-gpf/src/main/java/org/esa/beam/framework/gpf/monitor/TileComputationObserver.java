@@ -24,6 +24,7 @@ import java.util.logging.Logger;
  * <ol>
  *     <li>{@link #start()} is called only once before any other method is called.</li>
  *     <li>{@link #tileComputed(TileComputationEvent)} is called for each tile computed by any GPF {@link org.esa.beam.framework.gpf.Operator Operator}.</li>
+ *     <li>{@link #sourceTileRequested(SourceTileEvent)} is called for each source tile obtained by any GPF {@link org.esa.beam.framework.gpf.Operator Operator}.</li>
  *     <li>{@link #stop()} is called after a {@link org.esa.beam.framework.datamodel.Product Product} has been
  *     fully written using the {@link org.esa.beam.gpf.operators.standard.WriteOp WriteOp} operator.</li>
  * </ol>
@@ -57,6 +58,16 @@ public abstract class TileComputationObserver {
      */
     public abstract void tileComputed(TileComputationEvent event);
 
+    /**
+     * Called each time an operator has obtained a source tile. This method is usually called asynchronously
+     * by multiple threads. It should perform very fast. The default implementation does nothing.
+     *
+     * @param event The source tile event.
+     * @since NEST 5.1
+     */
+    public void sourceTileRequested(SourceTileEvent event) {
+    }
+
     /**
      * Stops observation of tile computation events.
      */
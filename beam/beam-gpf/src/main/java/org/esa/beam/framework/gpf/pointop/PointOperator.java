@@ -43,7 +43,7 @@ import java.util.Map;
  * @author Norman Fomferra
  * @since BEAM 4.9
  */
-public abstract class PointOperator extends Operator {
+public abstract class PointOperator extends Operator implements PointwiseOperator {
 
     private transient RasterDataNode[] sourceNodes;
     private transient Band[] targetNodes;
@@ -189,6 +189,14 @@ public abstract class PointOperator extends Operator {
         }
     }
 
+    /**
+     * @return always {@code true}, since pixels are computed independently of their neighbours
+     */
+    @Override
+    public boolean isPointwise() {
+        return true;
+    }
+
     Sample[] createSourceSamples(Rectangle targetRectangle, Point location) {
         final Tile[] sourceTiles = getSourceTiles(targetRectangle);
         return createDefaultSamples(sourceNodes, sourceTiles, location);
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.pointop;
+
+/**
+ * Implemented by {@link org.esa.beam.framework.gpf.Operator Operator}s which compute a target tile solely from
+ * the source tiles covering the very same rectangle, each of them requested once, just like a {@link PointOperator}.
+ * <p/>
+ * Within a graph, the target images of such an operator which are consumed by exactly one other point-wise
+ * operator are fused into their consumer: their tiles are computed on demand into transient rasters and are
+ * never stored in the tile cache.
+ *
+ * @since NEST 5.1
+ */
+public interface PointwiseOperator {
+
+    /**
+     * Called after the operator has been initialised.
+     *
+     * @return {@code true}, if the target tiles are computed point-wise with the current configuration
+     */
+    boolean isPointwise();
+}
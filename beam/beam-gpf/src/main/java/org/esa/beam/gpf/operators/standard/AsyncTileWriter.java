@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.gpf.operators.standard;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.dataio.ProductWriter;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.ProductData;
+
+import javax.media.jai.JAI;
+import javax.media.jai.TileCache;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the tiles computed for a {@link WriteOp} on a dedicated I/O thread.
+ * <p/>
+ * Compute threads hand over finished tiles and continue immediately, unless the tiles queued
+ * exceed the memory budget. The I/O thread collects the tiles per band and tile row and writes
+ * complete rows in file order (band by band, top to bottom) with a single call covering the
+ * full scene width. If the budget is exhausted before a row is complete, the lowest pending
+ * tiles are written one by one to free memory.
+ * <p/>
+ * Data given to {@link #writeTile} must not be modified afterwards. If a {@link WriteJournal} is given,
+ * each tile is recorded in it once it has been written.
+ */
+class AsyncTileWriter {
+
+    private final ProductWriter productWriter;
+    private final int sceneWidth;
+    private final int tileCountX;
+    private final long memoryBudget;
+    private final boolean clearCacheAfterRowWrite;
+    private final WriteJournal journal;
+    private final TreeMap<RowKey, PendingRow> pendingRows = new TreeMap<RowKey, PendingRow>();
+    private final Thread ioThread;
+
+    private long bytesQueued;
+    private int waitingWriters;
+    private boolean closing;
+    private boolean aborted;
+    private volatile Throwable error;
+
+    AsyncTileWriter(ProductWriter productWriter, int sceneWidth, int tileCountX, long memoryBudget,
+                    boolean clearCacheAfterRowWrite, WriteJournal journal) {
+        this.productWriter = productWriter;
+        this.sceneWidth = sceneWidth;
+        this.tileCountX = tileCountX;
+        this.memoryBudget = memoryBudget;
+        this.clearCacheAfterRowWrite = clearCacheAfterRowWrite;
+        this.journal = journal;
+        this.ioThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processRows();
+            }
+        }, "WriteOp-IO");
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    /**
+     * Queues a tile for writing. Blocks while the tiles queued exceed the memory budget.
+     *
+     * @param band      the band
+     * @param bandIndex the position of the band in the file order
+     * @param tileX     the tile column
+     * @param tileY     the tile row
+     * @param rect      the tile rectangle
+     * @param data      the raw samples of the tile
+     * @throws IOException if a previous write on the I/O thread failed or the writer has been aborted
+     */
+    void writeTile(Band band, int bandIndex, int tileX, int tileY, Rectangle rect, ProductData data) throws IOException {
+        final long bytes = (long) data.getNumElems() * data.getElemSize();
+        synchronized (this) {
+            checkError();
+            while (bytesQueued > 0 && bytesQueued + bytes > memoryBudget && error == null && !aborted) {
+                waitForIO();
+            }
+            checkError();
+            if (aborted) {
+                throw new IOException("Writing of tiles has been aborted");
+            }
+            final RowKey key = new RowKey(bandIndex, tileY);
+            PendingRow row = pendingRows.get(key);
+            if (row == null) {
+                row = new PendingRow(band, tileCountX);
+                pendingRows.put(key, row);
+            }
+            row.rects[tileX] = rect;
+            row.data[tileX] = data;
+            row.pending++;
+            bytesQueued += bytes;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Writes all queued tiles and waits for the I/O thread to terminate.
+     *
+     * @throws IOException if a write on the I/O thread failed
+     */
+    void close() throws IOException {
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+        }
+        try {
+            ioThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for tiles to be written", e);
+        }
+        checkError();
+    }
+
+    /**
+     * Discards all queued tiles, interrupts the I/O thread and waits for it to terminate,
+     * so that the product writer can be closed afterwards.
+     */
+    void abort() {
+        synchronized (this) {
+            pendingRows.clear();
+            bytesQueued = 0;
+            closing = true;
+            aborted = true;
+            notifyAll();
+        }
+        ioThread.interrupt();
+        boolean interrupted = false;
+        while (ioThread.isAlive()) {
+            try {
+                ioThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processRows() {
+        try {
+            while (true) {
+                final RowKey key;
+                final PendingRow row;
+                final Rectangle[] rects;
+                final ProductData[] data;
+                synchronized (this) {
+                    if (aborted) {
+                        return;
+                    }
+                    Map.Entry<RowKey, PendingRow> entry = nextRow();
+                    while (entry == null) {
+                        if (aborted || closing && bytesQueued == 0) {
+                            return;
+                        }
+                        wait();
+                        entry = nextRow();
+                    }
+                    key = entry.getKey();
+                    row = entry.getValue();
+                    rects = row.rects.clone();
+                    data = row.data.clone();
+                    row.clearPending();
+                    if (row.written == tileCountX) {
+                        pendingRows.remove(entry.getKey());
+                    }
+                }
+                final long bytes = write(row, rects, data);
+                if (journal != null) {
+                    for (int tileX = 0; tileX < data.length; tileX++) {
+                        if (data[tileX] != null) {
+                            journal.tileWritten(key.bandIndex, tileX, key.tileY, data[tileX]);
+                        }
+                    }
+                }
+                synchronized (this) {
+                    if (aborted) {
+                        return;
+                    }
+                    bytesQueued -= bytes;
+                    notifyAll();
+                }
+            }
+        } catch (Throwable t) {
+            synchronized (this) {
+                // failures caused by the interrupt of abort() are expected
+                if (!aborted) {
+                    error = t;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return the first complete row in file order or, if the memory budget is exhausted or the writer
+     *         is closing, the first row with pending tiles
+     */
+    private Map.Entry<RowKey, PendingRow> nextRow() {
+        final boolean flush = closing || waitingWriters > 0 || bytesQueued >= memoryBudget;
+        Map.Entry<RowKey, PendingRow> firstPending = null;
+        for (Map.Entry<RowKey, PendingRow> entry : pendingRows.entrySet()) {
+            final PendingRow row = entry.getValue();
+            if (row.pending == 0) {
+                continue;
+            }
+            if (row.pending + row.written == tileCountX) {
+                return entry;
+            }
+            if (firstPending == null) {
+                firstPending = entry;
+            }
+        }
+        return flush ? firstPending : null;
+    }
+
+    private long write(PendingRow row, Rectangle[] rects, ProductData[] data) throws IOException {
+        long bytes = 0;
+        if (isCompleteRow(data)) {
+            bytes = writeRow(row.band, rects, data);
+        } else {
+            for (int tileX = 0; tileX < data.length; tileX++) {
+                if (data[tileX] != null) {
+                    final Rectangle rect = rects[tileX];
+                    synchronized (productWriter) {
+                        productWriter.writeBandRasterData(row.band, rect.x, rect.y, rect.width, rect.height,
+                                                          data[tileX], ProgressMonitor.NULL);
+                    }
+                    bytes += (long) data[tileX].getNumElems() * data[tileX].getElemSize();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Assembles the tiles of a row into one buffer of full scene width and writes it with a single call.
+     */
+    private long writeRow(Band band, Rectangle[] rects, ProductData[] data) throws IOException {
+        final int y0 = rects[0].y;
+        final int height = rects[0].height;
+        final ProductData rowData = ProductData.createInstance(data[0].getType(), sceneWidth * height);
+        final Object rowElems = rowData.getElems();
+        long bytes = 0;
+        int targetX = 0;
+        for (int tileX = 0; tileX < data.length; tileX++) {
+            final Object tileElems = data[tileX].getElems();
+            final int width = rects[tileX].width;
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(tileElems, y * width, rowElems, y * sceneWidth + targetX, width);
+            }
+            targetX += width;
+            bytes += (long) data[tileX].getNumElems() * data[tileX].getElemSize();
+        }
+        synchronized (productWriter) {
+            productWriter.writeBandRasterData(band, 0, y0, sceneWidth, height, rowData, ProgressMonitor.NULL);
+        }
+        if (clearCacheAfterRowWrite) {
+            final TileCache tileCache = JAI.getDefaultInstance().getTileCache();
+            if (tileCache != null) {
+                tileCache.flush();
+            }
+        }
+        return bytes;
+    }
+
+    private static boolean isCompleteRow(ProductData[] data) {
+        for (ProductData d : data) {
+            if (d == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void waitForIO() throws IOException {
+        waitingWriters++;
+        notifyAll();
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for tiles to be written", e);
+        } finally {
+            waitingWriters--;
+        }
+    }
+
+    private void checkError() throws IOException {
+        final Throwable t = error;
+        if (t != null) {
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            }
+            throw new IOException(t.getMessage(), t);
+        }
+    }
+
+    private static class PendingRow {
+
+        private final Band band;
+        private final Rectangle[] rects;
+        private final ProductData[] data;
+        private int pending;
+        private int written;
+
+        private PendingRow(Band band, int tileCountX) {
+            this.band = band;
+            this.rects = new Rectangle[tileCountX];
+            this.data = new ProductData[tileCountX];
+        }
+
+        private void clearPending() {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = null;
+            }
+            written += pending;
+            pending = 0;
+        }
+    }
+
+    private static class RowKey implements Comparable<RowKey> {
+
+        private final int bandIndex;
+        private final int tileY;
+
+        private RowKey(int bandIndex, int tileY) {
+            this.bandIndex = bandIndex;
+            this.tileY = tileY;
+        }
+
+        @Override
+        public int compareTo(RowKey other) {
+            if (bandIndex != other.bandIndex) {
+                return bandIndex < other.bandIndex ? -1 : 1;
+            }
+            return tileY < other.tileY ? -1 : (tileY == other.tileY ? 0 : 1);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof RowKey)) {
+                return false;
+            }
+            RowKey other = (RowKey) obj;
+            return bandIndex == other.bandIndex && tileY == other.tileY;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * bandIndex + tileY;
+        }
+    }
+}
@@ -40,6 +40,7 @@ import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProducts;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
+import org.esa.beam.framework.gpf.pointop.PointwiseOperator;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.util.StringUtils;
 
@@ -126,7 +127,7 @@ import java.util.Map;
 		          category = "Utilities",
                   authors = "Marco Zuehlke, Norman Fomferra, Marco Peters",
                   description = "Create a product with one or more bands using mathematical expressions.")
-public class BandMathsOp extends Operator {
+public class BandMathsOp extends Operator implements PointwiseOperator {
 
     public static class BandDescriptor {
 
@@ -265,6 +266,14 @@ public class BandMathsOp extends Operator {
         targetProduct.setDescription(sourceProducts[0].getDescription());
     }
 
+    /**
+     * @return always {@code true}, since each target sample is computed from the source samples at the same position
+     */
+    @Override
+    public boolean isPointwise() {
+        return true;
+    }
+
     @Override
     public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) throws OperatorException {
         Rectangle rect = targetTile.getRectangle();
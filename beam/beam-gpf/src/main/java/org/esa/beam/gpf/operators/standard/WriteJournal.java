@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.gpf.operators.standard;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.dataio.ProductIO;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.util.io.FileUtils;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A journal of the tiles a {@link WriteOp} has completely written, kept next to the output file,
+ * which allows to resume an interrupted write.
+ * <p/>
+ * The journal starts with a header describing the raster layout of the target product, followed by one
+ * line per written tile holding the band index, the tile indices and a checksum of the raw samples.
+ * On resume, an existing journal is only accepted if its header matches the current target product,
+ * and each journaled tile is read back from the output and only counted as written if its checksum matches.
+ */
+class WriteJournal {
+
+    static final String FILE_EXTENSION = ".journal";
+
+    private static final String MAGIC = "#WriteOp-journal-1";
+
+    private final File file;
+    private final List<String> header;
+    private final List<Band> bands;
+    private final Rectangle sceneBounds;
+    private final Dimension tileSize;
+    private final int tileCountX;
+    private final BitSet[] writtenTiles;
+    private final List<String> entries;
+    private Writer writer;
+
+    /**
+     * @param outputFile the output file of the {@link WriteOp}
+     * @param product    the target product
+     * @param bands      the bands which are written
+     * @param tileSize   the tile size
+     */
+    WriteJournal(File outputFile, Product product, List<Band> bands, Dimension tileSize) {
+        this.file = getJournalFile(outputFile);
+        this.bands = bands;
+        this.sceneBounds = new Rectangle(product.getSceneRasterWidth(), product.getSceneRasterHeight());
+        this.tileSize = tileSize;
+        this.tileCountX = (sceneBounds.width + tileSize.width - 1) / tileSize.width;
+        this.writtenTiles = new BitSet[bands.size()];
+        for (int i = 0; i < writtenTiles.length; i++) {
+            writtenTiles[i] = new BitSet();
+        }
+        this.entries = new ArrayList<String>();
+        this.header = new ArrayList<String>();
+        header.add(MAGIC);
+        header.add("raster " + sceneBounds.width + " " + sceneBounds.height + " " + tileSize.width + " " + tileSize.height);
+        for (Band band : bands) {
+            header.add("band " + band.getName() + " " + band.getDataType());
+        }
+    }
+
+    static File getJournalFile(File outputFile) {
+        return new File(outputFile.getAbsoluteFile().getParentFile(),
+                        FileUtils.getFilenameWithoutExtension(outputFile) + FILE_EXTENSION);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Reads an existing journal and checks the journaled tiles against the data found in the output file.
+     *
+     * @param outputFile the output file
+     * @param logger     the logger
+     * @return the number of tiles which need not be written again
+     */
+    int resume(File outputFile, Logger logger) {
+        if (!file.exists() || !outputFile.exists()) {
+            return 0;
+        }
+        final List<String> journaled;
+        try {
+            journaled = readEntries();
+        } catch (IOException e) {
+            logger.warning("Failed to read journal " + file + ": " + e.getMessage());
+            return 0;
+        }
+        if (journaled == null) {
+            logger.warning("Journal " + file + " does not match the target product, writing all tiles");
+            return 0;
+        }
+        int resumedCount = 0;
+        Product product = null;
+        try {
+            product = ProductIO.readProduct(outputFile);
+            if (product == null) {
+                return 0;
+            }
+            for (String entry : journaled) {
+                final String[] tokens = entry.split(" ");
+                final int bandIndex = Integer.parseInt(tokens[0]);
+                final int tileX = Integer.parseInt(tokens[1]);
+                final int tileY = Integer.parseInt(tokens[2]);
+                final long checksum = Long.parseLong(tokens[3], 16);
+                if (bandIndex < 0 || bandIndex >= bands.size() || isTileWritten(bandIndex, tileX, tileY)) {
+                    continue;
+                }
+                final Band band = product.getBand(bands.get(bandIndex).getName());
+                if (band != null && checksum == readChecksum(band, getTileRectangle(tileX, tileY))) {
+                    writtenTiles[bandIndex].set(tileY * tileCountX + tileX);
+                    entries.add(entry);
+                    resumedCount++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to verify journaled tiles of " + outputFile + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            logger.warning("Failed to verify journaled tiles of " + outputFile + ": " + e.getMessage());
+        } finally {
+            if (product != null) {
+                product.dispose();
+            }
+        }
+        return resumedCount;
+    }
+
+    /**
+     * Creates the journal file, containing the header and the verified entries of a resumed journal.
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    synchronized void open() throws IOException {
+        writer = new OutputStreamWriter(new FileOutputStream(file), "US-ASCII");
+        for (String line : header) {
+            writer.write(line);
+            writer.write('\n');
+        }
+        for (String entry : entries) {
+            writer.write(entry);
+            writer.write('\n');
+        }
+        writer.flush();
+        entries.clear();
+    }
+
+    synchronized boolean isTileWritten(int bandIndex, int tileX, int tileY) {
+        return writtenTiles[bandIndex].get(tileY * tileCountX + tileX);
+    }
+
+    /**
+     * Records a tile which has been handed over to the product writer.
+     *
+     * @param bandIndex the band index
+     * @param tileX     the tile column
+     * @param tileY     the tile row
+     * @param data      the raw samples of the tile
+     * @throws IOException if the journal cannot be written
+     */
+    void tileWritten(int bandIndex, int tileX, int tileY, ProductData data) throws IOException {
+        final long checksum = checksum(data);
+        synchronized (this) {
+            writtenTiles[bandIndex].set(tileY * tileCountX + tileX);
+            if (writer != null) {
+                writer.write(bandIndex + " " + tileX + " " + tileY + " " + Long.toHexString(checksum) + "\n");
+                writer.flush();
+            }
+        }
+    }
+
+    synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * Closes and deletes the journal, called once the output is complete.
+     */
+    void delete() {
+        close();
+        file.delete();
+    }
+
+    /**
+     * @return the entries of the journal file or {@code null}, if its header does not match
+     */
+    private List<String> readEntries() throws IOException {
+        final BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            for (String expected : header) {
+                if (!expected.equals(reader.readLine())) {
+                    return null;
+                }
+            }
+            final List<String> lines = new ArrayList<String>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // a line torn by a crash is ignored
+                if (line.split(" ").length == 4) {
+                    lines.add(line);
+                }
+            }
+            return lines;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private Rectangle getTileRectangle(int tileX, int tileY) {
+        return new Rectangle(tileX * tileSize.width, tileY * tileSize.height,
+                             tileSize.width, tileSize.height).intersection(sceneBounds);
+    }
+
+    private static long readChecksum(Band band, Rectangle rect) throws IOException {
+        final ProductData data = ProductData.createInstance(band.getDataType(), rect.width * rect.height);
+        band.readRasterData(rect.x, rect.y, rect.width, rect.height, data, ProgressMonitor.NULL);
+        return checksum(data);
+    }
+
+    static long checksum(ProductData data) {
+        final CRC32 crc = new CRC32();
+        final int numElems = data.getNumElems();
+        final int elemSize = data.getElemSize();
+        final byte[] bytes = new byte[Math.min(numElems, 4096) * elemSize];
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final Object elems = data.getElems();
+        for (int i0 = 0; i0 < numElems; i0 += 4096) {
+            final int n = Math.min(4096, numElems - i0);
+            buffer.clear();
+            if (elems instanceof byte[]) {
+                buffer.put((byte[]) elems, i0, n);
+            } else if (elems instanceof short[]) {
+                buffer.asShortBuffer().put((short[]) elems, i0, n);
+            } else if (elems instanceof int[]) {
+                buffer.asIntBuffer().put((int[]) elems, i0, n);
+            } else if (elems instanceof float[]) {
+                buffer.asFloatBuffer().put((float[]) elems, i0, n);
+            } else if (elems instanceof double[]) {
+                buffer.asDoubleBuffer().put((double[]) elems, i0, n);
+            } else {
+                throw new IllegalArgumentException("unsupported data type: " + ProductData.getTypeString(data.getType()));
+            }
+            crc.update(bytes, 0, n * elemSize);
+        }
+        return crc.getValue();
+    }
+}
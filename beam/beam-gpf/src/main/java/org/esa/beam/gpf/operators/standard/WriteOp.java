@@ -24,6 +24,7 @@ import org.esa.beam.framework.dataio.ProductWriter;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.GPF;
 import org.esa.beam.framework.gpf.Operator;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.OperatorSpi;
@@ -36,18 +37,20 @@ import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.framework.gpf.experimental.Output;
 import org.esa.beam.framework.gpf.internal.OperatorExecutor;
 import org.esa.beam.framework.gpf.internal.OperatorExecutor.ExecutionOrder;
+import org.esa.beam.framework.gpf.internal.OperatorImage;
 import org.esa.beam.jai.ImageManager;
 import org.esa.beam.util.math.MathUtils;
 
 import javax.media.jai.JAI;
+import javax.media.jai.PlanarImage;
 import javax.media.jai.TileCache;
 import java.awt.Dimension;
-import java.awt.Point;
 import java.awt.Rectangle;
 import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -72,6 +75,7 @@ import java.util.Map;
  *         &lt;deleteOutputOnFailure&gt;true&lt;/deleteOutputOnFailure&gt;
  *         &lt;writeEntireTileRows&gt;true&lt;/writeEntireTileRows&gt;
  *         &lt;clearCacheAfterRowWrite&gt;true&lt;/clearCacheAfterRowWrite&gt;
+ *         &lt;resume&gt;false&lt;/resume&gt;
  *     &lt;/parameters&gt;
  * &lt;/node&gt;
  * </pre>
@@ -93,7 +97,7 @@ import java.util.Map;
                   authors = "Marco Zuehlke, Norman Fomferra",
                   copyright = "(c) 2010 by Brockmann Consult",
                   description = "Writes a data product to a file.")
-public class WriteOp extends Operator implements Output {
+public class WriteOp extends Operator implements Output, OperatorExecutor.ExecutionListener {
 
     @TargetProduct
     private Product targetProduct;
@@ -123,7 +127,21 @@ public class WriteOp extends Operator implements Output {
                description = "If true, the internal tile cache is cleared after a tile row has been written. Ignored if writeEntireTileRows=false.")
     private boolean clearCacheAfterRowWrite;
 
-    private final Map<MultiLevelImage, List<Point>> todoLists = new HashMap<MultiLevelImage, List<Point>>();
+    /**
+     * @since NEST 5.1
+     */
+    @Parameter(defaultValue = "false",
+               description = "If true, tiles are written by a dedicated I/O thread, so that computation and writing overlap.")
+    private boolean writeAsync;
+
+    /**
+     * @since NEST 5.1
+     */
+    @Parameter(defaultValue = "false",
+               description = "If true, a journal of the written tiles is kept, so that an interrupted write can be resumed. Only supported for BEAM-DIMAP.")
+    private boolean resume;
+
+    private final Map<MultiLevelImage, BitSet> todoLists = new HashMap<MultiLevelImage, BitSet>();
     private final Map<Row, Tile[]> writeCache = new HashMap<Row, Tile[]>();
 
     private ProductWriter productWriter;
@@ -131,8 +149,11 @@ public class WriteOp extends Operator implements Output {
     private boolean productFileWritten;
     private Dimension tileSize;
     private int tileCountX;
+    private AsyncTileWriter asyncTileWriter;
+    private WriteJournal journal;
 
     private boolean outputFileExists = false;
+    private ExecutionOrder executionOrder = OperatorExecutor.getDefaultExecutionOrder();
 
     public WriteOp() {
         setRequiresAllBands(true);
@@ -194,6 +215,63 @@ public class WriteOp extends Operator implements Output {
         this.clearCacheAfterRowWrite = clearCacheAfterRowWrite;
     }
 
+    public boolean isWriteAsync() {
+        return writeAsync;
+    }
+
+    /**
+     * If set, finished tiles are queued and written in file order by a dedicated I/O thread.
+     * Adjacent tiles of a row are combined into a single write. The queue is bounded by
+     * {@link #getAsyncWriteBufferSize()}.
+     *
+     * @param writeAsync true, if tiles shall be written asynchronously
+     * @since NEST 5.1
+     */
+    public void setWriteAsync(boolean writeAsync) {
+        this.writeAsync = writeAsync;
+    }
+
+    /**
+     * @return the maximum number of bytes queued for asynchronous writing, a quarter of the maximum heap
+     *         size but not more than 256 MB
+     */
+    public static long getAsyncWriteBufferSize() {
+        return Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * If set, a journal of the completely written tiles is kept next to the output file. If the output
+     * and a matching journal already exist, the tiles recorded in the journal are verified against the output
+     * and not computed again. The output is kept on failure and the journal is deleted once the output is complete.
+     * Also enabled by the System property {@link org.esa.beam.framework.gpf.GPF#RESUME_WRITE_PROPERTY}.
+     * Only supported by the BEAM-DIMAP writer, since other writers do not preserve existing band data.
+     *
+     * @param resume true, if an interrupted write shall be resumable
+     * @since NEST 5.1
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public ExecutionOrder getExecutionOrder() {
+        return executionOrder;
+    }
+
+    /**
+     * Sets the order in which {@link #writeProduct(ProgressMonitor)} computes the tiles.
+     * Defaults to the order given by the System property {@link org.esa.beam.framework.gpf.GPF#EXECUTION_ORDER_PROPERTY}.
+     *
+     * @param executionOrder the execution order
+     * @since NEST 5.1
+     */
+    public void setExecutionOrder(ExecutionOrder executionOrder) {
+        this.executionOrder = executionOrder;
+    }
+
     /**
      * Writes the source product.
      *
@@ -203,8 +281,12 @@ public class WriteOp extends Operator implements Output {
         long startNanos = System.nanoTime();
         getLogger().info("Start writing product " + getTargetProduct().getName() + " to " + getFile());
         OperatorExecutor operatorExecutor = OperatorExecutor.create(this);
+        boolean completed = false;
         try {
-            operatorExecutor.execute(ExecutionOrder.ROW_BAND_COLUMN, pm);
+            operatorExecutor.setTileFilter(executionStarted());
+            operatorExecutor.execute(executionOrder, pm);
+            completed = true;
+            executionStopped(true);
 
             getLogger().info("End writing product " + getTargetProduct().getName() + " to " + getFile());
 
@@ -218,17 +300,69 @@ public class WriteOp extends Operator implements Output {
                                                   seconds / h / w));
 
             stopTileComputationObservation();
-        } catch (OperatorException e) {
-            if (deleteOutputOnFailure && !outputFileExists) {
+        } finally {
+            try {
+                if (!completed) {
+                    executionStopped(false);
+                }
+            } finally {
+                dispose();
+            }
+        }
+    }
+
+    /**
+     * Replays and opens the journal, if resuming is enabled. Called by {@link #writeProduct(ProgressMonitor)}
+     * and by the {@link org.esa.beam.framework.gpf.graph.GraphProcessor} for the write nodes of a graph.
+     *
+     * @return a filter skipping the tiles written by a previous run, {@code null} if resuming is not enabled
+     */
+    @Override
+    public OperatorExecutor.TileFilter executionStarted() {
+        if (journal == null) {
+            return null;
+        }
+        try {
+            return openJournal();
+        } catch (IOException e) {
+            throw new OperatorException(e);
+        }
+    }
+
+    /**
+     * Completes the product and deletes the journal if all tiles have been computed. Otherwise the journal is
+     * kept for resuming, or the output is deleted if {@link #isDeleteOutputOnFailure()} is set and the write
+     * is not resumable.
+     *
+     * @param completed {@code true}, if all tiles have been computed
+     */
+    @Override
+    public void executionStopped(boolean completed) {
+        if (completed) {
+            if (journal != null) {
                 try {
-                    productWriter.deleteOutput();
-                } catch (Exception e2) {
-                    getLogger().warning("Failed to delete output after failure: " + e2.getMessage());
+                    synchronized (this) {
+                        if (!productFileWritten) {
+                            // all tiles had been written before
+                            productWriter.writeProductNodes(targetProduct, file);
+                            productFileWritten = true;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new OperatorException(e);
                 }
+                journal.delete();
+                journal = null;
+            }
+        } else if (journal != null) {
+            journal.close();
+        } else if (deleteOutputOnFailure && !outputFileExists) {
+            try {
+                productWriter.deleteOutput();
+                productFileWritten = false;
+            } catch (Exception e) {
+                getLogger().warning("Failed to delete output after failure: " + e.getMessage());
             }
-            throw e;
-        } finally {
-            dispose();
         }
     }
 
@@ -255,6 +389,45 @@ public class WriteOp extends Operator implements Output {
         tileSize = ImageManager.getPreferredTileSize(targetProduct);
         targetProduct.setPreferredTileSize(tileSize);
         tileCountX = MathUtils.ceilInt(targetProduct.getSceneRasterWidth() / (double) tileSize.width);
+
+        if (resume || Boolean.getBoolean(GPF.RESUME_WRITE_PROPERTY)) {
+            if (productWriter instanceof DimapProductWriter) {
+                journal = new WriteJournal(file, targetProduct, writableBands, tileSize);
+            } else {
+                getLogger().warning("Resuming is not supported for the '" + formatName + "' format");
+            }
+        }
+    }
+
+    private OperatorExecutor.TileFilter openJournal() throws IOException {
+        final int resumedCount = journal.resume(file, getLogger());
+        if (resumedCount > 0) {
+            getLogger().info("Resuming write of " + file + ", " + resumedCount + " tiles already written");
+        }
+        journal.open();
+        final WriteJournal resumedJournal = journal;
+        return new OperatorExecutor.TileFilter() {
+            @Override
+            public boolean accept(PlanarImage image, int tileX, int tileY) {
+                if (!(image instanceof OperatorImage) || ((OperatorImage) image).getOperator() != WriteOp.this) {
+                    return true;
+                }
+                final int bandIndex = writableBands.indexOf(((OperatorImage) image).getTargetBand());
+                if (bandIndex < 0) {
+                    return true;
+                }
+                if (writeEntireTileRows && !writeAsync) {
+                    // a row is only written once all of its tiles have been computed
+                    for (int x = 0; x < tileCountX; x++) {
+                        if (!resumedJournal.isTileWritten(bandIndex, x, tileY)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                return !resumedJournal.isTileWritten(bandIndex, tileX, tileY);
+            }
+        };
     }
 
     @Override
@@ -267,16 +440,31 @@ public class WriteOp extends Operator implements Output {
                 if (!productFileWritten) {
                     productWriter.writeProductNodes(targetProduct, file);
                     productFileWritten = true;
+                    if (writeAsync) {
+                        asyncTileWriter = new AsyncTileWriter(productWriter, targetProduct.getSceneRasterWidth(),
+                                                              tileCountX, getAsyncWriteBufferSize(),
+                                                              clearCacheAfterRowWrite, journal);
+                    }
                 }
             }
             final Rectangle rect = targetTile.getRectangle();
-            if (writeEntireTileRows) {
+            if (asyncTileWriter != null) {
+                int tileX = MathUtils.floorInt(targetTile.getMinX() / (double) tileSize.width);
+                int tileY = MathUtils.floorInt(targetTile.getMinY() / (double) tileSize.height);
+                asyncTileWriter.writeTile(targetBand, writableBands.indexOf(targetBand), tileX, tileY, rect,
+                                          targetTile.getRawSamples());
+            } else if (writeEntireTileRows) {
                 int tileX = MathUtils.floorInt(targetTile.getMinX() / (double) tileSize.width);
                 int tileY = MathUtils.floorInt(targetTile.getMinY() / (double) tileSize.height);
                 Row row = new Row(targetBand, tileY);
                 Tile[] tileRow = updateTileRow(row, tileX, targetTile);
                 if (tileRow != null) {
                     writeTileRow(targetBand, tileRow);
+                    if (journal != null) {
+                        for (int x = 0; x < tileRow.length; x++) {
+                            journal.tileWritten(writableBands.indexOf(targetBand), x, tileY, tileRow[x].getRawSamples());
+                        }
+                    }
                 }
             } else {
                 final ProductData rawSamples = targetTile.getRawSamples();
@@ -284,10 +472,18 @@ public class WriteOp extends Operator implements Output {
                     productWriter.writeBandRasterData(targetBand, rect.x, rect.y, rect.width, rect.height, rawSamples,
                                                       pm);
                 }
+                if (journal != null) {
+                    int tileX = MathUtils.floorInt(targetTile.getMinX() / (double) tileSize.width);
+                    int tileY = MathUtils.floorInt(targetTile.getMinY() / (double) tileSize.height);
+                    journal.tileWritten(writableBands.indexOf(targetBand), tileX, tileY, rawSamples);
+                }
             }
             markTileDone(targetBand, targetTile);
         } catch (Exception e) {
-            if (deleteOutputOnFailure && !outputFileExists) {
+            if (asyncTileWriter != null) {
+                asyncTileWriter.abort();
+            }
+            if (deleteOutputOnFailure && !outputFileExists && journal == null) {
                 try {
                     productWriter.deleteOutput();
                     productFileWritten = false;
@@ -360,13 +556,18 @@ public class WriteOp extends Operator implements Output {
         synchronized (todoLists) {
             MultiLevelImage sourceImage = targetBand.getSourceImage();
 
-            final List<Point> currentTodoList = getTodoList(sourceImage);
-            currentTodoList.remove(new Point(sourceImage.XToTileX(targetTile.getMinX()),
-                                             sourceImage.YToTileY(targetTile.getMinY())));
+            final BitSet currentTodoList = getTodoList(targetBand);
+            final int tileX = sourceImage.XToTileX(targetTile.getMinX()) - sourceImage.getMinTileX();
+            final int tileY = sourceImage.YToTileY(targetTile.getMinY()) - sourceImage.getMinTileY();
+            currentTodoList.clear(tileY * sourceImage.getNumXTiles() + tileX);
 
             done = isDone();
         }
         if (done) {
+            if (asyncTileWriter != null) {
+                // wait until all queued tiles are written
+                asyncTileWriter.close();
+            }
             // If we get here all tiles are written
             if (productWriter instanceof DimapProductWriter) {
                 // if we can update the header (only DIMAP) rewrite it!
@@ -378,7 +579,7 @@ public class WriteOp extends Operator implements Output {
     }
 
     private boolean isDone() {
-        for (List<Point> todoList : todoLists.values()) {
+        for (BitSet todoList : todoLists.values()) {
             if (!todoList.isEmpty()) {
                 return false;
             }
@@ -387,15 +588,21 @@ public class WriteOp extends Operator implements Output {
     }
 
 
-    private List<Point> getTodoList(MultiLevelImage sourceImage) {
-        List<Point> todoList = todoLists.get(sourceImage);
+    private BitSet getTodoList(Band targetBand) {
+        MultiLevelImage sourceImage = targetBand.getSourceImage();
+        BitSet todoList = todoLists.get(sourceImage);
         if (todoList == null) {
             final int numXTiles = sourceImage.getNumXTiles();
-            final int numYTiles = sourceImage.getNumYTiles();
-            todoList = new ArrayList<Point>(numXTiles * numYTiles);
-            for (int y = 0; y < numYTiles; y++) {
-                for (int x = 0; x < numXTiles; x++) {
-                    todoList.add(new Point(x, y));
+            final int numTiles = numXTiles * sourceImage.getNumYTiles();
+            todoList = new BitSet(numTiles);
+            todoList.set(0, numTiles);
+            if (journal != null) {
+                // tiles written by a previous run are skipped
+                final int bandIndex = writableBands.indexOf(targetBand);
+                for (int i = 0; i < numTiles; i++) {
+                    if (journal.isTileWritten(bandIndex, i % numXTiles, i / numXTiles)) {
+                        todoList.clear(i);
+                    }
                 }
             }
             todoLists.put(sourceImage, todoList);
@@ -442,11 +649,19 @@ public class WriteOp extends Operator implements Output {
         WriteOp writeOp = new WriteOp(sourceProduct, file, formatName);
         writeOp.setDeleteOutputOnFailure(deleteOutputOnFailure);
         writeOp.setWriteEntireTileRows(writeEntireTileRows);
+        writeOp.setExecutionOrder(executionOrder);
         writeOp.writeProduct(pm);
     }
 
     @Override
     public void dispose() {
+        if (asyncTileWriter != null) {
+            asyncTileWriter.abort();
+            asyncTileWriter = null;
+        }
+        if (journal != null) {
+            journal.close();
+        }
         try {
             productWriter.close();
         } catch (IOException ignore) {
@@ -1,20 +1,37 @@
 package org.esa.beam.framework.gpf.graph;
 
+import com.bc.ceres.binding.dom.DefaultDomElement;
+import com.bc.ceres.binding.dom.DomElement;
+import com.bc.ceres.core.ProgressMonitor;
 import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.framework.gpf.Operator;
 import org.esa.beam.framework.gpf.OperatorSpi;
 import org.esa.beam.framework.gpf.OperatorSpiRegistry;
 import org.esa.beam.framework.gpf.TestOps;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
+import org.esa.beam.framework.gpf.annotations.Parameter;
+import org.esa.beam.framework.gpf.annotations.SourceProduct;
+import org.esa.beam.framework.gpf.annotations.TargetProduct;
+import org.esa.beam.framework.gpf.internal.OperatorImage;
+import org.esa.beam.framework.gpf.pointop.PointwiseOperator;
 import org.esa.beam.util.jai.VerbousTileCache;
 
 import javax.media.jai.JAI;
 import javax.media.jai.TileCache;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
 
 public class GraphContextTest extends TestCase {
     private OperatorSpi spi1;
     private OperatorSpi spi2;
     private OperatorSpi spi3;
+    private OperatorSpi incSpi;
+    private OperatorSpi sumSpi;
     private TileCache jaiTileCache;
     private TileCache testTileCache;
 
@@ -33,6 +50,11 @@ public class GraphContextTest extends TestCase {
         registry.addOperatorSpi(spi1);
         registry.addOperatorSpi(spi2);
         registry.addOperatorSpi(spi3);
+        incSpi = new IncOp.Spi();
+        registry.addOperatorSpi(incSpi);
+        sumSpi = new SumOp.Spi();
+        registry.addOperatorSpi(sumSpi);
+        IncOp.computeTileCount = 0;
     }
 
     @Override
@@ -43,6 +65,8 @@ public class GraphContextTest extends TestCase {
         spiRegistry.removeOperatorSpi(spi1);
         spiRegistry.removeOperatorSpi(spi2);
         spiRegistry.removeOperatorSpi(spi3);
+        spiRegistry.removeOperatorSpi(incSpi);
+        spiRegistry.removeOperatorSpi(sumSpi);
     }
 
     public void testEmptyChain() {
@@ -191,5 +215,196 @@ public class GraphContextTest extends TestCase {
         }
     }
 
+    public void testPointwiseChainIsFused() throws GraphException {
+        Graph graph = new Graph("chain");
 
+        Node node1 = new Node("node1", "Op1");
+        Node node2 = new Node("node2", "IncOp");
+        node2.addSource(new NodeSource("input", "node1"));
+        Node node3 = new Node("node3", "IncOp");
+        node3.addSource(new NodeSource("input", "node2"));
+
+        graph.addNode(node1);
+        graph.addNode(node2);
+        graph.addNode(node3);
+        GraphContext graphContext = new GraphContext(graph);
+
+        NodeContext nodeContext1 = graphContext.getNodeContext(node1);
+        NodeContext nodeContext2 = graphContext.getNodeContext(node2);
+        NodeContext nodeContext3 = graphContext.getNodeContext(node3);
+        OperatorImage image1 = (OperatorImage) nodeContext1.getTargetImage(nodeContext1.getTargetProduct().getBandAt(0));
+        OperatorImage image2 = (OperatorImage) nodeContext2.getTargetImage(nodeContext2.getTargetProduct().getBandAt(0));
+        OperatorImage image3 = (OperatorImage) nodeContext3.getTargetImage(nodeContext3.getTargetProduct().getBandAt(0));
+
+        assertFalse(image1.isFused()); // Op1 is not point-wise
+        assertTrue(image2.isFused());
+        assertNull(image2.getTileCache());
+        assertFalse(image3.isFused()); // output
+
+        Raster raster = image3.getData();
+        assertEquals(2, raster.getSample(0, 0, 0));
+        assertEquals(2, raster.getSample(TestOps.RASTER_WIDTH - 1, TestOps.RASTER_HEIGHT - 1, 0));
+        graphContext.dispose();
+    }
+
+    public void testBranchIsNotFused() throws GraphException {
+        Graph graph = new Graph("branch");
+
+        Node node1 = new Node("node1", "Op1");
+        Node node2 = new Node("node2", "IncOp");
+        node2.addSource(new NodeSource("input", "node1"));
+        Node node3 = new Node("node3", "IncOp");
+        node3.addSource(new NodeSource("input", "node2"));
+        Node node4 = new Node("node4", "IncOp");
+        node4.addSource(new NodeSource("input", "node2"));
+
+        graph.addNode(node1);
+        graph.addNode(node2);
+        graph.addNode(node3);
+        graph.addNode(node4);
+        GraphContext graphContext = new GraphContext(graph);
+
+        NodeContext nodeContext2 = graphContext.getNodeContext(node2);
+        OperatorImage image2 = (OperatorImage) nodeContext2.getTargetImage(nodeContext2.getTargetProduct().getBandAt(0));
+        assertFalse(image2.isFused()); // two consumers
+        graphContext.dispose();
+    }
+
+    public void testFusedRegionIsComputedOncePerTargetTile() throws GraphException {
+        Graph graph = new Graph("chain");
+
+        Node node1 = new Node("node1", "Op1");
+        Node node2 = new Node("node2", "IncOp");
+        node2.addSource(new NodeSource("input", "node1"));
+        Node node3 = new Node("node3", "SumOp");
+        node3.addSource(new NodeSource("input", "node2"));
+
+        graph.addNode(node1);
+        graph.addNode(node2);
+        graph.addNode(node3);
+        GraphContext graphContext = new GraphContext(graph);
+
+        NodeContext nodeContext2 = graphContext.getNodeContext(node2);
+        NodeContext nodeContext3 = graphContext.getNodeContext(node3);
+        OperatorImage image2 = (OperatorImage) nodeContext2.getTargetImage(nodeContext2.getTargetProduct().getBandAt(0));
+        OperatorImage image3 = (OperatorImage) nodeContext3.getTargetImage(nodeContext3.getTargetProduct().getBandAt(0));
+        assertTrue(image2.isFused());
+
+        // SumOp requests the same source tile twice
+        Raster raster = image3.getData();
+        assertEquals(2, raster.getSample(0, 0, 0));
+        assertEquals(1, IncOp.computeTileCount);
+        graphContext.dispose();
+    }
+
+    public void testSourceOfSeveralComputedBandsIsNotFused() throws GraphException {
+        Graph graph = new Graph("chain");
+
+        Node node1 = new Node("node1", "Op1");
+        Node node2 = new Node("node2", "IncOp");
+        node2.addSource(new NodeSource("input", "node1"));
+        Node node3 = new Node("node3", "SumOp");
+        node3.addSource(new NodeSource("input", "node2"));
+        DomElement parameters = new DefaultDomElement("parameters");
+        parameters.createChild("bandCount").setValue("2");
+        node3.setConfiguration(parameters);
+
+        graph.addNode(node1);
+        graph.addNode(node2);
+        graph.addNode(node3);
+        GraphContext graphContext = new GraphContext(graph);
+
+        NodeContext nodeContext2 = graphContext.getNodeContext(node2);
+        OperatorImage image2 = (OperatorImage) nodeContext2.getTargetImage(nodeContext2.getTargetProduct().getBandAt(0));
+        // each band of node3 would compute the source again
+        assertFalse(image2.isFused());
+        graphContext.dispose();
+    }
+
+    @OperatorMetadata(alias = "IncOp")
+    public static class IncOp extends Operator implements PointwiseOperator {
+
+        static int computeTileCount;
+
+        @SourceProduct
+        public Product input;
+
+        @TargetProduct
+        public Product output;
+
+        @Override
+        public void initialize() {
+            output = new Product("IncName", "IncType", TestOps.RASTER_WIDTH, TestOps.RASTER_HEIGHT);
+            output.addBand(new Band("Inc", ProductData.TYPE_INT8, TestOps.RASTER_WIDTH, TestOps.RASTER_HEIGHT));
+        }
+
+        @Override
+        public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) {
+            computeTileCount++;
+            Rectangle rectangle = targetTile.getRectangle();
+            Tile sourceTile = getSourceTile(input.getBandAt(0), rectangle);
+            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                    targetTile.setSample(x, y, sourceTile.getSampleInt(x, y) + 1);
+                }
+            }
+        }
+
+        @Override
+        public boolean isPointwise() {
+            return true;
+        }
+
+        public static class Spi extends OperatorSpi {
+
+            public Spi() {
+                super(IncOp.class);
+            }
+        }
+    }
+
+    @OperatorMetadata(alias = "SumOp")
+    public static class SumOp extends Operator implements PointwiseOperator {
+
+        @SourceProduct
+        public Product input;
+
+        @TargetProduct
+        public Product output;
+
+        @Parameter(defaultValue = "1")
+        public int bandCount;
+
+        @Override
+        public void initialize() {
+            output = new Product("SumName", "SumType", TestOps.RASTER_WIDTH, TestOps.RASTER_HEIGHT);
+            for (int i = 0; i < bandCount; i++) {
+                output.addBand(new Band("Sum" + i, ProductData.TYPE_INT8, TestOps.RASTER_WIDTH, TestOps.RASTER_HEIGHT));
+            }
+        }
+
+        @Override
+        public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) {
+            Rectangle rectangle = targetTile.getRectangle();
+            Tile sourceTile1 = getSourceTile(input.getBandAt(0), rectangle);
+            Tile sourceTile2 = getSourceTile(input.getBandAt(0), rectangle);
+            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                    targetTile.setSample(x, y, sourceTile1.getSampleInt(x, y) + sourceTile2.getSampleInt(x, y));
+                }
+            }
+        }
+
+        @Override
+        public boolean isPointwise() {
+            return true;
+        }
+
+        public static class Spi extends OperatorSpi {
+
+            public Spi() {
+                super(SumOp.class);
+            }
+        }
+    }
 }
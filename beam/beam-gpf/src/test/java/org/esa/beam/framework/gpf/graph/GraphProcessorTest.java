@@ -18,15 +18,31 @@ package org.esa.beam.framework.gpf.graph;
 
 import com.bc.ceres.core.ProgressMonitor;
 import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.framework.gpf.Operator;
 import org.esa.beam.framework.gpf.OperatorSpi;
 import org.esa.beam.framework.gpf.OperatorSpiRegistry;
 import org.esa.beam.framework.gpf.TestOps;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.internal.TileMemoryBudget;
 import org.esa.beam.util.jai.VerbousTileCache;
 
 import javax.media.jai.JAI;
+import javax.media.jai.OpImage;
+import javax.media.jai.PlanarImage;
 import javax.media.jai.TileCache;
+import javax.media.jai.TileComputationListener;
+import javax.media.jai.TileRequest;
+import javax.media.jai.TileScheduler;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class GraphProcessorTest extends TestCase {
     private OperatorSpi spi1;
@@ -128,4 +144,160 @@ public class GraphProcessorTest extends TestCase {
         VerbousTileCache.setVerbous(false);
     }
 
+    public void testWorkingSetIsReservedOncePerTileIndex() throws Exception {
+        final String budgetProperty = System.getProperty(GPF.TILE_MEMORY_BUDGET_PROPERTY);
+        System.setProperty(GPF.TILE_MEMORY_BUDGET_PROPERTY, "0");
+        final TileScheduler tileScheduler = JAI.getDefaultInstance().getTileScheduler();
+        final DeferringTileScheduler deferringTileScheduler = new DeferringTileScheduler(tileScheduler, 2);
+        JAI.getDefaultInstance().setTileScheduler(deferringTileScheduler);
+        final OperatorSpi spi = new WorkingSetOp.Spi();
+        final OperatorSpiRegistry registry = GPF.getDefaultInstance().getOperatorSpiRegistry();
+        registry.addOperatorSpi(spi);
+        try {
+            Graph graph = new Graph("graph");
+            graph.addNode(new Node("node1", "WorkingSetOp"));
+            new GraphProcessor().executeGraph(new GraphContext(graph), ProgressMonitor.NULL);
+
+            // both band tiles of the tile index are in progress, but the working set is reserved once
+            assertEquals(2, deferringTileScheduler.reservedMemory.size());
+            assertEquals(1000L, deferringTileScheduler.reservedMemory.get(0).longValue());
+            assertEquals(1000L, deferringTileScheduler.reservedMemory.get(1).longValue());
+            assertEquals(0L, TileMemoryBudget.getDefaultInstance().getReserved());
+        } finally {
+            registry.removeOperatorSpi(spi);
+            JAI.getDefaultInstance().setTileScheduler(tileScheduler);
+            if (budgetProperty != null) {
+                System.setProperty(GPF.TILE_MEMORY_BUDGET_PROPERTY, budgetProperty);
+            } else {
+                System.clearProperty(GPF.TILE_MEMORY_BUDGET_PROPERTY);
+            }
+        }
+    }
+
+    public static class WorkingSetOp extends Operator {
+
+        @Override
+        public void initialize() {
+            Product targetProduct = new Product("WorkingSetOp", "T", TestOps.RASTER_WIDTH, TestOps.RASTER_HEIGHT);
+            targetProduct.addBand("a", ProductData.TYPE_INT8);
+            targetProduct.addBand("b", ProductData.TYPE_INT8);
+            setTargetProduct(targetProduct);
+        }
+
+        @Override
+        public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) {
+            for (Tile.Pos pos : targetTile) {
+                targetTile.setSample(pos.x, pos.y, 1);
+            }
+        }
+
+        @Override
+        public long estimateTileWorkingSetSize(Rectangle targetRectangle) {
+            return 1000L;
+        }
+
+        public static class Spi extends OperatorSpi {
+            public Spi() {
+                super(WorkingSetOp.class);
+            }
+        }
+    }
+
+    /**
+     * Records the reserved tile memory and holds back the scheduled tiles until a batch is complete,
+     * so that the tiles of a batch are all in progress at the same time.
+     */
+    private static class DeferringTileScheduler implements TileScheduler {
+
+        private final TileScheduler delegate;
+        private final int batchSize;
+        private final List<Object[]> deferred = new ArrayList<Object[]>();
+        private final List<Long> reservedMemory = Collections.synchronizedList(new ArrayList<Long>());
+
+        private DeferringTileScheduler(TileScheduler delegate, int batchSize) {
+            this.delegate = delegate;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public TileRequest scheduleTiles(PlanarImage target, Point[] tileIndices,
+                                         TileComputationListener[] tileListeners) {
+            reservedMemory.add(TileMemoryBudget.getDefaultInstance().getReserved());
+            final List<Object[]> batch;
+            synchronized (deferred) {
+                deferred.add(new Object[]{target, tileIndices, tileListeners});
+                if (deferred.size() < batchSize) {
+                    return null;
+                }
+                batch = new ArrayList<Object[]>(deferred);
+                deferred.clear();
+            }
+            TileRequest request = null;
+            for (Object[] args : batch) {
+                request = delegate.scheduleTiles((PlanarImage) args[0], (Point[]) args[1],
+                                                 (TileComputationListener[]) args[2]);
+            }
+            return request;
+        }
+
+        @Override
+        public Raster scheduleTile(OpImage target, int tileX, int tileY) {
+            return delegate.scheduleTile(target, tileX, tileY);
+        }
+
+        @Override
+        public Raster[] scheduleTiles(OpImage target, Point[] tileIndices) {
+            return delegate.scheduleTiles(target, tileIndices);
+        }
+
+        @Override
+        public void cancelTiles(TileRequest request, Point[] tileIndices) {
+            delegate.cancelTiles(request, tileIndices);
+        }
+
+        @Override
+        public void prefetchTiles(PlanarImage target, Point[] tileIndices) {
+            delegate.prefetchTiles(target, tileIndices);
+        }
+
+        @Override
+        public int getParallelism() {
+            return Math.max(batchSize, delegate.getParallelism());
+        }
+
+        @Override
+        public void setParallelism(int parallelism) {
+            delegate.setParallelism(parallelism);
+        }
+
+        @Override
+        public int getPriority() {
+            return delegate.getPriority();
+        }
+
+        @Override
+        public void setPriority(int priority) {
+            delegate.setPriority(priority);
+        }
+
+        @Override
+        public int getPrefetchParallelism() {
+            return delegate.getPrefetchParallelism();
+        }
+
+        @Override
+        public void setPrefetchParallelism(int parallelism) {
+            delegate.setPrefetchParallelism(parallelism);
+        }
+
+        @Override
+        public int getPrefetchPriority() {
+            return delegate.getPrefetchPriority();
+        }
+
+        @Override
+        public void setPrefetchPriority(int priority) {
+            delegate.setPrefetchPriority(priority);
+        }
+    }
 }
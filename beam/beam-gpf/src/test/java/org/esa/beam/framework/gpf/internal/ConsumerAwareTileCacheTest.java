@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.internal;
+
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+
+import javax.media.jai.JAI;
+import javax.media.jai.PlanarImage;
+import java.awt.Rectangle;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ConsumerAwareTileCacheTest extends TestCase {
+
+    private static final long CAPACITY = 16L * 1024 * 1024;
+
+    private Product product;
+    private TestOpImage producer;
+    private TestOpImage consumer;
+    private ConsumerAwareTileCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        product = new Product("N", "T", 40, 40);
+        product.setPreferredTileSize(20, 20);
+        product.addBand("P", ProductData.TYPE_FLOAT32);
+        product.addBand("C", ProductData.TYPE_FLOAT32);
+        producer = new TestOpImage(product.getBand("P"));
+        consumer = new TestOpImage(product.getBand("C"));
+        cache = new ConsumerAwareTileCache(JAI.createTileCache(CAPACITY), CAPACITY);
+        producer.setTileCache(cache);
+        cache.addProducer(producer, Collections.singletonList(consumer));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cache.dispose();
+        producer.dispose();
+        consumer.dispose();
+        product.dispose();
+    }
+
+    public void testTileIsReleasedAfterLastRead() {
+        producer.getTile(0, 0);
+        assertEquals(1, cache.getPinnedTileCount());
+
+        computeConsumerTile(new Rectangle(0, 0, 20, 20), new Rectangle(0, 0, 20, 20));
+
+        assertEquals(0, cache.getPinnedTileCount());
+        assertNull(cache.getTile(producer, 0, 0));
+    }
+
+    public void testTilesArePinnedUntilAllNeighboursAreComputed() {
+        for (int tileY = 0; tileY < 2; tileY++) {
+            for (int tileX = 0; tileX < 2; tileX++) {
+                producer.getTile(tileX, tileY);
+            }
+        }
+        assertEquals(4, cache.getPinnedTileCount());
+
+        // each consumer tile reads its own rectangle extended by one pixel, clipped to the image bounds
+        final Rectangle bounds = producer.getBounds();
+        computeConsumerTile(new Rectangle(0, 0, 20, 20), new Rectangle(-1, -1, 22, 22).intersection(bounds));
+        // the corner tile is read by its neighbours as well
+        assertEquals(4, cache.getPinnedTileCount());
+        assertNotNull(cache.getTile(producer, 0, 0));
+
+        computeConsumerTile(new Rectangle(20, 0, 20, 20), new Rectangle(19, -1, 22, 22).intersection(bounds));
+        computeConsumerTile(new Rectangle(0, 20, 20, 20), new Rectangle(-1, 19, 22, 22).intersection(bounds));
+        assertEquals(4, cache.getPinnedTileCount());
+        assertNotNull(cache.getTile(producer, 0, 0));
+        assertNotNull(cache.getTile(producer, 1, 1));
+
+        computeConsumerTile(new Rectangle(20, 20, 20, 20), new Rectangle(19, 19, 22, 22).intersection(bounds));
+        assertEquals(0, cache.getPinnedTileCount());
+        assertNull(cache.getTile(producer, 1, 1));
+    }
+
+    public void testTileIsReadOnceByAllImagesOfConsumer() {
+        product.addBand("D", ProductData.TYPE_FLOAT32);
+        final CountingOpImage countingProducer = new CountingOpImage(product.getBand("P"));
+        final TestOpImage consumer2 = new TestOpImage(product.getBand("D"));
+        try {
+            countingProducer.setTileCache(cache);
+            cache.addProducer(countingProducer, Arrays.asList(consumer, consumer2));
+            final Rectangle tileRect = new Rectangle(0, 0, 20, 20);
+
+            // both bands of the consumer read the same producer tile
+            computeConsumerTile(consumer, countingProducer, tileRect, tileRect);
+            assertEquals(1, cache.getPinnedTileCount());
+            assertNotNull(cache.getTile(countingProducer, 0, 0));
+
+            computeConsumerTile(consumer2, countingProducer, tileRect, tileRect);
+            assertEquals(0, cache.getPinnedTileCount());
+            assertNull(cache.getTile(countingProducer, 0, 0));
+            assertEquals(1, countingProducer.computeCount);
+        } finally {
+            countingProducer.dispose();
+            consumer2.dispose();
+        }
+    }
+
+    private void computeConsumerTile(Rectangle targetRect, Rectangle sourceRegion) {
+        assertTrue(ConsumerAwareTileCache.beginComputation(consumer, consumer, targetRect));
+        try {
+            cache.sourceRegionRead(producer, sourceRegion);
+        } finally {
+            ConsumerAwareTileCache.endComputation();
+        }
+    }
+
+    private void computeConsumerTile(TestOpImage consumerImage, PlanarImage producerImage,
+                                     Rectangle targetRect, Rectangle sourceRegion) {
+        assertTrue(ConsumerAwareTileCache.beginComputation(consumerImage, consumerImage, targetRect));
+        try {
+            producerImage.getData(sourceRegion);
+            cache.sourceRegionRead(producerImage, sourceRegion);
+        } finally {
+            ConsumerAwareTileCache.endComputation();
+        }
+    }
+
+    private static class CountingOpImage extends TestOpImage {
+
+        private int computeCount;
+
+        private CountingOpImage(Band band) {
+            super(band);
+        }
+
+        @Override
+        protected synchronized void computeRect(PlanarImage[] planarImages, WritableRaster writableRaster,
+                                                Rectangle rectangle) {
+            computeCount++;
+            super.computeRect(planarImages, writableRaster, rectangle);
+        }
+    }
+}
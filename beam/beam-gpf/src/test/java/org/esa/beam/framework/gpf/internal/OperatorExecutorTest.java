@@ -15,11 +15,13 @@
  */
 package org.esa.beam.framework.gpf.internal;
 
+import com.bc.ceres.core.NullProgressMonitor;
 import com.bc.ceres.core.ProgressMonitor;
 
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.GPF;
 import org.esa.beam.framework.gpf.Operator;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
@@ -48,6 +50,7 @@ public class OperatorExecutorTest extends TestCase {
         TileScheduler delegate;
         List<String> recordedCalls = Collections.synchronizedList(new ArrayList<String>());
         List<Point> requestedTileIndices = Collections.synchronizedList(new ArrayList<Point>());
+        List<Long> reservedMemory = Collections.synchronizedList(new ArrayList<Long>());
         
         RecordingTileScheduler(TileScheduler delegate) {
             this.delegate = delegate;
@@ -106,6 +109,7 @@ public class OperatorExecutorTest extends TestCase {
                                          TileComputationListener[] tileListeners) {
             recordedCalls.add("scheduleTiles");
             requestedTileIndices.addAll(Arrays.asList(tileIndices));
+            reservedMemory.add(TileMemoryBudget.getDefaultInstance().getReserved());
             return delegate.scheduleTiles(target, tileIndices, tileListeners);
         }
 
@@ -249,6 +253,69 @@ public class OperatorExecutorTest extends TestCase {
         assertEquals(new Point(1, 1), recordingTileScheduler.requestedTileIndices.get(7));
     }
     
+    public void testWorkingSetIsReservedOncePerTileIndex() {
+        final String budgetProperty = System.getProperty(GPF.TILE_MEMORY_BUDGET_PROPERTY);
+        System.setProperty(GPF.TILE_MEMORY_BUDGET_PROPERTY, "0");
+        try {
+            Product sourceProduct = createSourceProduct();
+            Band bandB = sourceProduct.addBand("b", ProductData.TYPE_INT8);
+            bandB.setRasterData(createDataFor(bandB));
+            bandB.setSynthetic(true);
+            Operator op = new TestOP(sourceProduct);
+            OperatorExecutor operatorExecutor = OperatorExecutor.create(op);
+            operatorExecutor.setTileWorkingSetSize(1000);
+            operatorExecutor.execute(ExecutionOrder.ROW_COLUMN_BAND, ProgressMonitor.NULL);
+
+            // the working set covers the tiles of both bands
+            assertEquals(2, recordingTileScheduler.reservedMemory.size());
+            assertEquals(1000L, recordingTileScheduler.reservedMemory.get(0).longValue());
+            assertEquals(1000L, recordingTileScheduler.reservedMemory.get(1).longValue());
+            assertEquals(0L, TileMemoryBudget.getDefaultInstance().getReserved());
+        } finally {
+            if (budgetProperty != null) {
+                System.setProperty(GPF.TILE_MEMORY_BUDGET_PROPERTY, budgetProperty);
+            } else {
+                System.clearProperty(GPF.TILE_MEMORY_BUDGET_PROPERTY);
+            }
+        }
+    }
+
+    public void testManyTilesTwoBands_WorkStealing() {
+        Product sourceProduct = createSourceProduct();
+        Band bandB = sourceProduct.addBand("b", ProductData.TYPE_INT8);
+        bandB.setRasterData(createDataFor(bandB));
+        bandB.setSynthetic(true);
+        sourceProduct.setPreferredTileSize(50, 50);
+        Operator op = new TestOP(sourceProduct);
+        OperatorExecutor operatorExecutor = OperatorExecutor.create(op);
+        CountingProgressMonitor pm = new CountingProgressMonitor();
+        operatorExecutor.execute(ExecutionOrder.WORK_STEALING, pm);
+
+        // tiles are pulled directly by the work-stealing pool, not by the JAI tile scheduler
+        assertEquals(1, recordingTileScheduler.recordedCalls.size());
+        assertEquals("getParallelism", recordingTileScheduler.recordedCalls.get(0));
+        assertEquals(0, recordingTileScheduler.requestedTileIndices.size());
+
+        assertEquals(8, pm.totalWork);
+        assertEquals(8, pm.worked);
+    }
+
+    private static class CountingProgressMonitor extends NullProgressMonitor {
+
+        int totalWork;
+        int worked;
+
+        @Override
+        public void beginTask(String taskName, int totalWork) {
+            this.totalWork = totalWork;
+        }
+
+        @Override
+        public void worked(int work) {
+            worked += work;
+        }
+    }
+
     private Product createSourceProduct() {
         Product product = new Product("source", "source", 100, 100);
         Band bandA = product.addBand("a", ProductData.TYPE_INT8);
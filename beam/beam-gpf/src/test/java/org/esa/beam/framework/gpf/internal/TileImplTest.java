@@ -21,7 +21,10 @@ import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.util.ImageUtils;
 
+import java.awt.Rectangle;
+import java.awt.image.Raster;
 import java.util.Arrays;
 
 public class TileImplTest extends TestCase {
@@ -266,6 +269,53 @@ public class TileImplTest extends TestCase {
         return new TileImpl(band, band.getSourceImage().getData());
     }
 
+    public void testSharedTileIsCopiedOnWrite() {
+        Product product = new Product("n", "t", W, H);
+        Band band = product.addBand("x", ProductData.TYPE_FLOAT32);
+        ProductData rasterData = band.createCompatibleRasterData();
+        for (int i = 0; i < N; i++) {
+            rasterData.setElemFloatAt(i, i);
+        }
+        band.setRasterData(rasterData);
+        Raster raster = band.getSourceImage().getData();
+        float[] sharedSamples = (float[]) ImageUtils.getPrimitiveArray(raster.getDataBuffer());
+
+        TileImpl tile = new TileImpl(band, raster, new Rectangle(0, 0, W, H), false, true);
+        assertEquals(3.0F, tile.getSampleFloat(3, 0), 1.0e-5F);
+        float[] rawSamples = (float[]) tile.getRawSamples().getElems();
+        assertNotSame(sharedSamples, rawSamples);
+        assertEquals(N - 1, rawSamples[N - 1], 1.0e-5F);
+
+        // the data buffer is read without copying
+        assertSame(sharedSamples, tile.getDataBufferFloat());
+        assertEquals(5.0F, tile.getDataBufferFloat()[tile.getDataBufferIndex(5, 0)], 1.0e-5F);
+
+        // setting a sample copies the raster with the same layout
+        tile.setSample(1, 0, 42.0F);
+        assertEquals(42.0F, tile.getSampleFloat(1, 0), 1.0e-5F);
+        assertEquals(1.0F, sharedSamples[1], 1.0e-5F);
+        assertEquals(1.0F, raster.getSampleFloat(1, 0, 0), 1.0e-5F);
+        float[] dataBuffer = tile.getDataBufferFloat();
+        assertNotSame(sharedSamples, dataBuffer);
+        assertEquals(42.0F, dataBuffer[tile.getDataBufferIndex(1, 0)], 1.0e-5F);
+        assertEquals(N - 1, dataBuffer[tile.getDataBufferIndex(W - 1, H - 1)], 1.0e-5F);
+
+        // a sub-region is shared as a child of the raster
+        Rectangle region = new Rectangle(2, 1, 3, 2);
+        Raster child = raster.createChild(region.x, region.y, region.width, region.height, region.x, region.y, null);
+        tile = new TileImpl(band, child, region, false, true);
+        assertSame(sharedSamples, tile.getDataBufferFloat());
+        assertEquals(W, tile.getScanlineStride());
+        assertEquals(W + 2, tile.getSampleFloat(2, 1), 1.0e-5F);
+        assertEquals(2 * W + 4, tile.getDataBufferFloat()[tile.getDataBufferIndex(4, 2)], 1.0e-5F);
+        float[] rawSubSamples = (float[]) tile.getRawSamples().getElems();
+        assertEquals(6, rawSubSamples.length);
+        assertEquals(2 * W + 4, rawSubSamples[5], 1.0e-5F);
+        tile.setSample(3, 1, -1.0F);
+        assertEquals(-1.0F, tile.getSampleFloat(3, 1), 1.0e-5F);
+        assertEquals(W + 3, raster.getSampleFloat(3, 1, 0), 1.0e-5F);
+    }
+
     private static Tile createIntTile(int type, int i0, double scalingFactor) {
         Product product = new Product("n", "t", W, H);
         Band band = product.addBand("x", type);
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.gpf.internal;
+
+import com.bc.ceres.core.ProgressMonitor;
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.OperatorException;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.annotations.SourceProduct;
+
+import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TileMemoryBudgetTest extends TestCase {
+
+    public void testAcquireWaitsForRelease() throws Exception {
+        final TileMemoryBudget budget = new TileMemoryBudget(100);
+        budget.acquire(60);
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    budget.acquire(60);
+                    acquired.countDown();
+                } catch (InterruptedException e) {
+                    // test fails
+                }
+            }
+        };
+        thread.start();
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(60, budget.getReserved());
+
+        budget.release(60);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertEquals(60, budget.getReserved());
+        assertEquals(1, budget.getDelayedTileCount());
+    }
+
+    public void testOversizedTileIsComputedAlone() throws Exception {
+        final TileMemoryBudget budget = new TileMemoryBudget(100);
+        budget.acquire(500);
+        assertEquals(500, budget.getReserved());
+        budget.release(500);
+        assertEquals(0, budget.getReserved());
+        assertEquals(0, budget.getDelayedTileCount());
+    }
+
+    public void testUnlimitedBudget() throws Exception {
+        final TileMemoryBudget budget = new TileMemoryBudget(0);
+        budget.acquire(500);
+        budget.acquire(500);
+        assertEquals(1000, budget.getReserved());
+        assertEquals(0, budget.getDelayedTileCount());
+    }
+
+    public void testNestedReservationOfCurrentThread() throws Exception {
+        final TileMemoryBudget budget = new TileMemoryBudget(100);
+        budget.acquireForCurrentThread(80);
+        // would wait forever if not nested
+        budget.acquireForCurrentThread(80);
+        assertEquals(80, budget.getReserved());
+
+        budget.releaseForCurrentThread();
+        assertEquals(80, budget.getReserved());
+        budget.releaseForCurrentThread();
+        assertEquals(0, budget.getReserved());
+    }
+
+    public void testEstimateSumsUpstreamOperators() {
+        final Product sourceProduct = new Product("source", "source", 100, 80);
+        sourceProduct.addBand("band", ProductData.TYPE_FLOAT32);
+        sourceProduct.setPreferredTileSize(50, 50);
+
+        final Operator upstream = new WorkingSetOp(sourceProduct, 2);
+        final Operator downstream = new WorkingSetOp(upstream.getTargetProduct(), 3);
+
+        final RenderedImage image = downstream.getTargetProduct().getBand("band").getSourceImage();
+        assertEquals(50 * 50 * (2 + 3), TileMemoryBudget.estimateTileWorkingSetSize(new RenderedImage[]{image}));
+        assertEquals(0, TileMemoryBudget.estimateTileWorkingSetSize(
+                new RenderedImage[]{sourceProduct.getBand("band").getSourceImage()}));
+    }
+
+    private static class WorkingSetOp extends Operator {
+
+        @SourceProduct
+        Product source;
+        private final int bytesPerPixel;
+
+        WorkingSetOp(Product source, int bytesPerPixel) {
+            this.source = source;
+            this.bytesPerPixel = bytesPerPixel;
+        }
+
+        @Override
+        public void initialize() throws OperatorException {
+            final Product targetProduct = new Product("target", "target",
+                                                      source.getSceneRasterWidth(), source.getSceneRasterHeight());
+            targetProduct.addBand("band", ProductData.TYPE_FLOAT32);
+            targetProduct.setPreferredTileSize(source.getPreferredTileSize());
+            setTargetProduct(targetProduct);
+        }
+
+        @Override
+        public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+        }
+
+        @Override
+        public long estimateTileWorkingSetSize(Rectangle targetRectangle) {
+            return (long) targetRectangle.width * targetRectangle.height * bytesPerPixel;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.esa.beam.framework.gpf.graph.Node;
 
 import javax.media.jai.JAI;
 import javax.media.jai.TileScheduler;
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.HashMap;
@@ -200,6 +201,21 @@ public class CommandLineToolGraphTest extends TestCase {
 
     }
 
+    public void testGraphWithMetricsFile() throws Exception {
+        final File metricsFile = File.createTempFile("metrics", ".json");
+        assertTrue(metricsFile.delete());
+        try {
+            clTool.run(new String[]{"graph.xml", "-metrics", metricsFile.getPath()});
+
+            assertEquals("g=graph.xml;e=chain1;", context.logString);
+            assertTrue(metricsFile.exists());
+            assertNull(System.getProperty(GPF.TILE_COMPUTATION_OBSERVER_PROPERTY));
+            assertNull(System.getProperty(GPF.TILE_COMPUTATION_METRICS_FILE_PROPERTY));
+        } finally {
+            metricsFile.delete();
+        }
+    }
+
     private void testGraph(String[] args,
                            int expectedNodeCount,
                            String expectedLog,
@@ -331,6 +347,8 @@ public class CommandLineToolGraphTest extends TestCase {
         public void executeGraph(Graph graph) throws GraphException {
             logString += "e=" + graph.getId() + ";";
             executedGraph = graph;
+            // as the GraphProcessor does, starts the tile computation observation if requested
+            new TestOps.Op1();
         }
 
 
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.main;
+
+import junit.framework.TestCase;
+import org.esa.beam.util.io.FileUtils;
+
+import javax.media.jai.JAI;
+import javax.media.jai.TileScheduler;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+
+public class GPTDaemonTest extends TestCase {
+
+    private File spoolDir;
+    private GPTDaemon daemon;
+    private Thread daemonThread;
+
+    @Override
+    protected void setUp() throws Exception {
+        spoolDir = new File(System.getProperty("java.io.tmpdir"), "GPTDaemonTest-" + System.nanoTime());
+        daemon = new GPTDaemon(0, spoolDir);
+        daemonThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    daemon.run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        daemonThread.start();
+        for (int i = 0; i < 100 && daemon.getLocalPort() == -1; i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(daemon.getLocalPort() > 0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        daemon.stop();
+        daemonThread.join(10000);
+        FileUtils.deleteTree(spoolDir);
+    }
+
+    public void testSpoolJobs() throws Exception {
+        writeJob("a", "# prints the usage\n-h\n");
+        writeJob("b", "NoSuchOperator\n");
+
+        final File doneFile = new File(spoolDir, "a.done");
+        final File failedFile = new File(spoolDir, "b.failed");
+        for (int i = 0; i < 100 && !(doneFile.exists() && failedFile.exists()); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(doneFile.exists());
+        assertTrue(failedFile.exists());
+        assertFalse(new File(spoolDir, "a.job").exists());
+
+        final String log = FileUtils.readText(new File(spoolDir, "a.log"));
+        assertTrue(log.startsWith("Usage:\n  gpt <op>|<graph-file> [options] "));
+        assertTrue(log.contains("completed: queued "));
+        assertTrue(FileUtils.readText(new File(spoolDir, "b.log")).contains("failed: queued "));
+    }
+
+    public void testJobParallelismIsRestored() throws Exception {
+        final TileScheduler tileScheduler = JAI.getDefaultInstance().getTileScheduler();
+        final int parallelism = tileScheduler.getParallelism();
+        writeJob("q", "-q\n" + (parallelism + 3) + "\nNoSuchOperator\n");
+
+        final File failedFile = new File(spoolDir, "q.failed");
+        for (int i = 0; i < 100 && !failedFile.exists(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(failedFile.exists());
+        assertEquals(parallelism, tileScheduler.getParallelism());
+    }
+
+    private void writeJob(String name, String text) throws IOException {
+        final File tmpFile = new File(spoolDir, name + ".tmp");
+        final Writer writer = new FileWriter(tmpFile);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+        assertTrue(tmpFile.renameTo(new File(spoolDir, name + GPTDaemon.JOB_EXTENSION)));
+    }
+
+    public void testStopByClient() throws Exception {
+        assertEquals(0, GPTClient.run(new String[]{"-port", String.valueOf(daemon.getLocalPort()),
+                "-spool", spoolDir.getPath(), GPTDaemon.STOP_COMMAND}));
+        daemonThread.join(10000);
+        assertFalse(daemonThread.isAlive());
+        assertFalse(daemon.getTokenFile().exists());
+    }
+
+    public void testTokenFileIsOwnerOnly() throws Exception {
+        final Path tokenPath = daemon.getTokenFile().toPath();
+        assertTrue(Files.isRegularFile(tokenPath));
+        if (Files.getFileStore(tokenPath).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenPath)));
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(spoolDir.toPath())));
+        }
+    }
+
+    public void testClientWithInvalidTokenIsRejected() throws Exception {
+        final Socket socket = new Socket(InetAddress.getByName(null), daemon.getLocalPort());
+        try {
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF("invalid");
+            out.flush();
+            final DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertEquals(GPTDaemon.MSG_RESULT, in.readByte());
+            assertEquals(1, in.readInt());
+        } finally {
+            socket.close();
+        }
+        assertTrue(daemon.getLocalPort() > 0);
+    }
+
+    public void testClientWithoutTokenFileFails() throws Exception {
+        final File otherDir = new File(spoolDir, "other");
+        try {
+            GPTClient.run(new String[]{"-port", String.valueOf(daemon.getLocalPort()),
+                    "-spool", otherDir.getPath(), GPTDaemon.STOP_COMMAND});
+            fail("IOException expected");
+        } catch (IOException expected) {
+        }
+        assertTrue(daemon.getLocalPort() > 0);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2011 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.gpf.monitor;
+
+import junit.framework.TestCase;
+
+public class TileComputationMetricsTest extends TestCase {
+
+    public void testBucketsCoverAllValues() {
+        long lastUpperBound = -1;
+        for (long nanos : new long[]{0, 1, 3, 4, 5, 7, 8, 9, 10, 1000, 123456789, Long.MAX_VALUE / 2}) {
+            final int index = TileComputationMetrics.LatencyHistogram.getBucketIndex(nanos);
+            final long upperBound = TileComputationMetrics.LatencyHistogram.getBucketUpperBound(index);
+            assertTrue(nanos <= upperBound);
+            assertTrue(index == 0 || nanos > TileComputationMetrics.LatencyHistogram.getBucketUpperBound(index - 1));
+            assertTrue(upperBound >= lastUpperBound);
+            lastUpperBound = upperBound;
+        }
+    }
+
+    public void testPercentiles() {
+        final TileComputationMetrics.LatencyHistogram histogram = new TileComputationMetrics.LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(0.5));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100000000L, histogram.getMaxNanos());
+        assertEquals(100000000L, histogram.getPercentile(1.0));
+        assertRelativelyClose(50000000L, histogram.getPercentile(0.50));
+        assertRelativelyClose(95000000L, histogram.getPercentile(0.95));
+        assertRelativelyClose(99000000L, histogram.getPercentile(0.99));
+    }
+
+    public void testEmptySummary() {
+        final TileComputationMetrics metrics = new TileComputationMetrics();
+        assertEquals(0, metrics.getNodeNames().length);
+        assertEquals(0, metrics.getComputedTileCount());
+        final String summary = metrics.getJsonSummary();
+        assertTrue(summary.startsWith("{\n  \"elapsedMillis\": "));
+        assertTrue(summary.endsWith("\"nodes\": [\n  ]\n}\n"));
+    }
+
+    private static void assertRelativelyClose(long expected, long actual) {
+        assertTrue("expected " + expected + " but was " + actual,
+                   actual >= expected && actual <= expected * 1.25);
+    }
+}
@@ -22,6 +22,7 @@ import org.esa.beam.framework.dataio.ProductIO;
 import org.esa.beam.framework.datamodel.*;
 import org.esa.beam.framework.gpf.GPF;
 import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.OperatorSpi;
 import org.esa.beam.framework.gpf.Tile;
 import org.esa.beam.framework.gpf.Tile.Pos;
@@ -37,6 +38,7 @@ import javax.media.jai.TileScheduler;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class WriteOpTest extends TestCase {
@@ -45,6 +47,7 @@ public class WriteOpTest extends TestCase {
     private static final int RASTER_HEIGHT = 40;
 
     private AlgoOp.Spi algoSpi = new AlgoOp.Spi();
+    private CountingOp.Spi countingSpi = new CountingOp.Spi();
     private WriteOp.Spi writeSpi = new WriteOp.Spi();
     private File outputFile;
     private int oldParallelism;
@@ -52,6 +55,7 @@ public class WriteOpTest extends TestCase {
     @Override
     protected void setUp() throws Exception {
         GPF.getDefaultInstance().getOperatorSpiRegistry().addOperatorSpi(algoSpi);
+        GPF.getDefaultInstance().getOperatorSpiRegistry().addOperatorSpi(countingSpi);
         GPF.getDefaultInstance().getOperatorSpiRegistry().addOperatorSpi(writeSpi);
         outputFile = GlobalTestConfig.getBeamTestDataOutputFile("WriteOpTest/writtenProduct.dim");
         outputFile.getParentFile().mkdirs();
@@ -64,6 +68,7 @@ public class WriteOpTest extends TestCase {
     @Override
     protected void tearDown() throws Exception {
         GPF.getDefaultInstance().getOperatorSpiRegistry().removeOperatorSpi(algoSpi);
+        GPF.getDefaultInstance().getOperatorSpiRegistry().removeOperatorSpi(countingSpi);
         GPF.getDefaultInstance().getOperatorSpiRegistry().removeOperatorSpi(writeSpi);
         File parentFile = outputFile.getParentFile();
         FileUtils.deleteTree(parentFile);
@@ -117,6 +122,155 @@ public class WriteOpTest extends TestCase {
         productOnDisk.dispose();
     }
 
+    public void testWriteAsync() throws Exception {
+        final Product sourceProduct = GPF.createProduct("Algo", GPF.NO_PARAMS);
+        final WriteOp writeOp = new WriteOp(sourceProduct, outputFile, ProductIO.DEFAULT_FORMAT_NAME);
+        writeOp.setDeleteOutputOnFailure(false);
+        writeOp.setWriteAsync(true);
+        writeOp.writeProduct(ProgressMonitor.NULL);
+
+        Product productOnDisk = ProductIO.readProduct(outputFile);
+        assertNotNull(productOnDisk);
+        assertEquals(3, productOnDisk.getNumBands());
+
+        Band operatorBand = productOnDisk.getBandAt(0);
+        operatorBand.loadRasterData();
+        assertEquals(57, operatorBand.getPixelInt(0, 0));     // 12345 as signed byte
+        assertEquals(57, operatorBand.getPixelInt(RASTER_WIDTH - 1, RASTER_HEIGHT - 1));
+
+        productOnDisk.dispose();
+    }
+
+    public void testResume() throws Exception {
+        final File journalFile = WriteJournal.getJournalFile(outputFile);
+
+        // first run fails in the middle of the scene
+        CountingOp.computedTiles.set(0);
+        CountingOp.failAtY = RASTER_HEIGHT / 2;
+        WriteOp writeOp = new WriteOp(GPF.createProduct("Counting", GPF.NO_PARAMS), outputFile, ProductIO.DEFAULT_FORMAT_NAME);
+        writeOp.setResume(true);
+        try {
+            writeOp.writeProduct(ProgressMonitor.NULL);
+            fail("OperatorException expected");
+        } catch (OperatorException expected) {
+        }
+        assertTrue(outputFile.exists());
+        assertTrue(journalFile.exists());
+
+        // second run only computes the missing tiles
+        CountingOp.computedTiles.set(0);
+        CountingOp.failAtY = -1;
+        writeOp = new WriteOp(GPF.createProduct("Counting", GPF.NO_PARAMS), outputFile, ProductIO.DEFAULT_FORMAT_NAME);
+        writeOp.setResume(true);
+        writeOp.writeProduct(ProgressMonitor.NULL);
+
+        final int tileCount = (RASTER_WIDTH / 2) * (RASTER_HEIGHT / 2);
+        assertTrue(CountingOp.computedTiles.get() > 0);
+        assertTrue(CountingOp.computedTiles.get() < tileCount);
+        assertFalse(journalFile.exists());
+
+        Product productOnDisk = ProductIO.readProduct(outputFile);
+        assertNotNull(productOnDisk);
+        Band band = productOnDisk.getBandAt(0);
+        band.loadRasterData();
+        for (int y = 0; y < RASTER_HEIGHT; y++) {
+            for (int x = 0; x < RASTER_WIDTH; x++) {
+                assertEquals(x + y, band.getPixelInt(x, y));
+            }
+        }
+        productOnDisk.dispose();
+    }
+
+    public void testResumeGraph() throws Exception {
+        final File journalFile = WriteJournal.getJournalFile(outputFile);
+        final String graphXml = "<graph id=\"myResumableGraph\">\n"
+                + "  <version>1.0</version>\n"
+                + "  <node id=\"node1\">\n"
+                + "    <operator>Counting</operator>\n"
+                + "  </node>\n"
+                + "  <node id=\"node2\">\n"
+                + "    <operator>Write</operator>\n"
+                + "    <sources>\n"
+                + "      <source refid=\"node1\"/>\n"
+                + "    </sources>\n"
+                + "    <parameters>\n"
+                + "       <file>" + outputFile.getAbsolutePath() + "</file>\n"
+                + "       <resume>true</resume>\n"
+                + "    </parameters>\n"
+                + "  </node>\n"
+                + "</graph>";
+
+        // first run fails in the middle of the scene
+        CountingOp.computedTiles.set(0);
+        CountingOp.failAtY = RASTER_HEIGHT / 2;
+        try {
+            new GraphProcessor().executeGraph(GraphIO.read(new StringReader(graphXml)), ProgressMonitor.NULL);
+            fail("OperatorException expected");
+        } catch (OperatorException expected) {
+        }
+        assertTrue(outputFile.exists());
+        assertTrue(journalFile.exists());
+
+        // second run only computes the missing tiles
+        CountingOp.computedTiles.set(0);
+        CountingOp.failAtY = -1;
+        new GraphProcessor().executeGraph(GraphIO.read(new StringReader(graphXml)), ProgressMonitor.NULL);
+
+        final int tileCount = (RASTER_WIDTH / 2) * (RASTER_HEIGHT / 2);
+        assertTrue(CountingOp.computedTiles.get() > 0);
+        assertTrue(CountingOp.computedTiles.get() < tileCount);
+        assertFalse(journalFile.exists());
+
+        Product productOnDisk = ProductIO.readProduct(outputFile);
+        assertNotNull(productOnDisk);
+        Band band = productOnDisk.getBandAt(0);
+        band.loadRasterData();
+        for (int y = 0; y < RASTER_HEIGHT; y++) {
+            for (int x = 0; x < RASTER_WIDTH; x++) {
+                assertEquals(x + y, band.getPixelInt(x, y));
+            }
+        }
+        productOnDisk.dispose();
+    }
+
+    /**
+     * Counts the computed tiles and fails, if requested, for tiles below a given line.
+     */
+    @OperatorMetadata(alias = "Counting")
+    public static class CountingOp extends Operator {
+
+        static final AtomicInteger computedTiles = new AtomicInteger();
+        static volatile int failAtY = -1;
+
+        @TargetProduct
+        private Product targetProduct;
+
+        @Override
+        public void initialize() {
+            targetProduct = new Product("name", "desc", RASTER_WIDTH, RASTER_HEIGHT);
+            targetProduct.addBand("CountingBand", ProductData.TYPE_INT16);
+            targetProduct.setPreferredTileSize(2, 2);
+        }
+
+        @Override
+        public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) {
+            if (failAtY >= 0 && targetTile.getMinY() >= failAtY) {
+                throw new OperatorException("Failing at y = " + targetTile.getMinY());
+            }
+            for (Pos pos : targetTile) {
+                targetTile.setSample(pos.x, pos.y, pos.x + pos.y);
+            }
+            computedTiles.incrementAndGet();
+        }
+
+        public static class Spi extends OperatorSpi {
+
+            public Spi() {
+                super(CountingOp.class);
+            }
+        }
+    }
+
     /**
      * Some algorithm.
      */
@@ -0,0 +1,669 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import com.sun.media.jai.util.CacheDiagnostics;
+
+import javax.media.jai.TileCache;
+import java.awt.Point;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A tile cache which, like the {@link SwappingTileCache}, never throws away tiles but swaps them
+ * to a {@link SwapSpace}, and which can be used concurrently by many tile computing threads.
+ * <p/>
+ * <ul>
+ * <li>The tiles are distributed over a number of segments, each guarded by its own lock, so that
+ * threads accessing different tiles rarely block each other.</li>
+ * <li>Each tile counts how often it has been accessed. If the memory capacity is exceeded, the segments
+ * are swept in turn (CLOCK): a tile which has been accessed since the last sweep gets its count
+ * decremented and another chance, a tile with a count of zero is evicted. Frequently used tiles
+ * thus survive a scan through many tiles used only once.</li>
+ * <li>Evicted tiles are written to the swap space on a background thread. Until written, they
+ * are still returned by {@link #getTile}. If the tiles waiting to be written exceed a quarter of the
+ * memory capacity, the evicting thread writes them itself.</li>
+ * </ul>
+ * Hit, miss and eviction counts are always maintained. A tile comparator may be set, but is ignored.
+ * If diagnostics are enabled, observers are notified like those of the {@link SwappingTileCache}; the
+ * notifications are then serialized.
+ *
+ * @since NEST 5.1
+ */
+public final class ConcurrentSwappingTileCache extends Observable implements TileCache, CacheDiagnostics {
+
+    /**
+     * The default number of segments.
+     */
+    public static final int DEFAULT_SEGMENT_COUNT = 16;
+
+    /**
+     * The maximum access count of a tile. The more often a tile has been accessed, the more sweeps it survives.
+     */
+    private static final int MAX_FREQUENCY = 3;
+
+    // the diagnostic actions, as used by the SwappingTileCache
+    private static final int ADD = 0;
+    private static final int REMOVE = 1;
+    private static final int REMOVE_FROM_MEMCON = 3;
+    private static final int UPDATE_FROM_ADD = 4;
+    private static final int UPDATE_FROM_GETTILE = 5;
+
+    private final Segment[] segments;
+    private final SwapSpace swapSpace;
+    private final ExecutorService swapExecutor;
+    private final Map<TileKey, MemoryTile> swappingTiles = new ConcurrentHashMap<TileKey, MemoryTile>();
+    private final Set<TileKey> swappedTiles = Collections.newSetFromMap(new ConcurrentHashMap<TileKey, Boolean>());
+    private final ReentrantLock memoryControlLock = new ReentrantLock();
+    private final AtomicLong memoryUsage = new AtomicLong();
+    private final AtomicLong swappingMemory = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicInteger sweepIndex = new AtomicInteger();
+
+    private volatile long memoryCapacity;
+    private volatile float memoryThreshold = 0.75F;
+    private volatile Comparator comparator;
+    private volatile boolean diagnostics;
+
+    /**
+     * Uses the {@link SwappingTileCache#DEFAULT_MEMORY_CAPACITY} and a {@link DefaultSwapSpace}
+     * in the {@link SwappingTileCache#DEFAULT_SWAP_DIR}.
+     */
+    public ConcurrentSwappingTileCache() {
+        this(SwappingTileCache.DEFAULT_MEMORY_CAPACITY, new DefaultSwapSpace(SwappingTileCache.DEFAULT_SWAP_DIR));
+    }
+
+    /**
+     * @param memoryCapacity The maximum cache memory size in bytes.
+     * @param swapSpace      The space used to swap out tiles.
+     */
+    public ConcurrentSwappingTileCache(long memoryCapacity, SwapSpace swapSpace) {
+        this(memoryCapacity, swapSpace, DEFAULT_SEGMENT_COUNT);
+    }
+
+    /**
+     * @param memoryCapacity The maximum cache memory size in bytes.
+     * @param swapSpace      The space used to swap out tiles.
+     * @param segmentCount   The number of independently locked segments.
+     * @throws IllegalArgumentException If <code>memoryCapacity</code> is less than 0 or
+     *                                  <code>segmentCount</code> is less than 1.
+     */
+    public ConcurrentSwappingTileCache(long memoryCapacity, SwapSpace swapSpace, int segmentCount) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException("memoryCapacity < 0");
+        }
+        if (segmentCount < 1) {
+            throw new IllegalArgumentException("segmentCount < 1");
+        }
+        if (swapSpace == null) {
+            throw new NullPointerException("swapSpace");
+        }
+        this.memoryCapacity = memoryCapacity;
+        this.swapSpace = swapSpace;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment();
+        }
+        this.swapExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "TileCache-Swap");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY + 1);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void add(RenderedImage owner, int tileX, int tileY, Raster tile) {
+        add(owner, tileX, tileY, tile, null);
+    }
+
+    @Override
+    public void add(RenderedImage owner, int tileX, int tileY, Raster tile, Object tileCacheMetric) {
+        if (memoryCapacity == 0) {
+            return;
+        }
+        final TileKey key = new TileKey(owner, tileX, tileY);
+        final Segment segment = getSegment(key);
+        final Entry entry;
+        synchronized (segment) {
+            entry = segment.entries.get(key);
+            if (entry != null) {
+                entry.touch();
+            }
+        }
+        if (entry != null) {
+            notifyDiagnostics(entry.tile, UPDATE_FROM_ADD);
+            return;
+        }
+        addEntry(new Entry(key.toStoredKey(owner), new MemoryTile(owner, tileX, tileY, tile, tileCacheMetric)));
+    }
+
+    @Override
+    public void addTiles(RenderedImage owner, Point[] tileIndices, Raster[] tiles, Object tileCacheMetric) {
+        for (int i = 0; i < tileIndices.length; i++) {
+            add(owner, tileIndices[i].x, tileIndices[i].y, tiles[i], tileCacheMetric);
+        }
+    }
+
+    @Override
+    public Raster getTile(RenderedImage owner, int tileX, int tileY) {
+        if (memoryCapacity == 0) {
+            return null;
+        }
+        final TileKey key = new TileKey(owner, tileX, tileY);
+        final Segment segment = getSegment(key);
+        final Entry entry;
+        synchronized (segment) {
+            entry = segment.entries.get(key);
+            if (entry != null) {
+                entry.touch();
+                segment.hitCount++;
+            }
+        }
+        if (entry != null) {
+            notifyDiagnostics(entry.tile, UPDATE_FROM_GETTILE);
+            return entry.tile.getTile();
+        }
+        MemoryTile memoryTile = swappingTiles.get(key);
+        if (memoryTile == null && swappedTiles.contains(key)) {
+            memoryTile = swapSpace.restoreTile(owner, tileX, tileY);
+        }
+        if (memoryTile == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        synchronized (segment) {
+            segment.hitCount++;
+        }
+        addEntry(new Entry(key.toStoredKey(owner), memoryTile));
+        return memoryTile.getTile();
+    }
+
+    @Override
+    public Raster[] getTiles(RenderedImage owner) {
+        if (memoryCapacity == 0) {
+            return null;
+        }
+        final int minTx = owner.getMinTileX();
+        final int minTy = owner.getMinTileY();
+        final int maxTx = minTx + owner.getNumXTiles();
+        final int maxTy = minTy + owner.getNumYTiles();
+        final ArrayList<Raster> tiles = new ArrayList<Raster>(32);
+        for (int y = minTy; y < maxTy; y++) {
+            for (int x = minTx; x < maxTx; x++) {
+                final Raster tile = getTile(owner, x, y);
+                if (tile != null) {
+                    tiles.add(tile);
+                }
+            }
+        }
+        return tiles.isEmpty() ? null : tiles.toArray(new Raster[tiles.size()]);
+    }
+
+    @Override
+    public Raster[] getTiles(RenderedImage owner, Point[] tileIndices) {
+        if (memoryCapacity == 0) {
+            return null;
+        }
+        final Raster[] tiles = new Raster[tileIndices.length];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = getTile(owner, tileIndices[i].x, tileIndices[i].y);
+        }
+        return tiles;
+    }
+
+    @Override
+    public void remove(RenderedImage owner, int tileX, int tileY) {
+        final TileKey key = new TileKey(owner, tileX, tileY);
+        final Segment segment = getSegment(key);
+        final Entry entry;
+        synchronized (segment) {
+            entry = segment.entries.remove(key);
+        }
+        if (entry != null) {
+            memoryUsage.addAndGet(-entry.tile.getTileSize());
+            notifyDiagnostics(entry.tile, REMOVE);
+        }
+        swappingTiles.remove(key);
+        if (swappedTiles.remove(key)) {
+            swapSpace.deleteTile(owner, tileX, tileY);
+        }
+    }
+
+    /**
+     * Removes the tiles of the given image and forgets the tiles of images which have been garbage collected.
+     */
+    @Override
+    public void removeTiles(RenderedImage owner) {
+        final int minTx = owner.getMinTileX();
+        final int minTy = owner.getMinTileY();
+        final int maxTx = minTx + owner.getNumXTiles();
+        final int maxTy = minTy + owner.getNumYTiles();
+        for (int y = minTy; y < maxTy; y++) {
+            for (int x = minTx; x < maxTx; x++) {
+                remove(owner, x, y);
+            }
+        }
+        purgeCollectedTiles();
+    }
+
+    /**
+     * Like {@link SwappingTileCache#flush()}, this does not discard any tiles, but swaps
+     * tiles out until the memory usage is within the capacity. The tiles of images which
+     * have been garbage collected are forgotten.
+     */
+    @Override
+    public void flush() {
+        purgeCollectedTiles();
+        if (memoryUsage.get() > memoryCapacity) {
+            memoryControl();
+        }
+    }
+
+    /**
+     * Evicts tiles until the memory usage is at <code>memoryThreshold</code> of the memory capacity.
+     * Returns immediately if another thread is already evicting tiles.
+     */
+    @Override
+    public void memoryControl() {
+        if (!memoryControlLock.tryLock()) {
+            return;
+        }
+        try {
+            final long limit = (long) (memoryCapacity * memoryThreshold);
+            int emptySegments = 0;
+            while (memoryUsage.get() > limit && emptySegments < segments.length) {
+                final Segment segment = segments[(sweepIndex.getAndIncrement() & Integer.MAX_VALUE) % segments.length];
+                final Entry victim;
+                synchronized (segment) {
+                    victim = segment.evict();
+                }
+                if (victim == null) {
+                    emptySegments++;
+                    continue;
+                }
+                emptySegments = 0;
+                memoryUsage.addAndGet(-victim.tile.getTileSize());
+                evictionCount.incrementAndGet();
+                notifyDiagnostics(victim.tile, REMOVE_FROM_MEMCON);
+                swapOut(victim);
+            }
+        } finally {
+            memoryControlLock.unlock();
+        }
+    }
+
+    @Override
+    public void setTileCapacity(int tileCapacity) {
+    }
+
+    /**
+     * This implementation does not use the tile capacity.
+     *
+     * @return always 0
+     */
+    @Override
+    public int getTileCapacity() {
+        return 0;
+    }
+
+    @Override
+    public void setMemoryCapacity(long memoryCapacity) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException("memoryCapacity < 0");
+        }
+        this.memoryCapacity = memoryCapacity;
+        if (memoryUsage.get() > memoryCapacity) {
+            memoryControl();
+        }
+    }
+
+    @Override
+    public long getMemoryCapacity() {
+        return memoryCapacity;
+    }
+
+    @Override
+    public void setMemoryThreshold(float memoryThreshold) {
+        if (memoryThreshold < 0.0F || memoryThreshold > 1.0F) {
+            throw new IllegalArgumentException("mt < 0.0F || mt > 1.0F");
+        }
+        this.memoryThreshold = memoryThreshold;
+        memoryControl();
+    }
+
+    @Override
+    public float getMemoryThreshold() {
+        return memoryThreshold;
+    }
+
+    @Override
+    public void setTileComparator(Comparator comparator) {
+        this.comparator = comparator;
+    }
+
+    @Override
+    public Comparator getTileComparator() {
+        return comparator;
+    }
+
+    /**
+     * Enables the notification of observers about added, updated and removed tiles.
+     * The notifications carry the {@link MemoryTile} concerned.
+     */
+    @Override
+    public void enableDiagnostics() {
+        diagnostics = true;
+    }
+
+    @Override
+    public void disableDiagnostics() {
+        diagnostics = false;
+    }
+
+    public boolean isDiagnosticsEnabled() {
+        return diagnostics;
+    }
+
+    @Override
+    public long getCacheTileCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.entries.size();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getCacheMemoryUsed() {
+        return memoryUsage.get();
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.hitCount;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of tiles evicted from memory, and thus swapped out, since the last reset
+     */
+    public long getCacheEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public void resetCounts() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.hitCount = 0;
+            }
+        }
+        missCount.set(0);
+        evictionCount.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "@" + Integer.toHexString(hashCode()) +
+               ": memoryCapacity = " + Long.toHexString(memoryCapacity) +
+               " memoryUsage = " + Long.toHexString(memoryUsage.get()) +
+               " #tilesInCache = " + getCacheTileCount();
+    }
+
+    private Segment getSegment(TileKey key) {
+        return segments[(key.hashCode() & Integer.MAX_VALUE) % segments.length];
+    }
+
+    private void addEntry(Entry entry) {
+        final long tileSize = entry.tile.getTileSize();
+        // Don't cache tile if adding it would only end up removing the tile.
+        if (tileSize > (long) (memoryCapacity * memoryThreshold)) {
+            return;
+        }
+        final Segment segment = getSegment(entry.key);
+        final Entry previous;
+        synchronized (segment) {
+            previous = segment.entries.put(entry.key, entry);
+        }
+        memoryUsage.addAndGet(previous != null ? tileSize - previous.tile.getTileSize() : tileSize);
+        notifyDiagnostics(entry.tile, ADD);
+        if (memoryUsage.get() > memoryCapacity) {
+            memoryControl();
+        }
+    }
+
+    /**
+     * Drops the entries, swapping and swapped tiles of images which have been garbage collected.
+     * Their keys are otherwise never removed. The swap space itself needs the image to delete a tile,
+     * so its files are left to the swap space.
+     */
+    private void purgeCollectedTiles() {
+        for (Segment segment : segments) {
+            long freed = 0;
+            synchronized (segment) {
+                for (Iterator<Entry> iterator = segment.entries.values().iterator(); iterator.hasNext(); ) {
+                    final Entry entry = iterator.next();
+                    if (entry.key.getOwner() == null) {
+                        iterator.remove();
+                        freed += entry.tile.getTileSize();
+                    }
+                }
+            }
+            if (freed > 0) {
+                memoryUsage.addAndGet(-freed);
+            }
+        }
+        for (Iterator<TileKey> iterator = swappingTiles.keySet().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().getOwner() == null) {
+                iterator.remove();
+            }
+        }
+        for (Iterator<TileKey> iterator = swappedTiles.iterator(); iterator.hasNext(); ) {
+            if (iterator.next().getOwner() == null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of tiles known to be in the swap space
+     */
+    int getSwappedTileCount() {
+        return swappedTiles.size();
+    }
+
+    private void notifyDiagnostics(MemoryTile tile, int action) {
+        if (diagnostics) {
+            synchronized (this) {
+                tile.action = action;
+                setChanged();
+                notifyObservers(tile);
+            }
+        }
+    }
+
+    private void swapOut(final Entry entry) {
+        if (entry.key.getOwner() == null) {
+            // image has been garbage collected
+            return;
+        }
+        final long tileSize = entry.tile.getTileSize();
+        swappingTiles.put(entry.key, entry.tile);
+        if (swappingMemory.addAndGet(tileSize) > memoryCapacity / 4) {
+            storeTile(entry);
+        } else {
+            swapExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    storeTile(entry);
+                }
+            });
+        }
+    }
+
+    private void storeTile(Entry entry) {
+        try {
+            //noinspection ObjectEquality
+            if (swappingTiles.get(entry.key) == entry.tile) {
+                swapSpace.storeTile(entry.tile);
+                if (swappingTiles.remove(entry.key, entry.tile)) {
+                    swappedTiles.add(entry.key);
+                } else {
+                    // removed or restored meanwhile
+                    final RenderedImage owner = entry.key.getOwner();
+                    if (owner != null && !swappedTiles.contains(entry.key)) {
+                        swapSpace.deleteTile(owner, entry.key.tileX, entry.key.tileY);
+                    }
+                }
+            }
+        } finally {
+            swappingMemory.addAndGet(-entry.tile.getTileSize());
+        }
+    }
+
+    private static final class Segment {
+
+        private final LinkedHashMap<TileKey, Entry> entries = new LinkedHashMap<TileKey, Entry>(64);
+        private long hitCount;
+
+        /**
+         * Sweeps the entries in insertion order, giving recently accessed ones another chance.
+         *
+         * @return the evicted entry or {@code null} if the segment is empty
+         */
+        private Entry evict() {
+            while (!entries.isEmpty()) {
+                final Iterator<Entry> iterator = entries.values().iterator();
+                final Entry entry = iterator.next();
+                iterator.remove();
+                if (entry.frequency == 0 || entry.key.getOwner() == null) {
+                    return entry;
+                }
+                entry.frequency--;
+                entries.put(entry.key, entry);
+            }
+            return null;
+        }
+    }
+
+    private static final class Entry {
+
+        private final TileKey key;
+        private final MemoryTile tile;
+        private int frequency;
+
+        private Entry(TileKey key, MemoryTile tile) {
+            this.key = key;
+            this.tile = tile;
+        }
+
+        private void touch() {
+            if (frequency < MAX_FREQUENCY) {
+                frequency++;
+            }
+        }
+    }
+
+    /**
+     * Identifies a tile by the identity of its owner. Keys stored in the cache only weakly
+     * reference the owner, so that images can still be garbage collected.
+     */
+    private static final class TileKey {
+
+        private final Object owner;
+        private final int tileX;
+        private final int tileY;
+        private final int hash;
+
+        private TileKey(RenderedImage owner, int tileX, int tileY) {
+            this(owner, tileX, tileY, System.identityHashCode(owner));
+        }
+
+        private TileKey(Object owner, int tileX, int tileY, int ownerHash) {
+            this.owner = owner;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.hash = 31 * (31 * ownerHash + tileX) + tileY;
+        }
+
+        private TileKey toStoredKey(RenderedImage owner) {
+            return new TileKey(new WeakReference<RenderedImage>(owner), tileX, tileY, System.identityHashCode(owner));
+        }
+
+        private RenderedImage getOwner() {
+            if (owner instanceof WeakReference) {
+                return (RenderedImage) ((WeakReference) owner).get();
+            }
+            return (RenderedImage) owner;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            final TileKey other = (TileKey) obj;
+            if (hash != other.hash || tileX != other.tileX || tileY != other.tileY) {
+                return false;
+            }
+            final RenderedImage thisOwner = getOwner();
+            //noinspection ObjectEquality
+            return thisOwner != null && thisOwner == other.getOwner();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import java.awt.image.DataBuffer;
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only data buffer whose banks are backed by (mapped) byte buffers in native byte order.
+ */
+final class MappedDataBuffer extends DataBuffer {
+
+    private final ByteBuffer[] banks;
+
+    MappedDataBuffer(int dataType, int size, ByteBuffer[] banks) {
+        super(dataType, size, banks.length);
+        this.banks = banks;
+    }
+
+    @Override
+    public int getElem(int bank, int i) {
+        final ByteBuffer buffer = banks[bank];
+        switch (dataType) {
+            case TYPE_BYTE:
+                return buffer.get(i) & 0xff;
+            case TYPE_USHORT:
+                return buffer.getShort(i << 1) & 0xffff;
+            case TYPE_SHORT:
+                return buffer.getShort(i << 1);
+            case TYPE_INT:
+                return buffer.getInt(i << 2);
+            case TYPE_FLOAT:
+                return (int) buffer.getFloat(i << 2);
+            case TYPE_DOUBLE:
+                return (int) buffer.getDouble(i << 3);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    @Override
+    public float getElemFloat(int i) {
+        return getElemFloat(0, i);
+    }
+
+    @Override
+    public float getElemFloat(int bank, int i) {
+        if (dataType == TYPE_FLOAT) {
+            return banks[bank].getFloat(i << 2);
+        } else if (dataType == TYPE_DOUBLE) {
+            return (float) banks[bank].getDouble(i << 3);
+        }
+        return getElem(bank, i);
+    }
+
+    @Override
+    public double getElemDouble(int i) {
+        return getElemDouble(0, i);
+    }
+
+    @Override
+    public double getElemDouble(int bank, int i) {
+        if (dataType == TYPE_FLOAT) {
+            return banks[bank].getFloat(i << 2);
+        } else if (dataType == TYPE_DOUBLE) {
+            return banks[bank].getDouble(i << 3);
+        }
+        return getElem(bank, i);
+    }
+
+    @Override
+    public void setElem(int bank, int i, int val) {
+        throw new UnsupportedOperationException("read-only data buffer");
+    }
+}
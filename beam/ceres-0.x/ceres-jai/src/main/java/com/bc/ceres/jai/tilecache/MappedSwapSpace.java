@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link SwapSpace} which stores tiles in memory-mapped {@link MappedTileStore}s, one for each
+ * tile size, instead of a file per tile as the {@link DefaultSwapSpace} does.
+ * <p/>
+ * Restoring a tile costs a single bulk copy into a new data buffer. If <code>wrapReadOnlyTiles</code> is set,
+ * tiles which have not been writable are restored without any copy, their data buffer directly wraps the mapped slot.
+ * The slot of such a tile is not reused before the restored tile has been garbage collected. Such tiles have a
+ * read-only {@link MappedDataBuffer} instead of one of the standard data buffers, hence they must only be used
+ * with clients which do not cast the data buffer or access its arrays.
+ *
+ * @since NEST 5.1
+ */
+public class MappedSwapSpace implements SwapSpace {
+
+    private static final int SLOT_ALIGNMENT = 4096;
+
+    private final File swapDir;
+    private final Logger logger;
+    private final boolean wrapReadOnlyTiles;
+    private final Map<Integer, MappedTileStore> stores;
+    private final Map<Object, MappedTile> mappedTiles;
+    private final ReferenceQueue<DataBuffer> releasedViews;
+    private final Map<Reference<DataBuffer>, MappedTile> retainedSlots;
+
+    public MappedSwapSpace(File swapDir) {
+        this(swapDir, Logger.getLogger(System.getProperty("ceres.context", "ceres")), false);
+    }
+
+    public MappedSwapSpace(File swapDir, Logger logger, boolean wrapReadOnlyTiles) {
+        this.swapDir = swapDir;
+        this.logger = logger;
+        this.wrapReadOnlyTiles = wrapReadOnlyTiles;
+        this.stores = new HashMap<Integer, MappedTileStore>();
+        this.mappedTiles = new HashMap<Object, MappedTile>(1009); // prime number
+        this.releasedViews = new ReferenceQueue<DataBuffer>();
+        this.retainedSlots = new HashMap<Reference<DataBuffer>, MappedTile>();
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        super.finalize();
+        dispose();
+    }
+
+    /**
+     * Closes and deletes all store files.
+     */
+    public synchronized void dispose() {
+        for (MappedTileStore store : stores.values()) {
+            store.close();
+        }
+        stores.clear();
+        mappedTiles.clear();
+        retainedSlots.clear();
+    }
+
+    public synchronized boolean storeTile(MemoryTile mt) {
+        if (mappedTiles.containsKey(mt.getKey())) {
+            return false;
+        }
+        freeReleasedSlots();
+        final Raster tile = mt.getTile();
+        final DataBuffer dataBuffer = tile.getDataBuffer();
+        try {
+            final MappedTileStore store = getStore(MappedTileStore.getStoredSize(dataBuffer));
+            final long t1 = System.currentTimeMillis();
+            final int slot = store.store(dataBuffer);
+            final long t2 = System.currentTimeMillis();
+            mappedTiles.put(mt.getKey(), new MappedTile(mt, store, slot));
+            logger.log(Level.FINEST, "Tile stored: " + mt.getKeyAsString() + " (" + (t2 - t1) + " ms)");
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Tile NOT stored: " + mt.getKeyAsString(), e);
+            return false;
+        }
+    }
+
+    public synchronized MemoryTile restoreTile(RenderedImage owner, int tileX, int tileY) {
+        final MappedTile mappedTile = mappedTiles.get(MemoryTile.hashKey(owner, tileX, tileY));
+        if (mappedTile == null) {
+            return null;
+        }
+        try {
+            final Raster tile;
+            if (wrapReadOnlyTiles && !mappedTile.writable) {
+                DataBuffer view = mappedTile.view != null ? mappedTile.view.get() : null;
+                if (view == null) {
+                    view = mappedTile.store.map(mappedTile.slot, mappedTile.dataType, mappedTile.size, mappedTile.numBanks);
+                    mappedTile.view = new WeakReference<DataBuffer>(view, releasedViews);
+                }
+                tile = Raster.createRaster(mappedTile.sampleModel, view, mappedTile.location);
+            } else {
+                final DataBuffer dataBuffer = mappedTile.store.read(mappedTile.slot, mappedTile.dataType,
+                                                                    mappedTile.size, mappedTile.numBanks);
+                if (mappedTile.writable) {
+                    tile = Raster.createWritableRaster(mappedTile.sampleModel, dataBuffer, mappedTile.location);
+                } else {
+                    tile = Raster.createRaster(mappedTile.sampleModel, dataBuffer, mappedTile.location);
+                }
+            }
+            return new MemoryTile(owner, tileX, tileY, tile, mappedTile.tileCacheMetric);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Tile NOT restored: " + MemoryTile.hashKey(owner, tileX, tileY), e);
+            return null;
+        }
+    }
+
+    public synchronized boolean deleteTile(RenderedImage owner, int tileX, int tileY) {
+        final MappedTile mappedTile = mappedTiles.remove(MemoryTile.hashKey(owner, tileX, tileY));
+        if (mappedTile == null) {
+            return false;
+        }
+        if (mappedTile.view != null && mappedTile.view.get() != null) {
+            // a restored tile still wraps the slot
+            retainedSlots.put(mappedTile.view, mappedTile);
+        } else {
+            mappedTile.store.free(mappedTile.slot);
+        }
+        freeReleasedSlots();
+        return true;
+    }
+
+    private void freeReleasedSlots() {
+        Reference<? extends DataBuffer> reference;
+        while ((reference = releasedViews.poll()) != null) {
+            final MappedTile mappedTile = retainedSlots.remove(reference);
+            if (mappedTile != null) {
+                mappedTile.store.free(mappedTile.slot);
+            }
+        }
+    }
+
+    private MappedTileStore getStore(long storedSize) throws IOException {
+        final long slotSize = (storedSize + SLOT_ALIGNMENT - 1) / SLOT_ALIGNMENT * SLOT_ALIGNMENT;
+        if (slotSize > Integer.MAX_VALUE) {
+            throw new IOException("Tile too large: " + storedSize + " bytes");
+        }
+        MappedTileStore store = stores.get((int) slotSize);
+        if (store == null) {
+            if (!swapDir.exists() && !swapDir.mkdirs()) {
+                throw new IOException("Failed to create swap directory: " + swapDir);
+            }
+            final File file = new File(swapDir, "tiles-" + slotSize + "-" + Long.toHexString(System.nanoTime()) + ".dat");
+            store = new MappedTileStore(file, (int) slotSize);
+            stores.put((int) slotSize, store);
+        }
+        return store;
+    }
+
+    private static final class MappedTile {
+
+        private final MappedTileStore store;
+        private final int slot;
+        private final SampleModel sampleModel;
+        private final Point location;
+        private final boolean writable;
+        private final Object tileCacheMetric;
+        private final int dataType;
+        private final int size;
+        private final int numBanks;
+        private WeakReference<DataBuffer> view;
+
+        private MappedTile(MemoryTile mt, MappedTileStore store, int slot) {
+            final Raster tile = mt.getTile();
+            final DataBuffer dataBuffer = tile.getDataBuffer();
+            this.store = store;
+            this.slot = slot;
+            this.sampleModel = tile.getSampleModel();
+            this.location = (Point) tile.getBounds().getLocation().clone();
+            this.writable = tile instanceof WritableRaster;
+            this.tileCacheMetric = mt.getTileCacheMetric();
+            this.dataType = dataBuffer.getDataType();
+            this.size = dataBuffer.getSize();
+            this.numBanks = dataBuffer.getNumBanks();
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A file of fixed-size slots holding the raw samples of tile data buffers, accessed through memory mapping.
+ * <p/>
+ * The samples are stored in native byte order without any header, so a data buffer is written and read
+ * with a single bulk copy per bank. Alternatively, {@link #map} returns a read-only data buffer which
+ * directly wraps the mapped slot, so that no heap memory is needed at all.
+ * <p/>
+ * The file is mapped in regions of several slots, which are only created when needed. Freed slots are reused.
+ *
+ * @since NEST 5.1
+ */
+public final class MappedTileStore {
+
+    private static final long REGION_SIZE = 64L * 1024 * 1024;
+    private static final Map<Class<?>, Method> GET_DATA_METHODS = new ConcurrentHashMap<Class<?>, Method>();
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final int slotSize;
+    private final int slotsPerRegion;
+    private final List<MappedByteBuffer> regions;
+    private final BitSet usedSlots;
+    private boolean mapped;
+
+    /**
+     * @param file     The file to be created. It will be deleted on {@link #close()} or on exit.
+     * @param slotSize The size of a slot in bytes.
+     * @throws IOException If the file cannot be created.
+     */
+    public MappedTileStore(File file, int slotSize) throws IOException {
+        if (slotSize <= 0) {
+            throw new IllegalArgumentException("slotSize <= 0");
+        }
+        this.file = file;
+        this.slotSize = slotSize;
+        this.slotsPerRegion = (int) Math.max(1, REGION_SIZE / slotSize);
+        this.regions = new ArrayList<MappedByteBuffer>();
+        this.usedSlots = new BitSet();
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+        file.deleteOnExit();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    public synchronized int getUsedSlotCount() {
+        return usedSlots.cardinality();
+    }
+
+    /**
+     * @param dataBuffer A data buffer.
+     * @return The number of bytes required to store the used elements of all banks of the data buffer.
+     */
+    public static long getStoredSize(DataBuffer dataBuffer) {
+        return (long) dataBuffer.getNumBanks() * dataBuffer.getSize() * (DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8);
+    }
+
+    /**
+     * Stores the given data buffer in a free slot.
+     *
+     * @param dataBuffer The data buffer.
+     * @return The slot index.
+     * @throws IOException If the file cannot be extended.
+     */
+    public int store(DataBuffer dataBuffer) throws IOException {
+        final int slot;
+        synchronized (this) {
+            slot = usedSlots.nextClearBit(0);
+            getSlotBuffer(slot);
+            usedSlots.set(slot);
+        }
+        try {
+            write(slot, dataBuffer);
+        } catch (IOException e) {
+            free(slot);
+            throw e;
+        } catch (RuntimeException e) {
+            free(slot);
+            throw e;
+        }
+        return slot;
+    }
+
+    /**
+     * Overwrites the given slot with the elements of the given data buffer.
+     *
+     * @param slot       The slot index.
+     * @param dataBuffer The data buffer.
+     * @throws IOException If the file cannot be extended.
+     */
+    public void write(int slot, DataBuffer dataBuffer) throws IOException {
+        final int dataType = dataBuffer.getDataType();
+        final int size = dataBuffer.getSize();
+        final int bankSize = getBankSize(dataType, size);
+        if ((long) bankSize * dataBuffer.getNumBanks() > slotSize) {
+            throw new IllegalArgumentException("dataBuffer exceeds slot size");
+        }
+        final ByteBuffer slotBuffer = getSlotBuffer(slot);
+        for (int bank = 0; bank < dataBuffer.getNumBanks(); bank++) {
+            final ByteBuffer bankBuffer = getBankBuffer(slotBuffer, bank, bankSize);
+            final Object data = getData(dataBuffer, bank);
+            final int offset = dataBuffer.getOffsets()[bank];
+            if (data instanceof byte[]) {
+                bankBuffer.put((byte[]) data, offset, size);
+            } else if (data instanceof short[]) {
+                bankBuffer.asShortBuffer().put((short[]) data, offset, size);
+            } else if (data instanceof int[]) {
+                bankBuffer.asIntBuffer().put((int[]) data, offset, size);
+            } else if (data instanceof float[]) {
+                bankBuffer.asFloatBuffer().put((float[]) data, offset, size);
+            } else if (data instanceof double[]) {
+                bankBuffer.asDoubleBuffer().put((double[]) data, offset, size);
+            } else {
+                throw new IllegalArgumentException("illegal dataBuffer: " + dataBuffer.getClass());
+            }
+        }
+    }
+
+    /**
+     * Reads the given slot into a new heap data buffer, using one bulk copy per bank.
+     *
+     * @param slot     The slot index.
+     * @param dataType The data type as given by {@link DataBuffer#getDataType()}.
+     * @param size     The number of elements per bank.
+     * @param numBanks The number of banks.
+     * @return A new data buffer.
+     * @throws IOException If the slot cannot be mapped.
+     */
+    public DataBuffer read(int slot, int dataType, int size, int numBanks) throws IOException {
+        final int bankSize = getBankSize(dataType, size);
+        final ByteBuffer slotBuffer = getSlotBuffer(slot);
+        if (dataType == DataBuffer.TYPE_BYTE) {
+            final byte[][] data = new byte[numBanks][size];
+            for (int bank = 0; bank < numBanks; bank++) {
+                getBankBuffer(slotBuffer, bank, bankSize).get(data[bank]);
+            }
+            return new DataBufferByte(data, size);
+        } else if (dataType == DataBuffer.TYPE_SHORT || dataType == DataBuffer.TYPE_USHORT) {
+            final short[][] data = new short[numBanks][size];
+            for (int bank = 0; bank < numBanks; bank++) {
+                getBankBuffer(slotBuffer, bank, bankSize).asShortBuffer().get(data[bank]);
+            }
+            if (dataType == DataBuffer.TYPE_USHORT) {
+                return new DataBufferUShort(data, size);
+            }
+            return new DataBufferShort(data, size);
+        } else if (dataType == DataBuffer.TYPE_INT) {
+            final int[][] data = new int[numBanks][size];
+            for (int bank = 0; bank < numBanks; bank++) {
+                getBankBuffer(slotBuffer, bank, bankSize).asIntBuffer().get(data[bank]);
+            }
+            return new DataBufferInt(data, size);
+        } else if (dataType == DataBuffer.TYPE_FLOAT) {
+            final float[][] data = new float[numBanks][size];
+            for (int bank = 0; bank < numBanks; bank++) {
+                getBankBuffer(slotBuffer, bank, bankSize).asFloatBuffer().get(data[bank]);
+            }
+            return new DataBufferFloat(data, size);
+        } else if (dataType == DataBuffer.TYPE_DOUBLE) {
+            final double[][] data = new double[numBanks][size];
+            for (int bank = 0; bank < numBanks; bank++) {
+                getBankBuffer(slotBuffer, bank, bankSize).asDoubleBuffer().get(data[bank]);
+            }
+            return new DataBufferDouble(data, size);
+        } else {
+            throw new IllegalArgumentException("illegal dataType: " + dataType);
+        }
+    }
+
+    /**
+     * Returns a read-only data buffer directly backed by the mapped slot. It reflects any later
+     * change of the slot, hence the slot must not be freed as long as the data buffer is in use.
+     *
+     * @param slot     The slot index.
+     * @param dataType The data type as given by {@link DataBuffer#getDataType()}.
+     * @param size     The number of elements per bank.
+     * @param numBanks The number of banks.
+     * @return A read-only data buffer.
+     * @throws IOException If the slot cannot be mapped.
+     */
+    public DataBuffer map(int slot, int dataType, int size, int numBanks) throws IOException {
+        synchronized (this) {
+            mapped = true;
+        }
+        final int bankSize = getBankSize(dataType, size);
+        final ByteBuffer slotBuffer = getSlotBuffer(slot);
+        final ByteBuffer[] banks = new ByteBuffer[numBanks];
+        for (int bank = 0; bank < numBanks; bank++) {
+            banks[bank] = getBankBuffer(slotBuffer, bank, bankSize).asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+        }
+        return new MappedDataBuffer(dataType, size, banks);
+    }
+
+    /**
+     * Makes the given slot available for reuse.
+     *
+     * @param slot The slot index.
+     */
+    public synchronized void free(int slot) {
+        usedSlots.clear(slot);
+    }
+
+    /**
+     * Closes and deletes the file. The mapped regions are released immediately, unless data buffers have been
+     * obtained from {@link #map}, which may still be referenced. These must no longer be used.
+     */
+    public synchronized void close() {
+        if (!mapped) {
+            for (MappedByteBuffer region : regions) {
+                unmap(region);
+            }
+        }
+        regions.clear();
+        usedSlots.clear();
+        try {
+            channel.close();
+            randomAccessFile.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        file.delete();
+    }
+
+    private synchronized ByteBuffer getSlotBuffer(int slot) throws IOException {
+        final int regionIndex = slot / slotsPerRegion;
+        while (regions.size() <= regionIndex) {
+            final long regionBytes = (long) slotsPerRegion * slotSize;
+            regions.add(channel.map(FileChannel.MapMode.READ_WRITE, regions.size() * regionBytes, regionBytes));
+        }
+        final ByteBuffer slotBuffer = regions.get(regionIndex).duplicate();
+        final int position = (slot % slotsPerRegion) * slotSize;
+        slotBuffer.position(position);
+        slotBuffer.limit(position + slotSize);
+        return slotBuffer.slice();
+    }
+
+    private static ByteBuffer getBankBuffer(ByteBuffer slotBuffer, int bank, int bankSize) {
+        final ByteBuffer bankBuffer = slotBuffer.duplicate();
+        bankBuffer.position(bank * bankSize);
+        bankBuffer.limit((bank + 1) * bankSize);
+        return bankBuffer.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private static int getBankSize(int dataType, int size) {
+        return size * (DataBuffer.getDataTypeSize(dataType) / 8);
+    }
+
+    private static Object getData(DataBuffer dataBuffer, int bank) {
+        if (dataBuffer instanceof DataBufferByte) {
+            return ((DataBufferByte) dataBuffer).getData(bank);
+        } else if (dataBuffer instanceof DataBufferShort) {
+            return ((DataBufferShort) dataBuffer).getData(bank);
+        } else if (dataBuffer instanceof DataBufferUShort) {
+            return ((DataBufferUShort) dataBuffer).getData(bank);
+        } else if (dataBuffer instanceof DataBufferInt) {
+            return ((DataBufferInt) dataBuffer).getData(bank);
+        } else if (dataBuffer instanceof DataBufferFloat) {
+            return ((DataBufferFloat) dataBuffer).getData(bank);
+        } else if (dataBuffer instanceof DataBufferDouble) {
+            return ((DataBufferDouble) dataBuffer).getData(bank);
+        }
+        // other data buffers, e.g. the JAI ones, are accessed through their getData(int) method
+        try {
+            Method method = GET_DATA_METHODS.get(dataBuffer.getClass());
+            if (method == null) {
+                method = dataBuffer.getClass().getMethod("getData", int.class);
+                GET_DATA_METHODS.put(dataBuffer.getClass(), method);
+            }
+            return method.invoke(dataBuffer, bank);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("illegal dataBuffer: " + dataBuffer.getClass(), e);
+        }
+    }
+
+    /**
+     * Releases the mapping of the given buffer now instead of on garbage collection, if the JVM allows to.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // released on garbage collection
+        }
+    }
+}
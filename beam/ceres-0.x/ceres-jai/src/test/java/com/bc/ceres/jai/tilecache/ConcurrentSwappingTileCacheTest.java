@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import junit.framework.TestCase;
+
+import javax.media.jai.ComponentSampleModelJAI;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.TiledImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+
+public class ConcurrentSwappingTileCacheTest extends TestCase {
+
+    private static final long TILE_SIZE = 256 * 256 * 4;
+
+    public void testHitsAndMisses() {
+        TiledImage im = createImage(2, 2);
+        ConcurrentSwappingTileCache cache = new ConcurrentSwappingTileCache(16 * TILE_SIZE, new SwapSpaceMock());
+
+        assertNull(cache.getTile(im, 0, 0));
+        cache.add(im, 0, 0, im.getTile(0, 0));
+        cache.add(im, 1, 0, im.getTile(1, 0));
+        assertSame(im.getTile(0, 0), cache.getTile(im, 0, 0));
+        assertSame(im.getTile(1, 0), cache.getTile(im, 1, 0));
+        assertNull(cache.getTile(im, 1, 1));
+
+        assertEquals(2, cache.getCacheTileCount());
+        assertEquals(2 * TILE_SIZE, cache.getCacheMemoryUsed());
+        assertEquals(2, cache.getCacheHitCount());
+        assertEquals(2, cache.getCacheMissCount());
+        assertEquals(0, cache.getCacheEvictionCount());
+
+        cache.removeTiles(im);
+        assertEquals(0, cache.getCacheTileCount());
+        assertEquals(0, cache.getCacheMemoryUsed());
+
+        cache.resetCounts();
+        assertEquals(0, cache.getCacheHitCount());
+        assertEquals(0, cache.getCacheMissCount());
+    }
+
+    public void testFrequentlyUsedTileSurvivesEviction() {
+        TiledImage im = createImage(4, 4);
+        SwapSpaceMock swapSpace = new SwapSpaceMock();
+        ConcurrentSwappingTileCache cache = new ConcurrentSwappingTileCache(3 * TILE_SIZE + 1, swapSpace, 1);
+
+        cache.add(im, 0, 0, im.getTile(0, 0));
+        cache.getTile(im, 0, 0);
+        cache.getTile(im, 0, 0);
+        cache.add(im, 1, 0, im.getTile(1, 0));
+        cache.add(im, 2, 0, im.getTile(2, 0));
+        assertEquals(0, cache.getCacheEvictionCount());
+
+        // Expected: 2 evicted tiles, because memoryThreshold=75%, the oldest one survives as it has been used
+        cache.add(im, 3, 0, im.getTile(3, 0));
+        assertEquals(2, cache.getCacheEvictionCount());
+        assertEquals(2, cache.getCacheTileCount());
+        assertEquals(2 * TILE_SIZE, cache.getCacheMemoryUsed());
+
+        cache.resetCounts();
+        assertNotNull(cache.getTile(im, 0, 0));
+        assertNotNull(cache.getTile(im, 3, 0));
+        assertEquals(2, cache.getCacheHitCount());
+
+        // evicted tiles are restored, either from the swap space or while still waiting to be written
+        Raster tile10r = cache.getTile(im, 1, 0);
+        assertNotNull(tile10r);
+        assertEquals(im.getTile(1, 0).getSampleModel(), tile10r.getSampleModel());
+        assertEquals(3, cache.getCacheHitCount());
+        assertEquals(0, cache.getCacheMissCount());
+
+        assertNull(cache.getTile(im, 3, 3));
+        assertEquals(1, cache.getCacheMissCount());
+    }
+
+    public void testRemoveTilesDeletesSwappedTiles() {
+        TiledImage im = createImage(4, 1);
+        SwapSpaceMock swapSpace = new SwapSpaceMock();
+        ConcurrentSwappingTileCache cache = new ConcurrentSwappingTileCache(3 * TILE_SIZE + 1, swapSpace, 1);
+
+        for (int x = 0; x < 4; x++) {
+            cache.add(im, x, 0, im.getTile(x, 0));
+        }
+        assertEquals(2, cache.getSwappedTileCount());
+        assertEquals(2, swapSpace.tiles.size());
+
+        cache.removeTiles(im);
+        assertEquals(0, cache.getSwappedTileCount());
+        assertEquals(0, swapSpace.tiles.size());
+        assertEquals(0, cache.getCacheMemoryUsed());
+    }
+
+    public void testFlushForgetsTilesOfCollectedImages() throws Exception {
+        TiledImage im = createImage(4, 1);
+        ConcurrentSwappingTileCache cache = new ConcurrentSwappingTileCache(3 * TILE_SIZE + 1, new SwapSpaceMock(), 1);
+
+        for (int x = 0; x < 4; x++) {
+            cache.add(im, x, 0, im.getTile(x, 0));
+        }
+        assertEquals(2, cache.getSwappedTileCount());
+        assertEquals(2 * TILE_SIZE, cache.getCacheMemoryUsed());
+
+        WeakReference<TiledImage> ref = new WeakReference<TiledImage>(im);
+        //noinspection UnusedAssignment
+        im = null;
+        for (int i = 0; i < 20 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        if (ref.get() != null) {
+            // the image could not be collected, nothing to test
+            return;
+        }
+
+        cache.flush();
+        assertEquals(0, cache.getSwappedTileCount());
+        assertEquals(0, cache.getCacheTileCount());
+        assertEquals(0, cache.getCacheMemoryUsed());
+    }
+
+    public void testDiagnostics() {
+        TiledImage im = createImage(4, 1);
+        ConcurrentSwappingTileCache cache = new ConcurrentSwappingTileCache(3 * TILE_SIZE + 1, new SwapSpaceMock(), 1);
+        final List<Integer> actions = new ArrayList<Integer>();
+        cache.addObserver(new Observer() {
+            @Override
+            public void update(Observable o, Object arg) {
+                actions.add(((MemoryTile) arg).getAction());
+            }
+        });
+
+        cache.add(im, 0, 0, im.getTile(0, 0));
+        assertTrue(actions.isEmpty());
+
+        cache.enableDiagnostics();
+        cache.add(im, 1, 0, im.getTile(1, 0));
+        cache.add(im, 1, 0, im.getTile(1, 0));
+        cache.getTile(im, 1, 0);
+        cache.remove(im, 1, 0);
+        // add, update from add, update from getTile, remove
+        assertEquals("[0, 4, 5, 1]", actions.toString());
+
+        cache.disableDiagnostics();
+        cache.remove(im, 0, 0);
+        assertEquals(4, actions.size());
+    }
+
+    private static TiledImage createImage(int numXTiles, int numYTiles) {
+        ComponentSampleModelJAI sm = new ComponentSampleModelJAI(DataBuffer.TYPE_FLOAT, 256, 256, 1, 256, new int[1]);
+        return new TiledImage(0, 0, numXTiles * 256, numYTiles * 256, 0, 0, sm, PlanarImage.createColorModel(sm));
+    }
+
+    private static class SwapSpaceMock implements SwapSpace {
+
+        private final HashMap<String, MemoryTile> tiles = new HashMap<String, MemoryTile>();
+
+        public synchronized boolean storeTile(MemoryTile memoryTile) {
+            tiles.put(getKey(memoryTile.getOwner(), memoryTile.getTileX(), memoryTile.getTileY()), memoryTile);
+            return true;
+        }
+
+        public synchronized MemoryTile restoreTile(RenderedImage owner, int tileX, int tileY) {
+            return tiles.get(getKey(owner, tileX, tileY));
+        }
+
+        public synchronized boolean deleteTile(RenderedImage owner, int tileX, int tileY) {
+            return tiles.remove(getKey(owner, tileX, tileY)) != null;
+        }
+
+        private static String getKey(RenderedImage owner, int tileX, int tileY) {
+            return MemoryTile.hashKey(owner, tileX, tileY).toString();
+        }
+    }
+}
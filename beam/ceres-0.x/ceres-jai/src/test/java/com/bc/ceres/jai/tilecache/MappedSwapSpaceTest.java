@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import junit.framework.TestCase;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.util.logging.Logger;
+
+public class MappedSwapSpaceTest extends TestCase {
+
+    private File swapDir;
+    private MappedSwapSpace swapSpace;
+    private BufferedImage owner;
+
+    @Override
+    protected void setUp() throws Exception {
+        swapDir = File.createTempFile("MappedSwapSpaceTest", "");
+        assertTrue(swapDir.delete());
+        swapSpace = new MappedSwapSpace(swapDir, Logger.getAnonymousLogger(), false);
+        owner = new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        swapSpace.dispose();
+        final File[] files = swapDir.listFiles();
+        assertNotNull(files);
+        assertEquals(0, files.length);
+        swapDir.delete();
+    }
+
+    public void testReadOnlyTileIsRestoredWithHeapDataBuffer() throws Exception {
+        final DataBufferFloat dataBuffer = new DataBufferFloat(100);
+        for (int i = 0; i < 100; i++) {
+            dataBuffer.setElemFloat(i, 0.25F * i);
+        }
+        final SampleModel sampleModel = new BandedSampleModel(DataBuffer.TYPE_FLOAT, 10, 10, 1);
+        final Raster tile = Raster.createRaster(sampleModel, dataBuffer, new Point(0, 0));
+
+        assertTrue(swapSpace.storeTile(new MemoryTile(owner, 0, 0, tile, null)));
+        final MemoryTile restored = swapSpace.restoreTile(owner, 0, 0);
+
+        assertNotNull(restored);
+        assertFalse(restored.getTile() instanceof WritableRaster);
+        assertTrue(restored.getTile().getDataBuffer() instanceof DataBufferFloat);
+        final float[] data = ((DataBufferFloat) restored.getTile().getDataBuffer()).getData();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0.25F * i, data[i], 0.0F);
+        }
+        assertTrue(swapSpace.deleteTile(owner, 0, 0));
+        assertNull(swapSpace.restoreTile(owner, 0, 0));
+    }
+}
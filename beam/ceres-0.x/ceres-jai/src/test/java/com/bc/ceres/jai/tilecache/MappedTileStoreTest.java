@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import junit.framework.TestCase;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferUShort;
+import java.io.File;
+
+public class MappedTileStoreTest extends TestCase {
+
+    private MappedTileStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        final File file = File.createTempFile("MappedTileStoreTest", ".dat");
+        store = new MappedTileStore(file, 4 * 100);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        store.close();
+        assertFalse(store.getFile().exists());
+    }
+
+    public void testStoreAndRead() throws Exception {
+        final DataBufferFloat floats = new DataBufferFloat(100);
+        final DataBufferUShort ushorts = new DataBufferUShort(200);
+        for (int i = 0; i < 100; i++) {
+            floats.setElemFloat(i, 0.5F * i);
+            ushorts.setElem(i, 65535 - i);
+        }
+        assertEquals(400, MappedTileStore.getStoredSize(floats));
+        assertEquals(400, MappedTileStore.getStoredSize(ushorts));
+
+        final int slot0 = store.store(floats);
+        final int slot1 = store.store(ushorts);
+        assertEquals(0, slot0);
+        assertEquals(1, slot1);
+        assertEquals(2, store.getUsedSlotCount());
+
+        final DataBuffer floatsRead = store.read(slot0, DataBuffer.TYPE_FLOAT, 100, 1);
+        final DataBuffer ushortsRead = store.read(slot1, DataBuffer.TYPE_USHORT, 200, 1);
+        assertTrue(floatsRead instanceof DataBufferFloat);
+        assertTrue(ushortsRead instanceof DataBufferUShort);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0.5F * i, floatsRead.getElemFloat(i), 0.0F);
+            assertEquals(65535 - i, ushortsRead.getElem(i));
+        }
+
+        final DataBuffer floatsMapped = store.map(slot0, DataBuffer.TYPE_FLOAT, 100, 1);
+        final DataBuffer ushortsMapped = store.map(slot1, DataBuffer.TYPE_USHORT, 200, 1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0.5F * i, floatsMapped.getElemFloat(i), 0.0F);
+            assertEquals(65535 - i, ushortsMapped.getElem(i));
+        }
+        try {
+            floatsMapped.setElem(0, 1);
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    public void testFreedSlotIsReused() throws Exception {
+        final DataBufferFloat floats = new DataBufferFloat(100);
+        assertEquals(0, store.store(floats));
+        assertEquals(1, store.store(floats));
+        assertEquals(2, store.store(floats));
+
+        store.free(1);
+        assertEquals(2, store.getUsedSlotCount());
+        assertEquals(1, store.store(floats));
+        assertEquals(3, store.store(floats));
+    }
+
+    public void testDataBufferMustFitIntoSlot() throws Exception {
+        try {
+            store.store(new DataBufferFloat(101));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, store.getUsedSlotCount());
+    }
+}
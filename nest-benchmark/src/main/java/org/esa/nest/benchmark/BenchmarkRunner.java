@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.benchmark;
+
+import com.bc.ceres.core.runtime.internal.DefaultRuntimeConfig;
+import org.esa.nest.util.MemUtils;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.media.jai.JAI;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Runs the benchmarks and checks the scores against a baseline of an earlier run.
+ * <pre>
+ * java -jar nest-benchmarks.jar [-include &lt;regex&gt;]... [-quick]
+ *                               [-save &lt;file&gt;] [-baseline &lt;file&gt;] [-tolerance &lt;percent&gt;]
+ * </pre>
+ * The exit code is 1 if a score is worse than the baseline by more than the tolerance (default 10%).
+ * Baselines are machine specific, they should be recorded on the machine which runs the comparison.
+ */
+public final class BenchmarkRunner {
+
+    private static final double MEGA = 1.0e6;
+    private static boolean environmentInitialized = false;
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Prepares JAI like the gpt command line tool does. Called by the benchmarks in the forked JVMs.
+     */
+    static synchronized void initEnvironment() {
+        if (environmentInitialized) {
+            return;
+        }
+        try {
+            new DefaultRuntimeConfig();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to initialize the runtime configuration", e);
+        }
+        System.setProperty("com.sun.media.jai.disableMediaLib", "true");
+        JAI.getDefaultInstance().getTileScheduler().setParallelism(Runtime.getRuntime().availableProcessors());
+        MemUtils.configureJaiTileCache();
+        environmentInitialized = true;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final List<String> includes = new ArrayList<String>();
+        File baselineFile = null;
+        File saveFile = null;
+        double tolerance = 10.0;
+        boolean quick = false;
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (arg.equals("-include") && i + 1 < args.length) {
+                includes.add(args[++i]);
+            } else if (arg.equals("-baseline") && i + 1 < args.length) {
+                baselineFile = new File(args[++i]);
+            } else if (arg.equals("-save") && i + 1 < args.length) {
+                saveFile = new File(args[++i]);
+            } else if (arg.equals("-tolerance") && i + 1 < args.length) {
+                tolerance = Double.parseDouble(args[++i]);
+            } else if (arg.equals("-quick")) {
+                quick = true;
+            } else {
+                System.err.println("Unknown option: " + arg);
+                System.exit(2);
+            }
+        }
+        if (includes.isEmpty()) {
+            includes.add(BenchmarkRunner.class.getPackage().getName() + ".*");
+        }
+
+        final ChainedOptionsBuilder options = new OptionsBuilder();
+        for (String include : includes) {
+            options.include(include);
+        }
+        if (quick) {
+            options.warmupIterations(1).measurementIterations(2).forks(1);
+        }
+        final Collection<RunResult> results = new Runner(options.build()).run();
+
+        final Properties scores = new Properties();
+        System.out.println();
+        for (RunResult result : results) {
+            final String key = getKey(result.getParams());
+            final double score = getScore(result);
+            scores.setProperty(key, String.valueOf(score));
+            System.out.println(String.format("%-90s %12.3f %s", key, score, getUnit(result)));
+        }
+
+        if (saveFile != null) {
+            final OutputStream out = new FileOutputStream(saveFile);
+            try {
+                scores.store(out, "NEST benchmark scores");
+            } finally {
+                out.close();
+            }
+        }
+
+        if (baselineFile != null) {
+            final int regressions = compare(results, loadScores(baselineFile), tolerance);
+            if (regressions > 0) {
+                System.out.println(regressions + " benchmark(s) regressed by more than " + tolerance + '%');
+                System.exit(1);
+            }
+            System.out.println("No regressions against " + baselineFile);
+        }
+    }
+
+    private static int compare(final Collection<RunResult> results, final Properties baseline, final double tolerance) {
+        int regressions = 0;
+        System.out.println();
+        for (RunResult result : results) {
+            final String key = getKey(result.getParams());
+            final String baselineValue = baseline.getProperty(key);
+            if (baselineValue == null) {
+                System.out.println(String.format("%-90s no baseline", key));
+                continue;
+            }
+            final double baselineScore = Double.parseDouble(baselineValue);
+            final double score = getScore(result);
+            final boolean higherIsBetter = isThroughput(result.getParams());
+            final double change = 100.0 * (score - baselineScore) / baselineScore;
+            final double loss = higherIsBetter ? -change : change;
+            final boolean regressed = loss > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.println(String.format("%-90s %+7.1f%%%s", key, change, regressed ? "  REGRESSION" : ""));
+        }
+        return regressions;
+    }
+
+    private static Properties loadScores(final File file) throws IOException {
+        final Properties scores = new Properties();
+        final InputStream in = new FileInputStream(file);
+        try {
+            scores.load(in);
+        } finally {
+            in.close();
+        }
+        return scores;
+    }
+
+    private static String getKey(final BenchmarkParams params) {
+        final String benchmark = params.getBenchmark();
+        final StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.',
+                                                                        benchmark.lastIndexOf('.') - 1) + 1));
+        for (String paramKey : params.getParamsKeys()) {
+            key.append(':').append(paramKey).append('=').append(params.getParam(paramKey));
+        }
+        return key.toString();
+    }
+
+    private static boolean isThroughput(final BenchmarkParams params) {
+        return params.getMode() == Mode.Throughput;
+    }
+
+    private static boolean isPixelThroughput(final BenchmarkParams params) {
+        return params.getBenchmark().startsWith(OperatorThroughputBenchmark.class.getName());
+    }
+
+    /**
+     * @return the score, in MPixel/s for the operator throughput
+     */
+    private static double getScore(final RunResult result) {
+        final double score = result.getPrimaryResult().getScore();
+        return isPixelThroughput(result.getParams()) ? score / MEGA : score;
+    }
+
+    private static String getUnit(final RunResult result) {
+        return isPixelThroughput(result.getParams()) ? "MPixel/s" : result.getPrimaryResult().getScoreUnit();
+    }
+}
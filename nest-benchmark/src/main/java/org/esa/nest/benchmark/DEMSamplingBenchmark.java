@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.benchmark;
+
+import org.esa.beam.framework.dataio.ProductIO;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.dataop.resamp.ResamplingFactory;
+import org.esa.nest.dataio.dem.DEMFactory;
+import org.esa.nest.dataio.dem.FileElevationModel;
+import org.esa.nest.gpf.TileGeoreferencing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DEM sampling through a {@link FileElevationModel} on a synthetic GeoTIFF DEM, once for the local DEM
+ * of a terrain correction tile and once for scattered points. The score is the time per sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g", "-Dcom.sun.media.jai.disableMediaLib=true"})
+public class DEMSamplingBenchmark {
+
+    private static final int SCENE_SIZE = 1024;
+    private static final int DEM_SIZE = 1201;
+    private static final int TILE_SIZE = 254;
+    private static final int NUM_POINTS = 65536;
+    private static final float DEM_NO_DATA_VALUE = -32768.0f;
+
+    @Param({ResamplingFactory.NEAREST_NEIGHBOUR_NAME, ResamplingFactory.BILINEAR_INTERPOLATION_NAME,
+            ResamplingFactory.CUBIC_CONVOLUTION_NAME})
+    public String resampling;
+
+    private File demFile;
+    private Product product;
+    private FileElevationModel dem;
+    private TileGeoreferencing tileGeoRef;
+    private double[][] localDEM;
+    private GeoPos[] points;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkRunner.initEnvironment();
+        product = SyntheticProducts.createDetectedProduct(SCENE_SIZE, SCENE_SIZE);
+
+        demFile = File.createTempFile("synthetic_dem", ".tif");
+        final Product demProduct = SyntheticProducts.createDEMProduct(product, DEM_SIZE, DEM_SIZE);
+        ProductIO.writeProduct(demProduct, demFile, "GeoTIFF", false);
+        demProduct.dispose();
+        dem = new FileElevationModel(demFile, resampling, DEM_NO_DATA_VALUE);
+
+        final int x0 = (SCENE_SIZE - TILE_SIZE) / 2;
+        final int y0 = (SCENE_SIZE - TILE_SIZE) / 2;
+        tileGeoRef = new TileGeoreferencing(product, x0 - 1, y0 - 1, TILE_SIZE + 2, TILE_SIZE + 2);
+        localDEM = new double[TILE_SIZE + 2][TILE_SIZE + 2];
+
+        final Random random = new Random(42);
+        points = new GeoPos[NUM_POINTS];
+        for (int i = 0; i < NUM_POINTS; i++) {
+            points[i] = new GeoPos();
+            tileGeoRef.getGeoPos(x0 + random.nextInt(TILE_SIZE), y0 + random.nextInt(TILE_SIZE), points[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dem.dispose();
+        product.dispose();
+        demFile.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation((TILE_SIZE + 2) * (TILE_SIZE + 2))
+    public double[][] getLocalDEM() throws Exception {
+        final int x0 = (SCENE_SIZE - TILE_SIZE) / 2;
+        final int y0 = (SCENE_SIZE - TILE_SIZE) / 2;
+        DEMFactory.getLocalDEM(dem, DEM_NO_DATA_VALUE, resampling, tileGeoRef, x0, y0, TILE_SIZE, TILE_SIZE,
+                               product, true, localDEM);
+        return localDEM;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_POINTS)
+    public double getElevation() throws Exception {
+        double sum = 0.0;
+        for (GeoPos point : points) {
+            sum += dem.getElevation(point);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.benchmark;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.OperatorSpi;
+import org.esa.beam.framework.gpf.internal.OperatorExecutor;
+import org.esa.nest.gpf.EllipsoidCorrectionRDOp;
+import org.esa.nest.gpf.MultilookOp;
+import org.esa.nest.gpf.filtering.SpeckleFilterOp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.media.jai.JAI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end throughput of single operators on a synthetic scene. All target tiles are computed
+ * with the {@link OperatorExecutor}, nothing is written. One operation is one source pixel, hence
+ * the score is in pixels per second; the {@link BenchmarkRunner} reports it in MPixel/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dcom.sun.media.jai.disableMediaLib=true"})
+public class OperatorThroughputBenchmark {
+
+    static final int WIDTH = 2048;
+    static final int HEIGHT = 2048;
+
+    @Param({"Multilook-Detected", "Multilook-Complex", "Speckle-Filter-Refined-Lee", "Ellipsoid-Correction-RD"})
+    public String operator;
+
+    private Product sourceProduct;
+    private Operator op;
+
+    @Setup(Level.Trial)
+    public void createSourceProduct() {
+        BenchmarkRunner.initEnvironment();
+        if (operator.endsWith("-Complex")) {
+            sourceProduct = SyntheticProducts.createComplexProduct(WIDTH, HEIGHT);
+        } else {
+            sourceProduct = SyntheticProducts.createDetectedProduct(WIDTH, HEIGHT);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createOperator() {
+        JAI.getDefaultInstance().getTileCache().flush();
+        op = createOperatorSpi().createOperator();
+        op.setSourceProduct(sourceProduct);
+        if (operator.startsWith("Speckle-Filter")) {
+            op.setParameter("filter", "Refined Lee");
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void disposeOperator() {
+        op.dispose();
+        op = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void disposeSourceProduct() {
+        sourceProduct.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH * HEIGHT)
+    public Product computeAllTiles() {
+        // getTargetProduct() runs initialize(), which is part of the measured cost
+        final Product targetProduct = op.getTargetProduct();
+        OperatorExecutor.create(op).execute(ProgressMonitor.NULL);
+        return targetProduct;
+    }
+
+    private OperatorSpi createOperatorSpi() {
+        if (operator.startsWith("Multilook")) {
+            return new MultilookOp.Spi();
+        } else if (operator.startsWith("Speckle-Filter")) {
+            return new SpeckleFilterOp.Spi();
+        } else if (operator.equals("Ellipsoid-Correction-RD")) {
+            return new EllipsoidCorrectionRDOp.Spi();
+        }
+        throw new IllegalArgumentException("Unknown operator: " + operator);
+    }
+}
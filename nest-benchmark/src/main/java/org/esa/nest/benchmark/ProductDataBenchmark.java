@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.benchmark;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.internal.TileImpl;
+import org.esa.nest.gpf.TileIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sample access patterns used by the operators: generic {@link ProductData} element access,
+ * the backing array, {@link Tile} sample access and the {@link TileIndex} idiom on a tile data buffer.
+ * The tile is offset from the origin, like most tiles of a scene. The score is the time per sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+public class ProductDataBenchmark {
+
+    private static final int TILE_SIZE = 512;
+    private static final int NUM_SAMPLES = TILE_SIZE * TILE_SIZE;
+
+    private ProductData data;
+    private Tile tile;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        final float[] samples = new float[NUM_SAMPLES];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = random.nextFloat();
+        }
+        data = ProductData.createInstance(samples);
+
+        final Rectangle rect = new Rectangle(1024, 512, TILE_SIZE, TILE_SIZE);
+        final WritableRaster raster = Raster.createBandedRaster(DataBuffer.TYPE_FLOAT, rect.width, rect.height, 1,
+                                                                new Point(rect.x, rect.y));
+        raster.setSamples(rect.x, rect.y, rect.width, rect.height, 0, samples);
+        final Band band = new Band("band", ProductData.TYPE_FLOAT32, 4096, 4096);
+        tile = new TileImpl(band, raster, rect, false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_SAMPLES)
+    public double productDataGetElemDoubleAt() {
+        double sum = 0.0;
+        for (int i = 0; i < NUM_SAMPLES; i++) {
+            sum += data.getElemDoubleAt(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_SAMPLES)
+    public double productDataArray() {
+        final float[] samples = (float[]) data.getElems();
+        double sum = 0.0;
+        for (int i = 0; i < NUM_SAMPLES; i++) {
+            sum += samples[i];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_SAMPLES)
+    public double tileGetSampleDouble() {
+        final int x0 = tile.getMinX(), y0 = tile.getMinY();
+        final int maxX = x0 + tile.getWidth(), maxY = y0 + tile.getHeight();
+        double sum = 0.0;
+        for (int y = y0; y < maxY; y++) {
+            for (int x = x0; x < maxX; x++) {
+                sum += tile.getSampleDouble(x, y);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_SAMPLES)
+    public double tileDataBufferWithTileIndex() {
+        final ProductData dataBuffer = tile.getDataBuffer();
+        final TileIndex index = new TileIndex(tile);
+        final int x0 = tile.getMinX(), y0 = tile.getMinY();
+        final int maxX = x0 + tile.getWidth(), maxY = y0 + tile.getHeight();
+        double sum = 0.0;
+        for (int y = y0; y < maxY; y++) {
+            index.calculateStride(y);
+            for (int x = x0; x < maxX; x++) {
+                sum += dataBuffer.getElemDoubleAt(index.getIndex(x));
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_SAMPLES)
+    public double tileGetSamplesFloat() {
+        final float[] samples = tile.getSamplesFloat();
+        double sum = 0.0;
+        for (float sample : samples) {
+            sum += sample;
+        }
+        return sum;
+    }
+}
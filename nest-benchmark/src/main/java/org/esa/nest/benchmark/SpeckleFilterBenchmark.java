@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.benchmark;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.internal.TileImpl;
+import org.esa.beam.jai.ImageManager;
+import org.esa.nest.gpf.filtering.SpeckleFilterOp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speckle filter kernels, measured by computing one target tile on the calling thread.
+ * The source tile is served from memory, so the score is dominated by the filter itself.
+ * The score is the time per target pixel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g", "-Dcom.sun.media.jai.disableMediaLib=true"})
+public class SpeckleFilterBenchmark {
+
+    private static final int SCENE_SIZE = 1024;
+    private static final int TILE_SIZE = 256;
+
+    @Param({"Mean", "Median", "Frost", "Gamma Map", "Lee", "Refined Lee"})
+    public String filter;
+
+    // ignored by the Refined Lee filter, which always uses a 7x7 window
+    @Param({"3", "7"})
+    public int filterSize;
+
+    private Product sourceProduct;
+    private Operator op;
+    private Band targetBand;
+    private Tile targetTile;
+
+    @Setup
+    public void setUp() {
+        BenchmarkRunner.initEnvironment();
+        sourceProduct = SyntheticProducts.createDetectedProduct(SCENE_SIZE, SCENE_SIZE);
+        op = new SpeckleFilterOp.Spi().createOperator();
+        op.setSourceProduct(sourceProduct);
+        op.setParameter("sourceBandNames", new String[]{"Amplitude_VV"});
+        op.setParameter("filter", filter);
+        op.setParameter("filterSizeX", filterSize);
+        op.setParameter("filterSizeY", filterSize);
+        targetBand = op.getTargetProduct().getBandAt(0);
+
+        // a tile in the middle of the scene, so that the kernel never hits the border
+        final Rectangle rect = new Rectangle(SCENE_SIZE / 2 - TILE_SIZE / 2, SCENE_SIZE / 2 - TILE_SIZE / 2,
+                                             TILE_SIZE, TILE_SIZE);
+        final WritableRaster raster = Raster.createBandedRaster(
+                ImageManager.getDataBufferType(targetBand.getDataType()), rect.width, rect.height, 1,
+                new Point(rect.x, rect.y));
+        targetTile = new TileImpl(targetBand, raster, rect);
+    }
+
+    @TearDown
+    public void tearDown() {
+        op.dispose();
+        sourceProduct.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TILE_SIZE * TILE_SIZE)
+    public Tile computeTile() {
+        op.computeTile(targetBand, targetTile, ProgressMonitor.NULL);
+        return targetTile;
+    }
+}
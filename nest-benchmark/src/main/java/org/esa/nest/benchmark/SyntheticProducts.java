@@ -0,0 +1,530 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.benchmark;
+
+import Jama.Matrix;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.CrsGeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.MetadataElement;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.TiePointGeoCoding;
+import org.esa.beam.framework.datamodel.TiePointGrid;
+import org.esa.beam.framework.dataop.maptransf.Datum;
+import org.esa.nest.datamodel.AbstractMetadata;
+import org.esa.nest.datamodel.Unit;
+import org.esa.nest.eo.Constants;
+import org.esa.nest.eo.GeoUtils;
+import org.esa.nest.gpf.OperatorUtils;
+import org.esa.nest.gpf.ReaderUtils;
+import org.esa.nest.util.MathUtils;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+
+import java.util.Random;
+
+/**
+ * Creates in-memory SAR products for benchmarking, so that no external datasets are needed.
+ * <p/>
+ * The products resemble ASAR image mode products: a satellite on a circular orbit 790 km above
+ * the WGS84 ellipsoid looks to the right at a scene centred at 45N 10E. The abstracted metadata,
+ * the orbit state vectors, the SRGR coefficients and the latitude, longitude, incidence angle and
+ * slant range time tie-point grids are all derived from this geometry and consistent with each other,
+ * so that geocoding operators work on them. The Earth rotation is neglected.
+ * <p/>
+ * The pixels are speckled (single look) backscatter of a smooth pattern of fields with sharp edges.
+ * All products are created from a fixed seed and are identical from run to run.
+ */
+public final class SyntheticProducts {
+
+    public static final double CENTER_LAT = 45.0;
+    public static final double CENTER_LON = 10.0;
+    public static final int TILE_SIZE = 512;
+
+    private static final double GM = 3.986004418e14;        // m^3/s^2
+    private static final double ALTITUDE = 790000.0;        // m
+    private static final double CENTER_INCIDENCE = 23.0;    // deg
+    private static final double RADAR_FREQUENCY = 5331.004416; // MHz
+    private static final double PRF = 1652.415692;          // Hz
+    private static final double RANGE_SAMPLING_RATE = 19.20768; // MHz
+    private static final double GROUND_RANGE_SPACING = 12.5; // m
+    private static final double STATE_VECTOR_INTERVAL = 10.0; // s
+    private static final int TIE_POINT_SUBSAMPLING = 32;
+    private static final int SRGR_POLYNOMIAL_ORDER = 4;
+    private static final String MID_TIME = "10-MAY-2008 20:30:46.890683";
+    private static final long SEED = 4711L;
+
+    private SyntheticProducts() {
+    }
+
+    /**
+     * Creates a detected ground range product with an amplitude band and a virtual intensity band.
+     *
+     * @param width  the scene width
+     * @param height the scene height
+     * @return the product
+     */
+    public static Product createDetectedProduct(final int width, final int height) {
+        final Geometry geometry = new Geometry(width, height, false);
+        final Product product = createProduct("ASA_IMP_1P", "DETECTED", geometry);
+
+        final float[] amplitude = new float[width * height];
+        final Random random = new Random(SEED);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final double intensity = getBackscatter(x, y) * -Math.log(1.0 - random.nextDouble());
+                amplitude[y * width + x] = (float) Math.sqrt(intensity);
+            }
+        }
+        final Band band = addBand(product, "Amplitude_VV", Unit.AMPLITUDE, amplitude);
+        ReaderUtils.createVirtualIntensityBand(product, band, "_VV");
+        return product;
+    }
+
+    /**
+     * Creates a complex slant range product with i and q bands and a virtual intensity band.
+     *
+     * @param width  the scene width
+     * @param height the scene height
+     * @return the product
+     */
+    public static Product createComplexProduct(final int width, final int height) {
+        final Geometry geometry = new Geometry(width, height, true);
+        final Product product = createProduct("ASA_IMS_1P", "COMPLEX", geometry);
+
+        final float[] i = new float[width * height];
+        final float[] q = new float[width * height];
+        final Random random = new Random(SEED);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final double sigma = Math.sqrt(getBackscatter(x, y) / 2.0);
+                i[y * width + x] = (float) (sigma * random.nextGaussian());
+                q[y * width + x] = (float) (sigma * random.nextGaussian());
+            }
+        }
+        final Band bandI = addBand(product, "i_VV", Unit.REAL, i);
+        final Band bandQ = addBand(product, "q_VV", Unit.IMAGINARY, q);
+        ReaderUtils.createVirtualIntensityBand(product, bandI, bandQ, "_VV");
+        ReaderUtils.createVirtualPhaseBand(product, bandI, bandQ, "_VV");
+        return product;
+    }
+
+    /**
+     * Creates a DEM in geographic coordinates which covers the given product with a margin.
+     * The terrain consists of rolling hills between about 0 and 1500 m.
+     *
+     * @param product the product to be covered
+     * @param width   the DEM width
+     * @param height  the DEM height
+     * @return the DEM product with a single elevation band
+     * @throws Exception if the geo-coding cannot be created
+     */
+    public static Product createDEMProduct(final Product product, final int width, final int height) throws Exception {
+        final TiePointGrid latGrid = product.getTiePointGrid(OperatorUtils.TPG_LATITUDE);
+        final TiePointGrid lonGrid = product.getTiePointGrid(OperatorUtils.TPG_LONGITUDE);
+        final float[] lats = latGrid.getTiePoints();
+        final float[] lons = lonGrid.getTiePoints();
+        double latMin = Double.MAX_VALUE, latMax = -Double.MAX_VALUE;
+        double lonMin = Double.MAX_VALUE, lonMax = -Double.MAX_VALUE;
+        for (int i = 0; i < lats.length; i++) {
+            latMin = Math.min(latMin, lats[i]);
+            latMax = Math.max(latMax, lats[i]);
+            lonMin = Math.min(lonMin, lons[i]);
+            lonMax = Math.max(lonMax, lons[i]);
+        }
+        final double margin = 0.05;
+        latMin -= margin;
+        latMax += margin;
+        lonMin -= margin;
+        lonMax += margin;
+        final double pixelSizeX = (lonMax - lonMin) / width;
+        final double pixelSizeY = (latMax - latMin) / height;
+
+        final Product demProduct = new Product("SyntheticDEM", "DEM", width, height);
+        demProduct.setGeoCoding(new CrsGeoCoding(DefaultGeographicCRS.WGS84, width, height,
+                                                 lonMin, latMax, pixelSizeX, pixelSizeY, 0.0, 0.0));
+
+        final float[] elevation = new float[width * height];
+        final Random random = new Random(SEED);
+        for (int y = 0; y < height; y++) {
+            final double lat = latMax - (y + 0.5) * pixelSizeY;
+            for (int x = 0; x < width; x++) {
+                final double lon = lonMin + (x + 0.5) * pixelSizeX;
+                elevation[y * width + x] = (float) (700.0 +
+                        400.0 * Math.sin(lat * 40.0) * Math.cos(lon * 30.0) +
+                        250.0 * Math.sin(lat * 170.0 + lon * 90.0) +
+                        20.0 * random.nextDouble());
+            }
+        }
+        final Band band = addBand(demProduct, "elevation", Unit.METERS, elevation);
+        band.setNoDataValue(-32768.0);
+        band.setNoDataValueUsed(true);
+        return demProduct;
+    }
+
+    /**
+     * @return the smooth backscatter pattern, an intensity between 0.02 and 0.4
+     */
+    private static double getBackscatter(final int x, final int y) {
+        final int field = ((x / 97) * 7 + (y / 131) * 13) % 5;
+        return 0.02 + 0.08 * field + 0.04 * Math.sin(x * 0.01) * Math.cos(y * 0.013);
+    }
+
+    private static Band addBand(final Product product, final String name, final String unit, final float[] data) {
+        final Band band = new Band(name, ProductData.TYPE_FLOAT32,
+                                   product.getSceneRasterWidth(), product.getSceneRasterHeight());
+        band.setUnit(unit);
+        band.setRasterData(ProductData.createInstance(data));
+        product.addBand(band);
+        return band;
+    }
+
+    private static Product createProduct(final String productType, final String sampleType, final Geometry geometry) {
+        final int width = geometry.width;
+        final int height = geometry.height;
+        final Product product = new Product("Synthetic_" + productType, productType, width, height);
+        product.setPreferredTileSize(TILE_SIZE, TILE_SIZE);
+        product.setDescription("Synthetic " + sampleType.toLowerCase() + " product");
+
+        final ProductData.UTC firstLineTime = geometry.getUTC(geometry.getTime(0));
+        final ProductData.UTC lastLineTime = geometry.getUTC(geometry.getTime(height - 1));
+        product.setStartTime(firstLineTime);
+        product.setEndTime(lastLineTime);
+
+        addTiePointGrids(product, geometry);
+
+        final MetadataElement absRoot = AbstractMetadata.addAbstractedMetadataHeader(product.getMetadataRoot());
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.PRODUCT, product.getName());
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.PRODUCT_TYPE, productType);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.SPH_DESCRIPTOR, product.getDescription());
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.MISSION, "ENVISAT");
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.ACQUISITION_MODE, "IS2");
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.antenna_pointing, "right");
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.SWATH, "IS2");
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.PASS, "ASCENDING");
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.SAMPLE_TYPE, sampleType);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.mds1_tx_rx_polar, "VV");
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.first_line_time, firstLineTime);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.last_line_time, lastLineTime);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.azimuth_looks, 1.0);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.range_looks, 1.0);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.range_spacing, geometry.rangeSpacing);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.azimuth_spacing, geometry.azimuthSpacing);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.pulse_repetition_frequency, PRF);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.radar_frequency, RADAR_FREQUENCY);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.line_time_interval, geometry.lineTimeInterval);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.range_sampling_rate, RANGE_SAMPLING_RATE);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.num_output_lines, height);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.num_samples_per_line, width);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.slant_range_to_first_pixel, geometry.getSlantRange(0));
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.srgr_flag, geometry.complex ? 0 : 1);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.avg_scene_height, 0.0);
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.abs_calibration_flag, 0);
+
+        final TiePointGeoCoding geoCoding = (TiePointGeoCoding) product.getGeoCoding();
+        setCorner(absRoot, geoCoding, 0, 0, AbstractMetadata.first_near_lat, AbstractMetadata.first_near_long);
+        setCorner(absRoot, geoCoding, width, 0, AbstractMetadata.first_far_lat, AbstractMetadata.first_far_long);
+        setCorner(absRoot, geoCoding, 0, height, AbstractMetadata.last_near_lat, AbstractMetadata.last_near_long);
+        setCorner(absRoot, geoCoding, width, height, AbstractMetadata.last_far_lat, AbstractMetadata.last_far_long);
+
+        addOrbitStateVectors(absRoot, geometry);
+        if (!geometry.complex) {
+            addSRGRCoefficients(absRoot, geometry, firstLineTime);
+        }
+        return product;
+    }
+
+    private static void setCorner(final MetadataElement absRoot, final TiePointGeoCoding geoCoding,
+                                  final float x, final float y, final String latTag, final String lonTag) {
+        final GeoPos geoPos = geoCoding.getGeoPos(new PixelPos(x, y), null);
+        AbstractMetadata.setAttribute(absRoot, latTag, geoPos.getLat());
+        AbstractMetadata.setAttribute(absRoot, lonTag, geoPos.getLon());
+    }
+
+    private static void addTiePointGrids(final Product product, final Geometry geometry) {
+        final int sub = TIE_POINT_SUBSAMPLING;
+        final int gridWidth = org.esa.beam.util.math.MathUtils.ceilInt((geometry.width - 1) / (double) sub) + 1;
+        final int gridHeight = org.esa.beam.util.math.MathUtils.ceilInt((geometry.height - 1) / (double) sub) + 1;
+        final float[] lats = new float[gridWidth * gridHeight];
+        final float[] lons = new float[gridWidth * gridHeight];
+        final float[] incidenceAngles = new float[gridWidth * gridHeight];
+        final float[] slantRangeTimes = new float[gridWidth * gridHeight];
+
+        final double[] earthPoint = new double[3];
+        final GeoPos geoPos = new GeoPos();
+        int k = 0;
+        for (int j = 0; j < gridHeight; j++) {
+            final double time = geometry.getTime(j * sub);
+            for (int i = 0; i < gridWidth; i++) {
+                final double slantRange = geometry.getSlantRange(i * sub);
+                incidenceAngles[k] = (float) geometry.getEarthPoint(time, slantRange, earthPoint);
+                GeoUtils.xyz2geoWGS84(earthPoint, geoPos);
+                lats[k] = geoPos.lat;
+                lons[k] = geoPos.lon;
+                slantRangeTimes[k] = (float) (slantRange / Constants.halfLightSpeed * Constants.oneBillion);
+                k++;
+            }
+        }
+
+        final TiePointGrid latGrid = new TiePointGrid(OperatorUtils.TPG_LATITUDE, gridWidth, gridHeight,
+                                                      0.5f, 0.5f, sub, sub, lats);
+        latGrid.setUnit(Unit.DEGREES);
+        final TiePointGrid lonGrid = new TiePointGrid(OperatorUtils.TPG_LONGITUDE, gridWidth, gridHeight,
+                                                      0.5f, 0.5f, sub, sub, lons, TiePointGrid.DISCONT_AT_180);
+        lonGrid.setUnit(Unit.DEGREES);
+        final TiePointGrid incidenceGrid = new TiePointGrid(OperatorUtils.TPG_INCIDENT_ANGLE, gridWidth, gridHeight,
+                                                            0.5f, 0.5f, sub, sub, incidenceAngles);
+        incidenceGrid.setUnit(Unit.DEGREES);
+        final TiePointGrid slantRangeGrid = new TiePointGrid(OperatorUtils.TPG_SLANT_RANGE_TIME, gridWidth, gridHeight,
+                                                             0.5f, 0.5f, sub, sub, slantRangeTimes);
+        slantRangeGrid.setUnit(Unit.NANOSECONDS);
+
+        product.addTiePointGrid(latGrid);
+        product.addTiePointGrid(lonGrid);
+        product.addTiePointGrid(incidenceGrid);
+        product.addTiePointGrid(slantRangeGrid);
+        product.setGeoCoding(new TiePointGeoCoding(latGrid, lonGrid, Datum.WGS_84));
+    }
+
+    private static void addOrbitStateVectors(final MetadataElement absRoot, final Geometry geometry) {
+        final MetadataElement orbitVectorListElem = absRoot.getElement(AbstractMetadata.orbit_state_vectors);
+        final double firstTime = geometry.getTime(0) - 3 * STATE_VECTOR_INTERVAL;
+        final double lastTime = geometry.getTime(geometry.height - 1) + 3 * STATE_VECTOR_INTERVAL;
+        final int numVectors = org.esa.beam.util.math.MathUtils.ceilInt((lastTime - firstTime) / STATE_VECTOR_INTERVAL) + 1;
+
+        final double[] position = new double[3];
+        final double[] velocity = new double[3];
+        for (int i = 0; i < numVectors; i++) {
+            final double time = firstTime + i * STATE_VECTOR_INTERVAL;
+            geometry.getSensorPosition(time, position);
+            geometry.getSensorVelocity(time, velocity);
+
+            final MetadataElement orbitVectorElem = new MetadataElement(AbstractMetadata.orbit_vector + (i + 1));
+            orbitVectorElem.setAttributeUTC(AbstractMetadata.orbit_vector_time, geometry.getUTC(time));
+            orbitVectorElem.setAttributeDouble(AbstractMetadata.orbit_vector_x_pos, position[0]);
+            orbitVectorElem.setAttributeDouble(AbstractMetadata.orbit_vector_y_pos, position[1]);
+            orbitVectorElem.setAttributeDouble(AbstractMetadata.orbit_vector_z_pos, position[2]);
+            orbitVectorElem.setAttributeDouble(AbstractMetadata.orbit_vector_x_vel, velocity[0]);
+            orbitVectorElem.setAttributeDouble(AbstractMetadata.orbit_vector_y_vel, velocity[1]);
+            orbitVectorElem.setAttributeDouble(AbstractMetadata.orbit_vector_z_vel, velocity[2]);
+            orbitVectorListElem.addElement(orbitVectorElem);
+        }
+        AbstractMetadata.setAttribute(absRoot, AbstractMetadata.STATE_VECTOR_TIME, geometry.getUTC(firstTime));
+    }
+
+    private static void addSRGRCoefficients(final MetadataElement absRoot, final Geometry geometry,
+                                            final ProductData.UTC time) {
+        final MetadataElement srgrCoefficientsElem = absRoot.getElement(AbstractMetadata.srgr_coefficients);
+        final MetadataElement srgrListElem = new MetadataElement(AbstractMetadata.srgr_coef_list);
+        srgrCoefficientsElem.addElement(srgrListElem);
+
+        srgrListElem.setAttributeUTC(AbstractMetadata.srgr_coef_time, time);
+        AbstractMetadata.addAbstractedAttribute(srgrListElem, AbstractMetadata.ground_range_origin,
+                                                ProductData.TYPE_FLOAT64, "m", "Ground Range Origin");
+        AbstractMetadata.setAttribute(srgrListElem, AbstractMetadata.ground_range_origin, 0.0);
+
+        for (int i = 0; i < geometry.srgrCoefficients.length; i++) {
+            final MetadataElement coefElem = new MetadataElement(AbstractMetadata.coefficient + '.' + (i + 1));
+            srgrListElem.addElement(coefElem);
+            AbstractMetadata.addAbstractedAttribute(coefElem, AbstractMetadata.srgr_coef,
+                                                    ProductData.TYPE_FLOAT64, "", "SRGR Coefficient");
+            AbstractMetadata.setAttribute(coefElem, AbstractMetadata.srgr_coef, geometry.srgrCoefficients[i]);
+        }
+    }
+
+    /**
+     * The acquisition geometry. Times are in seconds relative to the centre line of the scene.
+     */
+    private static final class Geometry {
+
+        final int width;
+        final int height;
+        final boolean complex;
+        final double rangeSpacing;
+        final double azimuthSpacing;
+        final double lineTimeInterval;
+        final double[] srgrCoefficients;
+
+        private final double midTimeMJD;
+        private final double orbitRadius;
+        private final double angularVelocity;
+        private final double sphereRadius;
+        private final double nearRange;
+        private final double[] u = new double[3];
+        private final double[] v = new double[3];
+        private final double[] lookDirection = new double[3];
+
+        Geometry(final int width, final int height, final boolean complex) {
+            this.width = width;
+            this.height = height;
+            this.complex = complex;
+            midTimeMJD = AbstractMetadata.parseUTC(MID_TIME).getMJD();
+
+            // local frame at the scene centre: n up, a north, c east
+            final double[] center = new double[3];
+            GeoUtils.geo2xyzWGS84(CENTER_LAT, CENTER_LON, 0.0, center);
+            sphereRadius = norm(center);
+            final double[] n = scale(center, 1.0 / sphereRadius);
+            final double[] a = new double[]{-n[2] * n[0], -n[2] * n[1], 1.0 - n[2] * n[2]};
+            final double[] north = scale(a, 1.0 / norm(a));
+            final double[] east = cross(north, n);
+
+            orbitRadius = sphereRadius + ALTITUDE;
+            angularVelocity = Math.sqrt(GM / (orbitRadius * orbitRadius * orbitRadius));
+
+            // the satellite flies north and looks east, the nadir is west of the scene centre
+            final double incidence = CENTER_INCIDENCE * org.esa.beam.util.math.MathUtils.DTOR;
+            final double look = Math.asin(sphereRadius / orbitRadius * Math.sin(incidence));
+            final double centralAngle = incidence - look;
+            for (int i = 0; i < 3; i++) {
+                u[i] = Math.cos(centralAngle) * n[i] - Math.sin(centralAngle) * east[i];
+                v[i] = north[i];
+            }
+            final double[] c = cross(v, u);
+            System.arraycopy(c, 0, lookDirection, 0, 3);
+
+            final double groundSpeed = angularVelocity * sphereRadius;
+            final double centerGroundRange = centralAngle * sphereRadius;
+            if (complex) {
+                lineTimeInterval = 1.0 / PRF;
+                azimuthSpacing = groundSpeed * lineTimeInterval;
+                rangeSpacing = Constants.halfLightSpeed / (RANGE_SAMPLING_RATE * Constants.oneMillion);
+                nearRange = getSlantRangeAtGroundRange(centerGroundRange) - (width - 1) / 2.0 * rangeSpacing;
+                srgrCoefficients = null;
+            } else {
+                azimuthSpacing = GROUND_RANGE_SPACING;
+                lineTimeInterval = azimuthSpacing / groundSpeed;
+                rangeSpacing = GROUND_RANGE_SPACING;
+                final double nearGroundRange = centerGroundRange - (width - 1) / 2.0 * rangeSpacing;
+                nearRange = getSlantRangeAtGroundRange(nearGroundRange);
+                srgrCoefficients = fitSRGRCoefficients(nearGroundRange);
+            }
+        }
+
+        private double getSlantRangeAtGroundRange(final double groundRange) {
+            return Math.sqrt(orbitRadius * orbitRadius + sphereRadius * sphereRadius -
+                             2.0 * orbitRadius * sphereRadius * Math.cos(groundRange / sphereRadius));
+        }
+
+        /**
+         * Fits the polynomial which converts the ground range from the near edge to the slant range.
+         * The fit is done on the normalised ground range to keep the Vandermonde matrix well conditioned.
+         */
+        private double[] fitSRGRCoefficients(final double nearGroundRange) {
+            final double swathWidth = width * rangeSpacing;
+            final int numPoints = 64;
+            final double[] x = new double[numPoints];
+            final double[][] slantRange = new double[numPoints][1];
+            for (int i = 0; i < numPoints; i++) {
+                x[i] = i / (numPoints - 1.0);
+                slantRange[i][0] = getSlantRangeAtGroundRange(nearGroundRange + x[i] * swathWidth);
+            }
+            final Matrix solution = MathUtils.createVandermondeMatrix(x, SRGR_POLYNOMIAL_ORDER).solve(
+                    new Matrix(slantRange));
+            final double[] coefficients = new double[SRGR_POLYNOMIAL_ORDER + 1];
+            for (int i = 0; i < coefficients.length; i++) {
+                coefficients[i] = solution.get(i, 0) / Math.pow(swathWidth, i);
+            }
+            return coefficients;
+        }
+
+        double getTime(final double line) {
+            return (line - (height - 1) / 2.0) * lineTimeInterval;
+        }
+
+        ProductData.UTC getUTC(final double time) {
+            return new ProductData.UTC(midTimeMJD + time / Constants.secondsInDay);
+        }
+
+        /**
+         * @param pixel the range pixel index, not necessarily inside the image
+         * @return the slant range in m
+         */
+        double getSlantRange(final double pixel) {
+            if (complex) {
+                return nearRange + pixel * rangeSpacing;
+            }
+            return MathUtils.computePolynomialValue(pixel * rangeSpacing, srgrCoefficients);
+        }
+
+        void getSensorPosition(final double time, final double[] position) {
+            final double cos = Math.cos(angularVelocity * time);
+            final double sin = Math.sin(angularVelocity * time);
+            for (int i = 0; i < 3; i++) {
+                position[i] = orbitRadius * (cos * u[i] + sin * v[i]);
+            }
+        }
+
+        void getSensorVelocity(final double time, final double[] velocity) {
+            final double cos = Math.cos(angularVelocity * time);
+            final double sin = Math.sin(angularVelocity * time);
+            for (int i = 0; i < 3; i++) {
+                velocity[i] = orbitRadius * angularVelocity * (-sin * u[i] + cos * v[i]);
+            }
+        }
+
+        /**
+         * Intersects the zero Doppler plane and the range sphere with the WGS84 ellipsoid.
+         * The ellipsoid is approximated by a sphere whose radius is refined a few times.
+         *
+         * @return the incidence angle in degrees
+         */
+        double getEarthPoint(final double time, final double slantRange, final double[] earthPoint) {
+            final double[] position = new double[3];
+            getSensorPosition(time, position);
+            final double a = GeoUtils.WGS84.a;
+            final double b = GeoUtils.WGS84.b;
+
+            double radius = sphereRadius;
+            for (int iter = 0; iter < 4; iter++) {
+                final double cosPhi = (orbitRadius * orbitRadius + slantRange * slantRange - radius * radius) /
+                                      (2.0 * slantRange * orbitRadius);
+                final double sinPhi = Math.sqrt(Math.max(0.0, 1.0 - cosPhi * cosPhi));
+                for (int i = 0; i < 3; i++) {
+                    earthPoint[i] = position[i] + slantRange * (-cosPhi * position[i] / orbitRadius +
+                                                                sinPhi * lookDirection[i]);
+                }
+                final double sinLat = earthPoint[2] / norm(earthPoint);
+                final double cosLat2 = 1.0 - sinLat * sinLat;
+                radius = a * b / Math.sqrt(b * b * cosLat2 + a * a * sinLat * sinLat);
+            }
+
+            final GeoPos geoPos = new GeoPos();
+            GeoUtils.xyz2geoWGS84(earthPoint, geoPos);
+            final double lat = geoPos.lat * org.esa.beam.util.math.MathUtils.DTOR;
+            final double lon = geoPos.lon * org.esa.beam.util.math.MathUtils.DTOR;
+            final double[] normal = {Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat)};
+            double cosIncidence = 0.0;
+            for (int i = 0; i < 3; i++) {
+                cosIncidence += normal[i] * (position[i] - earthPoint[i]) / slantRange;
+            }
+            return Math.acos(cosIncidence) * org.esa.beam.util.math.MathUtils.RTOD;
+        }
+
+        private static double norm(final double[] x) {
+            return Math.sqrt(x[0] * x[0] + x[1] * x[1] + x[2] * x[2]);
+        }
+
+        private static double[] scale(final double[] x, final double s) {
+            return new double[]{x[0] * s, x[1] * s, x[2] * s};
+        }
+
+        private static double[] cross(final double[] x, final double[] y) {
+            return new double[]{x[1] * y[2] - x[2] * y[1], x[2] * y[0] - x[0] * y[2], x[0] * y[1] - x[1] * y[0]};
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.benchmark;
+
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.MetadataElement;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.nest.datamodel.AbstractMetadata;
+import org.esa.nest.eo.GeoUtils;
+import org.esa.nest.eo.SARGeocoding;
+import org.esa.nest.gpf.OperatorUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The zero Doppler time solvers of {@link SARGeocoding}, the inner loop of range Doppler terrain correction.
+ * The earth points are spread over the whole scene. The score is the time per earth point.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+public class ZeroDopplerBenchmark {
+
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 4096;
+    private static final int GRID_SIZE = 64;
+
+    @Param({"binary-search", "newton"})
+    public String solver;
+
+    private double firstLineUTC;
+    private double lineTimeInterval;
+    private double wavelength;
+    private double[][] sensorPosition;
+    private double[][] sensorVelocity;
+    private double[][] earthPoints;
+
+    @Setup
+    public void setUp() throws Exception {
+        final Product product = SyntheticProducts.createComplexProduct(WIDTH, HEIGHT);
+        final MetadataElement absRoot = AbstractMetadata.getAbstractedMetadata(product);
+        final AbstractMetadata.OrbitStateVector[] orbitStateVectors = AbstractMetadata.getOrbitStateVectors(absRoot);
+        firstLineUTC = absRoot.getAttributeUTC(AbstractMetadata.first_line_time).getMJD();
+        final double lastLineUTC = absRoot.getAttributeUTC(AbstractMetadata.last_line_time).getMJD();
+        lineTimeInterval = (lastLineUTC - firstLineUTC) / (HEIGHT - 1);
+        wavelength = OperatorUtils.getRadarFrequency(absRoot);
+
+        final int numVectorsUsed = Math.min(orbitStateVectors.length, 5);
+        sensorPosition = new double[HEIGHT][3];
+        sensorVelocity = new double[HEIGHT][3];
+        SARGeocoding.computeSensorPositionsAndVelocities(
+                orbitStateVectors, new double[numVectorsUsed], new double[numVectorsUsed],
+                new double[numVectorsUsed], new double[numVectorsUsed],
+                sensorPosition, sensorVelocity, firstLineUTC, lineTimeInterval, HEIGHT);
+
+        final GeoCoding geoCoding = product.getGeoCoding();
+        final GeoPos geoPos = new GeoPos();
+        earthPoints = new double[GRID_SIZE * GRID_SIZE][3];
+        int k = 0;
+        for (int j = 0; j < GRID_SIZE; j++) {
+            for (int i = 0; i < GRID_SIZE; i++) {
+                final PixelPos pixelPos = new PixelPos((i + 0.5f) * WIDTH / GRID_SIZE, (j + 0.5f) * HEIGHT / GRID_SIZE);
+                geoCoding.getGeoPos(pixelPos, geoPos);
+                GeoUtils.geo2xyzWGS84(geoPos.lat, geoPos.lon, 0.0, earthPoints[k++]);
+            }
+        }
+        product.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GRID_SIZE * GRID_SIZE)
+    public double solve() {
+        final boolean newton = solver.equals("newton");
+        double sum = 0.0;
+        for (double[] earthPoint : earthPoints) {
+            if (newton) {
+                sum += SARGeocoding.getEarthPointZeroDopplerTimeNewton(firstLineUTC, lineTimeInterval, wavelength,
+                                                                      earthPoint, sensorPosition, sensorVelocity);
+            } else {
+                sum += SARGeocoding.getEarthPointZeroDopplerTime(firstLineUTC, lineTimeInterval, wavelength,
+                                                                earthPoint, sensorPosition, sensorVelocity);
+            }
+        }
+        return sum;
+    }
+}
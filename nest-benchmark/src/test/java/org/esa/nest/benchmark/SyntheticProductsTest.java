@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.benchmark;
+
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.MetadataElement;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.nest.datamodel.AbstractMetadata;
+import org.esa.nest.eo.GeoUtils;
+import org.esa.nest.eo.SARGeocoding;
+import org.esa.nest.gpf.OperatorUtils;
+
+/**
+ * Verifies that the geometry of the synthetic products is consistent, i.e. that the range Doppler
+ * geocoding of a pixel's tie-point location finds the pixel again.
+ */
+public class SyntheticProductsTest extends TestCase {
+
+    private static final int WIDTH = 600;
+    private static final int HEIGHT = 400;
+
+    public void testDetectedProduct() throws Exception {
+        final Product product = SyntheticProducts.createDetectedProduct(WIDTH, HEIGHT);
+        assertNotNull(product.getBand("Amplitude_VV"));
+        assertNotNull(product.getBand("Intensity_VV"));
+        assertTrue(AbstractMetadata.getAttributeBoolean(AbstractMetadata.getAbstractedMetadata(product),
+                                                        AbstractMetadata.srgr_flag));
+        assertCenter(product);
+        assertGeometry(product);
+    }
+
+    public void testComplexProduct() throws Exception {
+        final Product product = SyntheticProducts.createComplexProduct(WIDTH, HEIGHT);
+        assertNotNull(product.getBand("i_VV"));
+        assertNotNull(product.getBand("q_VV"));
+        assertNotNull(product.getBand("Intensity_VV"));
+        assertFalse(AbstractMetadata.getAttributeBoolean(AbstractMetadata.getAbstractedMetadata(product),
+                                                         AbstractMetadata.srgr_flag));
+        assertCenter(product);
+        assertGeometry(product);
+    }
+
+    public void testDEMProduct() throws Exception {
+        final Product product = SyntheticProducts.createDetectedProduct(WIDTH, HEIGHT);
+        final Product dem = SyntheticProducts.createDEMProduct(product, 200, 200);
+
+        for (PixelPos corner : new PixelPos[]{new PixelPos(0, 0), new PixelPos(WIDTH, HEIGHT)}) {
+            final GeoPos geoPos = product.getGeoCoding().getGeoPos(corner, null);
+            final PixelPos demPos = dem.getGeoCoding().getPixelPos(geoPos, null);
+            assertTrue(demPos.x > 0 && demPos.x < 200);
+            assertTrue(demPos.y > 0 && demPos.y < 200);
+        }
+        final float elevation = dem.getBandAt(0).getPixelFloat(100, 100);
+        assertTrue(elevation > -100 && elevation < 1600);
+    }
+
+    private static void assertCenter(final Product product) {
+        final GeoPos center = product.getGeoCoding().getGeoPos(new PixelPos(WIDTH / 2f, HEIGHT / 2f), null);
+        assertEquals(SyntheticProducts.CENTER_LAT, center.lat, 0.01);
+        assertEquals(SyntheticProducts.CENTER_LON, center.lon, 0.01);
+
+        final float incidenceAngle = OperatorUtils.getIncidenceAngle(product).getPixelFloat(WIDTH / 2f, HEIGHT / 2f);
+        assertEquals(23.0, incidenceAngle, 0.1);
+    }
+
+    private static void assertGeometry(final Product product) throws Exception {
+        final MetadataElement absRoot = AbstractMetadata.getAbstractedMetadata(product);
+        final AbstractMetadata.OrbitStateVector[] orbitStateVectors = AbstractMetadata.getOrbitStateVectors(absRoot);
+        final double firstLineUTC = absRoot.getAttributeUTC(AbstractMetadata.first_line_time).getMJD();
+        final double lastLineUTC = absRoot.getAttributeUTC(AbstractMetadata.last_line_time).getMJD();
+        final double lineTimeInterval = (lastLineUTC - firstLineUTC) / (HEIGHT - 1);
+        final double wavelength = OperatorUtils.getRadarFrequency(absRoot);
+        final boolean srgrFlag = AbstractMetadata.getAttributeBoolean(absRoot, AbstractMetadata.srgr_flag);
+        final double rangeSpacing = AbstractMetadata.getAttributeDouble(absRoot, AbstractMetadata.range_spacing);
+        final double nearEdgeSlantRange = AbstractMetadata.getAttributeDouble(absRoot,
+                                                                              AbstractMetadata.slant_range_to_first_pixel);
+        final AbstractMetadata.SRGRCoefficientList[] srgrConvParams =
+                srgrFlag ? AbstractMetadata.getSRGRCoefficients(absRoot) : null;
+
+        final int numVectorsUsed = Math.min(orbitStateVectors.length, 5);
+        final double[] timeArray = new double[numVectorsUsed];
+        final double[] xPosArray = new double[numVectorsUsed];
+        final double[] yPosArray = new double[numVectorsUsed];
+        final double[] zPosArray = new double[numVectorsUsed];
+        final double[][] sensorPosition = new double[HEIGHT][3];
+        final double[][] sensorVelocity = new double[HEIGHT][3];
+        SARGeocoding.computeSensorPositionsAndVelocities(orbitStateVectors, timeArray, xPosArray, yPosArray,
+                                                         zPosArray, sensorPosition, sensorVelocity,
+                                                         firstLineUTC, lineTimeInterval, HEIGHT);
+
+        final double[] earthPoint = new double[3];
+        final double[] sensorPos = new double[3];
+        for (int[] pixel : new int[][]{{10, 10}, {WIDTH / 2, HEIGHT / 2}, {WIDTH - 10, 50}, {77, HEIGHT - 10}}) {
+            final GeoPos geoPos = product.getGeoCoding().getGeoPos(new PixelPos(pixel[0] + 0.5f, pixel[1] + 0.5f),
+                                                                   null);
+            GeoUtils.geo2xyzWGS84(geoPos.lat, geoPos.lon, 0.0, earthPoint);
+
+            final double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTime(
+                    firstLineUTC, lineTimeInterval, wavelength, earthPoint, sensorPosition, sensorVelocity);
+            assertEquals(pixel[1], (zeroDopplerTime - firstLineUTC) / lineTimeInterval, 0.5);
+
+            final double slantRange = SARGeocoding.computeSlantRange(zeroDopplerTime, timeArray, xPosArray, yPosArray,
+                                                                     zPosArray, earthPoint, sensorPos);
+            final double rangeIndex = SARGeocoding.computeRangeIndex(srgrFlag, WIDTH, firstLineUTC, lastLineUTC,
+                                                                     rangeSpacing, zeroDopplerTime, slantRange,
+                                                                     nearEdgeSlantRange, srgrConvParams);
+            assertEquals(pixel[0], rangeIndex, 0.5);
+        }
+    }
+}
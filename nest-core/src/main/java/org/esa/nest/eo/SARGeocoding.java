@@ -234,6 +234,66 @@ public class SARGeocoding {
         return firstLineUTC + y0*lineTimeInterval;
     }
 
+    /**
+     * Compute zero Doppler time for given earth point with the sensor positions and velocities of an orbit.
+     * @param orbit The sensor orbit for all range lines.
+     * @param wavelength The radar wavelength.
+     * @param earthPoint The earth point in xyz cooordinate.
+     * @return The zero Doppler time in days if it is found, NonValidZeroDopplerTime otherwise.
+     */
+    public static double getEarthPointZeroDopplerTime(final SensorOrbit orbit, final double wavelength,
+                                                      final double[] earthPoint) {
+
+        final double firstLineUTC = orbit.getFirstLineUTC();
+        final double lineTimeInterval = orbit.getLineTimeInterval();
+
+        // binary search is used in finding the zero doppler time
+        int lowerBound = 0;
+        int upperBound = orbit.getNumLines() - 1;
+        double lowerBoundFreq = getDopplerFrequency(orbit, lowerBound, earthPoint, wavelength);
+        double upperBoundFreq = getDopplerFrequency(orbit, upperBound, earthPoint, wavelength);
+
+        if (Double.compare(lowerBoundFreq, 0.0) == 0) {
+            return firstLineUTC + lowerBound*lineTimeInterval;
+        } else if (Double.compare(upperBoundFreq, 0.0) == 0) {
+            return firstLineUTC + upperBound*lineTimeInterval;
+        } else if (lowerBoundFreq*upperBoundFreq > 0.0) {
+            return NonValidZeroDopplerTime;
+        }
+
+        // start binary search
+        double midFreq;
+        while(upperBound - lowerBound > 1) {
+
+            final int mid = (int)((lowerBound + upperBound)/2.0);
+            midFreq = orbit.getDopplerDotProduct(mid, earthPoint);
+
+            if (midFreq*lowerBoundFreq > 0.0) {
+                lowerBound = mid;
+                lowerBoundFreq = midFreq;
+            } else if (midFreq*upperBoundFreq > 0.0) {
+                upperBound = mid;
+                upperBoundFreq = midFreq;
+            } else if (Double.compare(midFreq, 0.0) == 0) {
+                return firstLineUTC + mid*lineTimeInterval;
+            }
+        }
+
+        final double y0 = lowerBound - lowerBoundFreq*(upperBound - lowerBound)/(upperBoundFreq - lowerBoundFreq);
+        return firstLineUTC + y0*lineTimeInterval;
+    }
+
+    private static double getDopplerFrequency(final SensorOrbit orbit, final int line, final double[] earthPoint,
+                                              final double wavelength) {
+
+        final double xDiff = earthPoint[0] - orbit.getXPos()[line];
+        final double yDiff = earthPoint[1] - orbit.getYPos()[line];
+        final double zDiff = earthPoint[2] - orbit.getZPos()[line];
+        final double distance = Math.sqrt(xDiff * xDiff + yDiff * yDiff + zDiff * zDiff);
+
+        return 2.0 * orbit.getDopplerDotProduct(line, earthPoint) / (distance*wavelength);
+    }
+
     /**
      * Compute Doppler frequency for given earthPoint and sensor position.
      * @param earthPoint The earth point in xyz coordinate.
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.eo;
+
+import org.esa.nest.datamodel.AbstractMetadata;
+import org.esa.nest.datamodel.PosVector;
+import org.esa.nest.util.MathUtils;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * The sensor position and velocity of every range line of a product, interpolated from its orbit state vectors.
+ * <p/>
+ * The positions and velocities are held in one array per coordinate instead of an array per range line.
+ * Orbits are shared by all operators of the JVM, e.g. by the steps of a terrain correction graph, as long as
+ * they are given the same orbit state vectors and line timing. An orbit must not be modified.
+ */
+public final class SensorOrbit {
+
+    private static final int MAX_VECTORS_USED = 5;
+    private static final int MAX_CACHED_ORBITS = 8;
+
+    // most recently used first
+    private static final LinkedList<SensorOrbit> orbitCache = new LinkedList<SensorOrbit>();
+
+    private final double[] key;
+    private final int numLines;
+    private final double firstLineUTC;
+    private final double lineTimeInterval;
+
+    private final double[] timeArray;
+    private final double[] xPosArray;
+    private final double[] yPosArray;
+    private final double[] zPosArray;
+    private final double[] xVelArray;
+    private final double[] yVelArray;
+    private final double[] zVelArray;
+
+    private final double[] xPos;
+    private final double[] yPos;
+    private final double[] zPos;
+    private final double[] xVel;
+    private final double[] yVel;
+    private final double[] zVel;
+
+    /**
+     * Gives the orbit for the range lines of a product, interpolated with the Lagrange polynomial of
+     * up to five of its orbit state vectors as by
+     * {@link SARGeocoding#computeSensorPositionsAndVelocities}.
+     *
+     * @param orbitStateVectors The orbit state vectors.
+     * @param firstLineUTC      The zero Doppler time for the first range line in days.
+     * @param lineTimeInterval  The line time interval in days.
+     * @param numLines          The number of range lines.
+     * @return The shared orbit.
+     */
+    public static SensorOrbit getInstance(final AbstractMetadata.OrbitStateVector[] orbitStateVectors,
+                                          final double firstLineUTC, final double lineTimeInterval,
+                                          final int numLines) {
+
+        final double[] key = createKey(orbitStateVectors, firstLineUTC, lineTimeInterval, numLines);
+        synchronized (orbitCache) {
+            for (Iterator<SensorOrbit> it = orbitCache.iterator(); it.hasNext(); ) {
+                final SensorOrbit orbit = it.next();
+                if (Arrays.equals(orbit.key, key)) {
+                    it.remove();
+                    orbitCache.addFirst(orbit);
+                    return orbit;
+                }
+            }
+        }
+
+        // interpolated outside of the lock, an orbit computed twice at the same time is harmless
+        final SensorOrbit orbit = new SensorOrbit(key, orbitStateVectors, firstLineUTC, lineTimeInterval, numLines);
+        synchronized (orbitCache) {
+            orbitCache.addFirst(orbit);
+            if (orbitCache.size() > MAX_CACHED_ORBITS) {
+                orbitCache.removeLast();
+            }
+        }
+        return orbit;
+    }
+
+    private static double[] createKey(final AbstractMetadata.OrbitStateVector[] orbitStateVectors,
+                                      final double firstLineUTC, final double lineTimeInterval,
+                                      final int numLines) {
+        final double[] key = new double[3 + 7 * orbitStateVectors.length];
+        key[0] = firstLineUTC;
+        key[1] = lineTimeInterval;
+        key[2] = numLines;
+        int k = 3;
+        for (AbstractMetadata.OrbitStateVector vector : orbitStateVectors) {
+            key[k++] = vector.time_mjd;
+            key[k++] = vector.x_pos;
+            key[k++] = vector.y_pos;
+            key[k++] = vector.z_pos;
+            key[k++] = vector.x_vel;
+            key[k++] = vector.y_vel;
+            key[k++] = vector.z_vel;
+        }
+        return key;
+    }
+
+    private SensorOrbit(final double[] key, final AbstractMetadata.OrbitStateVector[] orbitStateVectors,
+                        final double firstLineUTC, final double lineTimeInterval, final int numLines) {
+        this.key = key;
+        this.numLines = numLines;
+        this.firstLineUTC = firstLineUTC;
+        this.lineTimeInterval = lineTimeInterval;
+
+        final int numVectors = orbitStateVectors.length;
+        final int numVectorsUsed = Math.min(numVectors, MAX_VECTORS_USED);
+        final int d = numVectors / numVectorsUsed;
+
+        timeArray = new double[numVectorsUsed];
+        xPosArray = new double[numVectorsUsed];
+        yPosArray = new double[numVectorsUsed];
+        zPosArray = new double[numVectorsUsed];
+        xVelArray = new double[numVectorsUsed];
+        yVelArray = new double[numVectorsUsed];
+        zVelArray = new double[numVectorsUsed];
+        for (int i = 0; i < numVectorsUsed; i++) {
+            timeArray[i] = orbitStateVectors[i*d].time_mjd;
+            xPosArray[i] = orbitStateVectors[i*d].x_pos; // m
+            yPosArray[i] = orbitStateVectors[i*d].y_pos; // m
+            zPosArray[i] = orbitStateVectors[i*d].z_pos; // m
+            xVelArray[i] = orbitStateVectors[i*d].x_vel; // m/s
+            yVelArray[i] = orbitStateVectors[i*d].y_vel; // m/s
+            zVelArray[i] = orbitStateVectors[i*d].z_vel; // m/s
+        }
+
+        xPos = new double[numLines];
+        yPos = new double[numLines];
+        zPos = new double[numLines];
+        xVel = new double[numLines];
+        yVel = new double[numLines];
+        zVel = new double[numLines];
+
+        final PosVector pos = new PosVector();
+
+        // Lagrange polynomial interpolation
+        for (int i = 0; i < numLines; i++) {
+            final double time = firstLineUTC + i*lineTimeInterval; // zero Doppler time (in days) for each range line
+
+            final double[] weight = MathUtils.lagrangeWeight(timeArray, time);
+            MathUtils.lagrangeInterpolatingPolynomial(xPosArray, yPosArray, zPosArray, weight, pos);
+            xPos[i] = pos.x;
+            yPos[i] = pos.y;
+            zPos[i] = pos.z;
+
+            MathUtils.lagrangeInterpolatingPolynomial(xVelArray, yVelArray, zVelArray, weight, pos);
+            xVel[i] = pos.x;
+            yVel[i] = pos.y;
+            zVel[i] = pos.z;
+        }
+    }
+
+    public int getNumLines() {
+        return numLines;
+    }
+
+    public double getFirstLineUTC() {
+        return firstLineUTC;
+    }
+
+    public double getLineTimeInterval() {
+        return lineTimeInterval;
+    }
+
+    /**
+     * @return The times of the orbit state vectors used, in days.
+     */
+    public double[] getTimeArray() {
+        return timeArray;
+    }
+
+    /**
+     * @return The x coordinates of the sensor in the orbit state vectors used.
+     */
+    public double[] getXPosArray() {
+        return xPosArray;
+    }
+
+    public double[] getYPosArray() {
+        return yPosArray;
+    }
+
+    public double[] getZPosArray() {
+        return zPosArray;
+    }
+
+    /**
+     * @return The x velocities of the sensor in the orbit state vectors used.
+     */
+    public double[] getXVelArray() {
+        return xVelArray;
+    }
+
+    public double[] getYVelArray() {
+        return yVelArray;
+    }
+
+    public double[] getZVelArray() {
+        return zVelArray;
+    }
+
+    /**
+     * @return The x coordinates of the sensor for all range lines.
+     */
+    public double[] getXPos() {
+        return xPos;
+    }
+
+    public double[] getYPos() {
+        return yPos;
+    }
+
+    public double[] getZPos() {
+        return zPos;
+    }
+
+    /**
+     * @return The x velocities of the sensor for all range lines.
+     */
+    public double[] getXVel() {
+        return xVel;
+    }
+
+    public double[] getYVel() {
+        return yVel;
+    }
+
+    public double[] getZVel() {
+        return zVel;
+    }
+
+    /**
+     * Gives the Doppler frequency of an earth point at a range line, up to a positive factor.
+     *
+     * @param line       The range line.
+     * @param earthPoint The earth point in xyz coordinate.
+     * @return The dot product of the sensor velocity and the look vector.
+     */
+    public double getDopplerDotProduct(final int line, final double[] earthPoint) {
+        return xVel[line] * (earthPoint[0] - xPos[line]) +
+               yVel[line] * (earthPoint[1] - yPos[line]) +
+               zVel[line] * (earthPoint[2] - zPos[line]);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.eo;
+
+import org.esa.beam.framework.gpf.OperatorException;
+
+/**
+ * Finds the zero Doppler time and slant range of earth points, for geocoding pixels one after the other.
+ * <p/>
+ * The zero Doppler time of a pixel is searched from the range line found for the previous pixel with a few
+ * secant steps over the sensor positions of the range lines, instead of a binary search over all range lines.
+ * Neighbouring pixels usually share their bracketing range lines, so most pixels need two Doppler evaluations.
+ * If no bracket is found within a few steps, the binary search of
+ * {@link SARGeocoding#getEarthPointZeroDopplerTime(SensorOrbit, double, double[])} is used.
+ * The Lagrange denominators of the state vector times are computed once for the slant range.
+ * <p/>
+ * A solver keeps state between calls and is not thread safe, create one per tile.
+ */
+public final class ZeroDopplerSolver {
+
+    private static final int MAX_ITERATIONS = 8;
+
+    private final SensorOrbit orbit;
+    private final double firstLineUTC;
+    private final double lineTimeInterval;
+    private final double wavelength;
+    private final int yMax;
+
+    private final double[] timeArray;
+    private final double[] xPosArray;
+    private final double[] yPosArray;
+    private final double[] zPosArray;
+    private final double[] invDenominators;
+    private final double[] weight;
+
+    private int lastLine;
+
+    /**
+     * @param orbit      the sensor orbit of the range lines
+     * @param wavelength the radar wavelength
+     */
+    public ZeroDopplerSolver(final SensorOrbit orbit, final double wavelength) {
+        this.orbit = orbit;
+        this.firstLineUTC = orbit.getFirstLineUTC();
+        this.lineTimeInterval = orbit.getLineTimeInterval();
+        this.wavelength = wavelength;
+        this.yMax = orbit.getNumLines() - 1;
+        this.lastLine = orbit.getNumLines() / 2;
+
+        this.timeArray = orbit.getTimeArray();
+        this.xPosArray = orbit.getXPosArray();
+        this.yPosArray = orbit.getYPosArray();
+        this.zPosArray = orbit.getZPosArray();
+
+        final int n = timeArray.length;
+        this.weight = new double[n];
+        this.invDenominators = new double[n * n];
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < n; ++j) {
+                if (j != i) {
+                    invDenominators[i * n + j] = 1.0 / (timeArray[i] - timeArray[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute zero Doppler time for given earth point.
+     *
+     * @param earthPoint The earth point in xyz coordinate.
+     * @return The zero Doppler time in days if it is found, NonValidZeroDopplerTime otherwise.
+     * @throws OperatorException The operator exception.
+     */
+    public double getZeroDopplerTime(final double[] earthPoint) throws OperatorException {
+
+        if (yMax < 1) {
+            return SARGeocoding.getEarthPointZeroDopplerTime(orbit, wavelength, earthPoint);
+        }
+
+        int y = Math.min(lastLine, yMax - 1);
+        for (int i = 0; i < MAX_ITERATIONS; ++i) {
+            final double f0 = orbit.getDopplerDotProduct(y, earthPoint);
+            if (f0 == 0.0) {
+                lastLine = y;
+                return firstLineUTC + y * lineTimeInterval;
+            }
+            final double f1 = orbit.getDopplerDotProduct(y + 1, earthPoint);
+            if (f1 == 0.0) {
+                lastLine = y;
+                return firstLineUTC + (y + 1) * lineTimeInterval;
+            }
+
+            final double y0 = y - f0 / (f1 - f0);
+            if (f0 * f1 < 0.0) {
+                // bracketed by the range lines y and y + 1, interpolated as by the binary search
+                lastLine = y;
+                return firstLineUTC + y0 * lineTimeInterval;
+            }
+
+            // secant step to the range line before the estimated zero
+            final int yNew;
+            if (Double.isNaN(y0) || y0 < 0) {
+                yNew = 0;
+            } else if (y0 > yMax - 1) {
+                yNew = yMax - 1;
+            } else {
+                yNew = (int) y0;
+            }
+            if (yNew == y) {
+                break;
+            }
+            y = yNew;
+        }
+
+        final double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTime(orbit, wavelength, earthPoint);
+        if (zeroDopplerTime != SARGeocoding.NonValidZeroDopplerTime) {
+            lastLine = Math.max(0, Math.min(yMax - 1, (int) ((zeroDopplerTime - firstLineUTC) / lineTimeInterval)));
+        }
+        return zeroDopplerTime;
+    }
+
+    /**
+     * Compute slant range distance for given earth point and given time.
+     *
+     * @param time       The given time in days.
+     * @param earthPoint The earth point in xyz coordinate.
+     * @param sensorPos  The sensor position.
+     * @return The slant range distance in meters.
+     */
+    public double computeSlantRange(final double time, final double[] earthPoint, final double[] sensorPos) {
+
+        final int n = timeArray.length;
+        if (time < timeArray[0] || time > timeArray[n - 1]) {
+            return SARGeocoding.computeSlantRange(
+                    time, timeArray, xPosArray, yPosArray, zPosArray, earthPoint, sensorPos);
+        }
+
+        for (int i = 0; i < n; ++i) {
+            double weightVal = 1;
+            for (int j = 0; j < n; ++j) {
+                if (j != i) {
+                    weightVal *= (time - timeArray[j]) * invDenominators[i * n + j];
+                }
+            }
+            weight[i] = weightVal;
+        }
+
+        double x = 0, y = 0, z = 0;
+        for (int i = 0; i < n; ++i) {
+            x += weight[i] * xPosArray[i];
+            y += weight[i] * yPosArray[i];
+            z += weight[i] * zPosArray[i];
+        }
+        sensorPos[0] = x;
+        sensorPos[1] = y;
+        sensorPos[2] = z;
+
+        final double xDiff = x - earthPoint[0];
+        final double yDiff = y - earthPoint[1];
+        final double zDiff = z - earthPoint[2];
+
+        return Math.sqrt(xDiff * xDiff + yDiff * yDiff + zDiff * zDiff);
+    }
+}
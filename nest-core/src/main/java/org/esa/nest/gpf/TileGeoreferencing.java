@@ -46,14 +46,17 @@ public final class TileGeoreferencing {
         width = w;
         size = w*h;
 
-        final boolean isCrsGeoCoding = geocoding instanceof CrsGeoCoding;
-        isCached = !(latTPG == null || lonTPG == null) || isCrsGeoCoding;
+        // bulk geocoding where tie point grids aren't available or the geocoding is a map projection
+        final boolean hasTiePointGrids = latTPG != null && lonTPG != null;
+        final boolean useGeoCoding = geocoding instanceof CrsGeoCoding ||
+                (!hasTiePointGrids && geocoding instanceof AbstractGeoCoding);
+        isCached = hasTiePointGrids || useGeoCoding;
 
         try {
-            if(isCrsGeoCoding) {
+            if(useGeoCoding) {
                 latPixels = new float[size];
                 lonPixels = new float[size];
-                ((CrsGeoCoding)geocoding).getPixels(x1, y1, w, h, latPixels, lonPixels);
+                ((AbstractGeoCoding)geocoding).getPixels(x1, y1, w, h, latPixels, lonPixels);
             } else {
                 if(latTPG != null) {
                     latPixels = new float[size];
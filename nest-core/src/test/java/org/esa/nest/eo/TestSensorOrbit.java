@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.eo;
+
+import junit.framework.TestCase;
+import org.esa.nest.datamodel.AbstractMetadata;
+
+/**
+ * Tests the shared sensor orbit against the interpolation per operator
+ */
+public class TestSensorOrbit extends TestCase {
+
+    private static final int NUM_LINES = TestZeroDopplerSolver.NUM_LINES;
+    private static final double FIRST_LINE_UTC = TestZeroDopplerSolver.FIRST_LINE_UTC;
+    private static final double LINE_TIME_INTERVAL = TestZeroDopplerSolver.LINE_TIME_INTERVAL;
+
+    public void testSameAsSensorPositionsAndVelocities() throws Exception {
+        final AbstractMetadata.OrbitStateVector[] vectors = TestZeroDopplerSolver.createOrbitStateVectors();
+        final SensorOrbit orbit = SensorOrbit.getInstance(vectors, FIRST_LINE_UTC, LINE_TIME_INTERVAL, NUM_LINES);
+
+        final double[] timeArray = new double[5];
+        final double[] xPosArray = new double[5];
+        final double[] yPosArray = new double[5];
+        final double[] zPosArray = new double[5];
+        final double[][] sensorPosition = new double[NUM_LINES][3];
+        final double[][] sensorVelocity = new double[NUM_LINES][3];
+        SARGeocoding.computeSensorPositionsAndVelocities(vectors, timeArray, xPosArray, yPosArray, zPosArray,
+                sensorPosition, sensorVelocity, FIRST_LINE_UTC, LINE_TIME_INTERVAL, NUM_LINES);
+
+        assertEquals(NUM_LINES, orbit.getNumLines());
+        for (int i = 0; i < timeArray.length; i++) {
+            assertEquals(timeArray[i], orbit.getTimeArray()[i]);
+            assertEquals(yPosArray[i], orbit.getYPosArray()[i]);
+        }
+        for (int i = 0; i < NUM_LINES; i++) {
+            assertEquals(sensorPosition[i][0], orbit.getXPos()[i]);
+            assertEquals(sensorPosition[i][1], orbit.getYPos()[i]);
+            assertEquals(sensorPosition[i][2], orbit.getZPos()[i]);
+            assertEquals(sensorVelocity[i][0], orbit.getXVel()[i]);
+            assertEquals(sensorVelocity[i][1], orbit.getYVel()[i]);
+            assertEquals(sensorVelocity[i][2], orbit.getZVel()[i]);
+        }
+    }
+
+    public void testShared() throws Exception {
+        final SensorOrbit orbit = SensorOrbit.getInstance(
+                TestZeroDopplerSolver.createOrbitStateVectors(), FIRST_LINE_UTC, LINE_TIME_INTERVAL, NUM_LINES);
+
+        // equal state vectors of another product, e.g. the output of the previous operator of a graph
+        assertSame(orbit, SensorOrbit.getInstance(
+                TestZeroDopplerSolver.createOrbitStateVectors(), FIRST_LINE_UTC, LINE_TIME_INTERVAL, NUM_LINES));
+
+        assertNotSame(orbit, SensorOrbit.getInstance(
+                TestZeroDopplerSolver.createOrbitStateVectors(), FIRST_LINE_UTC, LINE_TIME_INTERVAL, NUM_LINES / 2));
+
+        final AbstractMetadata.OrbitStateVector[] vectors = TestZeroDopplerSolver.createOrbitStateVectors();
+        vectors[2].x_pos += 1.0;
+        assertNotSame(orbit, SensorOrbit.getInstance(vectors, FIRST_LINE_UTC, LINE_TIME_INTERVAL, NUM_LINES));
+    }
+}
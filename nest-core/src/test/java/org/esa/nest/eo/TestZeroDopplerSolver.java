@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.eo;
+
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.nest.datamodel.AbstractMetadata;
+
+/**
+ * Tests the warm started zero Doppler search against the binary search, on a straight orbit
+ */
+public class TestZeroDopplerSolver extends TestCase {
+
+    static final int NUM_LINES = 1000;
+    static final double FIRST_LINE_UTC = 4000.0;
+    static final double LINE_TIME_INTERVAL = 0.001 / Constants.secondsInDay;
+    private static final double WAVELENGTH = 0.056;
+    private static final double SPEED = 7500.0;
+    private static final double ALTITUDE = 7000000.0;
+
+    private SensorOrbit orbit;
+
+    @Override
+    protected void setUp() throws Exception {
+        orbit = SensorOrbit.getInstance(createOrbitStateVectors(), FIRST_LINE_UTC, LINE_TIME_INTERVAL, NUM_LINES);
+    }
+
+    /**
+     * State vectors of a straight orbit every 500 lines, from before the first line to after the last line
+     */
+    static AbstractMetadata.OrbitStateVector[] createOrbitStateVectors() {
+        final AbstractMetadata.OrbitStateVector[] vectors = new AbstractMetadata.OrbitStateVector[5];
+        for (int i = 0; i < vectors.length; i++) {
+            final double line = (i - 1) * NUM_LINES / 2.0;
+            vectors[i] = new AbstractMetadata.OrbitStateVector(
+                    new ProductData.UTC(FIRST_LINE_UTC + line * LINE_TIME_INTERVAL),
+                    ALTITUDE, getSensorY(line), 0.0, 0.0, SPEED, 0.0);
+        }
+        return vectors;
+    }
+
+    private static double getSensorY(final double line) {
+        return SPEED * line * 0.001;
+    }
+
+    public void testZeroDopplerTime() throws Exception {
+        final ZeroDopplerSolver solver = new ZeroDopplerSolver(orbit, WAVELENGTH);
+        final double[] earthPoint = new double[3];
+        earthPoint[0] = 6400000.0;
+
+        // along a line of pixels, then a jump back, as between the lines of a tile
+        final double[] lines = {1.25, 10.5, 11.7, 12.2, 500.0, 501.3, 997.6, 3.1, 700.9};
+        for (double line : lines) {
+            earthPoint[1] = getSensorY(line);
+            final double expected = FIRST_LINE_UTC + line * LINE_TIME_INTERVAL;
+            final double binarySearch = SARGeocoding.getEarthPointZeroDopplerTime(orbit, WAVELENGTH, earthPoint);
+            final double zeroDopplerTime = solver.getZeroDopplerTime(earthPoint);
+
+            assertEquals(expected, zeroDopplerTime, 1e-4 * LINE_TIME_INTERVAL);
+            assertEquals(binarySearch, zeroDopplerTime, 1e-6 * LINE_TIME_INTERVAL);
+        }
+    }
+
+    public void testOutsideOfScene() throws Exception {
+        final ZeroDopplerSolver solver = new ZeroDopplerSolver(orbit, WAVELENGTH);
+        final double[] earthPoint = {6400000.0, getSensorY(-20), 0.0};
+        assertEquals(SARGeocoding.NonValidZeroDopplerTime, solver.getZeroDopplerTime(earthPoint));
+
+        earthPoint[1] = getSensorY(NUM_LINES + 20);
+        assertEquals(SARGeocoding.NonValidZeroDopplerTime, solver.getZeroDopplerTime(earthPoint));
+    }
+
+    public void testSlantRange() throws Exception {
+        final ZeroDopplerSolver solver = new ZeroDopplerSolver(orbit, WAVELENGTH);
+        final double[] earthPoint = {6400000.0, getSensorY(321.4), 1000.0};
+        final double[] sensorPos = new double[3];
+        final double[] expectedSensorPos = new double[3];
+
+        for (double line = 0.0; line < NUM_LINES; line += 99.7) {
+            final double time = FIRST_LINE_UTC + line * LINE_TIME_INTERVAL;
+            final double expected = SARGeocoding.computeSlantRange(
+                    time, orbit.getTimeArray(), orbit.getXPosArray(), orbit.getYPosArray(), orbit.getZPosArray(),
+                    earthPoint, expectedSensorPos);
+            assertEquals(expected, solver.computeSlantRange(time, earthPoint, sensorPos), 1e-6);
+            assertEquals(expectedSensorPos[1], sensorPos[1], 1e-6);
+        }
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf;
+
+import com.bc.ceres.core.NullProgressMonitor;
+import com.bc.ceres.core.ProgressMonitor;
+import com.bc.ceres.core.SubProgressMonitor;
+import org.esa.beam.framework.dataio.ProductIO;
+import org.esa.beam.framework.dataio.ProductReader;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.graph.Graph;
+import org.esa.beam.framework.gpf.graph.GraphContext;
+import org.esa.beam.framework.gpf.graph.GraphProcessor;
+import org.esa.beam.util.logging.BeamLogManager;
+
+import javax.media.jai.JAI;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Processes a batch of graphs concurrently within one JVM.
+ * <p/>
+ * Each job is a graph applied to one source product. Up to <code>parallelism</code> jobs are executed at a time,
+ * but a job is only started if its estimated memory fits into the memory budget together with the jobs already
+ * running. A job which exceeds the budget on its own is executed alone.
+ * <p/>
+ * All jobs share the operator registry, the JAI tile cache and the process-wide caches of the operators,
+ * such as the orbit files already read. A failing job does not affect the other jobs, its error is recorded
+ * in the job.
+ * <p/>
+ * The batch command line tool {@link BatchGraphTool} runs a graph for a list of source products.
+ */
+public class BatchGraphProcessor {
+
+    public enum Status {WAITING, RUNNING, DONE, FAILED, CANCELED}
+
+    /**
+     * Notified about the progress of the jobs, from the threads executing them.
+     */
+    public interface Listener {
+        void jobStarted(Job job);
+
+        void jobProgress(Job job);
+
+        void jobFinished(Job job);
+    }
+
+    private static final long BASE_GRAPH_MEMORY = 32L * 1024 * 1024;
+
+    private final int parallelism;
+    private final long memoryBudget;
+    private final List<Job> jobList = new ArrayList<Job>();
+    private final Logger logger = BeamLogManager.getSystemLogger();
+    private Listener listener = null;
+
+    private long memoryInUse = 0;
+    private int runningJobs = 0;
+    private volatile boolean canceled = false;
+
+    /**
+     * Creates a batch processor using a job per processor and the heap not used by the JAI tile cache.
+     */
+    public BatchGraphProcessor() {
+        this(Runtime.getRuntime().availableProcessors(), getDefaultMemoryBudget());
+    }
+
+    /**
+     * @param parallelism  the maximum number of graphs executed at a time
+     * @param memoryBudget the memory in bytes available to the running graphs
+     */
+    public BatchGraphProcessor(final int parallelism, final long memoryBudget) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism < 1");
+        }
+        this.parallelism = parallelism;
+        this.memoryBudget = memoryBudget;
+    }
+
+    public static long getDefaultMemoryBudget() {
+        final long maxMemory = Runtime.getRuntime().maxMemory();
+        final long tileCacheCapacity = JAI.getDefaultInstance().getTileCache().getMemoryCapacity();
+        return Math.max(maxMemory - tileCacheCapacity, maxMemory / 4);
+    }
+
+    public void setListener(final Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a job with a memory estimate derived from the graph and the source product.
+     * @param graphFile the graph
+     * @param parameterMap the graph parameters, may be null
+     * @param srcFile the source product
+     * @param tgtFile the target product, or null to keep the target of the graph
+     * @param format the target format, or null to keep the format of the graph
+     * @return the job
+     */
+    public Job addJob(final File graphFile, final Map<String, String> parameterMap,
+                      final File srcFile, final File tgtFile, final String format) {
+        return addJob(graphFile, parameterMap, srcFile, tgtFile, format, 0);
+    }
+
+    /**
+     * Adds a job.
+     * @param graphFile the graph
+     * @param parameterMap the graph parameters, may be null
+     * @param srcFile the source product
+     * @param tgtFile the target product, or null to keep the target of the graph
+     * @param format the target format, or null to keep the format of the graph
+     * @param estimatedMemory the memory in bytes needed by the job, or 0 to estimate it
+     * @return the job
+     */
+    public synchronized Job addJob(final File graphFile, final Map<String, String> parameterMap,
+                                   final File srcFile, final File tgtFile, final String format,
+                                   final long estimatedMemory) {
+        final Job job = new Job(graphFile, parameterMap, srcFile, tgtFile, format, estimatedMemory);
+        jobList.add(job);
+        return job;
+    }
+
+    public synchronized List<Job> getJobs() {
+        return Collections.unmodifiableList(new ArrayList<Job>(jobList));
+    }
+
+    /**
+     * Cancels the batch. Waiting jobs are not started and running graphs are asked to stop.
+     */
+    public void cancel() {
+        canceled = true;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Executes all jobs added and waits for their completion.
+     * @param pm the progress monitor, worked once per finished job
+     * @return the jobs which have failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public List<Job> executeJobs(final ProgressMonitor pm) throws InterruptedException {
+        final List<Job> jobs = getJobs();
+        final List<Job> failedJobs = new ArrayList<Job>();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, jobs.size())),
+                                                                      new BatchThreadFactory());
+        pm.beginTask("Processing " + jobs.size() + " products", jobs.size());
+        try {
+            for (final Job job : jobs) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        executeJob(job);
+                        synchronized (pm) {
+                            pm.worked(1);
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                if (pm.isCanceled()) {
+                    cancel();
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            executor.shutdownNow();
+            throw e;
+        } finally {
+            pm.done();
+        }
+
+        for (Job job : jobs) {
+            if (job.getStatus() == Status.FAILED) {
+                failedJobs.add(job);
+            }
+        }
+        return failedJobs;
+    }
+
+    private void executeJob(final Job job) {
+        GraphContext graphContext = null;
+        boolean admitted = false;
+        try {
+            if (canceled) {
+                return;
+            }
+            final Graph graph = readGraph(job);
+            if (job.estimatedMemory <= 0) {
+                job.estimatedMemory = estimateMemory(graph, job.srcFile);
+            }
+            admitted = admit(job);
+            if (!admitted) {
+                return;
+            }
+
+            job.startTime = System.currentTimeMillis();
+            job.status = Status.RUNNING;
+            fireJobStarted(job);
+
+            final JobProgressMonitor jobPM = new JobProgressMonitor(job);
+            jobPM.beginTask("Processing " + job.srcFile.getName(), 100);
+            try {
+                graphContext = new GraphContext(graph);
+                new GraphProcessor().executeGraph(graphContext, SubProgressMonitor.create(jobPM, 100));
+            } finally {
+                jobPM.done();
+            }
+            job.status = canceled ? Status.CANCELED : Status.DONE;
+        } catch (Throwable t) {
+            job.status = Status.FAILED;
+            job.error = t;
+            logger.log(Level.SEVERE, "Failed to process " + job.srcFile + ": " + t.getMessage(), t);
+        } finally {
+            if (graphContext != null) {
+                try {
+                    graphContext.dispose();
+                } catch (Throwable t) {
+                    logger.log(Level.WARNING, "Failed to dispose graph of " + job.srcFile, t);
+                }
+            }
+            if (admitted) {
+                release(job);
+            }
+            if (job.status == Status.WAITING) {
+                job.status = Status.CANCELED;
+            }
+            job.endTime = System.currentTimeMillis();
+            fireJobFinished(job);
+        }
+    }
+
+    private static Graph readGraph(final Job job) throws Exception {
+        final GPFProcessor processor;
+        // reading a graph may rewrite an outdated graph file
+        synchronized (BatchGraphProcessor.class) {
+            processor = new GPFProcessor(job.graphFile, job.parameterMap);
+        }
+        processor.setIO(job.srcFile, job.tgtFile, job.format);
+        return processor.getGraph();
+    }
+
+    /**
+     * Estimates the memory of a graph as a strip of tiles across the whole source product per node.
+     * Only the header of the source product is read, bypassing the product cache of {@link ProductIO},
+     * whose products are shared with the graphs.
+     * @param graph the graph
+     * @param srcFile the source product
+     * @return the estimated memory in bytes
+     */
+    protected long estimateMemory(final Graph graph, final File srcFile) {
+        long bytesPerStrip = 0;
+        final ProductReader reader = ProductIO.getProductReaderForFile(srcFile);
+        if (reader == null) {
+            logger.warning("Unable to estimate the memory for " + srcFile + ": no reader found");
+        } else {
+            Product product = null;
+            try {
+                product = reader.readProductNodes(srcFile, null);
+                final int tileHeight = JAI.getDefaultTileSize() != null ? JAI.getDefaultTileSize().height : 512;
+                for (Band band : product.getBands()) {
+                    bytesPerStrip += (long) band.getSceneRasterWidth() * tileHeight *
+                            ProductData.getElemSize(band.getDataType());
+                }
+            } catch (Exception e) {
+                logger.warning("Unable to estimate the memory for " + srcFile + ": " + e.getMessage());
+            } finally {
+                if (product != null) {
+                    product.dispose();
+                }
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return BASE_GRAPH_MEMORY + graph.getNodes().length * bytesPerStrip;
+    }
+
+    /**
+     * Waits until the memory of the job fits into the budget.
+     * @param job the job
+     * @return false if the batch has been canceled meanwhile
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized boolean admit(final Job job) throws InterruptedException {
+        boolean throttled = false;
+        while (!canceled && runningJobs > 0 && memoryInUse + job.estimatedMemory > memoryBudget) {
+            if (!throttled) {
+                logger.info("Waiting for memory to process " + job.srcFile.getName() + " (" +
+                            (job.estimatedMemory / (1024 * 1024)) + " MB)");
+                throttled = true;
+            }
+            wait();
+        }
+        if (canceled) {
+            return false;
+        }
+        memoryInUse += job.estimatedMemory;
+        runningJobs++;
+        return true;
+    }
+
+    synchronized void release(final Job job) {
+        memoryInUse -= job.estimatedMemory;
+        runningJobs--;
+        notifyAll();
+    }
+
+    private void fireJobStarted(final Job job) {
+        final Listener l = listener;
+        if (l != null) {
+            l.jobStarted(job);
+        }
+    }
+
+    private void fireJobProgress(final Job job) {
+        final Listener l = listener;
+        if (l != null) {
+            l.jobProgress(job);
+        }
+    }
+
+    private void fireJobFinished(final Job job) {
+        final Listener l = listener;
+        if (l != null) {
+            try {
+                l.jobFinished(job);
+            } catch (Throwable t) {
+                logger.log(Level.WARNING, "Listener failed for " + job.srcFile, t);
+            }
+        }
+    }
+
+    /**
+     * A graph applied to a source product
+     */
+    public static class Job {
+        private final File graphFile;
+        private final Map<String, String> parameterMap;
+        private final File srcFile;
+        private final File tgtFile;
+        private final String format;
+        private volatile long estimatedMemory;
+        private volatile Status status = Status.WAITING;
+        private volatile double progress = 0;
+        private volatile Throwable error = null;
+        private volatile long startTime = 0;
+        private volatile long endTime = 0;
+
+        private Job(final File graphFile, final Map<String, String> parameterMap,
+                    final File srcFile, final File tgtFile, final String format, final long estimatedMemory) {
+            this.graphFile = graphFile;
+            this.parameterMap = parameterMap;
+            this.srcFile = srcFile;
+            this.tgtFile = tgtFile;
+            this.format = format;
+            this.estimatedMemory = estimatedMemory;
+        }
+
+        public File getGraphFile() {
+            return graphFile;
+        }
+
+        public File getSourceFile() {
+            return srcFile;
+        }
+
+        public File getTargetFile() {
+            return tgtFile;
+        }
+
+        public long getEstimatedMemory() {
+            return estimatedMemory;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the completed fraction of the job, between 0 and 1
+         */
+        public double getProgress() {
+            return progress;
+        }
+
+        /**
+         * @return the error of a failed job, or null
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * @return the processing time in milliseconds
+         */
+        public long getProcessingTime() {
+            if (startTime == 0) {
+                return 0;
+            }
+            return (endTime != 0 ? endTime : System.currentTimeMillis()) - startTime;
+        }
+
+        @Override
+        public String toString() {
+            return srcFile.getName() + " [" + status + ']';
+        }
+    }
+
+    private class JobProgressMonitor extends NullProgressMonitor {
+        private final Job job;
+        private double totalWork = 0;
+        private double work = 0;
+
+        private JobProgressMonitor(final Job job) {
+            this.job = job;
+        }
+
+        @Override
+        public void beginTask(final String taskName, final int totalWork) {
+            this.totalWork = totalWork;
+        }
+
+        @Override
+        public void internalWorked(final double work) {
+            this.work += work;
+            if (totalWork > 0) {
+                job.progress = Math.min(1.0, this.work / totalWork);
+            }
+            fireJobProgress(job);
+        }
+
+        @Override
+        public void worked(final int work) {
+            internalWorked(work);
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled || super.isCanceled();
+        }
+    }
+
+    private static class BatchThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "BatchGraph-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
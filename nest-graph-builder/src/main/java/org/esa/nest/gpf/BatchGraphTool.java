@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf;
+
+import com.bc.ceres.core.ProgressMonitor;
+import com.bc.ceres.core.runtime.internal.DefaultRuntimeConfig;
+import org.esa.beam.util.SystemUtils;
+import org.esa.beam.util.io.FileUtils;
+import org.esa.nest.util.MemUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Applies a graph to a batch of source products from the command line, processing several products at a time
+ * with a {@link BatchGraphProcessor}.
+ * <pre>
+ * batch &lt;graph-file&gt; [-t &lt;target-dir&gt;] [-f &lt;format&gt;] [-P&lt;name&gt;=&lt;value&gt;]...
+ *                     [-q &lt;parallelism&gt;] [-m &lt;memory-MB&gt;] &lt;source-file&gt;...
+ * </pre>
+ * The target product of each source product is written to the target directory (default: the current
+ * directory), named after the source product. The exit code is 1 if a product has failed.
+ */
+public final class BatchGraphTool {
+
+    static final String USAGE =
+            "Usage: batch <graph-file> [options] <source-file>...\n" +
+            "Options:\n" +
+            "  -t <dir>          The target directory. Default is the current directory.\n" +
+            "  -f <format>       The target format. Default is the format of the graph.\n" +
+            "  -P<name>=<value>  A graph parameter, referred to as ${name} in the graph.\n" +
+            "  -q <int>          The number of products processed at a time.\n" +
+            "                    Default is the number of processors.\n" +
+            "  -m <int>          The memory in MB available to the running graphs.\n" +
+            "                    Default is the heap not used by the tile cache.\n";
+
+    private File graphFile = null;
+    private File targetDir = new File(".");
+    private String format = null;
+    private final Map<String, String> parameterMap = new HashMap<String, String>();
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long memoryBudget = 0;
+    private final List<File> sourceFiles = new ArrayList<File>();
+
+    BatchGraphTool(final String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (arg.equals("-t") && i + 1 < args.length) {
+                targetDir = new File(args[++i]);
+            } else if (arg.equals("-f") && i + 1 < args.length) {
+                format = args[++i];
+            } else if (arg.startsWith("-P") && arg.indexOf('=') > 2) {
+                parameterMap.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else if (arg.equals("-q") && i + 1 < args.length) {
+                parallelism = parseInt(arg, args[++i]);
+            } else if (arg.equals("-m") && i + 1 < args.length) {
+                memoryBudget = parseInt(arg, args[++i]) * 1024L * 1024L;
+            } else if (arg.startsWith("-")) {
+                throw new IllegalArgumentException("Unknown option '" + arg + "'");
+            } else if (graphFile == null) {
+                graphFile = new File(arg);
+            } else {
+                sourceFiles.add(new File(arg));
+            }
+        }
+        if (graphFile == null) {
+            throw new IllegalArgumentException("No graph file given");
+        }
+        if (sourceFiles.isEmpty()) {
+            throw new IllegalArgumentException("No source files given");
+        }
+    }
+
+    private static int parseInt(final String option, final String value) {
+        try {
+            final int intValue = Integer.parseInt(value);
+            if (intValue > 0) {
+                return intValue;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Option '" + option + "' requires a positive integer, not '" + value + "'");
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final BatchGraphTool tool;
+        try {
+            tool = new BatchGraphTool(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("\nError: " + e.getMessage() + "\n");
+            System.out.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        Locale.setDefault(Locale.ENGLISH);
+        SystemUtils.init3rdPartyLibs(BatchGraphTool.class.getClassLoader());
+        new DefaultRuntimeConfig();
+        MemUtils.configureJaiTileCache();
+        System.exit(tool.run());
+    }
+
+    /**
+     * @return the processor with a job per source product
+     */
+    BatchGraphProcessor createProcessor() {
+        final BatchGraphProcessor processor = new BatchGraphProcessor(parallelism, memoryBudget > 0 ?
+                memoryBudget : BatchGraphProcessor.getDefaultMemoryBudget());
+        for (File sourceFile : sourceFiles) {
+            final File targetFile = new File(targetDir, FileUtils.getFilenameWithoutExtension(sourceFile));
+            processor.addJob(graphFile, parameterMap.isEmpty() ? null : parameterMap, sourceFile, targetFile, format);
+        }
+        return processor;
+    }
+
+    /**
+     * Processes all source products.
+     * @return the exit code, 1 if a product has failed
+     * @throws InterruptedException if interrupted while waiting for the jobs
+     */
+    int run() throws InterruptedException {
+        final BatchGraphProcessor processor = createProcessor();
+        processor.setListener(new BatchGraphProcessor.Listener() {
+            public void jobStarted(final BatchGraphProcessor.Job job) {
+                System.out.println("Processing " + job.getSourceFile());
+            }
+
+            public void jobProgress(final BatchGraphProcessor.Job job) {
+            }
+
+            public void jobFinished(final BatchGraphProcessor.Job job) {
+                final StringBuilder msg = new StringBuilder(job.toString());
+                if (job.getProcessingTime() > 0) {
+                    msg.append(" in ").append(job.getProcessingTime() / 1000.0).append(" s");
+                }
+                if (job.getError() != null) {
+                    msg.append(": ").append(job.getError().getMessage());
+                }
+                System.out.println(msg);
+            }
+        });
+
+        final List<BatchGraphProcessor.Job> failedJobs = processor.executeJobs(ProgressMonitor.NULL);
+        System.out.println((processor.getJobs().size() - failedJobs.size()) + " of " + processor.getJobs().size() +
+                           " products processed");
+        return failedJobs.isEmpty() ? 0 : 1;
+    }
+}
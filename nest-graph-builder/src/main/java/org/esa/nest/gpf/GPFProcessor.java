@@ -67,6 +67,10 @@ public class GPFProcessor {
         return graph;
     }
 
+    public Graph getGraph() {
+        return graph;
+    }
+
     public void setIO(final File srcFile, final File tgtFile, final String format) {
         final String readOperatorAlias = OperatorSpi.getOperatorAlias(ReadOp.class);
         final Node readerNode = findNode(graph, readOperatorAlias);
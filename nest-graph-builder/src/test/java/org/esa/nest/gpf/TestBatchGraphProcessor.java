@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests the admission of jobs to the memory budget of the BatchGraphProcessor.
+ */
+public class TestBatchGraphProcessor extends TestCase {
+
+    private static final long TIMEOUT = 10000;
+
+    private BatchGraphProcessor processor;
+
+    @Override
+    public void setUp() throws Exception {
+        processor = new BatchGraphProcessor(4, 100);
+    }
+
+    public void testJobsWithinBudgetAreAdmitted() throws Exception {
+        assertTrue(processor.admit(createJob("a", 40)));
+        assertTrue(processor.admit(createJob("b", 60)));
+    }
+
+    public void testAdmitBlocksUntilMemoryIsReleased() throws Exception {
+        final BatchGraphProcessor.Job a = createJob("a", 60);
+        assertTrue(processor.admit(a));
+
+        final AdmitThread b = new AdmitThread(createJob("b", 60));
+        b.start();
+        assertTrue(b.isWaiting());
+
+        processor.release(a);
+        b.join(TIMEOUT);
+        assertFalse(b.isAlive());
+        assertTrue(b.admitted);
+    }
+
+    public void testJobExceedingBudgetIsAdmittedAlone() throws Exception {
+        final BatchGraphProcessor.Job large = createJob("large", 500);
+        assertTrue(processor.admit(large));
+
+        final AdmitThread small = new AdmitThread(createJob("small", 1));
+        small.start();
+        assertTrue(small.isWaiting());
+
+        processor.release(large);
+        small.join(TIMEOUT);
+        assertTrue(small.admitted);
+
+        // a large job waits until the running jobs have finished
+        final AdmitThread large2 = new AdmitThread(createJob("large2", 500));
+        large2.start();
+        assertTrue(large2.isWaiting());
+
+        processor.release(small.job);
+        large2.join(TIMEOUT);
+        assertTrue(large2.admitted);
+    }
+
+    public void testReleaseAdmitsWaitingJobsWhichFit() throws Exception {
+        final BatchGraphProcessor.Job a = createJob("a", 50);
+        final BatchGraphProcessor.Job b = createJob("b", 50);
+        assertTrue(processor.admit(a));
+        assertTrue(processor.admit(b));
+
+        final AdmitThread c = new AdmitThread(createJob("c", 30));
+        final AdmitThread d = new AdmitThread(createJob("d", 30));
+        c.start();
+        d.start();
+        assertTrue(c.isWaiting());
+        assertTrue(d.isWaiting());
+
+        // 50 bytes become free, enough for one of the waiting jobs only
+        processor.release(a);
+        final List<AdmitThread> waiting = new ArrayList<AdmitThread>();
+        Collections.addAll(waiting, c, d);
+        final AdmitThread first = awaitFirstAdmitted(waiting);
+        waiting.remove(first);
+        final AdmitThread second = waiting.get(0);
+        assertTrue(second.isWaiting());
+
+        processor.release(b);
+        second.join(TIMEOUT);
+        assertTrue(second.admitted);
+    }
+
+    public void testCancelReleasesWaitingJobs() throws Exception {
+        assertTrue(processor.admit(createJob("a", 100)));
+
+        final AdmitThread b = new AdmitThread(createJob("b", 10));
+        b.start();
+        assertTrue(b.isWaiting());
+
+        processor.cancel();
+        b.join(TIMEOUT);
+        assertFalse(b.isAlive());
+        assertFalse(b.admitted);
+        assertFalse(processor.admit(createJob("c", 10)));
+    }
+
+    private BatchGraphProcessor.Job createJob(final String name, final long estimatedMemory) {
+        return processor.addJob(new File(name + ".xml"), null, new File(name + ".dim"), null, null, estimatedMemory);
+    }
+
+    private static AdmitThread awaitFirstAdmitted(final List<AdmitThread> threads) throws InterruptedException {
+        final long end = System.currentTimeMillis() + TIMEOUT;
+        while (System.currentTimeMillis() < end) {
+            for (AdmitThread thread : threads) {
+                if (!thread.isAlive()) {
+                    assertTrue(thread.admitted);
+                    return thread;
+                }
+            }
+            Thread.sleep(10);
+        }
+        fail("no job admitted");
+        return null;
+    }
+
+    private class AdmitThread extends Thread {
+        private final BatchGraphProcessor.Job job;
+        private volatile boolean admitted = false;
+
+        private AdmitThread(final BatchGraphProcessor.Job job) {
+            this.job = job;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                admitted = processor.admit(job);
+            } catch (InterruptedException e) {
+                // not admitted
+            }
+        }
+
+        /**
+         * @return true if the thread is still blocked in admit after a while
+         */
+        private boolean isWaiting() throws InterruptedException {
+            final long end = System.currentTimeMillis() + TIMEOUT;
+            while (getState() != State.WAITING && isAlive() && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            return getState() == State.WAITING && !admitted;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Tests the command line arguments of the BatchGraphTool.
+ */
+public class TestBatchGraphTool extends TestCase {
+
+    public void testJobPerSourceFile() {
+        final BatchGraphTool tool = new BatchGraphTool(new String[]{
+                "graph.xml", "-t", "out", "-q", "2", "-m", "100", "a.dim", "b.N1"});
+        final List<BatchGraphProcessor.Job> jobs = tool.createProcessor().getJobs();
+
+        assertEquals(2, jobs.size());
+        assertEquals(new File("graph.xml"), jobs.get(0).getGraphFile());
+        assertEquals(new File("a.dim"), jobs.get(0).getSourceFile());
+        assertEquals(new File("out", "a"), jobs.get(0).getTargetFile());
+        assertEquals(new File("b.N1"), jobs.get(1).getSourceFile());
+        assertEquals(new File("out", "b"), jobs.get(1).getTargetFile());
+    }
+
+    public void testInvalidArguments() {
+        assertInvalid(new String[]{"graph.xml"});
+        assertInvalid(new String[]{"graph.xml", "-x", "a.dim"});
+        assertInvalid(new String[]{"graph.xml", "-q", "0", "a.dim"});
+        assertInvalid(new String[]{"graph.xml", "-m", "lots", "a.dim"});
+    }
+
+    private static void assertInvalid(final String[] args) {
+        try {
+            new BatchGraphTool(args);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
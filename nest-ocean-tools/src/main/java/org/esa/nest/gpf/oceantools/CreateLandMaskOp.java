@@ -227,7 +227,9 @@ public class CreateLandMaskOp extends Operator {
         if (demDescriptor.isInstallingDem()) {
               throw new OperatorException("The DEM is currently being installed.");
         }
-        dem = demDescriptor.createDem(ResamplingFactory.createResampling(ResamplingFactory.NEAREST_NEIGHBOUR_NAME));
+        dem = DEMFactory.getPyramidLevel(
+                demDescriptor.createDem(ResamplingFactory.createResampling(ResamplingFactory.NEAREST_NEIGHBOUR_NAME)),
+                DEMFactory.getPixelSpacing(sourceProduct));
     }
 
     private TileData[] getTargetTiles(final Map<Band, Tile> targetTiles, final Rectangle targetRectangle,
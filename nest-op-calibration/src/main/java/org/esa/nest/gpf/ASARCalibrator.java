@@ -877,8 +877,9 @@ public class ASARCalibrator extends BaseCalibrator implements Calibrator {
         final int maxY = y0 + h;
         final int maxX = x0 + w;
 
-        final float[] incidenceAnglesArray = new float[w];
-        final float[] slantRangeTimeArray = new float[w];
+        // shared by the tiles of all bands
+        final float[] incidenceAnglesArray =
+                incidenceAngle.getCachedPixels(x0, y0, w, h, TiePointGrid.InterpMode.QUADRATIC);
 
         double[][] targetTileOldAntPat = null; // old antenna pattern gains for row pixels in a tile, in linear scale
         double[][] targetTileNewAntPat = null; // new antenna pattern gains for row pixels in a tile, in linear scale
@@ -906,12 +907,7 @@ public class ASARCalibrator extends BaseCalibrator implements Calibrator {
         int index;
         for (int y = y0, yy = 0; y < maxY; ++y, ++yy) {
             srcIndex.calculateStride(y);
-
-            incidenceAngle.getPixels(x0, y, w, 1,incidenceAnglesArray, pm, TiePointGrid.InterpMode.QUADRATIC);
-
-            if (applyRangeSpreadingCorr) {
-                slantRangeTime.getPixels(x0, y, w, 1,slantRangeTimeArray, pm, TiePointGrid.InterpMode.QUADRATIC);
-            }
+            final int rowOffset = yy * w;
 
             for (int x = x0, xx = 0; x < maxX; ++x, ++xx) {
                 index = srcIndex.getIndex(x);
@@ -934,11 +930,11 @@ public class ASARCalibrator extends BaseCalibrator implements Calibrator {
                 }
 
                 // apply calibration constant and incidence angle corrections
-                sigma *= FastMath.sin(incidenceAnglesArray[xx] * MathUtils.DTOR) / theCalibrationFactor;
+                sigma *= FastMath.sin(incidenceAnglesArray[rowOffset + xx] * MathUtils.DTOR) / theCalibrationFactor;
 
                 if (applyRangeSpreadingCorr && targetTileSlantRange != null) { // apply range spreading loss compensation
                     /*
-                    time = slantRangeTimeArray[xx] / 1000000000.0; //convert ns to s
+                    time = slantRangeTime.getPixelFloat(x, y, TiePointGrid.InterpMode.QUADRATIC) / 1000000000.0; //convert ns to s
                     sigma *= Math.pow(time * halfLightSpeedByRefSlantRange, rangeSpreadingCompPower);
                     */
                     sigma *= Math.pow(targetTileSlantRange[yy][xx] / refSlantRange800km, rangeSpreadingCompPower);
@@ -25,6 +25,7 @@ import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
+import org.esa.beam.framework.gpf.pointop.PointwiseOperator;
 import org.esa.nest.datamodel.AbstractMetadata;
 import org.esa.nest.datamodel.CalibrationFactory;
 import org.esa.nest.datamodel.Calibrator;
@@ -43,7 +44,7 @@ import java.util.HashMap;
         authors = "Jun Lu, Luis Veci",
         copyright = "Copyright (C) 2013 by Array Systems Computing Inc.",
         description = "Calibration of products")
-public class CalibrationOp extends Operator {
+public class CalibrationOp extends Operator implements PointwiseOperator {
 
     @SourceProduct(alias="source")
     private Product sourceProduct;
@@ -290,6 +291,15 @@ public class CalibrationOp extends Operator {
         return targetBandName;
     }
 
+    /**
+     * @return {@code true}, unless the ERS calibrator is used, which estimates the ADC power loss from
+     *         source regions larger than the target tile
+     */
+    @Override
+    public boolean isPointwise() {
+        return !(calibrator instanceof ERSCalibrator);
+    }
+
     /**
      * Called by the framework in order to compute a tile for the given target band.
      * <p>The default implementation throws a runtime exception with the message "not implemented".</p>
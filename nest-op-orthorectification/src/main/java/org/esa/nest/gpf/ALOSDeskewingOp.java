@@ -35,6 +35,7 @@ import org.esa.nest.datamodel.PosVector;
 import org.esa.nest.eo.Constants;
 import org.esa.nest.eo.GeoUtils;
 import org.esa.nest.eo.SARGeocoding;
+import org.esa.nest.eo.SensorOrbit;
 import org.esa.nest.util.MathUtils;
 
 import java.awt.*;
@@ -91,8 +92,7 @@ public class ALOSDeskewingOp extends Operator {
     private double azimuthSpacing = 0.0;
     private double slantRangeToFirstPixel = 0.0;
     private double radarWaveLength = 0.0;
-    private double[][] sensorPosition = null;
-    private double[][] sensorVelocity = null;
+    private SensorOrbit sensorOrbit = null;
     private double[] timeArray = null;
     private double[] xPosArray = null;
     private double[] yPosArray = null;
@@ -229,20 +229,14 @@ public class ALOSDeskewingOp extends Operator {
 
     private void computeSensorPositionsAndVelocities() {
 
-        final int numVectorsUsed = Math.min(orbitStateVectors.length, 5);
-        timeArray = new double[numVectorsUsed];
-        xPosArray = new double[numVectorsUsed];
-        yPosArray = new double[numVectorsUsed];
-        zPosArray = new double[numVectorsUsed];
-        xVelArray = new double[numVectorsUsed];
-        yVelArray = new double[numVectorsUsed];
-        zVelArray = new double[numVectorsUsed];
-        sensorPosition = new double[sourceImageHeight][3]; // xPos, yPos, zPos
-        sensorVelocity = new double[sourceImageHeight][3]; // xVel, yVel, zVel
-
-        SARGeocoding.computeSensorPositionsAndVelocities(
-                orbitStateVectors, timeArray, xPosArray, yPosArray, zPosArray, xVelArray, yVelArray, zVelArray,
-                sensorPosition, sensorVelocity, firstLineTime, lineTimeInterval, sourceImageHeight);
+        sensorOrbit = SensorOrbit.getInstance(orbitStateVectors, firstLineTime, lineTimeInterval, sourceImageHeight);
+        timeArray = sensorOrbit.getTimeArray();
+        xPosArray = sensorOrbit.getXPosArray();
+        yPosArray = sensorOrbit.getYPosArray();
+        zPosArray = sensorOrbit.getZPosArray();
+        xVelArray = sensorOrbit.getXVelArray();
+        yVelArray = sensorOrbit.getYVelArray();
+        zVelArray = sensorOrbit.getZVelArray();
     }
 
     /**
@@ -408,7 +402,7 @@ public class ALOSDeskewingOp extends Operator {
             GeoUtils.geo2xyzWGS84(geoPos.getLat(), geoPos.getLon(), alt, earthPoint);
 
             final double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTime(
-                    firstLineTime, lineTimeInterval, radarWaveLength, earthPoint, sensorPosition, sensorVelocity);
+                    sensorOrbit, radarWaveLength, earthPoint);
 
             if (zeroDopplerTime == SARGeocoding.NonValidZeroDopplerTime) {
                 continue;
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf;
+
+/**
+ * The source image position of the pixels of a target tile, from a geocoding solved on a sparse grid only,
+ * e.g. the Range-Doppler equations of the terrain correction or the geocodings of the mosaic.
+ * <p/>
+ * The geocoding is solved at the corners of cells of the grid spacing. Inside a cell the position is
+ * interpolated bilinearly if the interpolation error at the centre and at the middle of the edges of the cell
+ * is within the tolerance, otherwise the cell is split into four and each part is checked again, down to
+ * single pixels. The check points are corners of the split cells, so no solution is wasted.
+ * Cells with a corner without source position, e.g. at sea or at the swath edge, are solved for every pixel.
+ */
+final class GeocodingGrid {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte SOLVED = 1;
+    private static final byte INTERPOLATED = 2;
+    private static final byte INVALID = 3;
+
+    /**
+     * Solves the geocoding for a target pixel.
+     */
+    interface Geocoder {
+
+        /**
+         * @param x           the x coordinate of the target pixel
+         * @param y           the y coordinate of the target pixel
+         * @param sourceIndex returns the azimuth (y) and range (x) index in the source image
+         * @return false if the pixel has no position in the source image
+         * @throws Exception from the DEM or geocoding
+         */
+        boolean getSourceIndex(int x, int y, double[] sourceIndex) throws Exception;
+    }
+
+    private final int x0;
+    private final int y0;
+    private final int w;
+    private final int h;
+    private final double tolerance;
+    private final Geocoder geocoder;
+
+    private final byte[] state;
+    private final double[] azimuthIndex;
+    private final double[] rangeIndex;
+    private final double[] sourceIndex = new double[2];
+
+    private int solvedCount = 0;
+
+    /**
+     * @param x0          the x coordinate of the tile
+     * @param y0          the y coordinate of the tile
+     * @param w           the width of the tile
+     * @param h           the height of the tile
+     * @param gridSpacing the spacing of the grid in pixels
+     * @param tolerance   the maximum interpolation error in source pixels
+     * @param geocoder    solves the geocoding
+     * @throws Exception from the geocoder
+     */
+    GeocodingGrid(final int x0, final int y0, final int w, final int h, final int gridSpacing,
+                  final double tolerance, final Geocoder geocoder) throws Exception {
+        this.x0 = x0;
+        this.y0 = y0;
+        this.w = w;
+        this.h = h;
+        this.tolerance = tolerance;
+        this.geocoder = geocoder;
+        this.state = new byte[w * h];
+        this.azimuthIndex = new double[w * h];
+        this.rangeIndex = new double[w * h];
+
+        final int spacing = Math.max(1, gridSpacing);
+        for (int cy = 0; cy < h - 1 || cy == 0; cy += spacing) {
+            final int cy1 = Math.min(cy + spacing, h - 1);
+            for (int cx = 0; cx < w - 1 || cx == 0; cx += spacing) {
+                refine(cx, cy, Math.min(cx + spacing, w - 1), cy1);
+            }
+        }
+    }
+
+    /**
+     * Gives the source image position of a target pixel.
+     *
+     * @param x           the x coordinate of the target pixel
+     * @param y           the y coordinate of the target pixel
+     * @param sourceIndex returns the azimuth and range index in the source image
+     * @return false if the pixel has no position in the source image
+     */
+    boolean getSourceIndex(final int x, final int y, final double[] sourceIndex) {
+        final int i = (y - y0) * w + (x - x0);
+        if (state[i] == INVALID) {
+            return false;
+        }
+        sourceIndex[0] = azimuthIndex[i];
+        sourceIndex[1] = rangeIndex[i];
+        return true;
+    }
+
+    /**
+     * @return the number of pixels for which the geocoding has been solved
+     */
+    int getSolvedCount() {
+        return solvedCount;
+    }
+
+    private void refine(final int ax, final int ay, final int bx, final int by) throws Exception {
+        final boolean valid = solve(ax, ay) & solve(bx, ay) & solve(ax, by) & solve(bx, by);
+        if (bx - ax <= 1 && by - ay <= 1) {
+            return;
+        }
+        if (!valid) {
+            for (int y = ay; y <= by; y++) {
+                for (int x = ax; x <= bx; x++) {
+                    solve(x, y);
+                }
+            }
+            return;
+        }
+
+        final int mx = (ax + bx) / 2;
+        final int my = (ay + by) / 2;
+        if (check(mx, my, ax, ay, bx, by) &&
+                check(mx, ay, ax, ay, bx, by) && check(mx, by, ax, ay, bx, by) &&
+                check(ax, my, ax, ay, bx, by) && check(bx, my, ax, ay, bx, by)) {
+            fill(ax, ay, bx, by);
+            return;
+        }
+
+        if (bx - ax > 1) {
+            if (by - ay > 1) {
+                refine(ax, ay, mx, my);
+                refine(mx, ay, bx, my);
+                refine(ax, my, mx, by);
+                refine(mx, my, bx, by);
+            } else {
+                refine(ax, ay, mx, by);
+                refine(mx, ay, bx, by);
+            }
+        } else {
+            refine(ax, ay, bx, my);
+            refine(ax, my, bx, by);
+        }
+    }
+
+    /**
+     * Compares the interpolation within a cell against the solution at a check point.
+     */
+    private boolean check(final int x, final int y, final int ax, final int ay, final int bx, final int by)
+            throws Exception {
+        if (!solve(x, y)) {
+            return false;
+        }
+        final double u = bx > ax ? (double) (x - ax) / (bx - ax) : 0.0;
+        final double v = by > ay ? (double) (y - ay) / (by - ay) : 0.0;
+        final int i = index(x, y);
+        return Math.abs(interpolate(azimuthIndex, ax, ay, bx, by, u, v) - azimuthIndex[i]) <= tolerance &&
+               Math.abs(interpolate(rangeIndex, ax, ay, bx, by, u, v) - rangeIndex[i]) <= tolerance;
+    }
+
+    private void fill(final int ax, final int ay, final int bx, final int by) {
+        final double du = bx > ax ? 1.0 / (bx - ax) : 0.0;
+        final double dv = by > ay ? 1.0 / (by - ay) : 0.0;
+        for (int y = ay; y <= by; y++) {
+            final double v = (y - ay) * dv;
+            for (int x = ax; x <= bx; x++) {
+                final int i = index(x, y);
+                if (state[i] == UNKNOWN) {
+                    final double u = (x - ax) * du;
+                    azimuthIndex[i] = interpolate(azimuthIndex, ax, ay, bx, by, u, v);
+                    rangeIndex[i] = interpolate(rangeIndex, ax, ay, bx, by, u, v);
+                    state[i] = INTERPOLATED;
+                }
+            }
+        }
+    }
+
+    private double interpolate(final double[] values, final int ax, final int ay, final int bx, final int by,
+                               final double u, final double v) {
+        final double top = values[index(ax, ay)] + u * (values[index(bx, ay)] - values[index(ax, ay)]);
+        final double bottom = values[index(ax, by)] + u * (values[index(bx, by)] - values[index(ax, by)]);
+        return top + v * (bottom - top);
+    }
+
+    private boolean solve(final int x, final int y) throws Exception {
+        final int i = index(x, y);
+        if (state[i] == UNKNOWN || state[i] == INTERPOLATED) {
+            if (geocoder.getSourceIndex(x0 + x, y0 + y, sourceIndex)) {
+                azimuthIndex[i] = sourceIndex[0];
+                rangeIndex[i] = sourceIndex[1];
+                state[i] = SOLVED;
+            } else {
+                state[i] = INVALID;
+            }
+            ++solvedCount;
+        }
+        return state[i] == SOLVED;
+    }
+
+    private int index(final int x, final int y) {
+        return y * w + x;
+    }
+}
@@ -89,6 +89,13 @@ public class MosaicOp extends Operator {
             label = "Convergence Threshold")
     private double convergenceThreshold = 1e-4;
 
+    @Parameter(description = "The spacing in pixels of the grid on which the source pixel positions are computed, 0 to compute them for every pixel",
+            defaultValue = "0", label = "Transform Grid Spacing")
+    private int transformGridSpacing = 0;
+    @Parameter(description = "The maximum interpolation error in source pixels within a cell of the transform grid",
+            defaultValue = "0.1", label = "Transform Grid Tolerance")
+    private double transformGridTolerance = 0.1;
+
     private final OperatorUtils.SceneProperties scnProp = new OperatorUtils.SceneProperties();
     private final Map<Integer, Band> bandIndexSet = new HashMap<Integer, Band>(20);
     private final Map<Product, Rectangle> srcRectMap = new HashMap<Product, Rectangle>(10);
@@ -360,6 +367,42 @@ public class MosaicOp extends Operator {
                 }
             }
         }
+        return createBoundingBox(minX, maxX, minY, maxY, minOffsetX, minOffsetY, maxWidth, maxHeight, margin);
+    }
+
+    private static Rectangle getBoundingBox(final SourcePixels pixelPositions,
+                                            final int minOffsetX, final int minOffsetY,
+                                            final int maxWidth, final int maxHeight, final int margin) {
+        int minX = Integer.MAX_VALUE;
+        int maxX = -Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxY = -Integer.MAX_VALUE;
+
+        for (int i = 0; i < pixelPositions.x.length; ++i) {
+            if (!Float.isNaN(pixelPositions.x[i])) {
+                final int x = (int) Math.floor(pixelPositions.x[i]);
+                final int y = (int) Math.floor(pixelPositions.y[i]);
+
+                if (x < minX) {
+                    minX = x;
+                }
+                if (x > maxX) {
+                    maxX = x;
+                }
+                if (y < minY) {
+                    minY = y;
+                }
+                if (y > maxY) {
+                    maxY = y;
+                }
+            }
+        }
+        return createBoundingBox(minX, maxX, minY, maxY, minOffsetX, minOffsetY, maxWidth, maxHeight, margin);
+    }
+
+    private static Rectangle createBoundingBox(int minX, int maxX, int minY, int maxY,
+                                               final int minOffsetX, final int minOffsetY,
+                                               final int maxWidth, final int maxHeight, final int margin) {
         if (minX > maxX || minY > maxY) {
             return null;
         }
@@ -372,6 +415,25 @@ public class MosaicOp extends Operator {
         return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
     }
 
+    /**
+     * Per source product, the source pixel positions of the tile and a source tile of about the same size.
+     * The transform grid of a product is held while its positions are computed.
+     * The gradient domain mosaic adds the mosaiced tile, the gradient tile and the mask.
+     */
+    @Override
+    public long estimateTileWorkingSetSize(Rectangle targetRectangle) {
+        final long numPixels = (long) targetRectangle.width * targetRectangle.height;
+        final int numProducts = selectedProducts != null ? selectedProducts.length : sourceProduct.length;
+        long size = numProducts * numPixels * (8 + 4);
+        if (transformGridSpacing > 1) {
+            size += numPixels * (8 + 8 + 1);
+        }
+        if (gradientDomainMosaic) {
+            size += numPixels * (8 + 8 + 1);
+        }
+        return size;
+    }
+
     /**
      * Called by the framework in order to compute the stack of tiles for the given target bands.
      * <p>The default implementation throws a runtime exception with the message "not implemented".</p>
@@ -399,8 +461,8 @@ public class MosaicOp extends Operator {
                 return;
             }
 
-            final GeoPos geoPos = new GeoPos();
-            final PixelPos pixelPos = new PixelPos();
+            final List<SourcePixels> srcPixelCoords = new ArrayList<SourcePixels>(validProducts.size());
+            final int numPixelPos = targetRectangle.width * targetRectangle.height;
             final int minX = targetRectangle.x;
             final int minY = targetRectangle.y;
             final int maxX = targetRectangle.x + targetRectangle.width - 1;
@@ -408,34 +470,46 @@ public class MosaicOp extends Operator {
 
             final TileGeoreferencing tileGeoRef = new TileGeoreferencing(targetProduct, minX, minY, maxX-minX+1, maxY-minY+1);
 
-            final List<PixelPos[]> srcPixelCoords = new ArrayList<PixelPos[]>(validProducts.size());
-            final int numPixelPos = targetRectangle.width * targetRectangle.height;
-            for (Product validProduct : validProducts) {
-                srcPixelCoords.add(new PixelPos[numPixelPos]);
-            }
-
-            int coordIndex = 0;
-            int prodIndex;
-            for (int y = minY; y <= maxY; ++y) {
-                for (int x = minX; x <= maxX; ++x) {
-                    tileGeoRef.getGeoPos(x, y, geoPos);
-
-                    prodIndex = 0;
-                    for (final Product srcProduct : validProducts) {
-                        srcProduct.getGeoCoding().getPixelPos(geoPos, pixelPos);
+            if (transformGridSpacing > 1) {
+                for (final Product srcProduct : validProducts) {
+                    srcPixelCoords.add(getSourcePixels(tileGeoRef, srcProduct.getGeoCoding(), targetRectangle));
+                }
+            } else {
+                final GeoPos geoPos = new GeoPos();
+                final float[] lat = new float[numPixelPos];
+                final float[] lon = new float[numPixelPos];
+                int coordIndex = 0;
+                for (int y = minY; y <= maxY; ++y) {
+                    for (int x = minX; x <= maxX; ++x) {
+                        tileGeoRef.getGeoPos(x, y, geoPos);
+                        lat[coordIndex] = geoPos.lat;
+                        lon[coordIndex] = geoPos.lon;
+                        ++coordIndex;
+                    }
+                }
 
-                        if (pixelPos.x >= feather && pixelPos.y >= feather &&
-                                pixelPos.x < srcProduct.getSceneRasterWidth()-feather &&
-                                pixelPos.y < srcProduct.getSceneRasterHeight()-feather) {
+                // pixel positions of the whole tile at once in each source product
+                for (final Product srcProduct : validProducts) {
+                    final SourcePixels srcPixels = new SourcePixels(numPixelPos);
+                    getPixelPos(srcProduct.getGeoCoding(), lat, lon, srcPixels.x, srcPixels.y);
+                    srcPixelCoords.add(srcPixels);
+                }
+            }
 
-                            srcPixelCoords.get(prodIndex)[coordIndex] = new PixelPos(pixelPos.x, pixelPos.y);
-                        } else {
-                            srcPixelCoords.get(prodIndex)[coordIndex] = null;
-                        }
-                        ++prodIndex;
+            int prodIndex = 0;
+            for (final Product srcProduct : validProducts) {
+                final SourcePixels srcPixels = srcPixelCoords.get(prodIndex);
+                final int srcWidth = srcProduct.getSceneRasterWidth();
+                final int srcHeight = srcProduct.getSceneRasterHeight();
+                for (int i = 0; i < numPixelPos; ++i) {
+                    if (!(srcPixels.x[i] >= feather && srcPixels.y[i] >= feather &&
+                            srcPixels.x[i] < srcWidth-feather && srcPixels.y[i] < srcHeight-feather)) {
+
+                        srcPixels.x[i] = Float.NaN;
+                        srcPixels.y[i] = Float.NaN;
                     }
-                    ++coordIndex;
                 }
+                ++prodIndex;
             }
 
             final Resampling resampling = ResamplingFactory.createResampling(resamplingMethod);
@@ -457,7 +531,7 @@ public class MosaicOp extends Operator {
                         continue;
                     }
 
-                    final PixelPos[] pixPos = srcPixelCoords.get(prodIndex);
+                    final SourcePixels pixPos = srcPixelCoords.get(prodIndex);
 
                     final Rectangle sourceRectangle = getBoundingBox(
                             pixPos, feather, feather,
@@ -498,6 +572,64 @@ public class MosaicOp extends Operator {
         }
     }
 
+    /**
+     * Gives the source pixel positions of a tile, geocoded on the grid of the transform grid spacing only
+     * and interpolated in between where the interpolation is within the transform grid tolerance.
+     */
+    private SourcePixels getSourcePixels(final TileGeoreferencing tileGeoRef, final GeoCoding srcGeoCoding,
+                                         final Rectangle targetRectangle) throws Exception {
+        final GeocodingGrid grid = new GeocodingGrid(targetRectangle.x, targetRectangle.y,
+                targetRectangle.width, targetRectangle.height, transformGridSpacing, transformGridTolerance,
+                new GeocodingGrid.Geocoder() {
+                    private final GeoPos geoPos = new GeoPos();
+                    private final PixelPos pixelPos = new PixelPos();
+
+                    public boolean getSourceIndex(final int x, final int y, final double[] sourceIndex) {
+                        tileGeoRef.getGeoPos(x, y, geoPos);
+                        srcGeoCoding.getPixelPos(geoPos, pixelPos);
+                        if (!pixelPos.isValid()) {
+                            return false;
+                        }
+                        sourceIndex[0] = pixelPos.y;
+                        sourceIndex[1] = pixelPos.x;
+                        return true;
+                    }
+                });
+
+        final SourcePixels srcPixels = new SourcePixels(targetRectangle.width * targetRectangle.height);
+        final double[] sourceIndex = new double[2];
+        int i = 0;
+        for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; ++y) {
+            for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; ++x) {
+                if (grid.getSourceIndex(x, y, sourceIndex)) {
+                    srcPixels.x[i] = (float) sourceIndex[1];
+                    srcPixels.y[i] = (float) sourceIndex[0];
+                } else {
+                    srcPixels.x[i] = Float.NaN;
+                    srcPixels.y[i] = Float.NaN;
+                }
+                ++i;
+            }
+        }
+        return srcPixels;
+    }
+
+    private static void getPixelPos(final GeoCoding geoCoding, final float[] lat, final float[] lon,
+                                    final float[] pixelX, final float[] pixelY) {
+        if (geoCoding instanceof AbstractGeoCoding) {
+            ((AbstractGeoCoding) geoCoding).getPixelPos(lat, lon, pixelX, pixelY);
+        } else {
+            final GeoPos geoPos = new GeoPos();
+            final PixelPos pixelPos = new PixelPos();
+            for (int i = 0; i < lat.length; ++i) {
+                geoPos.setLocation(lat[i], lon[i]);
+                geoCoding.getPixelPos(geoPos, pixelPos);
+                pixelX[i] = pixelPos.x;
+                pixelY[i] = pixelPos.y;
+            }
+        }
+    }
+
     private void collocateSourceBand(final List<SourceData> validSourceData, final Resampling resampling,
                                      final Tile targetTile) throws OperatorException {
         try {
@@ -518,12 +650,13 @@ public class MosaicOp extends Operator {
                     double targetVal = 0;
                     int numSamples = 0;
                     for(final SourceData srcDat : validSourceData) {
-                        final PixelPos sourcePixelPos = srcDat.srcPixPos[index];
-                        if(sourcePixelPos == null) {
+                        final float sourceX = srcDat.srcPixPos.x[index];
+                        final float sourceY = srcDat.srcPixPos.y[index];
+                        if(Float.isNaN(sourceX)) {
                             continue;
                         }
 
-                        resampling.computeIndex(sourcePixelPos.x, sourcePixelPos.y,
+                        resampling.computeIndex(sourceX, sourceY,
                                 srcDat.srcRasterWidth-feather, srcDat.srcRasterHeight-feather, srcDat.resamplingIndex);
 
                         sample = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
@@ -538,10 +671,10 @@ public class MosaicOp extends Operator {
 
                             if (average) {
                                 sampleList[numSamples] = sample;
-                                sampleDistanceList[numSamples] = (int)(Math.min(sourcePixelPos.x + 1,
-                                        srcDat.srcRasterWidth - sourcePixelPos.x)*
-                                        Math.min(sourcePixelPos.y + 1,
-                                                srcDat.srcRasterHeight - sourcePixelPos.y));
+                                sampleDistanceList[numSamples] = (int)(Math.min(sourceX + 1,
+                                        srcDat.srcRasterWidth - sourceX)*
+                                        Math.min(sourceY + 1,
+                                                srcDat.srcRasterHeight - sourceY));
                                 numSamples++;
                             }
                         }
@@ -569,7 +702,7 @@ public class MosaicOp extends Operator {
     }
 
     private void performGradientDomainMosaic(final Map<Band, Tile> targetTiles, final Rectangle targetRectangle,
-                                             final List<PixelPos[]> srcPixelCoords, final List<Product> validProducts,
+                                             final List<SourcePixels> srcPixelCoords, final List<Product> validProducts,
                                              final Resampling resampling, ProgressMonitor pm)
             throws OperatorException {
 
@@ -643,7 +776,7 @@ public class MosaicOp extends Operator {
     }
 
     private void getValidSourceData(final List<Product> validProducts, final String trgBandName,
-                                    final List<PixelPos[]> srcPixelCoords, final Resampling resampling,
+                                    final List<SourcePixels> srcPixelCoords, final Resampling resampling,
                                     List<SourceData> validSourceData, ProgressMonitor pm) {
 
         try {
@@ -655,7 +788,7 @@ public class MosaicOp extends Operator {
                     continue;
                 }
 
-                final PixelPos[] pixPos = srcPixelCoords.get(prodIndex);
+                final SourcePixels pixPos = srcPixelCoords.get(prodIndex);
                 final Rectangle sourceRectangle = getBoundingBox(
                         pixPos, 0, 0, srcProduct.getSceneRasterWidth(), srcProduct.getSceneRasterHeight(), feather);
 
@@ -700,14 +833,14 @@ public class MosaicOp extends Operator {
                 for (int x = minX; x <= maxX; ++x, ++index) {
                     xx = x - minX;
 
-                    final PixelPos sourcePixelPos = srcDat.srcPixPos[index];
-                    if(sourcePixelPos == null) {
+                    final float sourceX = srcDat.srcPixPos.x[index];
+                    if(Float.isNaN(sourceX)) {
                         mosaicedTile[yy][xx] = srcDat.nodataValue;
                         mask[yy][xx] = -1;
                         continue;
                     }
 
-                    resampling.computeIndex(sourcePixelPos.x, sourcePixelPos.y,
+                    resampling.computeIndex(sourceX, srcDat.srcPixPos.y[index],
                             srcDat.srcRasterWidth, srcDat.srcRasterHeight, srcDat.resamplingIndex);
 
                     sample = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
@@ -749,12 +882,12 @@ public class MosaicOp extends Operator {
                 for (int x = minX; x <= maxX; ++x, ++index) {
                     xx = x - minX;
 
-                    final PixelPos sourcePixelPos = srcDat.srcPixPos[index];
-                    if(sourcePixelPos == null) {
+                    final float sourceX = srcDat.srcPixPos.x[index];
+                    if(Float.isNaN(sourceX)) {
                         continue;
                     }
 
-                    resampling.computeIndex(sourcePixelPos.x, sourcePixelPos.y,
+                    resampling.computeIndex(sourceX, srcDat.srcPixPos.y[index],
                             srcDat.srcRasterWidth, srcDat.srcRasterHeight, srcDat.resamplingIndex);
 
                     sample = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
@@ -793,6 +926,7 @@ public class MosaicOp extends Operator {
                                  final SourceData srcDat, final Resampling resampling, double[] adjacentPixels) {
 
         try {
+            final SourcePixels srcPixPos = srcDat.srcPixPos;
             final int indexUp = index - targetTileWidth;
             final int indexDown = index + targetTileWidth;
             final int indexLeft = index - 1;
@@ -800,25 +934,25 @@ public class MosaicOp extends Operator {
 
             if (indexUp >= 0 && indexDown < targetTileWidth*targetTileHeight &&
                     index % targetTileWidth != 0 && (index + 1) % targetTileWidth != 0 &&
-                    srcDat.srcPixPos[indexUp] != null && srcDat.srcPixPos[indexDown] != null &&
-                    srcDat.srcPixPos[indexLeft] != null && srcDat.srcPixPos[indexRight] != null) {
+                    !Float.isNaN(srcPixPos.x[indexUp]) && !Float.isNaN(srcPixPos.x[indexDown]) &&
+                    !Float.isNaN(srcPixPos.x[indexLeft]) && !Float.isNaN(srcPixPos.x[indexRight])) {
 
-                resampling.computeIndex(srcDat.srcPixPos[indexUp].x, srcDat.srcPixPos[indexUp].y,
+                resampling.computeIndex(srcPixPos.x[indexUp], srcPixPos.y[indexUp],
                         srcDat.srcRasterWidth, srcDat.srcRasterHeight, srcDat.resamplingIndex);
 
                 final double s1 = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
 
-                resampling.computeIndex(srcDat.srcPixPos[indexDown].x, srcDat.srcPixPos[indexDown].y,
+                resampling.computeIndex(srcPixPos.x[indexDown], srcPixPos.y[indexDown],
                         srcDat.srcRasterWidth, srcDat.srcRasterHeight, srcDat.resamplingIndex);
 
                 final double s2 = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
 
-                resampling.computeIndex(srcDat.srcPixPos[indexLeft].x, srcDat.srcPixPos[indexLeft].y,
+                resampling.computeIndex(srcPixPos.x[indexLeft], srcPixPos.y[indexLeft],
                         srcDat.srcRasterWidth, srcDat.srcRasterHeight, srcDat.resamplingIndex);
 
                 final double s3 = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
 
-                resampling.computeIndex(srcDat.srcPixPos[indexRight].x, srcDat.srcPixPos[indexRight].y,
+                resampling.computeIndex(srcPixPos.x[indexRight], srcPixPos.y[indexRight],
                         srcDat.srcRasterWidth, srcDat.srcRasterHeight, srcDat.resamplingIndex);
 
                 final double s4 = resampling.resample(srcDat.resamplingRaster, srcDat.resamplingIndex);
@@ -991,12 +1125,25 @@ public class MosaicOp extends Operator {
         }
     }
 
+    /**
+     * The source pixel positions of the pixels of a target tile, <code>NaN</code> outside of the source image.
+     */
+    private static class SourcePixels {
+        final float[] x;
+        final float[] y;
+
+        SourcePixels(final int numPixels) {
+            x = new float[numPixels];
+            y = new float[numPixels];
+        }
+    }
+
     private static class SourceData {
         final Tile srcTile;
         final ResamplingRaster resamplingRaster;
         final Resampling.Index resamplingIndex;
         final double nodataValue;
-        final PixelPos[] srcPixPos;
+        final SourcePixels srcPixPos;
         final int srcRasterHeight;
         final int srcRasterWidth;
         final double srcMean;
@@ -1005,7 +1152,7 @@ public class MosaicOp extends Operator {
         final double srcStd;
 
         public SourceData(final Tile tile,
-                          final PixelPos[] pixPos, final Resampling resampling,
+                          final SourcePixels pixPos, final Resampling resampling,
                           final double min, final double max, final double mean, final double std) {
             srcTile = tile;
             resamplingRaster = new ResamplingRaster(srcTile);
@@ -166,6 +166,14 @@ public class RangeDopplerGeocodingOp extends Operator {
     @Parameter(description = "The antenne elevation pattern gain auxiliary data file.", label="External Aux File")
     private File externalAuxFile = null;
 
+    @Parameter(description = "The spacing in pixels of the grid on which the Range-Doppler equations are solved, 0 to solve for every pixel",
+               defaultValue = "0", label="Geocoding Grid Spacing")
+    private int geocodingGridSpacing = 0;
+
+    @Parameter(description = "The maximum interpolation error in source pixels within the geocoding grid",
+               defaultValue = "0.1", label="Geocoding Grid Tolerance")
+    private double geocodingGridTolerance = 0.1;
+
     private MetadataElement absRoot = null;
     private ElevationModel dem = null;
     private Band elevationBand = null;
@@ -195,12 +203,7 @@ public class RangeDopplerGeocodingOp extends Operator {
     private double delLat = 0.0;
     private double delLon = 0.0;
 
-    private double[][] sensorPosition = null; // sensor position for all range lines
-    private double[][] sensorVelocity = null; // sensor velocity for all range lines
-    private double[] timeArray = null;
-    private double[] xPosArray = null;
-    private double[] yPosArray = null;
-    private double[] zPosArray = null;
+    private SensorOrbit sensorOrbit = null; // sensor position and velocity for all range lines
 
     private AbstractMetadata.SRGRCoefficientList[] srgrConvParams = null;
     private AbstractMetadata.OrbitStateVector[] orbitStateVectors = null;
@@ -456,7 +459,7 @@ public class RangeDopplerGeocodingOp extends Operator {
 
         } else {
 
-            dem = DEMFactory.createElevationModel(demName, demResamplingMethod);
+            dem = DEMFactory.createElevationModel(demName, demResamplingMethod, pixelSpacingInMeter);
             demNoDataValue = dem.getDescriptor().getNoDataValue();
         }
 
@@ -752,17 +755,16 @@ public class RangeDopplerGeocodingOp extends Operator {
      */
     private void computeSensorPositionsAndVelocities() {
         
-        final int numVectorsUsed = Math.min(orbitStateVectors.length, 5);
-        timeArray = new double[numVectorsUsed];
-        xPosArray = new double[numVectorsUsed];
-        yPosArray = new double[numVectorsUsed];
-        zPosArray = new double[numVectorsUsed];
-        sensorPosition = new double[sourceImageHeight][3]; // xPos, yPos, zPos
-        sensorVelocity = new double[sourceImageHeight][3]; // xVel, yVel, zVel
-
-        SARGeocoding.computeSensorPositionsAndVelocities(
-                orbitStateVectors, timeArray, xPosArray, yPosArray, zPosArray,
-                sensorPosition, sensorVelocity, firstLineUTC, lineTimeInterval, sourceImageHeight);
+        sensorOrbit = SensorOrbit.getInstance(orbitStateVectors, firstLineUTC, lineTimeInterval, sourceImageHeight);
+    }
+
+    /**
+     * The local DEM of a tile and the tile georeferencing, both with a border of one pixel.
+     */
+    @Override
+    public long estimateTileWorkingSetSize(Rectangle targetRectangle) {
+        final long numPixels = (long)(targetRectangle.width + 2) * (targetRectangle.height + 2);
+        return numPixels * (8 + 4 + 4);
     }
 
     /**
@@ -795,7 +797,7 @@ public class RangeDopplerGeocodingOp extends Operator {
         final TileGeoreferencing tileGeoRef = new TileGeoreferencing(targetProduct, x0-1, y0-1, w+2, h+2);
 
         try {
-            double[][] localDEM = new double[h+2][w+2];
+            final double[][] localDEM = new double[h+2][w+2];
             if(useAvgSceneHeight) {
                 DEMFactory.fillDEM(localDEM, (float)avgSceneHeight);
             } else {
@@ -809,6 +811,7 @@ public class RangeDopplerGeocodingOp extends Operator {
             final GeoPos geoPos = new GeoPos();
             final double[] earthPoint = new double[3];
             final double[] sensorPos = new double[3];
+            final ZeroDopplerSolver zeroDopplerSolver = new ZeroDopplerSolver(sensorOrbit, wavelength);
             final int srcMaxRange = sourceImageWidth - 1;
             final int srcMaxAzimuth = sourceImageHeight - 1;
             ProductData demBuffer = null;
@@ -854,6 +857,37 @@ public class RangeDopplerGeocodingOp extends Operator {
             final int maxX = x0 + w;
             final TileData[] trgTiles = trgTileList.toArray(new TileData[trgTileList.size()]);
 
+            GeocodingGrid geocodingGrid = null;
+            if (geocodingGridSpacing > 1) {
+                geocodingGrid = new GeocodingGrid(x0, y0, w, h, geocodingGridSpacing, geocodingGridTolerance,
+                        new GeocodingGrid.Geocoder() {
+                            final GeoPos pixelGeoPos = new GeoPos();
+                            final double[] pixelEarthPoint = new double[3];
+                            final double[] pixelSensorPos = new double[3];
+
+                            public boolean getSourceIndex(final int x, final int y, final double[] sourceIndex) {
+                                double alt = localDEM[y-y0+1][x-x0+1];
+                                if (alt == demNoDataValue && !useAvgSceneHeight && nodataValueAtSea) {
+                                    return false;
+                                }
+
+                                tileGeoRef.getGeoPos(x, y, pixelGeoPos);
+                                double lon = pixelGeoPos.lon;
+                                if (lon >= 180.0) {
+                                    lon -= 360.0;
+                                }
+                                if (alt == demNoDataValue && !nodataValueAtSea) {
+                                    alt = EarthGravitationalModel96.instance().getEGM(pixelGeoPos.lat, lon);
+                                }
+                                GeoUtils.geo2xyzWGS84(pixelGeoPos.lat, lon, alt, pixelEarthPoint);
+
+                                return computeSourceIndex(
+                                        zeroDopplerSolver, pixelEarthPoint, pixelSensorPos, sourceIndex) != -1.0;
+                            }
+                        });
+            }
+            final double[] sourceIndex = new double[2];
+
             for (int y = y0; y < maxY; y++) {
                 final int yy = y-y0+1;
 
@@ -888,42 +922,23 @@ public class RangeDopplerGeocodingOp extends Operator {
 
                     GeoUtils.geo2xyzWGS84(lat, lon, alt, earthPoint);
 
-                    final double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTime(firstLineUTC,
-                            lineTimeInterval, wavelength, earthPoint, sensorPosition, sensorVelocity);
-
-                    if (Double.compare(zeroDopplerTime, SARGeocoding.NonValidZeroDopplerTime) == 0) {
-                        //saveNoDataValueToTarget(index, trgTiles);
-                        continue;
-                    }
-
-                    double slantRange = SARGeocoding.computeSlantRange(
-                            zeroDopplerTime, timeArray, xPosArray, yPosArray, zPosArray, earthPoint, sensorPos);
-
-                    double azimuthIndex = 0.0;
-                    double rangeIndex = 0.0;
-                    double zeroDoppler = zeroDopplerTime;
-                    if (!skipBistaticCorrection) {
-                        // skip bistatic correction for COSMO, TerraSAR-X and RadarSAT-2
-                        zeroDoppler = zeroDopplerTime + slantRange / Constants.lightSpeedInMetersPerDay;
-                    }
-
-                    slantRange = SARGeocoding.computeSlantRange(
-                            zeroDoppler, timeArray, xPosArray, yPosArray, zPosArray, earthPoint, sensorPos);
-
-                    rangeIndex = SARGeocoding.computeRangeIndex(srgrFlag, sourceImageWidth, firstLineUTC, lastLineUTC,
-                            rangeSpacing, zeroDoppler, slantRange, nearEdgeSlantRange, srgrConvParams);
-
-                    if (rangeIndex == -1.0) {
-                        //saveNoDataValueToTarget(index, trgTiles);
-                        continue;
-                    }
-
-                    // the following check will be removed if no product of any mission is read with near range on right
-                    if (!nearRangeOnLeft) {
-                        rangeIndex = srcMaxRange - rangeIndex;
+                    final double slantRange;
+                    if (geocodingGrid == null) {
+                        slantRange = computeSourceIndex(zeroDopplerSolver, earthPoint, sensorPos, sourceIndex);
+                        if (slantRange == -1.0) {
+                            //saveNoDataValueToTarget(index, trgTiles);
+                            continue;
+                        }
+                    } else {
+                        if (!geocodingGrid.getSourceIndex(x, y, sourceIndex)) {
+                            continue;
+                        }
+                        slantRange = zeroDopplerSolver.computeSlantRange(
+                                firstLineUTC + sourceIndex[0]*lineTimeInterval, earthPoint, sensorPos);
                     }
 
-                    azimuthIndex = (zeroDoppler - firstLineUTC) / lineTimeInterval;
+                    final double azimuthIndex = sourceIndex[0];
+                    final double rangeIndex = sourceIndex[1];
 
                     if (!SARGeocoding.isValidCell(rangeIndex, azimuthIndex, lat, lon, latitude, longitude,
                             srcMaxRange, srcMaxAzimuth, sensorPos)) {
@@ -982,7 +997,6 @@ public class RangeDopplerGeocodingOp extends Operator {
                     }
                 }
             }
-            localDEM = null;
 
         } catch(Throwable e) {
             orthoDataProduced = true; //to prevent multiple error messages
@@ -990,6 +1004,50 @@ public class RangeDopplerGeocodingOp extends Operator {
         }
     }
 
+    /**
+     * Compute the position in the source image of an earth point.
+     * @param zeroDopplerSolver The zero Doppler solver of the tile.
+     * @param earthPoint The earth point in xyz coordinate.
+     * @param sensorPos The sensor position.
+     * @param sourceIndex The azimuth and range index in the source image.
+     * @return The slant range in meters, -1 if the earth point is not imaged.
+     */
+    private double computeSourceIndex(final ZeroDopplerSolver zeroDopplerSolver, final double[] earthPoint,
+                                      final double[] sensorPos, final double[] sourceIndex) {
+
+        final double zeroDopplerTime = zeroDopplerSolver.getZeroDopplerTime(earthPoint);
+
+        if (Double.compare(zeroDopplerTime, SARGeocoding.NonValidZeroDopplerTime) == 0) {
+            return -1.0;
+        }
+
+        double slantRange = zeroDopplerSolver.computeSlantRange(zeroDopplerTime, earthPoint, sensorPos);
+
+        double zeroDoppler = zeroDopplerTime;
+        if (!skipBistaticCorrection) {
+            // skip bistatic correction for COSMO, TerraSAR-X and RadarSAT-2
+            zeroDoppler = zeroDopplerTime + slantRange / Constants.lightSpeedInMetersPerDay;
+        }
+
+        slantRange = zeroDopplerSolver.computeSlantRange(zeroDoppler, earthPoint, sensorPos);
+
+        double rangeIndex = SARGeocoding.computeRangeIndex(srgrFlag, sourceImageWidth, firstLineUTC, lastLineUTC,
+                rangeSpacing, zeroDoppler, slantRange, nearEdgeSlantRange, srgrConvParams);
+
+        if (rangeIndex == -1.0) {
+            return -1.0;
+        }
+
+        // the following check will be removed if no product of any mission is read with near range on right
+        if (!nearRangeOnLeft) {
+            rangeIndex = sourceImageWidth - 1 - rangeIndex;
+        }
+
+        sourceIndex[0] = (zeroDoppler - firstLineUTC) / lineTimeInterval;
+        sourceIndex[1] = rangeIndex;
+        return slantRange;
+    }
+
     /**
      * Get unit for the source band corresponding to the given target band.
      * @param bandName The target band name.
@@ -159,6 +159,14 @@ public class SARSimTerrainCorrectionOp extends Operator {
     @Parameter(description = "Show the Residuals file in a text viewer", defaultValue = "false", label = "Show Residuals")
     private boolean openResidualsFile = false;
 
+    @Parameter(description = "The spacing in pixels of the grid on which the Range-Doppler equations are solved, 0 to solve for every pixel",
+               defaultValue = "0", label="Geocoding Grid Spacing")
+    private int geocodingGridSpacing = 0;
+
+    @Parameter(description = "The maximum interpolation error in source pixels within the geocoding grid",
+               defaultValue = "0.1", label="Geocoding Grid Tolerance")
+    private double geocodingGridTolerance = 0.1;
+
     private ProductNodeGroup<Placemark> masterGCPGroup = null;
     private MetadataElement absRoot = null;
     private ElevationModel dem = null;
@@ -192,12 +200,7 @@ public class SARSimTerrainCorrectionOp extends Operator {
     private double delLat = 0.0;
     private double delLon = 0.0;
 
-    private double[][] sensorPosition = null; // sensor position for all range lines
-    private double[][] sensorVelocity = null; // sensor velocity for all range lines
-    private double[] timeArray = null;
-    private double[] xPosArray = null;
-    private double[] yPosArray = null;
-    private double[] zPosArray = null;
+    private SensorOrbit sensorOrbit = null; // sensor position and velocity for all range lines
 
     private AbstractMetadata.SRGRCoefficientList[] srgrConvParams = null;
     private AbstractMetadata.OrbitStateVector[] orbitStateVectors = null;
@@ -784,16 +787,7 @@ public class SARSimTerrainCorrectionOp extends Operator {
      */
     private void computeSensorPositionsAndVelocities() {
 
-        final int numVectorsUsed = Math.min(orbitStateVectors.length, 5);
-        timeArray = new double[numVectorsUsed];
-        xPosArray = new double[numVectorsUsed];
-        yPosArray = new double[numVectorsUsed];
-        zPosArray = new double[numVectorsUsed];
-        sensorPosition = new double[sourceImageHeight][3]; // xPos, yPos, zPos
-        sensorVelocity = new double[sourceImageHeight][3]; // xVel, yVel, zVel
-
-        SARGeocoding.computeSensorPositionsAndVelocities(orbitStateVectors, timeArray, xPosArray, yPosArray, zPosArray,
-                sensorPosition, sensorVelocity, firstLineUTC, lineTimeInterval, sourceImageHeight);
+        sensorOrbit = SensorOrbit.getInstance(orbitStateVectors, firstLineUTC, lineTimeInterval, sourceImageHeight);
     }
 
     /**
@@ -820,6 +814,7 @@ public class SARSimTerrainCorrectionOp extends Operator {
         final GeoPos geoPos = new GeoPos();
         final double[] earthPoint = new double[3];
         final double[] sensorPos = new double[3];
+        final ZeroDopplerSolver zeroDopplerSolver = new ZeroDopplerSolver(sensorOrbit, wavelength);
         final int srcMaxRange = sourceImageWidth - 1;
         final int srcMaxAzimuth = sourceImageHeight - 1;
         ProductData demBuffer = null;
@@ -889,6 +884,37 @@ public class SARSimTerrainCorrectionOp extends Operator {
                     return;
             }
 
+            GeocodingGrid geocodingGrid = null;
+            if (geocodingGridSpacing > 1) {
+                geocodingGrid = new GeocodingGrid(x0, y0, w, h, geocodingGridSpacing, geocodingGridTolerance,
+                        new GeocodingGrid.Geocoder() {
+                            final GeoPos pixelGeoPos = new GeoPos();
+                            final double[] pixelEarthPoint = new double[3];
+                            final double[] pixelSensorPos = new double[3];
+
+                            public boolean getSourceIndex(final int x, final int y, final double[] sourceIndex) {
+                                final double alt = localDEM[y-y0+1][x-x0+1];
+                                if (!useAvgSceneHeight && alt == demNoDataValue) {
+                                    return false;
+                                }
+
+                                tileGeoRef.getGeoPos(x, y, pixelGeoPos);
+                                if(!pixelGeoPos.isValid()) {
+                                    return false;
+                                }
+                                double lon = pixelGeoPos.lon;
+                                if (lon >= 180.0) {
+                                    lon -= 360.0;
+                                }
+                                GeoUtils.geo2xyzWGS84(pixelGeoPos.lat, lon, alt, pixelEarthPoint);
+
+                                return computeSourceIndex(
+                                        zeroDopplerSolver, pixelEarthPoint, pixelSensorPos, sourceIndex) != -1.0;
+                            }
+                        });
+            }
+            final double[] sourceIndex = new double[2];
+
             for (int y = y0; y < ymax; y++) {
                 final int yy = y-y0+1;
 
@@ -919,34 +945,23 @@ public class SARSimTerrainCorrectionOp extends Operator {
 
                     GeoUtils.geo2xyzWGS84(lat, lon, alt, earthPoint);
 
-                    final double zeroDopplerTime = getEarthPointZeroDopplerTime(earthPoint);
-
-                    if (Double.compare(zeroDopplerTime, NonValidZeroDopplerTime) == 0) {
-                        //saveNoDataValueToTarget(index, trgTiles);
-                        continue;
-                    }
-
-                    double slantRange = SARGeocoding.computeSlantRange(
-                            zeroDopplerTime, timeArray, xPosArray, yPosArray, zPosArray, earthPoint, sensorPos);
-
-                    double zeroDoppler = zeroDopplerTime;
-                    if (!skipBistaticCorrection) {
-                        // skip bistatic correction for COSMO, TerraSAR-X and RadarSAT-2
-                        zeroDoppler = zeroDopplerTime + slantRange / Constants.lightSpeedInMetersPerDay;
-
-                        slantRange = SARGeocoding.computeSlantRange(
-                            zeroDoppler, timeArray, xPosArray, yPosArray, zPosArray, earthPoint, sensorPos);
+                    final double slantRange;
+                    if (geocodingGrid == null) {
+                        slantRange = computeSourceIndex(zeroDopplerSolver, earthPoint, sensorPos, sourceIndex);
+                        if (slantRange == -1.0) {
+                            //saveNoDataValueToTarget(index, trgTiles);
+                            continue;
+                        }
+                    } else {
+                        if (!geocodingGrid.getSourceIndex(x, y, sourceIndex)) {
+                            continue;
+                        }
+                        slantRange = zeroDopplerSolver.computeSlantRange(
+                                firstLineUTC + sourceIndex[0]*lineTimeInterval, earthPoint, sensorPos);
                     }
 
-                    final double azimuthIndex = (zeroDoppler - firstLineUTC) / lineTimeInterval;
-
-                    double rangeIndex = SARGeocoding.computeRangeIndex(srgrFlag, sourceImageWidth, firstLineUTC, lastLineUTC,
-                            rangeSpacing, zeroDoppler, slantRange, nearEdgeSlantRange, srgrConvParams);
-
-                    // temp fix for descending Radarsat2
-                    if (!nearRangeOnLeft) {
-                        rangeIndex = srcMaxRange - rangeIndex;
-                    }
+                    final double azimuthIndex = sourceIndex[0];
+                    final double rangeIndex = sourceIndex[1];
 
                     if (!SARGeocoding.isValidCell(rangeIndex, azimuthIndex, lat, lon, latitude, longitude,
                             srcMaxRange, srcMaxAzimuth, sensorPos)) {
@@ -1046,69 +1061,47 @@ public class SARSimTerrainCorrectionOp extends Operator {
     }
 
     /**
-     * Compute zero Doppler time for given erath point.
-     * @param earthPoint The earth point in xyz cooordinate.
-     * @return The zero Doppler time in days if it is found, -1 otherwise.
-     * @throws OperatorException The operator exception.
+     * Compute the position in the source image of an earth point.
+     * @param zeroDopplerSolver The zero Doppler solver of the tile.
+     * @param earthPoint The earth point in xyz coordinate.
+     * @param sensorPos The sensor position.
+     * @param sourceIndex The azimuth and range index in the source image.
+     * @return The slant range in meters, -1 if the earth point is not imaged.
      */
-    private double getEarthPointZeroDopplerTime(final double[] earthPoint) throws OperatorException {
-
-        // binary search is used in finding the zero doppler time
-        int lowerBound = 0;
-        int upperBound = sensorPosition.length - 1;
-        double lowerBoundFreq = getDopplerFrequency(lowerBound, earthPoint);
-        double upperBoundFreq = getDopplerFrequency(upperBound, earthPoint);
-
-        if (Double.compare(lowerBoundFreq, 0.0) == 0) {
-            return firstLineUTC + lowerBound*lineTimeInterval;
-        } else if (Double.compare(upperBoundFreq, 0.0) == 0) {
-            return firstLineUTC + upperBound*lineTimeInterval;
-        } else if (lowerBoundFreq*upperBoundFreq > 0.0) {
-            return NonValidZeroDopplerTime;
+    private double computeSourceIndex(final ZeroDopplerSolver zeroDopplerSolver, final double[] earthPoint,
+                                      final double[] sensorPos, final double[] sourceIndex) {
+
+        final double zeroDopplerTime = zeroDopplerSolver.getZeroDopplerTime(earthPoint);
+
+        if (Double.compare(zeroDopplerTime, NonValidZeroDopplerTime) == 0) {
+            return -1.0;
         }
 
-        // start binary search
-        double midFreq;
-        while(upperBound - lowerBound > 1) {
-
-            final int mid = (int)((lowerBound + upperBound)/2.0);
-            midFreq = getDopplerFrequency(mid, earthPoint);
-            if (Double.compare(midFreq, 0.0) == 0) {
-                return firstLineUTC + mid*lineTimeInterval;
-            } else if (midFreq*lowerBoundFreq > 0.0) {
-                lowerBound = mid;
-                lowerBoundFreq = midFreq;
-            } else if (midFreq*upperBoundFreq > 0.0) {
-                upperBound = mid;
-                upperBoundFreq = midFreq;
-            }
+        double slantRange = zeroDopplerSolver.computeSlantRange(zeroDopplerTime, earthPoint, sensorPos);
+
+        double zeroDoppler = zeroDopplerTime;
+        if (!skipBistaticCorrection) {
+            // skip bistatic correction for COSMO, TerraSAR-X and RadarSAT-2
+            zeroDoppler = zeroDopplerTime + slantRange / Constants.lightSpeedInMetersPerDay;
+
+            slantRange = zeroDopplerSolver.computeSlantRange(zeroDoppler, earthPoint, sensorPos);
         }
 
-        final double y0 = lowerBound - lowerBoundFreq*(upperBound - lowerBound)/(upperBoundFreq - lowerBoundFreq);
-        return firstLineUTC + y0*lineTimeInterval;
-    }
+        double rangeIndex = SARGeocoding.computeRangeIndex(srgrFlag, sourceImageWidth, firstLineUTC, lastLineUTC,
+                rangeSpacing, zeroDoppler, slantRange, nearEdgeSlantRange, srgrConvParams);
 
-    /**
-     * Compute Doppler frequency for given earthPoint and sensor position.
-     * @param y The index for given range line.
-     * @param earthPoint The earth point in xyz coordinate.
-     * @return The Doppler frequency in Hz.
-     */
-    private double getDopplerFrequency(final int y, final double[] earthPoint) {
+        if (rangeIndex == -1.0) {
+            return -1.0;
+        }
 
-        if (y < 0 || y > sourceImageHeight - 1) {
-            throw new OperatorException("Invalid range line index: " + y);
+        // temp fix for descending Radarsat2
+        if (!nearRangeOnLeft) {
+            rangeIndex = sourceImageWidth - 1 - rangeIndex;
         }
-        
-        final double xVel = sensorVelocity[y][0];
-        final double yVel = sensorVelocity[y][1];
-        final double zVel = sensorVelocity[y][2];
-        final double xDiff = earthPoint[0] - sensorPosition[y][0];
-        final double yDiff = earthPoint[1] - sensorPosition[y][1];
-        final double zDiff = earthPoint[2] - sensorPosition[y][2];
-        final double distance = Math.sqrt(xDiff*xDiff + yDiff*yDiff + zDiff*zDiff);
-
-        return 2.0 * (xVel*xDiff + yVel*yDiff + zVel*zDiff) / (distance*wavelength);
+
+        sourceIndex[0] = (zeroDoppler - firstLineUTC) / lineTimeInterval;
+        sourceIndex[1] = rangeIndex;
+        return slantRange;
     }
 
     /**
@@ -38,6 +38,8 @@ import org.esa.nest.eo.Constants;
 import org.esa.nest.eo.GeoUtils;
 import org.esa.nest.eo.LocalGeometry;
 import org.esa.nest.eo.SARGeocoding;
+import org.esa.nest.eo.SensorOrbit;
+import org.esa.nest.eo.ZeroDopplerSolver;
 import org.jlinda.core.*;
 import org.jlinda.core.Point;
 
@@ -161,12 +163,7 @@ public final class SARSimulationOp extends Operator {
     private double nearEdgeSlantRange = 0.0; // in m
     private double wavelength = 0.0; // in m
     private float demNoDataValue = 0; // no data value for DEM
-    private double[][] sensorPosition = null; // sensor position for all range lines
-    private double[][] sensorVelocity = null; // sensor velocity for all range lines
-    private double[] timeArray = null;
-    private double[] xPosArray = null;
-    private double[] yPosArray = null;
-    private double[] zPosArray = null;
+    private SensorOrbit sensorOrbit = null; // sensor position and velocity for all range lines
 
     private int tileSize = 400;
 
@@ -286,7 +283,8 @@ public final class SARSimulationOp extends Operator {
             demName = externalDEMFile.getPath();
 
         } else {
-            dem = DEMFactory.createElevationModel(demName, demResamplingMethod);
+            dem = DEMFactory.createElevationModel(demName, demResamplingMethod,
+                                                  DEMFactory.getPixelSpacing(sourceProduct));
             demNoDataValue = dem.getDescriptor().getNoDataValue();
         }
         } catch(Throwable t) {
@@ -301,17 +299,7 @@ public final class SARSimulationOp extends Operator {
      */
     private void computeSensorPositionsAndVelocities() {
 
-        final int numVectorsUsed = Math.min(orbitStateVectors.length, 5);
-        timeArray = new double[numVectorsUsed];
-        xPosArray = new double[numVectorsUsed];
-        yPosArray = new double[numVectorsUsed];
-        zPosArray = new double[numVectorsUsed];
-        sensorPosition = new double[sourceImageHeight][3]; // xPos, yPos, zPos
-        sensorVelocity = new double[sourceImageHeight][3]; // xVel, yVel, zVel
-
-        SARGeocoding.computeSensorPositionsAndVelocities(
-                orbitStateVectors, timeArray, xPosArray, yPosArray, zPosArray,
-                sensorPosition, sensorVelocity, firstLineUTC, lineTimeInterval, sourceImageHeight);
+        sensorOrbit = SensorOrbit.getInstance(orbitStateVectors, firstLineUTC, lineTimeInterval, sourceImageHeight);
     }
 
     /**
@@ -437,6 +425,7 @@ public final class SARSimulationOp extends Operator {
         final GeoPos geoPos = new GeoPos();
         final double[] earthPoint = new double[3];
         final double[] sensorPos = new double[3];
+        final ZeroDopplerSolver zeroDopplerSolver = createZeroDopplerSolver();
         double tileOverlapPercentageMax = -Double.MAX_VALUE;
         double tileOverlapPercentageMin = Double.MAX_VALUE;
         for (int y = y0; y < y0 + h; y+=20) {
@@ -446,15 +435,13 @@ public final class SARSimulationOp extends Operator {
                 final double alt = dem.getElevation(geoPos);
                 GeoUtils.geo2xyzWGS84(geoPos.getLat(), geoPos.getLon(), alt, earthPoint);
 
-                final double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTime(
-                        firstLineUTC, lineTimeInterval, wavelength, earthPoint, sensorPosition, sensorVelocity);
+                final double zeroDopplerTime = zeroDopplerSolver.getZeroDopplerTime(earthPoint);
 
                 if (zeroDopplerTime == SARGeocoding.NonValidZeroDopplerTime) {
                     continue;
                 }
 
-                final double slantRange = SARGeocoding.computeSlantRange(
-                        zeroDopplerTime,  timeArray, xPosArray, yPosArray, zPosArray, earthPoint, sensorPos);
+                final double slantRange = zeroDopplerSolver.computeSlantRange(zeroDopplerTime, earthPoint, sensorPos);
 
                 final double zeroDopplerTimeWithoutBias = zeroDopplerTime + slantRange / Constants.lightSpeedInMetersPerDay;
 
@@ -538,7 +525,7 @@ public final class SARSimulationOp extends Operator {
         final int ymax = y0 + h + (int)(tileSize*Math.abs(tileOverlapPercentage[0]));
         final int xmax = x0 + w;
 
-        final PositionData posData = new PositionData();
+        final PositionData posData = new PositionData(createZeroDopplerSolver());
         final GeoPos geoPos = new GeoPos();
 
         double[] slrs = null;
@@ -761,12 +748,21 @@ public final class SARSimulationOp extends Operator {
         }
     }
 
+    private ZeroDopplerSolver createZeroDopplerSolver() {
+        return new ZeroDopplerSolver(sensorOrbit, wavelength);
+    }
+
     private static class PositionData {
         final double[] earthPoint = new double[3];
         final double[] sensorPos = new double[3];
+        final ZeroDopplerSolver zeroDopplerSolver;
         double azimuthIndex;
         double rangeIndex;
         double slantRange;
+
+        PositionData(final ZeroDopplerSolver zeroDopplerSolver) {
+            this.zeroDopplerSolver = zeroDopplerSolver;
+        }
     }
 
     private boolean getPositionFromOrbit(final double lat, final double lon, final double alt,
@@ -811,9 +807,7 @@ public final class SARSimulationOp extends Operator {
 
         GeoUtils.geo2xyzWGS84(lat, lon, alt, data.earthPoint);
 
-        final double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTimeNewton(
-                firstLineUTC, lineTimeInterval, wavelength, data.earthPoint,
-                sensorPosition, sensorVelocity);
+        final double zeroDopplerTime = data.zeroDopplerSolver.getZeroDopplerTime(data.earthPoint);
 
         //final double zeroDopplerTime = SARGeocoding.getEarthPointZeroDopplerTime(
         //        firstLineUTC, lineTimeInterval, wavelength, data.earthPoint,
@@ -823,8 +817,7 @@ public final class SARSimulationOp extends Operator {
             return false;
         }
 
-        data.slantRange = SARGeocoding.computeSlantRange(
-                zeroDopplerTime, timeArray, xPosArray, yPosArray, zPosArray, data.earthPoint, data.sensorPos);
+        data.slantRange = data.zeroDopplerSolver.computeSlantRange(zeroDopplerTime, data.earthPoint, data.sensorPos);
 
         final double zeroDopplerTimeWithoutBias =
                 zeroDopplerTime + data.slantRange / Constants.lightSpeedInMetersPerDay;
@@ -835,8 +828,8 @@ public final class SARSimulationOp extends Operator {
             return false;
         }
 
-        data.slantRange = SARGeocoding.computeSlantRange(zeroDopplerTimeWithoutBias,
-                timeArray, xPosArray, yPosArray, zPosArray, data.earthPoint, data.sensorPos);
+        data.slantRange = data.zeroDopplerSolver.computeSlantRange(
+                zeroDopplerTimeWithoutBias, data.earthPoint, data.sensorPos);
 
         if(!srgrFlag) {
             data.rangeIndex = (data.slantRange - nearEdgeSlantRange) / rangeSpacing;
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.gpf;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the sparse geocoding grid against solving every pixel
+ */
+public class TestGeocodingGrid extends TestCase {
+
+    private static final int X0 = 100;
+    private static final int Y0 = 200;
+    private static final int W = 128;
+    private static final int H = 96;
+    private static final double TOLERANCE = 0.05;
+
+    /**
+     * A smooth mapping, with a steep peak and a masked area
+     */
+    private static class TestGeocoder implements GeocodingGrid.Geocoder {
+
+        int count = 0;
+
+        public boolean getSourceIndex(final int x, final int y, final double[] sourceIndex) {
+            ++count;
+            return getExpected(x, y, sourceIndex);
+        }
+
+        static boolean getExpected(final int x, final int y, final double[] sourceIndex) {
+            if (x >= X0 + 100 && y >= Y0 + 80) {
+                return false;
+            }
+            final double dx = x - (X0 + 30);
+            final double dy = y - (Y0 + 30);
+            final double peak = 20.0 * Math.exp(-(dx * dx + dy * dy) / 8.0);
+            sourceIndex[0] = 1000.0 + 0.9 * y + 0.1 * x + 0.0005 * x * y;
+            sourceIndex[1] = 50.0 + 1.1 * x - 0.2 * y + 0.0002 * x * x + peak;
+            return true;
+        }
+    }
+
+    public void testSourceIndex() throws Exception {
+        final TestGeocoder geocoder = new TestGeocoder();
+        final GeocodingGrid grid = new GeocodingGrid(X0, Y0, W, H, 16, TOLERANCE, geocoder);
+
+        assertEquals(geocoder.count, grid.getSolvedCount());
+        assertTrue(grid.getSolvedCount() < W * H / 4);
+
+        final double[] expected = new double[2];
+        final double[] sourceIndex = new double[2];
+        for (int y = Y0; y < Y0 + H; y++) {
+            for (int x = X0; x < X0 + W; x++) {
+                final boolean valid = TestGeocoder.getExpected(x, y, expected);
+                assertEquals(valid, grid.getSourceIndex(x, y, sourceIndex));
+                if (valid) {
+                    assertEquals(expected[0], sourceIndex[0], TOLERANCE);
+                    assertEquals(expected[1], sourceIndex[1], TOLERANCE);
+                }
+            }
+        }
+    }
+
+    public void testSinglePixelTile() throws Exception {
+        final TestGeocoder geocoder = new TestGeocoder();
+        final GeocodingGrid grid = new GeocodingGrid(X0, Y0, 1, 1, 16, TOLERANCE, geocoder);
+        assertEquals(1, grid.getSolvedCount());
+
+        final double[] expected = new double[2];
+        final double[] sourceIndex = new double[2];
+        TestGeocoder.getExpected(X0, Y0, expected);
+        assertTrue(grid.getSourceIndex(X0, Y0, sourceIndex));
+        assertEquals(expected[0], sourceIndex[0]);
+        assertEquals(expected[1], sourceIndex[1]);
+    }
+}
@@ -28,6 +28,7 @@ import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
+import org.esa.beam.framework.gpf.pointop.PointwiseOperator;
 import org.esa.beam.util.math.Histogram;
 import org.esa.beam.util.math.Range;
 
@@ -40,7 +41,7 @@ import org.esa.beam.util.math.Range;
         authors = "Jun Lu, Luis Veci",
         copyright = "Copyright (C) 2013 by Array Systems Computing Inc.",
         description="Convert product data type")
-public class ConvertDataTypeOp extends Operator {
+public class ConvertDataTypeOp extends Operator implements PointwiseOperator {
 
     @SourceProduct(alias="source")
     private Product sourceProduct;
@@ -140,6 +141,14 @@ public class ConvertDataTypeOp extends Operator {
         }
     }
 
+    /**
+     * @return always {@code true}, since each target sample is computed from the source samples at the same position
+     */
+    @Override
+    public boolean isPointwise() {
+        return true;
+    }
+
     /**
      * Called by the framework in order to compute a tile for the given target band.
      * <p>The default implementation throws a runtime exception with the message "not implemented".</p>
@@ -28,6 +28,7 @@ import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
+import org.esa.beam.framework.gpf.pointop.PointwiseOperator;
 import org.esa.nest.datamodel.AbstractMetadata;
 import org.esa.nest.datamodel.Unit;
 
@@ -43,7 +44,7 @@ import java.util.HashMap;
         authors = "Jun Lu, Luis Veci",
         copyright = "Copyright (C) 2013 by Array Systems Computing Inc.",
         description="Converts bands to dB")
-public final class LinearTodBOp extends Operator {
+public final class LinearTodBOp extends Operator implements PointwiseOperator {
 
     @SourceProduct(alias="source")
     private Product sourceProduct;
@@ -84,6 +85,14 @@ public final class LinearTodBOp extends Operator {
         }
     }
 
+    /**
+     * @return always {@code true}, since each target sample is computed from the source samples at the same position
+     */
+    @Override
+    public boolean isPointwise() {
+        return true;
+    }
+
     /**
      * Called by the framework in order to compute a tile for the given target band.
      * <p>The default implementation throws a runtime exception with the message "not implemented".</p>
@@ -134,27 +143,31 @@ public final class LinearTodBOp extends Operator {
                 srcData2 = sourceRaster2.getDataBuffer();
 
             final TileIndex trgIndex = new TileIndex(targetTile);
+            final TileIndex srcIndex1 = new TileIndex(sourceRaster1);
+            final TileIndex srcIndex2 = sourceRaster2 != null ? new TileIndex(sourceRaster2) : null;
 
             double value, i, q;
             final int maxY = y0 + h;
             final int maxX = x0 + w;
             for (int y = y0; y < maxY; ++y) {
                 trgIndex.calculateStride(y);
+                srcIndex1.calculateStride(y);
+                if (srcIndex2 != null)
+                    srcIndex2.calculateStride(y);
                 for (int x = x0; x < maxX; ++x) {
-                    final int index = trgIndex.getIndex(x);
                     if (srcData2 != null) {
-                        i = srcData1.getElemDoubleAt(index);
-                        q = srcData2.getElemDoubleAt(index);
+                        i = srcData1.getElemDoubleAt(srcIndex1.getIndex(x));
+                        q = srcData2.getElemDoubleAt(srcIndex2.getIndex(x));
                         value = i * i + q * q;
                     } else {
-                        value = srcData1.getElemDoubleAt(index);
+                        value = srcData1.getElemDoubleAt(srcIndex1.getIndex(x));
                     }
                     if (value < underFlowFloat) {
                         value = -underFlowFloat;
                     } else {
                         value = 10.0 * Math.log10(value);
                     }
-                    trgData.setElemDoubleAt(index, value);
+                    trgData.setElemDoubleAt(trgIndex.getIndex(x), value);
                 }
             }
 
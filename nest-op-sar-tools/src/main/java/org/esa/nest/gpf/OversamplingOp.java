@@ -485,6 +485,19 @@ public class OversamplingOp extends Operator {
         AbstractMetadata.setAttribute(absTgt, AbstractMetadata.line_time_interval, oldLineTimeInterval/heightRatio);
     }
 
+    /**
+     * The bands are oversampled one after another, each with the spectra of its overlapping source
+     * tile in double precision and the i and q source tiles.
+     */
+    @Override
+    public long estimateTileWorkingSetSize(Rectangle targetRectangle) {
+        final Rectangle sourceTileRectangle = getSourceTileRectangle(targetRectangle, new OverlapInfo());
+        final long overSampledSourceTileHeight = (long)(heightRatio * sourceTileRectangle.height + 0.5);
+        final long spectraSize = 2 * overSampledSourceTileHeight * sourceTileRectangle.width * 8;
+        final long sourceTilesSize = 2L * sourceTileRectangle.width * sourceTileRectangle.height * 4;
+        return spectraSize + sourceTilesSize;
+    }
+
     /**
      * Called by the framework in order to compute a tile for the given target band.
      * <p>The default implementation throws a runtime exception with the message "not implemented".</p>
@@ -19,6 +19,7 @@ import com.bc.ceres.core.NullProgressMonitor;
 import org.esa.beam.dataio.envisat.EnvisatOrbitReader;
 import org.esa.beam.framework.datamodel.MetadataElement;
 import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.util.logging.BeamLogManager;
 import org.esa.beam.visat.VisatApp;
 import org.esa.nest.datamodel.AbstractMetadata;
 import org.esa.nest.datamodel.Orbits;
@@ -28,6 +29,10 @@ import org.esa.nest.util.ftpUtils;
 import java.io.File;
 import java.io.IOException;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
 
 /**
  * DORIS Orbit File
@@ -36,6 +41,13 @@ public class DorisOrbitFile extends BaseOrbitFile {
 
     private EnvisatOrbitReader dorisReader = null;
 
+    // orbit files read recently, shared by all operators of the JVM, e.g. of concurrently processed graphs.
+    // Ordered from the least to the most recently used.
+    private static final List<CachedOrbit> orbitCache = new LinkedList<CachedOrbit>();
+    private static final int MAX_CACHED_ORBITS = 16;
+
+    private static final Logger logger = BeamLogManager.getSystemLogger();
+
     public static final String DORIS_POR = "DORIS Preliminary POR";
     public static final String DORIS_VOR = "DORIS Precise VOR";
 
@@ -74,7 +86,6 @@ public class DorisOrbitFile extends BaseOrbitFile {
      */
     private void init(final Product sourceProduct) throws IOException {
 
-        dorisReader = EnvisatOrbitReader.getInstance();
         final int absOrbit = absRoot.getAttributeInt(AbstractMetadata.ABS_ORBIT, 0);
 
         // construct path to the orbit file folder
@@ -99,29 +110,71 @@ public class DorisOrbitFile extends BaseOrbitFile {
         final File localPath = new File(orbitPath);
 
         // find orbit file in the folder
-        orbitFile = FindDorisOrbitFile(dorisReader, localPath, startDate, absOrbit);
-        if(orbitFile == null) {
+        CachedOrbit orbit = findCachedOrbit(localPath, startDate);
+        if(orbit == null) {
+            orbit = FindDorisOrbitFile(localPath, startDate, absOrbit);
+        }
+        IOException downloadError = null;
+        if(orbit == null) {
             final String remotePath = remoteBaseFolder +'/'+ folder;
-            getRemoteDorisFiles(remotePath, localPath);
+            try {
+                getRemoteDorisFiles(remotePath, localPath);
+            } catch(IOException e) {
+                // files downloaded before the failure may still do
+                downloadError = e;
+            }
             // find again in newly downloaded folder
-            orbitFile = FindDorisOrbitFile(dorisReader, localPath, startDate, absOrbit);
+            orbit = FindDorisOrbitFile(localPath, startDate, absOrbit);
         }
 
-        if(orbitFile == null) {
-            throw new IOException("Unable to find suitable DORIS orbit file in\n"+orbitPath);
+        if(orbit == null) {
+            throw new IOException("Unable to find suitable DORIS orbit file in\n"+orbitPath, downloadError);
+        }
+        orbitFile = orbit.file;
+        dorisReader = orbit.reader;
+    }
+
+    /**
+     * Find an orbit file of the given folder which has already been read.
+     * @param path The path to the orbit file.
+     * @param productDate The start date of the product.
+     * @return The cached orbit or null if not found.
+     */
+    private static CachedOrbit findCachedOrbit(final File path, final Date productDate) {
+        final String folder = path.getAbsolutePath() + File.separator;
+        synchronized (orbitCache) {
+            final Iterator<CachedOrbit> it = orbitCache.iterator();
+            while(it.hasNext()) {
+                final CachedOrbit orbit = it.next();
+                if (orbit.file.getAbsolutePath().startsWith(folder) && orbit.covers(productDate)) {
+                    // most recently used
+                    it.remove();
+                    orbitCache.add(orbit);
+                    return orbit;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void addCachedOrbit(final CachedOrbit orbit) {
+        synchronized (orbitCache) {
+            orbitCache.add(orbit);
+            if (orbitCache.size() > MAX_CACHED_ORBITS) {
+                orbitCache.remove(0);
+            }
         }
     }
 
     /**
      * Find DORIS orbit file.
-     * @param dorisReader The ENVISAT oribit reader.
      * @param path The path to the orbit file.
      * @param productDate The start date of the product.
      * @param absOrbit The absolute orbit number.
-     * @return The orbit file.
+     * @return The orbit read from the file found or null if not found.
      * @throws IOException
      */
-    private static File FindDorisOrbitFile(EnvisatOrbitReader dorisReader, File path, Date productDate, int absOrbit)
+    private static CachedOrbit FindDorisOrbitFile(File path, Date productDate, int absOrbit)
             throws IOException {
 
         final File[] list = path.listFiles();
@@ -131,12 +184,14 @@ public class DorisOrbitFile extends BaseOrbitFile {
         for(File f : list) {
 
             if(f.isDirectory()) {
-                final File foundFile = FindDorisOrbitFile(dorisReader, f, productDate, absOrbit);
-                if(foundFile != null) {
-                    return foundFile;
+                final CachedOrbit found = FindDorisOrbitFile(f, productDate, absOrbit);
+                if(found != null) {
+                    return found;
                 }
+                continue;
             }
 
+            final EnvisatOrbitReader dorisReader = new EnvisatOrbitReader();
             try {
                 // open each orbit file
                 dorisReader.readProduct(f);
@@ -150,19 +205,24 @@ public class DorisOrbitFile extends BaseOrbitFile {
                     dorisReader.readOrbitData();
                     //EnvisatOrbitReader.OrbitVector orb = dorisReader.getOrbitVector(0);
                     //if (absOrbit == orb.absOrbit) {
-                        return f;
+                        final CachedOrbit orbit = new CachedOrbit(f, startDate, stopDate, dorisReader);
+                        addCachedOrbit(orbit);
+                        return orbit;
                     //}
                 }
             } catch(Exception e) {
-                System.out.println(e.getMessage());
-                // continue
+                // not a readable orbit file, continue with the next one
+                logger.warning("Unable to read DORIS orbit file " + f + ": " + e.getMessage());
+            } finally {
+                // the orbit vectors remain accessible
+                dorisReader.close();
             }
         }
 
         return null;
     }
 
-    private void getRemoteDorisFiles(final String remotePath, final File localPath) {
+    private void getRemoteDorisFiles(final String remotePath, final File localPath) throws IOException {
         final String dorisFTP = Settings.instance().get("OrbitFiles/dorisFTP");
         try {
             if(ftp == null) {
@@ -185,7 +245,30 @@ public class DorisOrbitFile extends BaseOrbitFile {
             }
 
         } catch(Exception e) {
-            System.out.println(e.getMessage());
+            throw new IOException("Unable to download DORIS orbit files from " + dorisFTP + remotePath + ": " +
+                                  e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The orbit vectors of an orbit file
+     */
+    private static class CachedOrbit {
+        private final File file;
+        private final Date startDate;
+        private final Date stopDate;
+        private final EnvisatOrbitReader reader;
+
+        private CachedOrbit(final File file, final Date startDate, final Date stopDate,
+                            final EnvisatOrbitReader reader) {
+            this.file = file;
+            this.startDate = startDate;
+            this.stopDate = stopDate;
+            this.reader = reader;
+        }
+
+        private boolean covers(final Date date) {
+            return date.after(startDate) && date.before(stopDate);
         }
     }
 }
@@ -26,9 +26,7 @@ import org.esa.beam.framework.dataop.resamp.Resampling;
 import org.esa.beam.framework.dataop.resamp.ResamplingFactory;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 
 public abstract class BaseElevationModel implements ElevationModel, Resampling.Raster {
 
@@ -48,9 +46,6 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
     private final Resampling resampling;
     private final Resampling.Raster resamplingRaster;
 
-    private final List<ElevationTile> elevationTileCache = new ArrayList<ElevationTile>(20);
-    private int maxCacheSize = 60;
-
     public BaseElevationModel(final ElevationModelDescriptor descriptor, Resampling resamplingMethod) {
         this.descriptor = descriptor;
         if(resamplingMethod == null)
@@ -82,10 +77,6 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
         return descriptor;
     }
 
-    protected void setMaxCacheSize(final int size) {
-        maxCacheSize = size;
-    }
-
     public final double getElevation(final GeoPos geoPos) throws Exception {
         if (geoPos.lon > 180) {
             geoPos.lon -= 360;
@@ -104,6 +95,128 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
         return Double.isNaN(elevation) ? NO_DATA_VALUE : elevation;
     }
 
+    /**
+     * Gets the elevations at many geographical positions at once. The positions are resampled grouped by
+     * the DEM tile they fall into, with a single resampling index. For bilinear interpolation, positions
+     * whose neighbours lie within one DEM tile are interpolated directly from that tile.
+     * @param lats the latitudes of the positions
+     * @param lons the longitudes of the positions
+     * @param count the number of positions
+     * @param elevations the elevations, or the no data value if not available
+     * @throws Exception from DEM tiles
+     */
+    public final void getElevations(final double[] lats, final double[] lons, final int count,
+                                    final double[] elevations) throws Exception {
+        final double[] pixelX = new double[count];
+        final double[] pixelY = new double[count];
+        final int[] tileKeys = new int[count];
+        final GeoPos geoPos = new GeoPos();
+        int next = count;
+        for (int i = 0; i < count; i++) {
+            geoPos.setLocation((float)lats[i], (float)lons[i]);
+            if (geoPos.lon > 180) {
+                geoPos.lon -= 360;
+            }
+            pixelY[i] = getIndexY(geoPos);
+            if (!(pixelY[i] >= 0)) {
+                elevations[i] = NO_DATA_VALUE;
+                tileKeys[i] = -1;
+                continue;
+            }
+            pixelX[i] = getIndexX(geoPos);
+            final int x = crop((int)Math.floor(pixelX[i]), RASTER_WIDTH - 1);
+            final int y = crop((int)Math.floor(pixelY[i]), RASTER_HEIGHT - 1);
+            tileKeys[i] = (x / NUM_PIXELS_PER_TILE) * NUM_Y_TILES + y / NUM_PIXELS_PER_TILE;
+            if (next == count) {
+                next = i;
+            }
+        }
+
+        final boolean bilinear = resampling instanceof BilinearInterpolationResampling;
+        final Resampling.Index index = resampling.createIndex();
+        while (next < count) {
+            final int key = tileKeys[next];
+            final int tileXIndex = key / NUM_Y_TILES;
+            final int tileYIndex = key % NUM_Y_TILES;
+            final ElevationTile tile = elevationFiles[tileXIndex][tileYIndex].getTile();
+            final int start = next;
+            next = count;
+            for (int i = start; i < count; i++) {
+                if (tileKeys[i] != key) {
+                    if (tileKeys[i] >= 0 && next == count) {
+                        next = i;
+                    }
+                    continue;
+                }
+                tileKeys[i] = -1;
+                if (bilinear && tile != null) {
+                    final double elevation = getBilinearElevation(tile, tileXIndex, tileYIndex, pixelX[i], pixelY[i]);
+                    if (elevation != Double.NEGATIVE_INFINITY) {
+                        elevations[i] = elevation;
+                        continue;
+                    }
+                }
+                resampling.computeIndex(pixelX[i], pixelY[i], RASTER_WIDTH, RASTER_HEIGHT, index);
+                final double elevation = resampling.resample(resamplingRaster, index);
+                elevations[i] = Double.isNaN(elevation) ? NO_DATA_VALUE : elevation;
+            }
+        }
+    }
+
+    /**
+     * Bilinear interpolation as done by {@link BilinearInterpolationResampling} for neighbours within one tile.
+     * @return the elevation, the no data value if not available,
+     *         or negative infinity if the neighbours are not all within the tile
+     */
+    private double getBilinearElevation(final ElevationTile tile, final int tileXIndex, final int tileYIndex,
+                                        final double x, final double y) throws Exception {
+        final int i0 = (int) Math.floor(x);
+        final int j0 = (int) Math.floor(y);
+        double ki = x - (i0 + 0.5);
+        double kj = y - (j0 + 0.5);
+        final int xa, xb, ya, yb;
+        if (ki >= 0) {
+            xa = crop(i0, RASTER_WIDTH - 1);
+            xb = crop(i0 + 1, RASTER_WIDTH - 1);
+        } else {
+            xa = crop(i0 - 1, RASTER_WIDTH - 1);
+            xb = crop(i0, RASTER_WIDTH - 1);
+            ki += 1;
+        }
+        if (kj >= 0) {
+            ya = crop(j0, RASTER_HEIGHT - 1);
+            yb = crop(j0 + 1, RASTER_HEIGHT - 1);
+        } else {
+            ya = crop(j0 - 1, RASTER_HEIGHT - 1);
+            yb = crop(j0, RASTER_HEIGHT - 1);
+            kj += 1;
+        }
+
+        final int tileX0 = tileXIndex * NUM_PIXELS_PER_TILE;
+        final int tileY0 = tileYIndex * NUM_PIXELS_PER_TILE;
+        if (xa < tileX0 || xb >= tileX0 + NUM_PIXELS_PER_TILE || ya < tileY0 || yb >= tileY0 + NUM_PIXELS_PER_TILE) {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        final float s00 = tile.getSample(xa - tileX0, ya - tileY0);
+        final float s01 = tile.getSample(xb - tileX0, ya - tileY0);
+        final float s10 = tile.getSample(xa - tileX0, yb - tileY0);
+        final float s11 = tile.getSample(xb - tileX0, yb - tileY0);
+        if (s00 == NO_DATA_VALUE || s01 == NO_DATA_VALUE || s10 == NO_DATA_VALUE || s11 == NO_DATA_VALUE) {
+            // as the resampling, which gives the first sample if not all are valid
+            return Float.isNaN(s00) ? NO_DATA_VALUE : s00;
+        }
+        final double elevation = s00 * (1f - ki) * (1f - kj) +
+                                 s01 * ki * (1f - kj) +
+                                 s10 * (1f - ki) * kj +
+                                 s11 * ki * kj;
+        return Double.isNaN(elevation) ? NO_DATA_VALUE : elevation;
+    }
+
+    private static int crop(final int i, final int max) {
+        return (i < 0) ? 0 : (i > max) ? max : i;
+    }
+
     public abstract double getIndexX(final GeoPos geoPos);
 
     public abstract double getIndexY(final GeoPos geoPos);
@@ -115,11 +228,6 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
     }
 
     public void dispose() {
-        for (ElevationTile tile : elevationTileCache) {
-            if(tile != null)
-                tile.dispose();
-        }
-        elevationTileCache.clear();
         for (ElevationFile[] elevationFile : elevationFiles) {
             for (ElevationFile anElevationFile : elevationFile) {
                 if(anElevationFile != null)
@@ -149,6 +257,14 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
         return sample == NO_DATA_VALUE ? Float.NaN : sample;
     }
 
+    ElevationFile getElevationFile(final int tileXIndex, final int tileYIndex) {
+        return elevationFiles[tileXIndex][tileYIndex];
+    }
+
+    int getTileSize() {
+        return NUM_PIXELS_PER_TILE;
+    }
+
     private ElevationFile[][] createElevationFiles() {
         final ElevationFile[][] elevationFiles = new ElevationFile[NUM_X_TILES][NUM_Y_TILES];
         final File demInstallDir = descriptor.getDemInstallDir();
@@ -164,18 +280,6 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
     protected abstract void createElevationFile(final ElevationFile[][] elevationFiles,
                                                 final int x, final int y, final File demInstallDir);
 
-    public void updateCache(final ElevationTile tile) {
-        elevationTileCache.remove(tile);
-        elevationTileCache.add(0, tile);
-        while (elevationTileCache.size() > maxCacheSize) {
-            final int index = elevationTileCache.size() - 1;
-            final ElevationTile lastTile = elevationTileCache.get(index);
-            if(lastTile != null)
-                lastTile.clearCache();
-            elevationTileCache.remove(index);
-        }
-    }
-
     protected static ProductReaderPlugIn getReaderPlugIn(final String formatName) {
         final Iterator readerPlugIns = ProductIOPlugInManager.getInstance().getReaderPlugIns(formatName);
         return (ProductReaderPlugIn) readerPlugIns.next();
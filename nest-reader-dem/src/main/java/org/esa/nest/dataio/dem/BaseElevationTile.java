@@ -15,50 +15,41 @@
  */
 package org.esa.nest.dataio.dem;
 
-import com.bc.ceres.core.ProgressMonitor;
-import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.dataop.dem.ElevationModel;
 
-import java.util.Arrays;
-
 public class BaseElevationTile implements ElevationTile {
 
     protected Product product;
-    private final Band band;
-    private final int bandWidth;
     protected final float noDataValue;
-    private final float[][] objectArray;
+    private final DEMBlockRaster raster;
     private final boolean useDEMGravitationalModel;
 
     public BaseElevationTile(final ElevationModel dem, final Product product) {
         this.product = product;
-        this.band = product.getBandAt(0);
-        this.bandWidth = band.getSceneRasterWidth();
         noDataValue = dem.getDescriptor().getNoDataValue();
-        objectArray = new float[band.getSceneRasterHeight() + 1][];
         final String prop = System.getProperty("useDEMGravitationalModel");
         useDEMGravitationalModel = prop != null && prop.equalsIgnoreCase("true");
+        raster = new DEMBlockRaster(product.getBandAt(0)) {
+            @Override
+            protected void blockRead(final int x0, final int y0, final int w, final int h, final float[] block) {
+                if (useDEMGravitationalModel) {
+                    addGravitationalModel(x0, y0, w, h, block);
+                }
+            }
+        };
         //System.out.println("Dem Tile "+product.getName());
     }
 
     public final void clearCache() {
-        if (objectArray != null) {
-            Arrays.fill(objectArray, 0, objectArray.length, null);
-        }
+        raster.clear();
     }
 
     public final float getSample(final int pixelX, final int pixelY) throws Exception {
-
-        float[] line = objectArray[pixelY];
-        if (line == null) {
-            line = band.readPixels(0, pixelY, bandWidth, 1, new float[bandWidth], ProgressMonitor.NULL);
-            if(useDEMGravitationalModel) {
-                addGravitationalModel(pixelY, line);
-            }
-            objectArray[pixelY] = line;
-        }
-        return line[pixelX];
+        return raster.getSample(pixelX, pixelY);
     }
 
     public void dispose() {
@@ -69,6 +60,54 @@ public class BaseElevationTile implements ElevationTile {
         }
     }
 
-    protected void addGravitationalModel(final int index, final float[] line) {
+    /**
+     * Adds the geoid height to the samples of a block which has just been read.
+     *
+     * @param x0    the x coordinate of the block
+     * @param y0    the y coordinate of the block
+     * @param w     the width of the block
+     * @param h     the height of the block
+     * @param block the samples of the block, line by line
+     */
+    protected void addGravitationalModel(final int x0, final int y0, final int w, final int h, final float[] block) {
+    }
+
+    /**
+     * Adds the geoid height to the valid samples of a block of a DEM in geographic coordinates,
+     * where the latitude only changes from line to line and the longitude from column to column.
+     *
+     * @param product     the DEM tile product
+     * @param x0          the x coordinate of the block
+     * @param y0          the y coordinate of the block
+     * @param w           the width of the block
+     * @param h           the height of the block
+     * @param noDataValue the no data value of the DEM
+     * @param block       the samples of the block, line by line
+     */
+    protected static void addGeoidHeights(final Product product, final int x0, final int y0, final int w, final int h,
+                                          final float noDataValue, final float[] block) {
+        final GeoCoding geoCoding = product.getGeoCoding();
+        final PixelPos pixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        final double[] lats = new double[h];
+        for (int y = 0; y < h; y++) {
+            pixelPos.setLocation(x0 + 0.5f, y0 + y + 0.5f);
+            geoCoding.getGeoPos(pixelPos, geoPos);
+            lats[y] = geoPos.lat;
+        }
+        final double[] lons = new double[w];
+        for (int x = 0; x < w; x++) {
+            pixelPos.setLocation(x0 + x + 0.5f, y0 + 0.5f);
+            geoCoding.getGeoPos(pixelPos, geoPos);
+            lons[x] = geoPos.lon;
+        }
+
+        final float[] geoid = new float[w * h];
+        EarthGravitationalModel96.instance().getEGMGrid(lats, lons, geoid);
+        for (int i = 0; i < geoid.length; i++) {
+            if (block[i] != noDataValue) {
+                block[i] += geoid[i];
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.dem;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.datamodel.Band;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The samples of a DEM band, read in square blocks of {@link #BLOCK_SIZE} pixels on first access
+ * and held in a {@link DEMTileCache}. Samples of loaded blocks are read without locking,
+ * blocks of a raster are read one at a time since product readers are not thread safe.
+ */
+public class DEMBlockRaster {
+
+    public static final int BLOCK_SIZE = 256;
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final Band band;
+    private final DEMTileCache cache;
+    private final int width;
+    private final int height;
+    private final int numBlocksX;
+    private final AtomicReferenceArray<DEMTileCache.Block> blocks;
+
+    public DEMBlockRaster(final Band band) {
+        this(band, DEMTileCache.instance());
+    }
+
+    public DEMBlockRaster(final Band band, final DEMTileCache cache) {
+        this.band = band;
+        this.cache = cache;
+        this.width = band.getSceneRasterWidth();
+        this.height = band.getSceneRasterHeight();
+        this.numBlocksX = (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final int numBlocksY = (height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        this.blocks = new AtomicReferenceArray<DEMTileCache.Block>(numBlocksX * numBlocksY);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public final float getSample(final int pixelX, final int pixelY) throws IOException {
+        final int index = (pixelY >> BLOCK_SHIFT) * numBlocksX + (pixelX >> BLOCK_SHIFT);
+        DEMTileCache.Block block = blocks.get(index);
+        if (block == null) {
+            block = readBlock(index);
+        } else if (!block.referenced) {
+            block.referenced = true;
+        }
+        return block.data[(pixelY & BLOCK_MASK) * block.width + (pixelX & BLOCK_MASK)];
+    }
+
+    /**
+     * Releases all blocks of this raster.
+     */
+    public void clear() {
+        cache.removeAll(this);
+        for (int i = 0; i < blocks.length(); i++) {
+            blocks.set(i, null);
+        }
+    }
+
+    /**
+     * Called after a block has been read, e.g. to add the geoid height to the samples.
+     *
+     * @param x0    the x coordinate of the block
+     * @param y0    the y coordinate of the block
+     * @param w     the width of the block
+     * @param h     the height of the block
+     * @param block the samples of the block, line by line
+     */
+    protected void blockRead(final int x0, final int y0, final int w, final int h, final float[] block) {
+    }
+
+    private synchronized DEMTileCache.Block readBlock(final int index) throws IOException {
+        DEMTileCache.Block block = blocks.get(index);
+        if (block != null) {
+            return block;
+        }
+        final int x0 = (index % numBlocksX) * BLOCK_SIZE;
+        final int y0 = (index / numBlocksX) * BLOCK_SIZE;
+        final int w = Math.min(BLOCK_SIZE, width - x0);
+        final int h = Math.min(BLOCK_SIZE, height - y0);
+        final float[] data = band.readPixels(x0, y0, w, h, new float[w * h], ProgressMonitor.NULL);
+        blockRead(x0, y0, w, h, data);
+
+        block = new DEMTileCache.Block(this, index, w, data);
+        blocks.set(index, block);
+        cache.add(block);
+        return block;
+    }
+
+    /**
+     * Called by the cache to drop an evicted block.
+     */
+    void evict(final DEMTileCache.Block block) {
+        blocks.compareAndSet(block.index, block, null);
+    }
+}
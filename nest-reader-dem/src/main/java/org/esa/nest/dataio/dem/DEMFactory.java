@@ -88,6 +88,61 @@ public class DEMFactory {
         return dem;
     }
 
+    /**
+     * Creates an elevation model at the coarsest level of its pyramid which still resolves the given pixel spacing.
+     * @param demName the DEM name
+     * @param demResamplingMethod the resampling method
+     * @param pixelSpacing the pixel spacing of the output in meters, or 0 for the full resolution
+     * @return the elevation model
+     */
+    public static ElevationModel createElevationModel(final String demName, final String demResamplingMethod,
+                                                      final double pixelSpacing) {
+        final ElevationModel dem = createElevationModel(demName, demResamplingMethod);
+        if(demResamplingMethod.equals(DELAUNAY_INTERPOLATION))
+            return dem;
+        return getPyramidLevel(dem, pixelSpacing);
+    }
+
+    /**
+     * Gets the coarsest level of the pyramid of a tiled DEM whose pixel spacing, at the equator,
+     * does not exceed the given pixel spacing.
+     * @param dem the full resolution DEM
+     * @param pixelSpacing the pixel spacing of the output in meters, or 0 for the full resolution
+     * @return the DEM itself or a decimated level of it
+     */
+    public static ElevationModel getPyramidLevel(final ElevationModel dem, final double pixelSpacing) {
+        if(!(dem instanceof BaseElevationModel) || pixelSpacing <= 0)
+            return dem;
+        final int level = getPyramidLevel(dem.getDescriptor(), pixelSpacing);
+        return level == 0 ? dem : new DecimatedElevationModel((BaseElevationModel) dem, level);
+    }
+
+    /**
+     * Gets the pixel spacing of a product from its abstracted metadata, to select a DEM pyramid level.
+     * @param product the product
+     * @return the smaller of the ground range and azimuth spacing in meters, or 0 if not known
+     */
+    public static double getPixelSpacing(final Product product) {
+        try {
+            final double spacing = org.esa.nest.eo.SARGeocoding.getPixelSpacing(product);
+            return spacing > 0 && spacing < AbstractMetadata.NO_METADATA ? spacing : 0;
+        } catch(Exception e) {
+            return 0;
+        }
+    }
+
+    static int getPyramidLevel(final ElevationModelDescriptor descriptor, final double pixelSpacing) {
+        final int tileSize = descriptor.getPixelRes();
+        final double demSpacing = descriptor.getDegreeRes() / (double) tileSize *
+                org.esa.nest.eo.Constants.MeanEarthRadius * Math.PI / 180.0;
+        int level = 0;
+        while(level + 1 < ElevationFile.MAX_PYRAMID_LEVELS && tileSize % (2 << level) == 0 &&
+                demSpacing * (2 << level) <= pixelSpacing) {
+            level++;
+        }
+        return level;
+    }
+
     public static void checkIfDEMInstalled(final String demName) {
 
         final ElevationModelRegistry elevationModelRegistry = ElevationModelRegistry.getInstance();
@@ -164,41 +219,104 @@ public class DEMFactory {
         // Note: the localDEM covers current tile with 1 extra row above, 1 extra row below, 1 extra column to
         //       the left and 1 extra column to the right of the tile.
 
-        final int maxY = y0 + tileHeight + 1;
-        final int maxX = x0 + tileWidth + 1;
-        final GeoPos geoPos = new GeoPos();
-
-        double alt;
-        boolean valid = false;
-        for (int y = y0 - 1; y < maxY; y++) {
-            final int yy = y - y0 + 1;
+        final int w = tileWidth + 2;
+        final int h = tileHeight + 2;
+        final double[] lats = new double[w * h];
+        final double[] lons = new double[w * h];
+        getGeoPosGrid(tileGeoRef, x0 - 1, y0 - 1, w, h, lats, lons);
 
-            for (int x = x0 - 1; x < maxX; x++) {
-                tileGeoRef.getGeoPos(x, y, geoPos);
-                /*if(!geoPos.isValid()) {
-                    localDEM[yy][x - x0 + 1] = demNoDataValue;
-                    continue;
-                }
-                if (geoPos.lon > 180) {
-                    geoPos.lon -= 360;
-                } else if (geoPos.lon < -180) {
-                    geoPos.lon += 360;
-                }    */
+        final double[] elevations = new double[w * h];
+        final boolean valid = getElevations(dem, demNoDataValue, lats, lons, w * h, nodataValueAtSea, elevations);
+        for (int yy = 0; yy < h; yy++) {
+            System.arraycopy(elevations, yy * w, localDEM[yy], 0, w);
+        }
+        return valid;
+    }
 
-                alt = dem.getElevation(geoPos);
+    /**
+     * Gets the geographical positions of a grid of pixels, line by line.
+     * @param tileGeoRef the georeferencing of the target product
+     * @param x0 The x coordinate of the upper left pixel.
+     * @param y0 The y coordinate of the upper left pixel.
+     * @param width The grid width.
+     * @param height The grid height.
+     * @param lats The latitudes.
+     * @param lons The longitudes.
+     */
+    public static void getGeoPosGrid(final TileGeoreferencing tileGeoRef, final int x0, final int y0,
+                                     final int width, final int height, final double[] lats, final double[] lons) {
+        final GeoPos geoPos = new GeoPos();
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                tileGeoRef.getGeoPos(x0 + x, y0 + y, geoPos);
+                lats[i] = geoPos.lat;
+                lons[i] = geoPos.lon;
+            }
+        }
+    }
 
-                if (alt == demNoDataValue && !nodataValueAtSea) {
-                    alt = EarthGravitationalModel96.instance().getEGM(geoPos.lat, geoPos.lon);
-                }
+    /**
+     * Gets the elevations at many geographical positions in one pass, e.g. a grid given by getGeoPosGrid.
+     * @param dem the model
+     * @param demNoDataValue the no data value of the dem
+     * @param lats The latitudes.
+     * @param lons The longitudes.
+     * @param count The number of positions.
+     * @param nodataValueAtSea if false, the geoid height is given where the DEM has no data
+     * @param elevations The elevations.
+     * @return true if any elevation is valid
+     * @throws Exception from DEM
+     */
+    public static boolean getElevations(final ElevationModel dem, final float demNoDataValue,
+                                        final double[] lats, final double[] lons, final int count,
+                                        final boolean nodataValueAtSea,
+                                        final double[] elevations) throws Exception {
+        if (dem instanceof BaseElevationModel) {
+            ((BaseElevationModel) dem).getElevations(lats, lons, count, elevations);
+        } else {
+            final GeoPos geoPos = new GeoPos();
+            for (int i = 0; i < count; i++) {
+                geoPos.setLocation((float) lats[i], (float) lons[i]);
+                elevations[i] = dem.getElevation(geoPos);
+            }
+        }
 
-                if(!valid && alt != demNoDataValue) {
-                    valid = true;
-                }
+        if (!nodataValueAtSea) {
+            fillWithGeoidHeights(demNoDataValue, lats, lons, count, elevations);
+        }
+        for (int i = 0; i < count; i++) {
+            if (elevations[i] != demNoDataValue) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                localDEM[yy][x - x0 + 1] = alt;
+    private static void fillWithGeoidHeights(final float demNoDataValue, final double[] lats, final double[] lons,
+                                             final int count, final double[] elevations) {
+        int numNoData = 0;
+        final int[] noDataIndex = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (elevations[i] == demNoDataValue) {
+                noDataIndex[numNoData++] = i;
             }
         }
-        return valid;
+        if (numNoData == 0) {
+            return;
+        }
+
+        final double[] noDataLats = new double[numNoData];
+        final double[] noDataLons = new double[numNoData];
+        for (int k = 0; k < numNoData; k++) {
+            final int i = noDataIndex[k];
+            noDataLats[k] = lats[i];
+            noDataLons[k] = lons[i] > 180 ? lons[i] - 360 : lons[i];
+        }
+        final float[] geoid = new float[numNoData];
+        EarthGravitationalModel96.instance().getEGM(noDataLats, noDataLons, numNoData, geoid);
+        for (int k = 0; k < numNoData; k++) {
+            elevations[noDataIndex[k]] = geoid[k];
+        }
     }
 
     public synchronized static boolean getLocalDEMUsingDelaunayInterpolation(
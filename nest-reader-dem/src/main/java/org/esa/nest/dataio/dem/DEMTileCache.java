@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.dem;
+
+import org.esa.beam.util.logging.BeamLogManager;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Bounds the memory of the DEM sample blocks held by all elevation models of the JVM.
+ * <p/>
+ * Blocks are owned by a {@link DEMBlockRaster}, which reads them lock-free. The cache only keeps account
+ * of their size and evicts blocks in CLOCK order when the capacity is exceeded: a block which has been
+ * read since the clock hand last passed it gets a second chance. The capacity in MB is given by the
+ * system property {@link #CACHE_SIZE_PROPERTY}.
+ */
+public final class DEMTileCache {
+
+    public static final String CACHE_SIZE_PROPERTY = "nest.dem.tileCacheSize";
+    private static final int DEFAULT_CACHE_SIZE_MB = 256;
+
+    private static final DEMTileCache instance = new DEMTileCache(getDefaultCapacity());
+
+    private final long capacity;
+    private final ArrayDeque<Block> clock = new ArrayDeque<Block>();
+    private long size;
+    private long evictionCount;
+
+    /**
+     * @param capacity the capacity in bytes
+     */
+    public DEMTileCache(final long capacity) {
+        this.capacity = capacity;
+    }
+
+    public static DEMTileCache instance() {
+        return instance;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the memory held by the cached blocks in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getBlockCount() {
+        return clock.size();
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Adds a block which has just been read, evicting others if the capacity is exceeded.
+     * The most recently added block is never evicted by this call.
+     *
+     * @param block the block
+     */
+    synchronized void add(final Block block) {
+        clock.addLast(block);
+        size += block.getSize();
+        while (size > capacity && clock.size() > 1) {
+            final Block candidate = clock.pollFirst();
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                clock.addLast(candidate);
+            } else {
+                size -= candidate.getSize();
+                evictionCount++;
+                candidate.owner.evict(candidate);
+            }
+        }
+    }
+
+    /**
+     * Removes all blocks of the given raster, e.g. when it is disposed.
+     *
+     * @param owner the raster
+     */
+    synchronized void removeAll(final DEMBlockRaster owner) {
+        final Iterator<Block> iterator = clock.iterator();
+        while (iterator.hasNext()) {
+            final Block block = iterator.next();
+            if (block.owner == owner) {
+                size -= block.getSize();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long getDefaultCapacity() {
+        long sizeMB = DEFAULT_CACHE_SIZE_MB;
+        final String value = System.getProperty(CACHE_SIZE_PROPERTY);
+        if (value != null) {
+            try {
+                sizeMB = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                BeamLogManager.getSystemLogger().warning("Invalid DEM tile cache size " + value + ", using " +
+                                                         DEFAULT_CACHE_SIZE_MB + " MB");
+            }
+        }
+        return sizeMB * 1024L * 1024L;
+    }
+
+    /**
+     * A rectangular block of DEM samples, stored line by line.
+     */
+    static final class Block {
+
+        final DEMBlockRaster owner;
+        final int index;
+        final int width;
+        final float[] data;
+        volatile boolean referenced = true;
+
+        Block(final DEMBlockRaster owner, final int index, final int width, final float[] data) {
+            this.owner = owner;
+            this.index = index;
+            this.width = width;
+            this.data = data;
+        }
+
+        long getSize() {
+            return 4L * data.length;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.dem;
+
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.esa.beam.framework.dataop.dem.ElevationModel;
+import org.esa.beam.framework.dataop.dem.ElevationModelDescriptor;
+import org.esa.beam.framework.dataop.resamp.Resampling;
+
+/**
+ * A coarser level of the pyramid of a tiled DEM. Each level halves the resolution of the previous one,
+ * its tiles are decimated from the full resolution tiles on first use and saved next to them.
+ */
+public final class DecimatedElevationModel implements ElevationModel, Resampling.Raster {
+
+    private final BaseElevationModel dem;
+    private final int level;
+    private final int factor;
+    private final int tileSize;
+    private final int fullTileSize;
+    private final int width;
+    private final int height;
+    private final float noDataValue;
+    private final Resampling resampling;
+
+    /**
+     * @param dem   the full resolution DEM
+     * @param level the pyramid level, at least 1
+     */
+    public DecimatedElevationModel(final BaseElevationModel dem, final int level) {
+        if (level < 1 || dem.getTileSize() % (1 << level) != 0) {
+            throw new IllegalArgumentException("Invalid DEM pyramid level " + level);
+        }
+        this.dem = dem;
+        this.level = level;
+        this.factor = 1 << level;
+        this.fullTileSize = dem.getTileSize();
+        this.tileSize = fullTileSize / factor;
+        this.width = dem.getWidth() / factor;
+        this.height = dem.getHeight() / factor;
+        this.noDataValue = dem.getDescriptor().getNoDataValue();
+        this.resampling = dem.getResampling();
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public ElevationModelDescriptor getDescriptor() {
+        return dem.getDescriptor();
+    }
+
+    public Resampling getResampling() {
+        return resampling;
+    }
+
+    public double getElevation(final GeoPos geoPos) throws Exception {
+        if (geoPos.lon > 180) {
+            geoPos.lon -= 360;
+        }
+        final double pixelY = dem.getIndexY(geoPos) / factor;
+        if (pixelY < 0) {
+            return noDataValue;
+        }
+
+        final Resampling.Index index = resampling.createIndex();
+        resampling.computeIndex(dem.getIndexX(geoPos) / factor, pixelY, width, height, index);
+        final double elevation = resampling.resample(this, index);
+        return Double.isNaN(elevation) ? noDataValue : elevation;
+    }
+
+    public PixelPos getIndex(final GeoPos geoPos) {
+        return new PixelPos((float) (dem.getIndexX(geoPos) / factor), (float) (dem.getIndexY(geoPos) / factor));
+    }
+
+    public GeoPos getGeoPos(final PixelPos pixelPos) {
+        return dem.getGeoPos(new PixelPos(pixelPos.x * factor, pixelPos.y * factor));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public float getSample(final double pixelX, final double pixelY) throws Exception {
+        final int tileXIndex = (int) pixelX / tileSize;
+        final int tileYIndex = (int) pixelY / tileSize;
+        final ElevationTile tile = getTile(tileXIndex, tileYIndex);
+        if (tile == null) {
+            return Float.NaN;
+        }
+        final float sample = tile.getSample((int) pixelX - tileXIndex * tileSize,
+                                            (int) pixelY - tileYIndex * tileSize);
+        return sample == noDataValue ? Float.NaN : sample;
+    }
+
+    public boolean getSamples(final int[] x, final int[] y, final double[][] samples) throws Exception {
+        boolean allValid = true;
+        for (int i = 0; i < y.length; i++) {
+            final int tileYIndex = y[i] / tileSize;
+            final int pixelY = y[i] - tileYIndex * tileSize;
+
+            for (int j = 0; j < x.length; j++) {
+                final int tileXIndex = x[j] / tileSize;
+                final ElevationTile tile = getTile(tileXIndex, tileYIndex);
+                if (tile == null) {
+                    samples[i][j] = Double.NaN;
+                    allValid = false;
+                    continue;
+                }
+
+                samples[i][j] = tile.getSample(x[j] - tileXIndex * tileSize, pixelY);
+                if (samples[i][j] == noDataValue) {
+                    samples[i][j] = Double.NaN;
+                    allValid = false;
+                }
+            }
+        }
+        return allValid;
+    }
+
+    private ElevationTile getTile(final int tileXIndex, final int tileYIndex) throws Exception {
+        final ElevationFile file = dem.getElevationFile(tileXIndex, tileYIndex);
+        return file == null ? null : file.getDecimatedTile(level, fullTileSize, noDataValue);
+    }
+
+    public void dispose() {
+        dem.dispose();
+    }
+}
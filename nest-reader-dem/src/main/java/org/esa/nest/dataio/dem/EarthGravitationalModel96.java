@@ -63,7 +63,7 @@ public final class EarthGravitationalModel96 {
     private static final int MAX_LATS = NUM_LATS - 1;
     private static final int MAX_LONS = NUM_LONS - 1;
 
-    private final float[][] egm = new float[NUM_LATS][NUM_LONS];
+    private final float[][] egm;
     private static EarthGravitationalModel96 theInstance = null;
 
     public static EarthGravitationalModel96 instance() {
@@ -74,6 +74,7 @@ public final class EarthGravitationalModel96 {
     }
 
     private EarthGravitationalModel96() {
+        egm = new float[NUM_LATS][NUM_LONS];
 
         // get absolute file path
         final String filePath = Settings.instance().get("AuxData/egm96AuxDataPath");
@@ -136,35 +137,124 @@ public final class EarthGravitationalModel96 {
         }
     }
 
+    /**
+     * Creates a model of the given geoid heights instead of reading them, e.g. for tests.
+     * @param egm the geoid heights of the 15' grid, from north to south and from 0 to 360 degree east
+     */
+    EarthGravitationalModel96(final float[][] egm) {
+        if (egm.length != NUM_LATS || egm[0].length != NUM_LONS) {
+            throw new IllegalArgumentException("EGM96 grid of " + NUM_LATS + " x " + NUM_LONS + " expected");
+        }
+        this.egm = egm;
+    }
+
     public float getEGM(final double lat, final double lon) {
 
         final double r = (90 - lat) / 0.25;
         final double c = (lon < 0? lon + 360 : lon)/ 0.25;
 
-        final double[][] v = new double[4][4];
-        final int r0 = FastMath.max(((int)r-1), 0);
-        int c0 = FastMath.max(((int)c-1), 0);
-
-        int ci1 = c0 + 1;
-        int ci2 = c0 + 2;
-        int ci3 = c0 + 3;
-        if(ci3 > MAX_LONS) {
-            c0  = FastMath.min(c0  , MAX_LONS);
-            ci1 = FastMath.min(ci1, MAX_LONS);
-            ci2 = FastMath.min(ci2, MAX_LONS);
-            ci3 = FastMath.min(ci3, MAX_LONS);
+        final int r0 = getRowIndex(r);
+        final int c0 = getColumnIndex(c);
+        final int ci1 = FastMath.min(c0 + 1, MAX_LONS);
+        final int ci2 = FastMath.min(c0 + 2, MAX_LONS);
+        final int ci3 = FastMath.min(c0 + 3, MAX_LONS);
+
+        final float[] v0 = egm[r0];
+        final float[] v1 = egm[FastMath.min(r0 + 1, MAX_LATS)];
+        final float[] v2 = egm[FastMath.min(r0 + 2, MAX_LATS)];
+        final float[] v3 = egm[FastMath.min(r0 + 3, MAX_LATS)];
+
+        final double muX = c - (c0+1);
+        return (float)MathUtils.interpolationCubic(
+                MathUtils.interpolationCubic(v0[c0], v0[ci1], v0[ci2], v0[ci3], muX),
+                MathUtils.interpolationCubic(v1[c0], v1[ci1], v1[ci2], v1[ci3], muX),
+                MathUtils.interpolationCubic(v2[c0], v2[ci1], v2[ci2], v2[ci3], muX),
+                MathUtils.interpolationCubic(v3[c0], v3[ci1], v3[ci2], v3[ci3], muX),
+                r - (r0+1));
+    }
+
+    /**
+     * Gets the geoid heights of many positions at once.
+     * @param lats the latitudes
+     * @param lons the longitudes
+     * @param count the number of positions
+     * @param geoid the geoid heights
+     */
+    public void getEGM(final double[] lats, final double[] lons, final int count, final float[] geoid) {
+        for (int i = 0; i < count; i++) {
+            geoid[i] = getEGM(lats[i], lons[i]);
         }
+    }
 
-        for (int i = 0; i < 4; i++) {
-            final int ri = r0+i > MAX_LATS ? FastMath.min(r0 + i, MAX_LATS) : r0+i;
+    /**
+     * Gets the geoid heights of a grid whose latitude only changes from line to line and longitude only from
+     * column to column, such as a DEM tile. Lines falling between the same rows of the geoid model share the
+     * interpolation along the longitude, which makes this much cheaper than interpolating each position.
+     * @param lats the latitude of each line
+     * @param lons the longitude of each column
+     * @param geoid the geoid heights, line by line
+     */
+    public void getEGMGrid(final double[] lats, final double[] lons, final float[] geoid) {
+        final int width = lons.length;
+        final int[] columns = new int[width];
+        final double[] columnWeights = new double[4 * width];
+        final double[] weights = new double[4];
+        for (int x = 0; x < width; x++) {
+            final double c = (lons[x] < 0 ? lons[x] + 360 : lons[x]) / 0.25;
+            columns[x] = getColumnIndex(c);
+            getCubicWeights(c - (columns[x] + 1), weights);
+            System.arraycopy(weights, 0, columnWeights, 4 * x, 4);
+        }
 
-            //unrolled loop
-            v[i][0] = egm[ri][c0];
-            v[i][1] = egm[ri][ci1];
-            v[i][2] = egm[ri][ci2];
-            v[i][3] = egm[ri][ci3];
+        // the geoid model rows r0..r0+3 interpolated at each column
+        final double[][] rows = new double[4][width];
+        int cachedRow = -1;
+        for (int y = 0; y < lats.length; y++) {
+            final double r = (90 - lats[y]) / 0.25;
+            final int r0 = getRowIndex(r);
+            if (r0 != cachedRow) {
+                for (int i = 0; i < 4; i++) {
+                    final float[] row = egm[FastMath.min(r0 + i, MAX_LATS)];
+                    final double[] interpolated = rows[i];
+                    for (int x = 0; x < width; x++) {
+                        final int c0 = columns[x];
+                        final int k = 4 * x;
+                        interpolated[x] = columnWeights[k] * row[c0] +
+                                          columnWeights[k + 1] * row[FastMath.min(c0 + 1, MAX_LONS)] +
+                                          columnWeights[k + 2] * row[FastMath.min(c0 + 2, MAX_LONS)] +
+                                          columnWeights[k + 3] * row[FastMath.min(c0 + 3, MAX_LONS)];
+                    }
+                }
+                cachedRow = r0;
+            }
+            getCubicWeights(r - (r0 + 1), weights);
+            final double[] v0 = rows[0], v1 = rows[1], v2 = rows[2], v3 = rows[3];
+            for (int x = 0, i = y * width; x < width; x++, i++) {
+                geoid[i] = (float)(weights[0] * v0[x] + weights[1] * v1[x] + weights[2] * v2[x] + weights[3] * v3[x]);
+            }
         }
+    }
+
+    private static int getRowIndex(final double r) {
+        return FastMath.max(((int)r-1), 0);
+    }
+
+    private static int getColumnIndex(final double c) {
+        final int c0 = FastMath.max(((int)c-1), 0);
+        return FastMath.min(c0, MAX_LONS);
+    }
 
-        return (float)MathUtils.interpolationBiCubic(v, c - (c0+1), r - (r0+1));
+    /**
+     * The weights of the cubic interpolation done by MathUtils.interpolationCubic.
+     * @param mu the position between the second and third sample
+     * @param weights the weights of the four samples
+     */
+    private static void getCubicWeights(final double mu, final double[] weights) {
+        final double mu2 = mu*mu;
+        final double mu3 = mu2*mu;
+        weights[0] = -0.5*mu3 + mu2 - 0.5*mu;
+        weights[1] = 1.5*mu3 - 2.5*mu2 + 1;
+        weights[2] = -1.5*mu3 + 2*mu2 + 0.5*mu;
+        weights[3] = 0.5*mu3 - 0.5*mu2;
     }
 }
\ No newline at end of file
@@ -28,6 +28,7 @@ import java.net.SocketException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -36,13 +37,19 @@ import java.util.zip.ZipFile;
  */
 public abstract class ElevationFile {
 
+    public static final int MAX_PYRAMID_LEVELS = 8;
+
     protected File localFile;
     private final File localZipFile;
+    private final String baseName;
     private final ProductReader productReader;
     protected boolean localFileExists = false;
     protected boolean remoteFileExists = true;
     private boolean errorInLocalFile = false;
     private ElevationTile tile = null;
+    private final AtomicReferenceArray<ElevationTile> decimatedTiles =
+            new AtomicReferenceArray<ElevationTile>(MAX_PYRAMID_LEVELS);
+    private volatile boolean tileUnavailable = false;
     private ftpUtils ftp = null;
     private Map<String, Long> fileSizeMap = null;
     private boolean unrecoverableError = false;
@@ -51,6 +58,7 @@ public abstract class ElevationFile {
         this.localFile = localFile;
         this.localZipFile = new File(localFile.getParentFile(),
                     FileUtils.getFilenameWithoutExtension(localFile)+".zip");
+        this.baseName = FileUtils.getFilenameWithoutExtension(localFile);
         this.productReader = reader;
     }
 
@@ -59,6 +67,11 @@ public abstract class ElevationFile {
             if(ftp != null)
                 ftp.disconnect();
             ftp = null;
+            for(int level = 0; level < MAX_PYRAMID_LEVELS; level++) {
+                final ElevationTile decimatedTile = decimatedTiles.getAndSet(level, null);
+                if(decimatedTile != null)
+                    decimatedTile.dispose();
+            }
             tile.dispose();
             tile = null;
         } catch(Exception e) {
@@ -79,10 +92,77 @@ public abstract class ElevationFile {
         return tile;
     }
 
+    /**
+     * Gets the tile at a coarser level of the DEM pyramid, decimating the tile and saving the result
+     * next to it on first use.
+     * @param level the pyramid level, 1 for half the resolution, 2 for a quarter and so on
+     * @param tileSize the width and height of the full resolution tile
+     * @param noDataValue the no data value of the DEM
+     * @return the decimated tile or null if the tile is not available
+     * @throws IOException if the tile cannot be read or decimated
+     */
+    public final ElevationTile getDecimatedTile(final int level, final int tileSize,
+                                                final float noDataValue) throws IOException {
+        final ElevationTile decimatedTile = decimatedTiles.get(level);
+        if(decimatedTile != null)
+            return decimatedTile;
+        if(tileUnavailable)
+            return null;
+        return createDecimatedTile(level, tileSize, noDataValue);
+    }
+
+    private synchronized ElevationTile createDecimatedTile(final int level, final int tileSize,
+                                                           final float noDataValue) throws IOException {
+        if(decimatedTiles.get(level) != null)
+            return decimatedTiles.get(level);
+
+        final File levelFile = MappedElevationTile.isEnabled() ?
+                MappedElevationTile.getMappedFile(localZipFile.getParentFile(), baseName + ".L" + level) : null;
+        if(levelFile != null && levelFile.exists()) {
+            try {
+                final ElevationTile decimatedTile = MappedElevationTile.open(levelFile);
+                decimatedTiles.set(level, decimatedTile);
+                return decimatedTile;
+            } catch(IOException e) {
+                System.out.println(e.getMessage());
+                levelFile.delete();
+            }
+        }
+
+        final ElevationTile fullTile = getTile();
+        if(fullTile == null) {
+            tileUnavailable = !remoteFileExists && !localFileExists;
+            return null;
+        }
+        final ElevationTile decimatedTile = MappedElevationTile.createDecimated(fullTile, tileSize, 1 << level,
+                                                                                noDataValue, levelFile);
+        decimatedTiles.set(level, decimatedTile);
+        // the full resolution samples are not needed again at this level
+        fullTile.clearCache();
+        return decimatedTile;
+    }
+
     protected ElevationTile createTile(final Product product) {
         return null;
     }
 
+    /**
+     * Decodes a DEM tile product into a memory mapped tile, see {@link MappedElevationTile#create}.
+     * @param product the DEM tile product
+     * @param mappedFile the file to decode into
+     * @return the mapped tile or null if the DEM is not converted to mapped tiles
+     * @throws IOException if the tile cannot be decoded
+     */
+    protected MappedElevationTile createMappedTile(final Product product, final File mappedFile) throws IOException {
+        return null;
+    }
+
+    private File getMappedFile() {
+        if(!MappedElevationTile.isEnabled())
+            return null;
+        return MappedElevationTile.getMappedFile(localZipFile.getParentFile(), baseName);
+    }
+
     protected boolean findLocalFile() {
         return (localFile.exists() && localFile.isFile()) || (localZipFile.exists() && localZipFile.isFile());
     }
@@ -91,7 +171,8 @@ public abstract class ElevationFile {
         try {
             if(tile != null) return;
             if(!localFileExists && !errorInLocalFile) {
-                localFileExists = findLocalFile();
+                final File mappedFile = getMappedFile();
+                localFileExists = findLocalFile() || (mappedFile != null && mappedFile.exists());
             }
             if(localFileExists) {
                 getLocalFile();
@@ -121,12 +202,34 @@ public abstract class ElevationFile {
     }
 
     private void getLocalFile() throws IOException {
+        final File mappedFile = getMappedFile();
+        if(mappedFile != null && mappedFile.exists()) {
+            try {
+                tile = MappedElevationTile.open(mappedFile);
+                return;
+            } catch(IOException e) {
+                System.out.println(e.getMessage());
+                mappedFile.delete();
+            }
+        }
+
         File dataFile = localFile;
         if(!dataFile.exists())
             dataFile = getFileFromZip(localZipFile);
         if(dataFile != null) {
             final Product product = productReader.readProductNodes(dataFile, null);
             if(product != null) {
+                if(mappedFile != null) {
+                    try {
+                        tile = createMappedTile(product, mappedFile);
+                    } catch(IOException e) {
+                        System.out.println("Unable to decode DEM tile "+dataFile.getName()+": "+e.getMessage());
+                    }
+                    if(tile != null) {
+                        product.dispose();
+                        return;
+                    }
+                }
                 tile = createTile(product);
             }
         }
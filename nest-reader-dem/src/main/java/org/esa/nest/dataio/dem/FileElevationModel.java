@@ -33,7 +33,6 @@ import java.io.IOException;
 public class FileElevationModel implements ElevationModel, Resampling.Raster {
 
     private Resampling resampling;
-    private Resampling.Index resamplingIndex;
     private Resampling.Raster resamplingRaster;
     private GeoCoding tileGeocoding;
 
@@ -74,7 +73,6 @@ public class FileElevationModel implements ElevationModel, Resampling.Raster {
             noDataValue = demNoDataValue;
 
         resampling = resamplingMethod;
-        resamplingIndex = resampling.createIndex();
         resamplingRaster = this;
     }
 
@@ -94,12 +92,13 @@ public class FileElevationModel implements ElevationModel, Resampling.Raster {
         return resampling;
     }
 
-    public synchronized double getElevation(final GeoPos geoPos) throws Exception {
+    public double getElevation(final GeoPos geoPos) throws Exception {
         try {
             final PixelPos pix = tileGeocoding.getPixelPos(geoPos, null);
             if(!pix.isValid() || pix.x < 0 || pix.y < 0 || pix.x >= RASTER_WIDTH || pix.y >= RASTER_HEIGHT)
                return noDataValue;
 
+            final Resampling.Index resamplingIndex = resampling.createIndex();
             resampling.computeIndex(pix.x, pix.y, RASTER_WIDTH, RASTER_HEIGHT, resamplingIndex);
 
             final double elevation = resampling.resample(resamplingRaster, resamplingIndex);
@@ -15,42 +15,26 @@
  */
 package org.esa.nest.dataio.dem;
 
-import com.bc.ceres.core.ProgressMonitor;
-import com.bc.util.CachingObjectArray;
-import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 class FileElevationTile {
 
-    private CachingObjectArray linesCache;
+    private DEMBlockRaster raster;
     private Product product;
-    private static final int maxLines = 500;
-    private final List<Integer> indexList = new ArrayList<Integer>(maxLines);
 
     public FileElevationTile(final Product product) {
         this.product = product;
-
-        linesCache = new CachingObjectArray(getLineFactory());
-        linesCache.setCachedRange(0, product.getBandAt(0).getSceneRasterHeight());
+        raster = new DEMBlockRaster(product.getBandAt(0));
     }
 
     public float getSample(int pixelX, int pixelY) throws IOException {
-        final float[] line;
-        try {
-            line = (float[]) linesCache.getObject(pixelY);
-        } catch (Exception e) {
-            throw convertLineCacheException(e);
-        }
-        return line[pixelX];
+        return raster.getSample(pixelX, pixelY);
     }
 
     public void dispose() {
         clearCache();
-        linesCache = null;
         if (product != null) {
             product.dispose();
             product = null;
@@ -58,38 +42,6 @@ class FileElevationTile {
     }
 
     public void clearCache() {
-        linesCache.clear();
-    }
-
-    private CachingObjectArray.ObjectFactory getLineFactory() {
-        final Band band = product.getBandAt(0);
-        final int width = product.getSceneRasterWidth();
-        return new CachingObjectArray.ObjectFactory() {
-            public Object createObject(final int index) throws Exception {
-                updateCache(index);
-                return band.readPixels(0, index, width, 1, new float[width], ProgressMonitor.NULL);
-            }
-        };
-    }
-
-     private void updateCache(int index) {
-        indexList.remove((Object)index);
-        indexList.add(0, index);
-        if (indexList.size() > maxLines) {
-            final int i = indexList.size() - 1;
-            linesCache.setObject(i, null);
-            indexList.remove(i);
-        }
-    }
-
-    private static IOException convertLineCacheException(Exception e) {
-        IOException ioe;
-        if (e instanceof IOException) {
-            ioe = (IOException) e;
-        } else {
-            ioe = new IOException();
-            ioe.setStackTrace(e.getStackTrace());
-        }
-        return ioe;
+        raster.clear();
     }
-}
\ No newline at end of file
+}
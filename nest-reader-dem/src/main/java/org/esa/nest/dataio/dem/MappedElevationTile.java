@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.dem;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A DEM tile which has been decoded once into a raw float file and is sampled from a memory mapping of it,
+ * without a product reader, zip archive or heap cache.
+ * <p/>
+ * The file starts with a small header holding a magic number, a version, the raster size and whether the
+ * geoid height has been added, followed by the samples line by line in little endian order.
+ * Files are converted when a tile is first used and written under a temporary name before being renamed,
+ * so that processes sharing a DEM installation never see a partial file.
+ * The conversion can be switched off with the system property {@link #ENABLED_PROPERTY}.
+ * The coarser levels of a DEM pyramid are stored the same way.
+ */
+public final class MappedElevationTile implements ElevationTile {
+
+    public static final String ENABLED_PROPERTY = "nest.dem.mappedTiles";
+
+    private static final int MAGIC = 0x4E444D54;  // NDMT
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int LINES_PER_STRIP = 256;
+
+    private final int width;
+    private final int height;
+    private FloatBuffer samples;
+
+    private MappedElevationTile(final int width, final int height, final FloatBuffer samples) {
+        this.width = width;
+        this.height = height;
+        this.samples = samples;
+    }
+
+    public static boolean isEnabled() {
+        final String prop = System.getProperty(ENABLED_PROPERTY);
+        return prop == null || prop.equalsIgnoreCase("true");
+    }
+
+    /**
+     * Gives the decoded file of a DEM tile. Tiles with and without the geoid height added are kept apart.
+     *
+     * @param folder   the folder of the DEM tile
+     * @param baseName the name of the DEM tile without extension
+     * @return the decoded file, which may not exist yet
+     */
+    public static File getMappedFile(final File folder, final String baseName) {
+        return new File(folder, baseName + (isGeoidAdded() ? ".egm.raw" : ".raw"));
+    }
+
+    private static boolean isGeoidAdded() {
+        final String prop = System.getProperty("useDEMGravitationalModel");
+        return prop != null && prop.equalsIgnoreCase("true");
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public float getSample(final int pixelX, final int pixelY) throws IOException {
+        return samples.get(pixelY * width + pixelX);
+    }
+
+    public void clearCache() {
+    }
+
+    public void dispose() {
+        samples = null;
+    }
+
+    /**
+     * Maps a decoded DEM tile.
+     *
+     * @param file the decoded file
+     * @return the tile
+     * @throws IOException if the file cannot be mapped or is not a complete decoded tile
+     */
+    public static MappedElevationTile open(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("Incomplete DEM tile " + file.getPath());
+                }
+            }
+            header.flip();
+            final int magic = header.getInt();
+            final int version = header.getInt();
+            final int width = header.getInt();
+            final int height = header.getInt();
+            final long dataSize = 4L * width * height;
+            if (magic != MAGIC || version != VERSION || width <= 0 || height <= 0 ||
+                    channel.size() != HEADER_SIZE + dataSize) {
+                throw new IOException("Invalid DEM tile " + file.getPath());
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, dataSize);
+            return new MappedElevationTile(width, height, buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Decodes the first band of a DEM tile product into a file and maps it.
+     *
+     * @param product     the DEM tile product
+     * @param noDataValue the no data value of the DEM
+     * @param file        the decoded file, as given by {@link #getMappedFile}
+     * @return the tile
+     * @throws IOException if the product cannot be read or the file cannot be written
+     */
+    public static MappedElevationTile create(final Product product, final float noDataValue, final File file)
+            throws IOException {
+        final boolean addGeoid = isGeoidAdded();
+        final Band band = product.getBandAt(0);
+        final LineSource source = new LineSource() {
+            public void readLines(final int y0, final int h, final float[] samples) throws IOException {
+                band.readPixels(0, y0, band.getSceneRasterWidth(), h, samples, ProgressMonitor.NULL);
+                if (addGeoid) {
+                    BaseElevationTile.addGeoidHeights(product, 0, y0, band.getSceneRasterWidth(), h,
+                                                      noDataValue, samples);
+                }
+            }
+        };
+        return create(source, band.getSceneRasterWidth(), band.getSceneRasterHeight(), addGeoid, file);
+    }
+
+    /**
+     * Decimates a DEM tile by averaging blocks of factor x factor samples, for a coarser level of a DEM pyramid.
+     * A block with no data in half or more of its samples has no data, so that coast lines are kept in place.
+     *
+     * @param source      the full resolution tile
+     * @param sourceSize  the width and height of the full resolution tile
+     * @param factor      the decimation factor
+     * @param noDataValue the no data value of the DEM
+     * @param file        the decoded file, as given by {@link #getMappedFile}, or null to keep the tile in memory
+     * @return the decimated tile
+     * @throws IOException if the source cannot be read or the file cannot be written
+     */
+    public static MappedElevationTile createDecimated(final ElevationTile source, final int sourceSize,
+                                                      final int factor, final float noDataValue, final File file)
+            throws IOException {
+        final int size = sourceSize / factor;
+        final LineSource decimated = new LineSource() {
+            public void readLines(final int y0, final int h, final float[] samples) throws IOException {
+                try {
+                    for (int y = 0, i = 0; y < h; y++) {
+                        final int sy0 = (y0 + y) * factor;
+                        for (int x = 0; x < size; x++, i++) {
+                            final int sx0 = x * factor;
+                            double sum = 0;
+                            int count = 0;
+                            for (int sy = sy0; sy < sy0 + factor; sy++) {
+                                for (int sx = sx0; sx < sx0 + factor; sx++) {
+                                    final float sample = source.getSample(sx, sy);
+                                    if (sample != noDataValue && !Float.isNaN(sample)) {
+                                        sum += sample;
+                                        count++;
+                                    }
+                                }
+                            }
+                            samples[i] = 2 * count > factor * factor ? (float) (sum / count) : noDataValue;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+
+        if (file == null) {
+            final float[] samples = new float[size * size];
+            decimated.readLines(0, size, samples);
+            return new MappedElevationTile(size, size, FloatBuffer.wrap(samples));
+        }
+        return create(decimated, size, size, isGeoidAdded(), file);
+    }
+
+    private static MappedElevationTile create(final LineSource source, final int width, final int height,
+                                              final boolean addGeoid, final File file) throws IOException {
+        final File tmpFile = new File(file.getParentFile(), file.getName() + '.' + System.nanoTime() + ".tmp");
+        try {
+            write(source, width, height, addGeoid, tmpFile);
+        } catch (IOException e) {
+            tmpFile.delete();
+            throw e;
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            if (!file.exists()) {
+                throw new IOException("Unable to write DEM tile " + file.getPath());
+            }
+            // converted by another process in the meantime
+        }
+        return open(file);
+    }
+
+    private static void write(final LineSource source, final int width, final int height,
+                              final boolean addGeoid, final File tmpFile) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(addGeoid ? 1 : 0);
+            header.position(HEADER_SIZE);
+            header.flip();
+            writeFully(channel, header);
+
+            final ByteBuffer strip = ByteBuffer.allocate(4 * width * LINES_PER_STRIP).order(ByteOrder.LITTLE_ENDIAN);
+            final float[] line = new float[width * LINES_PER_STRIP];
+            for (int y0 = 0; y0 < height; y0 += LINES_PER_STRIP) {
+                final int h = Math.min(LINES_PER_STRIP, height - y0);
+                final int n = width * h;
+                source.readLines(y0, h, line);
+                strip.clear();
+                strip.asFloatBuffer().put(line, 0, n);
+                strip.limit(4 * n);
+                writeFully(channel, strip);
+            }
+            channel.force(false);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Gives the samples of a tile to be written, a strip of lines at a time.
+     */
+    private interface LineSource {
+
+        void readLines(int y0, int h, float[] samples) throws IOException;
+    }
+}
@@ -47,7 +47,6 @@ public final class ACEFile extends ElevationFile {
 
     protected ElevationTile createTile(final Product product) {
         final ACEElevationTile tile = new ACEElevationTile(demModel, product);
-        demModel.updateCache(tile);
         return tile;
     }
 
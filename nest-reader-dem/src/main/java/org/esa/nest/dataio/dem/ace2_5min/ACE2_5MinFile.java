@@ -48,7 +48,6 @@ public final class ACE2_5MinFile extends ElevationFile {
 
     protected ElevationTile createTile(final Product product) {
         final ElevationTile tile = new BaseElevationTile(demModel, product);
-        demModel.updateCache(tile);
         return tile;
     }
 
@@ -15,11 +15,8 @@
  */
 package org.esa.nest.dataio.dem.aster;
 
-import org.esa.beam.framework.datamodel.GeoPos;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.nest.dataio.dem.BaseElevationTile;
-import org.esa.nest.dataio.dem.EarthGravitationalModel96;
-import org.esa.nest.gpf.TileGeoreferencing;
 
 public final class AsterElevationTile extends BaseElevationTile {
 
@@ -27,14 +24,7 @@ public final class AsterElevationTile extends BaseElevationTile {
         super(dem, product);
     }
 
-    protected void addGravitationalModel(final int index, final float[] line) {
-        final GeoPos geoPos = new GeoPos();
-        final TileGeoreferencing tileGeoRef = new TileGeoreferencing(product, 0, index, line.length, 1);
-        for (int i = 0; i < line.length; i++) {
-            if (line[i] != noDataValue) {
-                tileGeoRef.getGeoPos(i,index, geoPos);
-                line[i] += EarthGravitationalModel96.instance().getEGM(geoPos.lat, geoPos.lon);
-            }
-        }
+    protected void addGravitationalModel(final int x0, final int y0, final int w, final int h, final float[] block) {
+        addGeoidHeights(product, x0, y0, w, h, noDataValue, block);
     }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.util.io.FileUtils;
 import org.esa.nest.dataio.dem.ElevationFile;
 import org.esa.nest.dataio.dem.ElevationTile;
+import org.esa.nest.dataio.dem.MappedElevationTile;
 
 import java.io.File;
 import java.io.IOException;
@@ -51,10 +52,13 @@ public final class AsterFile extends ElevationFile {
 
     protected ElevationTile createTile(final Product product) {
         final AsterElevationTile tile = new AsterElevationTile(demModel, product);
-        demModel.updateCache(tile);
         return tile;
     }
 
+    protected MappedElevationTile createMappedTile(final Product product, final File mappedFile) throws IOException {
+        return MappedElevationTile.create(product, demModel.getDescriptor().getNoDataValue(), mappedFile);
+    }
+
     protected boolean findLocalFile() {
         if (localFile.exists() && localFile.isFile() && localFile.length() > 0) {
             return true;
@@ -19,6 +19,7 @@ import org.esa.beam.framework.dataio.ProductReader;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.nest.dataio.dem.ElevationFile;
 import org.esa.nest.dataio.dem.ElevationTile;
+import org.esa.nest.dataio.dem.MappedElevationTile;
 
 import java.io.File;
 import java.io.IOException;
@@ -48,10 +49,13 @@ public final class SRTM1GridFile extends ElevationFile {
 
     protected ElevationTile createTile(final Product product) {
         final SRTM1GridElevationTile tile = new SRTM1GridElevationTile(demModel, product);
-        demModel.updateCache(tile);
         return tile;
     }
 
+    protected MappedElevationTile createMappedTile(final Product product, final File mappedFile) throws IOException {
+        return MappedElevationTile.create(product, demModel.getDescriptor().getNoDataValue(), mappedFile);
+    }
+
     protected boolean getRemoteFile() throws IOException {
         return false;
     }
@@ -19,6 +19,7 @@ import org.esa.beam.framework.dataio.ProductReader;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.nest.dataio.dem.ElevationFile;
 import org.esa.nest.dataio.dem.ElevationTile;
+import org.esa.nest.dataio.dem.MappedElevationTile;
 import org.esa.nest.util.Settings;
 import org.esa.nest.util.ftpUtils;
 
@@ -51,10 +52,13 @@ public final class SRTM3GeoTiffFile extends ElevationFile {
 
     protected ElevationTile createTile(final Product product) {
         final SRTM3GeoTiffElevationTile tile = new SRTM3GeoTiffElevationTile(demModel, product);
-        demModel.updateCache(tile);
         return tile;
     }
 
+    protected MappedElevationTile createMappedTile(final Product product, final File mappedFile) throws IOException {
+        return MappedElevationTile.create(product, demModel.getDescriptor().getNoDataValue(), mappedFile);
+    }
+
     protected boolean getRemoteFile() throws IOException {
         try {
             if(remoteFTP.isEmpty() || remoteFTP.startsWith("http")) {
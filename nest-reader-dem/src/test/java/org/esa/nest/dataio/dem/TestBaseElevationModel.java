@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.dem;
+
+import com.bc.ceres.core.ProgressMonitor;
+import junit.framework.TestCase;
+import org.esa.beam.framework.dataio.AbstractProductReader;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.dataop.dem.ElevationModel;
+import org.esa.beam.framework.dataop.dem.ElevationModelDescriptor;
+import org.esa.beam.framework.dataop.maptransf.Datum;
+import org.esa.beam.framework.dataop.resamp.Resampling;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Tests that the batched elevations of the BaseElevationModel equal the elevations of single positions.
+ */
+public class TestBaseElevationModel extends TestCase {
+
+    private static final int NUM_X_TILES = 3;
+    private static final int NUM_Y_TILES = 2;
+    private static final int PIXEL_RES = 8;
+    private static final float NO_DATA_VALUE = -32768f;
+
+    private File localFile;
+    private String mappedTilesProperty;
+
+    @Override
+    public void setUp() throws Exception {
+        localFile = File.createTempFile("TestBaseElevationModel", ".tile");
+        mappedTilesProperty = System.getProperty(MappedElevationTile.ENABLED_PROPERTY);
+        System.setProperty(MappedElevationTile.ENABLED_PROPERTY, "false");
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (mappedTilesProperty != null) {
+            System.setProperty(MappedElevationTile.ENABLED_PROPERTY, mappedTilesProperty);
+        } else {
+            System.clearProperty(MappedElevationTile.ENABLED_PROPERTY);
+        }
+        localFile.delete();
+    }
+
+    public void testBilinearElevationsEqualSingleElevations() throws Exception {
+        assertElevationsEqualSingleElevations(Resampling.BILINEAR_INTERPOLATION);
+    }
+
+    public void testNearestNeighbourElevationsEqualSingleElevations() throws Exception {
+        assertElevationsEqualSingleElevations(Resampling.NEAREST_NEIGHBOUR);
+    }
+
+    private void assertElevationsEqualSingleElevations(final Resampling resampling) throws Exception {
+        final SyntheticElevationModel dem = new SyntheticElevationModel(new SyntheticDescriptor(localFile), resampling);
+        try {
+            // positions across all tiles, the tile boundaries, the unavailable tile and outside of the DEM
+            final int numLats = 61;
+            final int numLons = 83;
+            final double[] lats = new double[numLats * numLons];
+            final double[] lons = new double[numLats * numLons];
+            int count = 0;
+            for (int i = 0; i < numLats; i++) {
+                for (int j = 0; j < numLons; j++) {
+                    lats[count] = (float) (-0.1 + i * (NUM_Y_TILES + 0.2) / (numLats - 1));
+                    lons[count] = (float) (-0.1 + j * (NUM_X_TILES + 0.2) / (numLons - 1));
+                    count++;
+                }
+            }
+
+            final double[] elevations = new double[count];
+            dem.getElevations(lats, lons, count, elevations);
+
+            int noDataCount = 0;
+            for (int i = 0; i < count; i++) {
+                final double expected = dem.getElevation(new GeoPos((float) lats[i], (float) lons[i]));
+                assertFalse(Double.isNaN(elevations[i]));
+                assertEquals("at " + lats[i] + ", " + lons[i], expected, elevations[i], 1.0e-9);
+                if (elevations[i] == NO_DATA_VALUE) {
+                    noDataCount++;
+                }
+            }
+            assertTrue(noDataCount > 0);
+            assertTrue(noDataCount < count);
+        } finally {
+            dem.dispose();
+        }
+    }
+
+    /**
+     * The samples of the DEM. Some are no data, some NaN, and the last tile is not available.
+     */
+    private static float getSample(final int x, final int y) {
+        if (x >= 4 && x <= 9 && y >= 3 && y <= 5) {
+            return NO_DATA_VALUE;
+        }
+        if ((x == 15 || x == 16) && (y == 7 || y == 8)) {
+            return Float.NaN;
+        }
+        return 10.0f * x + 100.0f * y + (x * 7 + y * 3) % 5;
+    }
+
+    private static class SyntheticElevationModel extends BaseElevationModel {
+
+        SyntheticElevationModel(final ElevationModelDescriptor descriptor, final Resampling resampling) {
+            super(descriptor, resampling);
+        }
+
+        @Override
+        public double getIndexX(final GeoPos geoPos) {
+            return geoPos.lon * PIXEL_RES;
+        }
+
+        @Override
+        public double getIndexY(final GeoPos geoPos) {
+            return geoPos.lat * PIXEL_RES;
+        }
+
+        @Override
+        public GeoPos getGeoPos(final PixelPos pixelPos) {
+            return new GeoPos(pixelPos.y / PIXEL_RES, pixelPos.x / PIXEL_RES);
+        }
+
+        @Override
+        protected void createElevationFile(final ElevationFile[][] elevationFiles,
+                                           final int x, final int y, final File demInstallDir) {
+            final boolean available = !(x == NUM_X_TILES - 1 && y == NUM_Y_TILES - 1);
+            final File localFile = new File(demInstallDir, descriptor.createTileFilename(x, y));
+            elevationFiles[x][y] = new SyntheticFile(localFile, x, y, available);
+        }
+    }
+
+    private static class SyntheticFile extends ElevationFile {
+
+        private final int tileX;
+        private final int tileY;
+
+        SyntheticFile(final File localFile, final int tileX, final int tileY, final boolean available) {
+            super(localFile, new SyntheticReader());
+            this.tileX = tileX;
+            this.tileY = tileY;
+            remoteFileExists = false;
+            localFileExists = available;
+        }
+
+        @Override
+        protected ElevationTile createTile(final Product product) {
+            return new ElevationTile() {
+                public void dispose() {
+                }
+
+                public float getSample(final int pixelX, final int pixelY) {
+                    return TestBaseElevationModel.getSample(tileX * PIXEL_RES + pixelX, tileY * PIXEL_RES + pixelY);
+                }
+
+                public void clearCache() {
+                }
+            };
+        }
+
+        @Override
+        protected String getRemoteFTP() {
+            return null;
+        }
+
+        @Override
+        protected String getRemotePath() {
+            return null;
+        }
+
+        @Override
+        protected boolean getRemoteFile() {
+            return false;
+        }
+    }
+
+    private static class SyntheticReader extends AbstractProductReader {
+
+        SyntheticReader() {
+            super(null);
+        }
+
+        @Override
+        protected Product readProductNodesImpl() {
+            return new Product("tile", "tile", PIXEL_RES, PIXEL_RES);
+        }
+
+        @Override
+        protected void readBandRasterDataImpl(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
+                                              int sourceStepX, int sourceStepY, Band destBand, int destOffsetX,
+                                              int destOffsetY, int destWidth, int destHeight, ProductData destBuffer,
+                                              ProgressMonitor pm) throws IOException {
+        }
+    }
+
+    private static class SyntheticDescriptor implements ElevationModelDescriptor {
+
+        // all tiles are read from the same empty file
+        private final File tileFile;
+
+        SyntheticDescriptor(final File tileFile) {
+            this.tileFile = tileFile;
+        }
+
+        public String getName() {
+            return "Synthetic";
+        }
+
+        public Datum getDatum() {
+            return Datum.WGS_84;
+        }
+
+        public float getNoDataValue() {
+            return NO_DATA_VALUE;
+        }
+
+        public int getRasterWidth() {
+            return NUM_X_TILES * PIXEL_RES;
+        }
+
+        public int getRasterHeight() {
+            return NUM_Y_TILES * PIXEL_RES;
+        }
+
+        public GeoPos getRasterOrigin() {
+            return new GeoPos(0, 0);
+        }
+
+        public int getDegreeRes() {
+            return 1;
+        }
+
+        public int getPixelRes() {
+            return PIXEL_RES;
+        }
+
+        public int getNumXTiles() {
+            return NUM_X_TILES;
+        }
+
+        public int getNumYTiles() {
+            return NUM_Y_TILES;
+        }
+
+        public ElevationModel createDem() {
+            return null;
+        }
+
+        public ElevationModel createDem(final Resampling resampling) {
+            return null;
+        }
+
+        public File getDemInstallDir() {
+            return tileFile.getParentFile();
+        }
+
+        public URL getDemArchiveUrl() {
+            return null;
+        }
+
+        public boolean isDemInstalled() {
+            return true;
+        }
+
+        public boolean isInstallingDem() {
+            return false;
+        }
+
+        public boolean installDemFiles(final Object uiComponent) {
+            return false;
+        }
+
+        public int getInstallationStatus() {
+            return 0;
+        }
+
+        public String createTileFilename(final int tileX, final int tileY) {
+            return tileFile.getName();
+        }
+    }
+}
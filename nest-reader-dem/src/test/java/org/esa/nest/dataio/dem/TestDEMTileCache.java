@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.dem;
+
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+
+/**
+ * Tests the DEMBlockRaster and the shared DEMTileCache
+ */
+public class TestDEMTileCache extends TestCase {
+
+    private static final int WIDTH = 600;
+    private static final int HEIGHT = 300;
+
+    private static Band createBand() {
+        final Product product = new Product("dem", "dem", WIDTH, HEIGHT);
+        final Band band = product.addBand("elevation", ProductData.TYPE_FLOAT32);
+        final float[] data = new float[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                data[y * WIDTH + x] = x + 1000 * y;
+            }
+        }
+        band.setRasterData(ProductData.createInstance(data));
+        return band;
+    }
+
+    public void testSamplesAcrossBlocks() throws Exception {
+        final DEMTileCache cache = new DEMTileCache(64L * 1024 * 1024);
+        final DEMBlockRaster raster = new DEMBlockRaster(createBand(), cache);
+
+        assertEquals(0.0f, raster.getSample(0, 0));
+        assertEquals(255.0f + 1000 * 255, raster.getSample(255, 255));
+        assertEquals(256.0f + 1000 * 256, raster.getSample(256, 256));
+        assertEquals(599.0f + 1000 * 299, raster.getSample(599, 299));
+        assertEquals(4, cache.getBlockCount());
+
+        // partial blocks at the right and bottom edges are accounted by their actual size
+        final long expected = 4L * (256 * 256 + 256 * 44 + 88 * 44 + 88 * 256);
+        assertEquals(expected, cache.getSize());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    public void testEvictionBoundsMemory() throws Exception {
+        final long blockSize = 4L * DEMBlockRaster.BLOCK_SIZE * DEMBlockRaster.BLOCK_SIZE;
+        final DEMTileCache cache = new DEMTileCache(2 * blockSize);
+        final DEMBlockRaster raster = new DEMBlockRaster(createBand(), cache);
+
+        for (int y = 0; y < HEIGHT; y += 50) {
+            for (int x = 0; x < WIDTH; x += 50) {
+                assertEquals((float) (x + 1000 * y), raster.getSample(x, y));
+                assertTrue(cache.getSize() <= 2 * blockSize);
+            }
+        }
+        assertTrue(cache.getEvictionCount() > 0);
+
+        // evicted blocks are read again
+        assertEquals(0.0f, raster.getSample(0, 0));
+        assertEquals(599.0f + 1000 * 299, raster.getSample(599, 299));
+    }
+
+    public void testClearReleasesBlocks() throws Exception {
+        final DEMTileCache cache = new DEMTileCache(64L * 1024 * 1024);
+        final DEMBlockRaster raster1 = new DEMBlockRaster(createBand(), cache);
+        final DEMBlockRaster raster2 = new DEMBlockRaster(createBand(), cache);
+
+        raster1.getSample(10, 10);
+        raster2.getSample(10, 10);
+        raster2.getSample(300, 10);
+        assertEquals(3, cache.getBlockCount());
+
+        raster2.clear();
+        assertEquals(1, cache.getBlockCount());
+        assertEquals(4L * 256 * 256, cache.getSize());
+
+        raster1.clear();
+        assertEquals(0, cache.getBlockCount());
+        assertEquals(0, cache.getSize());
+    }
+}
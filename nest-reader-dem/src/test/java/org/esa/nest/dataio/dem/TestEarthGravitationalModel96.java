@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.dem;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that the batch and grid geoid heights equal the geoid heights of single positions.
+ */
+public class TestEarthGravitationalModel96 extends TestCase {
+
+    private static final double EPS = 1.0e-4;
+
+    private EarthGravitationalModel96 egm;
+
+    @Override
+    public void setUp() throws Exception {
+        // a synthetic geoid of the EGM96 grid size
+        final float[][] grid = new float[721][1441];
+        for (int r = 0; r < grid.length; r++) {
+            for (int c = 0; c < grid[r].length; c++) {
+                grid[r][c] = (float) (30.0 * Math.sin(r * 0.05) + 20.0 * Math.cos(c * 0.013) + (r * c % 7) * 0.1);
+            }
+        }
+        egm = new EarthGravitationalModel96(grid);
+    }
+
+    public void testBatchEqualsSinglePositions() {
+        final double[] lats = {90.0, 89.9, 45.0, 12.3456, 0.0, -0.125, -33.3, -89.9, -90.0, 51.76, 51.76};
+        final double[] lons = {0.0, 0.1, -179.9, 100.01, 359.9, -0.125, 180.0, 270.5, -0.01, 7.3, -7.3};
+        final float[] geoid = new float[lats.length];
+        egm.getEGM(lats, lons, lats.length, geoid);
+        for (int i = 0; i < lats.length; i++) {
+            assertEquals(egm.getEGM(lats[i], lons[i]), geoid[i], EPS);
+        }
+    }
+
+    public void testGridEqualsSinglePositions() {
+        // lines and columns of a DEM tile crossing several rows and columns of the geoid grid,
+        // the equator and the prime meridian
+        final int height = 37;
+        final int width = 53;
+        final double[] lats = new double[height];
+        final double[] lons = new double[width];
+        for (int y = 0; y < height; y++) {
+            lats[y] = 1.3 - y * 0.07;
+        }
+        for (int x = 0; x < width; x++) {
+            lons[x] = -1.1 + x * 0.043;
+        }
+        final float[] geoid = new float[width * height];
+        egm.getEGMGrid(lats, lons, geoid);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(egm.getEGM(lats[y], lons[x]), geoid[y * width + x], EPS);
+            }
+        }
+    }
+
+    public void testGridAtThePoles() {
+        final double[] lats = {90.0, 89.8, -89.8, -90.0};
+        final double[] lons = {0.0, 120.0, 359.9};
+        final float[] geoid = new float[lats.length * lons.length];
+        egm.getEGMGrid(lats, lons, geoid);
+        for (int y = 0; y < lats.length; y++) {
+            for (int x = 0; x < lons.length; x++) {
+                assertEquals(egm.getEGM(lats[y], lons[x]), geoid[y * lons.length + x], EPS);
+            }
+        }
+    }
+}
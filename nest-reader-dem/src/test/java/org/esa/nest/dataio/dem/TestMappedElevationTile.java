@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2013 by Array Systems Computing Inc. http://www.array.ca
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.nest.dataio.dem;
+
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Tests decoding DEM tiles into memory mapped files
+ */
+public class TestMappedElevationTile extends TestCase {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 520;
+    private static final float NO_DATA = -32768;
+
+    private File folder;
+
+    @Override
+    protected void setUp() throws Exception {
+        folder = File.createTempFile("demtiles", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        final File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    private static Product createProduct() {
+        final Product product = new Product("dem", "dem", WIDTH, HEIGHT);
+        final Band band = product.addBand("elevation", ProductData.TYPE_INT16);
+        final short[] data = new short[WIDTH * HEIGHT];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (short) (i % 20000 - 500);
+        }
+        band.setRasterData(ProductData.createInstance(data));
+        return product;
+    }
+
+    public void testCreateAndOpen() throws Exception {
+        final File file = MappedElevationTile.getMappedFile(folder, "srtm_01_01");
+        assertEquals("srtm_01_01.raw", file.getName());
+
+        final MappedElevationTile created = MappedElevationTile.create(createProduct(), -32768, file);
+        assertTrue(file.exists());
+        assertEquals(1, folder.listFiles().length);
+
+        final MappedElevationTile tile = MappedElevationTile.open(file);
+        assertEquals(WIDTH, tile.getWidth());
+        assertEquals(HEIGHT, tile.getHeight());
+        for (int y = 0; y < HEIGHT; y += 7) {
+            for (int x = 0; x < WIDTH; x += 13) {
+                final float expected = (y * WIDTH + x) % 20000 - 500;
+                assertEquals(expected, tile.getSample(x, y));
+                assertEquals(expected, created.getSample(x, y));
+            }
+        }
+        assertEquals((float) ((WIDTH * HEIGHT - 1) % 20000 - 500), tile.getSample(WIDTH - 1, HEIGHT - 1));
+    }
+
+    public void testIncompleteFileIsRejected() throws Exception {
+        final File file = MappedElevationTile.getMappedFile(folder, "srtm_01_02");
+        MappedElevationTile.create(createProduct(), -32768, file);
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 4);
+        } finally {
+            raf.close();
+        }
+        try {
+            MappedElevationTile.open(file);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testDecimate() throws Exception {
+        final File file = MappedElevationTile.getMappedFile(folder, "srtm_01_03");
+        final MappedElevationTile tile = MappedElevationTile.create(createSquareProduct(), NO_DATA, file);
+
+        final File levelFile = MappedElevationTile.getMappedFile(folder, "srtm_01_03.L1");
+        final MappedElevationTile level1 = MappedElevationTile.createDecimated(tile, 4, 2, NO_DATA, levelFile);
+        assertTrue(levelFile.exists());
+        assertEquals(2, level1.getWidth());
+        assertEquals(2, level1.getHeight());
+        assertEquals(2.5f, level1.getSample(0, 0));
+        // one of four samples without data
+        assertEquals(20.0f, level1.getSample(1, 0));
+        // two of four samples without data
+        assertEquals(NO_DATA, level1.getSample(0, 1));
+        assertEquals(100.0f, level1.getSample(1, 1));
+
+        final MappedElevationTile level2 = MappedElevationTile.createDecimated(tile, 4, 4, NO_DATA, null);
+        assertEquals(1, level2.getWidth());
+        assertEquals((float) ((1 + 2 + 10 + 20 + 3 + 4 + 30 + 5 + 200 + 200 + 6 + 0 + 0) / 13.0),
+                     level2.getSample(0, 0), 1e-4f);
+    }
+
+
+    private static Product createSquareProduct() {
+        final Product product = new Product("dem", "dem", 4, 4);
+        final Band band = product.addBand("elevation", ProductData.TYPE_FLOAT32);
+        band.setRasterData(ProductData.createInstance(new float[]{
+                1, 2, 10, 20,
+                3, 4, 30, NO_DATA,
+                NO_DATA, 5, 200, 200,
+                NO_DATA, 6, 0, 0
+        }));
+        return product;
+    }
+}